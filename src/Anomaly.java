@@ -0,0 +1,148 @@
+/**
+ * Anomaly class is a reading flagged by the AnomalyDetector, with the
+ * mean and standard deviation of the readings before it and the reading
+ * just before it.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class Anomaly extends Observation
+{
+    /**
+     * Parameter id, ex: TAIR
+     */
+    private String paramId;
+
+    /**
+     * UTC epoch second of the reading
+     */
+    private long epochSecond;
+
+    /**
+     * Kind of anomaly
+     */
+    private AnomalyType type;
+
+    /**
+     * Mean of the window before the reading
+     */
+    private double mean;
+
+    /**
+     * Standard deviation of the window before the reading
+     */
+    private double standardDeviation;
+
+    /**
+     * Reading just before this one
+     */
+    private double previous;
+
+    /**
+     * Anomaly constructor setting all fields
+     *
+     * @param value Value of the reading
+     * @param stationId Id of the station in the global StationDictionary
+     * @param paramId Parameter id
+     * @param epochSecond UTC epoch second of the reading
+     * @param type Kind of anomaly
+     * @param mean Mean of the window before the reading
+     * @param standardDeviation Standard deviation of the window before the reading
+     * @param previous Reading just before this one
+     */
+    public Anomaly(double value, int stationId, String paramId, long epochSecond, AnomalyType type, double mean,
+            double standardDeviation, double previous)
+    {
+        super(value, stationId);
+        this.paramId = paramId;
+        this.epochSecond = epochSecond;
+        this.type = type;
+        this.mean = mean;
+        this.standardDeviation = standardDeviation;
+        this.previous = previous;
+    }
+
+    /**
+     * Returns the parameter id
+     *
+     * @return parameter id
+     */
+    public String getParamId()
+    {
+        return paramId;
+    }
+
+    /**
+     * Returns the time of the reading
+     *
+     * @return UTC epoch second
+     */
+    public long getEpochSecond()
+    {
+        return epochSecond;
+    }
+
+    /**
+     * Returns the kind of anomaly
+     *
+     * @return anomaly type
+     */
+    public AnomalyType getType()
+    {
+        return type;
+    }
+
+    /**
+     * Returns the mean of the window before the reading
+     *
+     * @return mean
+     */
+    public double getMean()
+    {
+        return mean;
+    }
+
+    /**
+     * Returns the standard deviation of the window before the reading
+     *
+     * @return standard deviation
+     */
+    public double getStandardDeviation()
+    {
+        return standardDeviation;
+    }
+
+    /**
+     * Returns the reading just before this one
+     *
+     * @return previous value
+     */
+    public double getPrevious()
+    {
+        return previous;
+    }
+
+    /**
+     * Returns the distance of the value from the mean in standard deviations
+     *
+     * @return z-score
+     */
+    public double getZScore()
+    {
+        return (getValue() - mean) / standardDeviation;
+    }
+
+    /**
+     * Describes the anomaly, ex: 2018-08-30 17:45:00 UTC ACME TAIR 34.7 Z_SCORE (mean 24.1, previous 24.3)
+     *
+     * @return description
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("%s %s %s %.1f %s (mean %.1f, previous %.1f)",
+                Statistics.createStringFromEpochSecond(epochSecond), getStid(), paramId, getValue(), type, mean, previous);
+    }
+}
@@ -0,0 +1,253 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Anomaly Detector class checks each valid reading of a new file against
+ * the last readings of the same parameter at the same station, held in
+ * RollingWindows. A reading is flagged Z_SCORE when it is more than a
+ * threshold of standard deviations from the mean of the window, and STEP
+ * when it changed more than the step limit of its parameter since the
+ * last reading. Standard deviations below a floor are raised to it, so a
+ * quiet station does not flag the smallest change. A reading is checked
+ * before it enters the window, and nothing is flagged by Z_SCORE until
+ * the window holds minReadings readings. The STNM and TIME columns are
+ * not measurements and are not checked.
+ *
+ * Each reading costs O(1) and each station a fixed number of bytes per
+ * parameter. Files older than the last reading of a station are skipped
+ * for that station, so files should be added in time order. The newest
+ * anomalies are kept in a bounded list.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class AnomalyDetector
+{
+    /**
+     * Number of readings in a window by default, an hour of 5 minute files
+     */
+    public static final int DEFAULT_WINDOW = 12;
+
+    /**
+     * Standard deviations from the mean flagged by default
+     */
+    public static final double DEFAULT_Z_THRESHOLD = 4.0;
+
+    /**
+     * Smallest standard deviation used by default
+     */
+    public static final double DEFAULT_MIN_STANDARD_DEVIATION = 1.0;
+
+    /**
+     * Number of recent anomalies kept
+     */
+    public static final int RECENT_CAPACITY = 1024;
+
+    /**
+     * Columns that are not measurements
+     */
+    private static final HashSet<String> NOT_MEASURED = new HashSet<String>(Arrays.asList("STNM", "TIME"));
+
+    /**
+     * Number of readings in a window
+     */
+    private int window;
+
+    /**
+     * Standard deviations from the mean flagged
+     */
+    private double zThreshold;
+
+    /**
+     * Smallest standard deviation used
+     */
+    private double minStandardDeviation;
+
+    /**
+     * Readings a window needs before Z_SCORE anomalies are flagged
+     */
+    private int minReadings;
+
+    /**
+     * Windows of each parameter
+     */
+    private HashMap<String, RollingWindows> windows = new HashMap<String, RollingWindows>();
+
+    /**
+     * Largest change between readings of each parameter with a step limit
+     */
+    private HashMap<String, Double> stepLimits = new HashMap<String, Double>();
+
+    /**
+     * Newest anomalies, oldest first
+     */
+    private ArrayDeque<Anomaly> recent = new ArrayDeque<Anomaly>();
+
+    /**
+     * Anomaly Detector constructor with the default window and thresholds
+     */
+    public AnomalyDetector()
+    {
+        this(DEFAULT_WINDOW, DEFAULT_Z_THRESHOLD, DEFAULT_MIN_STANDARD_DEVIATION);
+    }
+
+    /**
+     * Anomaly Detector constructor
+     *
+     * @param window Number of readings in a window, at least 2
+     * @param zThreshold Standard deviations from the mean flagged
+     * @param minStandardDeviation Smallest standard deviation used
+     */
+    public AnomalyDetector(int window, double zThreshold, double minStandardDeviation)
+    {
+        if (window < 2)
+        {
+            throw new IllegalArgumentException("Window must hold at least 2 readings: " + window);
+        }
+
+        this.window = window;
+        this.zThreshold = zThreshold;
+        this.minStandardDeviation = minStandardDeviation;
+        this.minReadings = Math.max(2, window / 2);
+    }
+
+    /**
+     * Flags readings of a parameter that change more than a limit since the
+     * last reading of their station
+     *
+     * @param paramId Parameter id, ex: TAIR
+     * @param limit Largest change not flagged, NaN to stop flagging steps
+     */
+    public synchronized void setStepLimit(String paramId, double limit)
+    {
+        if (Double.isNaN(limit))
+        {
+            stepLimits.remove(paramId);
+        }
+        else
+        {
+            stepLimits.put(paramId, limit);
+        }
+    }
+
+    /**
+     * Checks every valid reading of a parsed file and then adds it to the
+     * window of its station
+     *
+     * @param time UTC epoch second of the file
+     * @param store Parsed file
+     * @return anomalies of the file, empty if there are none
+     */
+    public synchronized List<Anomaly> add(long time, ColumnStore store)
+    {
+        ArrayList<Anomaly> found = new ArrayList<Anomaly>();
+        String[] paramIds = store.getParamIds();
+
+        for (int column = 0; column < paramIds.length; column++)
+        {
+            String paramId = paramIds[column];
+            if (NOT_MEASURED.contains(paramId))
+            {
+                continue;
+            }
+
+            RollingWindows paramWindows = windows.get(paramId);
+            if (paramWindows == null)
+            {
+                paramWindows = new RollingWindows(window);
+                windows.put(paramId, paramWindows);
+            }
+
+            Double stepLimit = stepLimits.get(paramId);
+            double[] values = store.getColumn(column);
+
+            for (int row = 0; row < store.size(); row++)
+            {
+                int stationId = store.getStationId(row);
+                if (stationId < 0 || !store.isValid(column, row) || paramWindows.getLastTime(stationId) >= time)
+                {
+                    continue;
+                }
+
+                double value = values[row];
+                int count = paramWindows.getCount(stationId);
+
+                if (count > 0)
+                {
+                    double mean = paramWindows.getMean(stationId);
+                    double deviation = Math.max(minStandardDeviation, count < 2 ? 0.0
+                            : paramWindows.getStandardDeviation(stationId));
+                    double previous = paramWindows.getLast(stationId);
+
+                    if (count >= minReadings && Math.abs(value - mean) > zThreshold * deviation)
+                    {
+                        found.add(new Anomaly(value, stationId, paramId, time, AnomalyType.Z_SCORE, mean, deviation,
+                                previous));
+                    }
+                    else if (stepLimit != null && Math.abs(value - previous) > stepLimit)
+                    {
+                        found.add(new Anomaly(value, stationId, paramId, time, AnomalyType.STEP, mean, deviation,
+                                previous));
+                    }
+                }
+
+                paramWindows.add(stationId, time, value);
+            }
+        }
+
+        for (Anomaly anomaly : found)
+        {
+            if (recent.size() == RECENT_CAPACITY)
+            {
+                recent.removeFirst();
+            }
+            recent.addLast(anomaly);
+        }
+
+        return found;
+    }
+
+    /**
+     * Returns the newest anomalies found
+     *
+     * @return anomalies, oldest first, at most RECENT_CAPACITY
+     */
+    public synchronized List<Anomaly> getRecentAnomalies()
+    {
+        return new ArrayList<Anomaly>(recent);
+    }
+
+    /**
+     * Returns the windows of a parameter
+     *
+     * @param paramId Parameter id
+     * @return windows or null if no file had the parameter
+     */
+    public synchronized RollingWindows getWindows(String paramId)
+    {
+        return windows.get(paramId);
+    }
+
+    /**
+     * Estimates the bytes held for every window
+     *
+     * @return bytes
+     */
+    public synchronized long estimateBytes()
+    {
+        long bytes = 0;
+
+        for (RollingWindows paramWindows : windows.values())
+        {
+            bytes += paramWindows.estimateBytes();
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,141 @@
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Anomaly Detector and Rolling Windows classes
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class AnomalyDetectorTest
+{
+    /**
+     * Builds a file of air temperatures
+     *
+     * @param stids Station ids
+     * @param values Air temperature of each station
+     * @return parsed file
+     */
+    private static ColumnStore file(String[] stids, double[] values)
+    {
+        ColumnStore store = new ColumnStore(new String[] {"STNM", "TAIR"}, stids.length);
+
+        for (int i = 0; i < stids.length; i++)
+        {
+            int row = store.addRow(stids[i]);
+            store.setValue(0, row, i);
+            store.setValue(1, row, values[i]);
+        }
+
+        return store;
+    }
+
+    /**
+     * Test that the running mean and deviation match the window as it wraps
+     */
+    @Test
+    public void testRollingWindows()
+    {
+        RollingWindows test = new RollingWindows(5);
+        Random random = new Random(23);
+        double[] added = new double[40];
+
+        for (int i = 0; i < added.length; i++)
+        {
+            added[i] = 1000 + random.nextGaussian();
+            Assert.assertTrue(test.add(3, i * 300L, added[i]));
+
+            int count = Math.min(i + 1, 5);
+            double total = 0;
+            for (int j = i + 1 - count; j <= i; j++)
+            {
+                total += added[j];
+            }
+            double mean = total / count;
+            double m2 = 0;
+            for (int j = i + 1 - count; j <= i; j++)
+            {
+                m2 += (added[j] - mean) * (added[j] - mean);
+            }
+
+            Assert.assertEquals(count, test.getCount(3));
+            Assert.assertEquals(mean, test.getMean(3), 1e-9);
+            Assert.assertEquals(added[i], test.getLast(3), 0);
+            if (count > 1)
+            {
+                Assert.assertEquals(Math.sqrt(m2 / (count - 1)), test.getStandardDeviation(3), 1e-9);
+            }
+        }
+
+        Assert.assertFalse(test.add(3, 0, 5000));
+        Assert.assertEquals(added[39], test.getLast(3), 0);
+        Assert.assertEquals(0, test.getCount(2));
+        Assert.assertTrue(Double.isNaN(test.getMean(100)));
+    }
+
+    /**
+     * Test that a jump against the last readings is flagged once and at the right station
+     */
+    @Test
+    public void testZScore()
+    {
+        AnomalyDetector test = new AnomalyDetector();
+        String[] stids = {"ACME", "ADAX"};
+        Random random = new Random(12);
+
+        for (int i = 0; i < 12; i++)
+        {
+            List<Anomaly> found = test.add(i * 300L, file(stids,
+                    new double[] {24 + random.nextGaussian() * 0.2, 20 + i * 0.1}));
+            Assert.assertTrue(found.isEmpty());
+        }
+
+        List<Anomaly> found = test.add(12 * 300L, file(stids, new double[] {34.7, 21.3}));
+
+        Assert.assertEquals(1, found.size());
+        Assert.assertEquals("ACME", found.get(0).getStid());
+        Assert.assertEquals("TAIR", found.get(0).getParamId());
+        Assert.assertEquals(AnomalyType.Z_SCORE, found.get(0).getType());
+        Assert.assertEquals(24, found.get(0).getMean(), .5);
+        Assert.assertTrue(found.get(0).getZScore() > 4);
+        Assert.assertEquals(1, test.getRecentAnomalies().size());
+
+        //Older files and sentinels are skipped
+        Assert.assertTrue(test.add(300L, file(stids, new double[] {-10, -10})).isEmpty());
+        Assert.assertTrue(test.add(13 * 300L, file(stids, new double[] {-999, -996})).isEmpty());
+        Assert.assertEquals(34.7, test.getWindows("TAIR").getLast(StationDictionary.getGlobal().find("ACME")), .001);
+        Assert.assertNull(test.getWindows("STNM"));
+    }
+
+    /**
+     * Test step limits and that memory stays the same as files keep coming
+     */
+    @Test
+    public void testStepAndMemory()
+    {
+        AnomalyDetector test = new AnomalyDetector(4, 100, 1.0);
+        test.setStepLimit("TAIR", 3);
+        String[] stids = {"ACME"};
+
+        Assert.assertTrue(test.add(0, file(stids, new double[] {20})).isEmpty());
+        Assert.assertTrue(test.add(300, file(stids, new double[] {22.5})).isEmpty());
+        List<Anomaly> found = test.add(600, file(stids, new double[] {26}));
+
+        Assert.assertEquals(1, found.size());
+        Assert.assertEquals(AnomalyType.STEP, found.get(0).getType());
+        Assert.assertEquals(22.5, found.get(0).getPrevious(), .001);
+
+        long bytes = test.estimateBytes();
+        for (int i = 3; i < 1000; i++)
+        {
+            test.add(i * 300L, file(stids, new double[] {26}));
+        }
+        Assert.assertEquals(bytes, test.estimateBytes());
+
+        test.setStepLimit("TAIR", Double.NaN);
+        Assert.assertTrue(test.add(1000 * 300L, file(stids, new double[] {40})).isEmpty());
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * Anomaly Type enumeration
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public enum AnomalyType
+{
+    /**
+     * Value far from the mean of the recent readings in standard deviations
+     */
+    Z_SCORE,
+
+    /**
+     * Value changed more than the step limit of its parameter since the last reading
+     */
+    STEP
+}
@@ -0,0 +1,747 @@
+/**
+ * Column Kernels class computes the masked count, sum, squared
+ * deviations and the rows of the minimum and maximum of a primitive
+ * column. Lanes are masked by the validity bitmap of the column, whose
+ * bits are cleared at parse time for the -996, -998 and -999 sentinels
+ * and any other value its ValidityRule rejects.
+ *
+ * The default kernels read the bitmap 64 rows at a time. Words with
+ * every row valid are reduced in four independent lanes with no per
+ * value branch on validity, so the JIT can keep the lanes in registers
+ * and overlap them; other words only visit their set bits. The Scalar
+ * kernels are the plain one row at a time loops, kept as a reference
+ * and for the benchmark.
+ *
+ * summarize fuses the count, sum, squared deviations, extremes and
+ * sentinel counts and copies the valid values out for the percentiles.
+ * It walks the rows once for every column of a store, reducing each
+ * block of 64 rows for all columns before moving on, and uses the same
+ * four lanes on words with every row valid.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public final class ColumnKernels
+{
+    /**
+     * Column Kernels has only static methods
+     */
+    private ColumnKernels()
+    {
+    }
+
+    /**
+     * Counts the valid rows
+     *
+     * @param mask Validity bitmap, bit (row % 64) of word (row / 64)
+     * @param size Number of rows
+     * @return number of valid rows
+     */
+    public static int count(long[] mask, int size)
+    {
+        int count = 0;
+        int words = ColumnStore.wordCount(size);
+
+        for (int word = 0; word < words; word++)
+        {
+            count += Long.bitCount(mask[word] & wordMask(word, size));
+        }
+
+        return count;
+    }
+
+    /**
+     * Sums the valid values
+     *
+     * @param values Column values
+     * @param mask Validity bitmap
+     * @param size Number of rows
+     * @return sum, 0 if no value is valid
+     */
+    public static double sum(double[] values, long[] mask, int size)
+    {
+        double lane0 = 0.0;
+        double lane1 = 0.0;
+        double lane2 = 0.0;
+        double lane3 = 0.0;
+        int words = ColumnStore.wordCount(size);
+
+        for (int word = 0; word < words; word++)
+        {
+            long bits = mask[word] & wordMask(word, size);
+            int base = word << 6;
+
+            if (bits == -1L)
+            {
+                for (int row = base; row < base + 64; row += 4)
+                {
+                    lane0 += values[row];
+                    lane1 += values[row + 1];
+                    lane2 += values[row + 2];
+                    lane3 += values[row + 3];
+                }
+            }
+            else
+            {
+                while (bits != 0)
+                {
+                    lane0 += values[base + Long.numberOfTrailingZeros(bits)];
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        return (lane0 + lane1) + (lane2 + lane3);
+    }
+
+    /**
+     * Sums the squared differences of the valid values from a mean, the
+     * second pass of a two pass variance
+     *
+     * @param values Column values
+     * @param mask Validity bitmap
+     * @param size Number of rows
+     * @param mean Mean of the valid values
+     * @return sum of squared differences, 0 if no value is valid
+     */
+    public static double sumSquaredDeviations(double[] values, long[] mask, int size, double mean)
+    {
+        double lane0 = 0.0;
+        double lane1 = 0.0;
+        double lane2 = 0.0;
+        double lane3 = 0.0;
+        int words = ColumnStore.wordCount(size);
+
+        for (int word = 0; word < words; word++)
+        {
+            long bits = mask[word] & wordMask(word, size);
+            int base = word << 6;
+
+            if (bits == -1L)
+            {
+                for (int row = base; row < base + 64; row += 4)
+                {
+                    double d0 = values[row] - mean;
+                    double d1 = values[row + 1] - mean;
+                    double d2 = values[row + 2] - mean;
+                    double d3 = values[row + 3] - mean;
+                    lane0 += d0 * d0;
+                    lane1 += d1 * d1;
+                    lane2 += d2 * d2;
+                    lane3 += d3 * d3;
+                }
+            }
+            else
+            {
+                while (bits != 0)
+                {
+                    double d = values[base + Long.numberOfTrailingZeros(bits)] - mean;
+                    lane0 += d * d;
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        return (lane0 + lane1) + (lane2 + lane3);
+    }
+
+    /**
+     * Finds the first row holding the smallest valid value
+     *
+     * @param values Column values
+     * @param mask Validity bitmap
+     * @param size Number of rows
+     * @return row or -1 if no value is valid
+     */
+    public static int argMin(double[] values, long[] mask, int size)
+    {
+        return argExtreme(values, mask, size, false);
+    }
+
+    /**
+     * Finds the first row holding the largest valid value
+     *
+     * @param values Column values
+     * @param mask Validity bitmap
+     * @param size Number of rows
+     * @return row or -1 if no value is valid
+     */
+    public static int argMax(double[] values, long[] mask, int size)
+    {
+        return argExtreme(values, mask, size, true);
+    }
+
+    /**
+     * Reduces every column of a store in one traversal of its rows. The
+     * rows are walked 64 at a time and each block is reduced for every
+     * column before the next block is read.
+     *
+     * @param store Parsed rows
+     * @param valid Receives the valid values of each column in row order,
+     *        each at least size long, or null
+     * @return count, sum, squared deviations, rows of the extremes and
+     *         sentinel counts of each column
+     */
+    public static Summary[] summarize(ColumnStore store, double[][] valid)
+    {
+        int columns = store.getParamIds().length;
+        int size = store.size();
+        Summary[] summaries = new Summary[columns];
+        double[][] values = new double[columns][];
+        long[][] masks = new long[columns][];
+        ValidityRule[] rules = new ValidityRule[columns];
+
+        for (int column = 0; column < columns; column++)
+        {
+            summaries[column] = new Summary(ValidityRules.getGlobal().getSentinels().length);
+            values[column] = store.getColumn(column);
+            masks[column] = store.getValidity(column);
+            rules[column] = store.getRule(column);
+        }
+
+        for (int word = 0; word < ColumnStore.wordCount(size); word++)
+        {
+            long inside = wordMask(word, size);
+
+            for (int column = 0; column < columns; column++)
+            {
+                long mask = masks[column][word];
+                reduceWord(summaries[column], values[column], mask & inside, ~mask & inside, word << 6,
+                        rules[column], valid == null ? null : valid[column]);
+            }
+        }
+
+        return summaries;
+    }
+
+    /**
+     * Reduces the selected rows of one column in one pass
+     *
+     * @param values Column values
+     * @param mask Validity bitmap
+     * @param rows Bitmap of the selected rows, or null for every row
+     * @param size Number of rows
+     * @param rule Rule the bitmap was built with, for the sentinel counts
+     * @param valid Receives the valid values in row order, at least size long, or null
+     * @return count, sum, squared deviations, rows of the extremes and sentinel counts
+     */
+    public static Summary summarize(double[] values, long[] mask, long[] rows, int size, ValidityRule rule,
+            double[] valid)
+    {
+        Summary summary = new Summary(ValidityRules.getGlobal().getSentinels().length);
+
+        for (int word = 0; word < ColumnStore.wordCount(size); word++)
+        {
+            long inside = wordMask(word, size);
+            if (rows != null)
+            {
+                inside &= word < rows.length ? rows[word] : 0L;
+            }
+            reduceWord(summary, values, mask[word] & inside, ~mask[word] & inside, word << 6, rule, valid);
+        }
+
+        return summary;
+    }
+
+    /**
+     * Adds 64 rows of a column to a summary. A word with every row valid
+     * is reduced in four lanes like sum; the row of a new extreme is looked
+     * up afterwards, which only happens when the word holds one. The
+     * squared deviations are summed around the first valid value and
+     * corrected to the mean at the end, so no second pass is needed.
+     *
+     * @param summary Summary of the rows before this word
+     * @param values Column values
+     * @param bits Valid selected rows of the word
+     * @param invalid Selected rows of the word that are not valid
+     * @param base First row of the word
+     * @param rule Rule the bitmap was built with
+     * @param valid Receives the valid values, or null
+     */
+    private static void reduceWord(Summary summary, double[] values, long bits, long invalid, int base,
+            ValidityRule rule, double[] valid)
+    {
+        if (bits != 0 && summary.count == 0)
+        {
+            summary.shift = values[base + Long.numberOfTrailingZeros(bits)];
+        }
+        double shift = summary.shift;
+
+        if (bits == -1L)
+        {
+            double sum0 = 0.0;
+            double sum1 = 0.0;
+            double sum2 = 0.0;
+            double sum3 = 0.0;
+            double shifted0 = 0.0;
+            double shifted1 = 0.0;
+            double shifted2 = 0.0;
+            double shifted3 = 0.0;
+            double squares0 = 0.0;
+            double squares1 = 0.0;
+            double squares2 = 0.0;
+            double squares3 = 0.0;
+            double min0 = values[base];
+            double min1 = min0;
+            double min2 = min0;
+            double min3 = min0;
+            double max0 = min0;
+            double max1 = min0;
+            double max2 = min0;
+            double max3 = min0;
+
+            for (int row = base; row < base + 64; row += 4)
+            {
+                double v0 = values[row];
+                double v1 = values[row + 1];
+                double v2 = values[row + 2];
+                double v3 = values[row + 3];
+                double d0 = v0 - shift;
+                double d1 = v1 - shift;
+                double d2 = v2 - shift;
+                double d3 = v3 - shift;
+                sum0 += v0;
+                sum1 += v1;
+                sum2 += v2;
+                sum3 += v3;
+                shifted0 += d0;
+                shifted1 += d1;
+                shifted2 += d2;
+                shifted3 += d3;
+                squares0 += d0 * d0;
+                squares1 += d1 * d1;
+                squares2 += d2 * d2;
+                squares3 += d3 * d3;
+                min0 = v0 < min0 ? v0 : min0;
+                min1 = v1 < min1 ? v1 : min1;
+                min2 = v2 < min2 ? v2 : min2;
+                min3 = v3 < min3 ? v3 : min3;
+                max0 = v0 > max0 ? v0 : max0;
+                max1 = v1 > max1 ? v1 : max1;
+                max2 = v2 > max2 ? v2 : max2;
+                max3 = v3 > max3 ? v3 : max3;
+            }
+
+            double min = Math.min(Math.min(min0, min1), Math.min(min2, min3));
+            double max = Math.max(Math.max(max0, max1), Math.max(max2, max3));
+            if (min < summary.min)
+            {
+                summary.min = min;
+                summary.minRow = firstRowOf(values, base, min);
+            }
+            if (max > summary.max)
+            {
+                summary.max = max;
+                summary.maxRow = firstRowOf(values, base, max);
+            }
+            if (valid != null)
+            {
+                System.arraycopy(values, base, valid, summary.count, 64);
+            }
+            summary.sum += (sum0 + sum1) + (sum2 + sum3);
+            summary.shifted += (shifted0 + shifted1) + (shifted2 + shifted3);
+            summary.squares += (squares0 + squares1) + (squares2 + squares3);
+            summary.count += 64;
+            return;
+        }
+
+        while (bits != 0)
+        {
+            int row = base + Long.numberOfTrailingZeros(bits);
+            double value = values[row];
+            double d = value - shift;
+
+            summary.sum += value;
+            summary.shifted += d;
+            summary.squares += d * d;
+            if (value < summary.min)
+            {
+                summary.min = value;
+                summary.minRow = row;
+            }
+            if (value > summary.max)
+            {
+                summary.max = value;
+                summary.maxRow = row;
+            }
+            if (valid != null)
+            {
+                valid[summary.count] = value;
+            }
+            summary.count++;
+            bits &= bits - 1;
+        }
+
+        while (invalid != 0)
+        {
+            int sentinel = rule.sentinelIndex(values[base + Long.numberOfTrailingZeros(invalid)]);
+            if (sentinel >= 0 && sentinel < summary.sentinelCounts.length)
+            {
+                summary.sentinelCounts[sentinel]++;
+            }
+            invalid &= invalid - 1;
+        }
+    }
+
+    /**
+     * Finds the first row of a full word holding a value
+     *
+     * @param values Column values
+     * @param base First row of the word
+     * @param value Value known to be in the word
+     * @return row
+     */
+    private static int firstRowOf(double[] values, int base, double value)
+    {
+        int row = base;
+        while (values[row] != value)
+        {
+            row++;
+        }
+
+        return row;
+    }
+
+    /**
+     * Counts the valid rows one row at a time
+     *
+     * @param mask Validity bitmap
+     * @param size Number of rows
+     * @return number of valid rows
+     */
+    public static int countScalar(long[] mask, int size)
+    {
+        int count = 0;
+
+        for (int row = 0; row < size; row++)
+        {
+            if ((mask[row >>> 6] & (1L << row)) != 0)
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Sums the valid values one row at a time
+     *
+     * @param values Column values
+     * @param mask Validity bitmap
+     * @param size Number of rows
+     * @return sum, 0 if no value is valid
+     */
+    public static double sumScalar(double[] values, long[] mask, int size)
+    {
+        double sum = 0.0;
+
+        for (int row = 0; row < size; row++)
+        {
+            if ((mask[row >>> 6] & (1L << row)) != 0)
+            {
+                sum += values[row];
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * Finds the first row holding the smallest valid value one row at a time
+     *
+     * @param values Column values
+     * @param mask Validity bitmap
+     * @param size Number of rows
+     * @return row or -1 if no value is valid
+     */
+    public static int argMinScalar(double[] values, long[] mask, int size)
+    {
+        int best = -1;
+
+        for (int row = 0; row < size; row++)
+        {
+            if ((mask[row >>> 6] & (1L << row)) != 0 && (best < 0 || values[row] < values[best]))
+            {
+                best = row;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Finds the first row holding the largest valid value one row at a time
+     *
+     * @param values Column values
+     * @param mask Validity bitmap
+     * @param size Number of rows
+     * @return row or -1 if no value is valid
+     */
+    public static int argMaxScalar(double[] values, long[] mask, int size)
+    {
+        int best = -1;
+
+        for (int row = 0; row < size; row++)
+        {
+            if ((mask[row >>> 6] & (1L << row)) != 0 && (best < 0 || values[row] > values[best]))
+            {
+                best = row;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Finds the first row of the smallest or largest valid value. Each
+     * lane keeps the first row of its own extreme, so the lanes are
+     * combined by value and then by the earlier row.
+     *
+     * @param values Column values
+     * @param mask Validity bitmap
+     * @param size Number of rows
+     * @param largest True for the maximum, false for the minimum
+     * @return row or -1 if no value is valid
+     */
+    private static int argExtreme(double[] values, long[] mask, int size, boolean largest)
+    {
+        //Negating turns the maximum into a minimum of the same rows
+        double sign = largest ? -1.0 : 1.0;
+        double best0 = Double.POSITIVE_INFINITY;
+        double best1 = Double.POSITIVE_INFINITY;
+        double best2 = Double.POSITIVE_INFINITY;
+        double best3 = Double.POSITIVE_INFINITY;
+        int row0 = -1;
+        int row1 = -1;
+        int row2 = -1;
+        int row3 = -1;
+        int words = ColumnStore.wordCount(size);
+
+        for (int word = 0; word < words; word++)
+        {
+            long bits = mask[word] & wordMask(word, size);
+            int base = word << 6;
+
+            if (bits == -1L)
+            {
+                for (int row = base; row < base + 64; row += 4)
+                {
+                    double v0 = sign * values[row];
+                    double v1 = sign * values[row + 1];
+                    double v2 = sign * values[row + 2];
+                    double v3 = sign * values[row + 3];
+                    if (v0 < best0 || row0 < 0)
+                    {
+                        best0 = v0;
+                        row0 = row;
+                    }
+                    if (v1 < best1 || row1 < 0)
+                    {
+                        best1 = v1;
+                        row1 = row + 1;
+                    }
+                    if (v2 < best2 || row2 < 0)
+                    {
+                        best2 = v2;
+                        row2 = row + 2;
+                    }
+                    if (v3 < best3 || row3 < 0)
+                    {
+                        best3 = v3;
+                        row3 = row + 3;
+                    }
+                }
+            }
+            else
+            {
+                while (bits != 0)
+                {
+                    int row = base + Long.numberOfTrailingZeros(bits);
+                    double v = sign * values[row];
+                    if (v < best0 || row0 < 0)
+                    {
+                        best0 = v;
+                        row0 = row;
+                    }
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        int first = earlier(best0, row0, best1, row1);
+        int second = earlier(best2, row2, best3, row3);
+
+        if (first < 0 || second < 0)
+        {
+            return first < 0 ? second : first;
+        }
+
+        return earlier(sign * values[first], first, sign * values[second], second);
+    }
+
+    /**
+     * Picks the better of two lane results, the smaller value and then the earlier row
+     *
+     * @param a Value of the first lane
+     * @param rowA Row of the first lane, -1 if empty
+     * @param b Value of the second lane
+     * @param rowB Row of the second lane, -1 if empty
+     * @return row of the better lane, -1 if both are empty
+     */
+    private static int earlier(double a, int rowA, double b, int rowB)
+    {
+        if (rowA < 0)
+        {
+            return rowB;
+        }
+        if (rowB < 0)
+        {
+            return rowA;
+        }
+
+        return b < a || (b == a && rowB < rowA) ? rowB : rowA;
+    }
+
+    /**
+     * Bits of a bitmap word that fall within the rows
+     *
+     * @param word Word number
+     * @param size Number of rows
+     * @return mask of the rows of the word below size
+     */
+    static long wordMask(int word, int size)
+    {
+        int remaining = size - (word << 6);
+
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+
+    /**
+     * Result of summarize
+     */
+    public static final class Summary
+    {
+        /**
+         * Number of valid values
+         */
+        private int count;
+
+        /**
+         * Sum of the valid values
+         */
+        private double sum;
+
+        /**
+         * First valid value, the deviations are summed around it
+         */
+        private double shift;
+
+        /**
+         * Sum of the differences of the valid values from shift
+         */
+        private double shifted;
+
+        /**
+         * Sum of the squared differences of the valid values from shift
+         */
+        private double squares;
+
+        /**
+         * Smallest valid value
+         */
+        private double min = Double.POSITIVE_INFINITY;
+
+        /**
+         * Largest valid value
+         */
+        private double max = Double.NEGATIVE_INFINITY;
+
+        /**
+         * First row of the smallest valid value, -1 if none
+         */
+        private int minRow = -1;
+
+        /**
+         * First row of the largest valid value, -1 if none
+         */
+        private int maxRow = -1;
+
+        /**
+         * Number of rows holding each sentinel code
+         */
+        private int[] sentinelCounts;
+
+        /**
+         * Summary constructor for an empty column
+         *
+         * @param sentinels Number of sentinel codes
+         */
+        private Summary(int sentinels)
+        {
+            this.sentinelCounts = new int[sentinels];
+        }
+
+        /**
+         * Returns the number of valid values
+         *
+         * @return count
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Returns the sum of the valid values
+         *
+         * @return sum, 0 if no value is valid
+         */
+        public double getSum()
+        {
+            return sum;
+        }
+
+        /**
+         * Returns the sum of the squared differences from the mean
+         *
+         * @return squared deviations, 0 if no value is valid
+         */
+        public double getSquaredDeviations()
+        {
+            return count == 0 ? 0.0 : Math.max(0.0, squares - shifted * shifted / count);
+        }
+
+        /**
+         * Returns the first row of the smallest valid value
+         *
+         * @return row or -1 if no value is valid
+         */
+        public int getMinRow()
+        {
+            return minRow;
+        }
+
+        /**
+         * Returns the first row of the largest valid value
+         *
+         * @return row or -1 if no value is valid
+         */
+        public int getMaxRow()
+        {
+            return maxRow;
+        }
+
+        /**
+         * Returns the number of rows holding each sentinel code
+         *
+         * @return counts in the order of ValidityRules.getSentinels
+         */
+        public int[] getSentinelCounts()
+        {
+            return sentinelCounts;
+        }
+    }
+}
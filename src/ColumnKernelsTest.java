@@ -0,0 +1,166 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Column Kernels class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class ColumnKernelsTest
+{
+    /**
+     * Builds a store of random values with sentinels mixed in
+     *
+     * @param rows Number of rows
+     * @param seed Random seed
+     * @return column store with one TAIR column
+     */
+    private ColumnStore buildStore(int rows, long seed)
+    {
+        Random random = new Random(seed);
+        double[] sentinels = {-996, -998, -999};
+        ColumnStore store = new ColumnStore(new String[] {"TAIR"}, 1);
+
+        for (int row = 0; row < rows; row++)
+        {
+            store.addRow("ST" + (row % 7));
+            //Runs of valid rows so both full and partial bitmap words are covered
+            boolean sentinel = (row / 100) % 3 == 1 && random.nextInt(4) == 0;
+            store.setValue(0, row, sentinel ? sentinels[random.nextInt(3)] : Math.round(random.nextGaussian() * 100) / 10.0);
+        }
+
+        return store;
+    }
+
+    /**
+     * Test the lane-unrolled kernels match the one row at a time kernels
+     */
+    @Test
+    public void testMatchesScalar()
+    {
+        for (int rows : new int[] {0, 1, 3, 63, 64, 65, 200, 1000, 4099})
+        {
+            ColumnStore store = buildStore(rows, rows);
+            double[] values = store.getColumn(0);
+            long[] validity = store.getValidity(0);
+
+            Assert.assertEquals(ColumnKernels.countScalar(validity, rows), ColumnKernels.count(validity, rows));
+            Assert.assertEquals(ColumnKernels.sumScalar(values, validity, rows), ColumnKernels.sum(values, validity, rows), 1e-9);
+            Assert.assertEquals(ColumnKernels.argMinScalar(values, validity, rows), ColumnKernels.argMin(values, validity, rows));
+            Assert.assertEquals(ColumnKernels.argMaxScalar(values, validity, rows), ColumnKernels.argMax(values, validity, rows));
+        }
+    }
+
+    /**
+     * Test sentinels are masked and ties keep the first row
+     */
+    @Test
+    public void testSentinelsAndTies()
+    {
+        ColumnStore store = new ColumnStore(new String[] {"TAIR"}, 8);
+        double[] values = {-999, 5, -996, 2, 5, 2, -998, 1.5};
+
+        for (int row = 0; row < values.length; row++)
+        {
+            store.addRow("ST" + row);
+            store.setValue(0, row, values[row]);
+        }
+        double[] column = store.getColumn(0);
+        long[] validity = store.getValidity(0);
+
+        Assert.assertEquals(5, ColumnKernels.count(validity, 8));
+        Assert.assertEquals(15.5, ColumnKernels.sum(column, validity, 8), 1e-9);
+        Assert.assertEquals(7, ColumnKernels.argMin(column, validity, 8));
+        Assert.assertEquals(1, ColumnKernels.argMax(column, validity, 8));
+        Assert.assertEquals(3, ColumnKernels.argMin(column, validity, 6));
+        Assert.assertEquals(-1, ColumnKernels.argMax(column, validity, 1));
+        Assert.assertEquals(9, ColumnKernels.sumSquaredDeviations(column, validity, 6, 3.5), 1e-9);
+    }
+
+    /**
+     * Test the one pass summary matches the separate kernels, with and
+     * without a row selection
+     */
+    @Test
+    public void testSummarize()
+    {
+        for (int rows : new int[] {0, 1, 65, 1000, 4099})
+        {
+            ColumnStore store = buildStore(rows, rows + 1);
+            double[] values = store.getColumn(0);
+            long[] validity = store.getValidity(0);
+            double[] valid = new double[rows];
+            ColumnKernels.Summary summary = ColumnKernels.summarize(values, validity, null, rows, store.getRule(0), valid);
+            int count = ColumnKernels.count(validity, rows);
+            double mean = count == 0 ? 0 : ColumnKernels.sum(values, validity, rows) / count;
+
+            Assert.assertEquals(count, summary.getCount());
+            Assert.assertEquals(ColumnKernels.sum(values, validity, rows), summary.getSum(), 1e-9);
+            Assert.assertEquals(ColumnKernels.sumSquaredDeviations(values, validity, rows, mean),
+                    summary.getSquaredDeviations(), 1e-6);
+            Assert.assertEquals(ColumnKernels.argMin(values, validity, rows), summary.getMinRow());
+            Assert.assertEquals(ColumnKernels.argMax(values, validity, rows), summary.getMaxRow());
+            Assert.assertArrayEquals(store.countSentinels(0), summary.getSentinelCounts());
+
+            //Every other row selected
+            long[] selected = new long[ColumnStore.wordCount(rows)];
+            Arrays.fill(selected, 0x5555555555555555L);
+            long[] both = new long[selected.length];
+            for (int word = 0; word < both.length; word++)
+            {
+                both[word] = validity[word] & selected[word];
+            }
+            summary = ColumnKernels.summarize(values, validity, selected, rows, store.getRule(0), null);
+
+            Assert.assertEquals(ColumnKernels.count(both, rows), summary.getCount());
+            Assert.assertEquals(ColumnKernels.argMax(values, both, rows), summary.getMaxRow());
+            Assert.assertArrayEquals(store.countSentinels(0, selected), summary.getSentinelCounts());
+        }
+
+        //Every column of a store in one pass matches each column on its own
+        ColumnStore store = new ColumnStore(new String[] {"TAIR", "RELH"}, 1);
+        Random random = new Random(3);
+        for (int row = 0; row < 300; row++)
+        {
+            store.addRow("ST" + row);
+            store.setValue(0, row, row % 50 == 7 ? -998 : random.nextInt(400) / 10.0);
+            store.setValue(1, row, row >= 128 && row < 192 ? 50 : random.nextInt(100));
+        }
+        double[][] copies = new double[2][300];
+        ColumnKernels.Summary[] summaries = ColumnKernels.summarize(store, copies);
+
+        for (int column = 0; column < 2; column++)
+        {
+            double[] copy = new double[300];
+            ColumnKernels.Summary expected = ColumnKernels.summarize(store.getColumn(column),
+                    store.getValidity(column), null, 300, store.getRule(column), copy);
+
+            Assert.assertEquals(expected.getCount(), summaries[column].getCount());
+            Assert.assertEquals(expected.getSum(), summaries[column].getSum(), 1e-9);
+            Assert.assertEquals(expected.getSquaredDeviations(), summaries[column].getSquaredDeviations(), 1e-6);
+            Assert.assertEquals(ColumnKernels.argMinScalar(store.getColumn(column), store.getValidity(column), 300),
+                    summaries[column].getMinRow());
+            Assert.assertEquals(ColumnKernels.argMaxScalar(store.getColumn(column), store.getValidity(column), 300),
+                    summaries[column].getMaxRow());
+            Assert.assertArrayEquals(expected.getSentinelCounts(), summaries[column].getSentinelCounts());
+            Assert.assertArrayEquals(copy, copies[column], 0);
+        }
+
+        //Valid values are copied out in row order
+        store = new ColumnStore(new String[] {"TAIR"}, 4);
+        double[] values = {3, -999, 1, 2};
+        for (int row = 0; row < values.length; row++)
+        {
+            store.addRow("ST" + row);
+            store.setValue(0, row, values[row]);
+        }
+        double[] valid = new double[4];
+        ColumnKernels.summarize(store.getColumn(0), store.getValidity(0), null, 4, store.getRule(0), valid);
+
+        Assert.assertArrayEquals(new double[] {3, 1, 2, 0}, valid, 0);
+    }
+}
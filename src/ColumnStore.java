@@ -0,0 +1,602 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Column Store class holds the parsed contents of a data file as
+ * one primitive double column per parameter, a shared station id
+ * dictionary and a validity bitmap per column. Each value is checked
+ * once against the ValidityRule of its parameter as it is stored, so
+ * readers only test a bit. Observation objects
+ * are only created when a caller asks for them. As a RowSink the
+ * store appends one row for every row of a file. Rows of a station
+ * are found through an array indexed by the station's dictionary id.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class ColumnStore implements RowSink
+{
+    /**
+     * Parameter id of the station numbers
+     */
+    private static final String STNM = "STNM";
+
+    /**
+     * Parameter ids in header order
+     */
+    private String[] paramIds;
+
+    /**
+     * Maps a parameter id to its column number
+     */
+    private HashMap<String, Integer> columnPositions = new HashMap<String, Integer>();
+
+    /**
+     * One value array per parameter
+     */
+    private double[][] columns;
+
+    /**
+     * One validity bitmap per parameter, 64 rows per word
+     */
+    private long[][] validity;
+
+    /**
+     * Validity rule of each parameter
+     */
+    private ValidityRule[] rules;
+
+    /**
+     * Station dictionary id of every row
+     */
+    private int[] stationIds;
+
+    /**
+     * Station names shared by every row
+     */
+    private StationDictionary stations = StationDictionary.getGlobal();
+
+    /**
+     * Row of each station indexed by dictionary id, -1 if the station
+     * has no row, built on first use
+     */
+    private volatile int[] rowsByStation;
+
+    /**
+     * Column number of the STNM station numbers, -1 if not stored
+     */
+    private int stnmColumn;
+
+    /**
+     * Number of rows stored
+     */
+    private int size;
+
+    /**
+     * Row being filled through the RowSink methods
+     */
+    private int currentRow = -1;
+
+    /**
+     * Set once the store is shared, after which rows and values cannot change
+     */
+    private boolean frozen;
+
+    /**
+     * Column Store constructor setting up an empty column per parameter
+     *
+     * @param paramIds Parameter ids in header order
+     * @param initialCapacity Number of rows to allocate up front
+     */
+    public ColumnStore(String[] paramIds, int initialCapacity)
+    {
+        int capacity = Math.max(initialCapacity, 1);
+
+        this.paramIds = paramIds.clone();
+        this.columns = new double[paramIds.length][capacity];
+        this.validity = new long[paramIds.length][wordCount(capacity)];
+        this.stationIds = new int[capacity];
+
+        this.rules = new ValidityRule[paramIds.length];
+        for (int i = 0; i < paramIds.length; i++)
+        {
+            columnPositions.put(paramIds[i], i);
+            rules[i] = ValidityRules.getGlobal().ruleOf(paramIds[i]);
+        }
+        this.stnmColumn = getColumnIndex(STNM);
+    }
+
+    /**
+     * Column Store constructor around arrays that are already filled,
+     * used when reading a snapshot
+     *
+     * @param paramIds Parameter ids in column order
+     * @param columns One value array per parameter
+     * @param validity One validity bitmap per parameter
+     * @param stationIds Station dictionary id of every row
+     * @param stations Station dictionary
+     * @param size Number of rows
+     */
+    ColumnStore(String[] paramIds, double[][] columns, long[][] validity, int[] stationIds,
+            StationDictionary stations, int size)
+    {
+        this.paramIds = paramIds.clone();
+        this.columns = columns;
+        this.validity = validity;
+        this.stationIds = stationIds;
+        this.stations = stations;
+        this.size = size;
+
+        this.rules = new ValidityRule[paramIds.length];
+        for (int i = 0; i < paramIds.length; i++)
+        {
+            columnPositions.put(paramIds[i], i);
+            rules[i] = ValidityRules.getGlobal().ruleOf(paramIds[i]);
+        }
+        this.stnmColumn = getColumnIndex(STNM);
+    }
+
+    /**
+     * Adds an empty row for a station and returns its row number
+     *
+     * @param stid Station id of the row
+     * @return row number
+     */
+    public int addRow(String stid)
+    {
+        int row = addRow();
+        stationIds[row] = stations.idOf(stid);
+        forgetStationIndex();
+
+        return row;
+    }
+
+    /**
+     * Adds an empty row whose station is set later with setStationId
+     *
+     * @return row number
+     */
+    public int addRow()
+    {
+        checkWritable();
+        if (size == stationIds.length)
+        {
+            grow();
+        }
+        forgetStationIndex();
+
+        return size++;
+    }
+
+    /**
+     * Sets the station of a row
+     *
+     * @param row Row number
+     * @param stationId Dictionary id from getStations
+     */
+    public void setStationId(int row, int stationId)
+    {
+        checkWritable();
+        stationIds[row] = stationId;
+        rowsByStation = null;
+    }
+
+    /**
+     * Makes the store read only, done before it is shared between threads
+     * such as by the ObservationCache. Adding rows or setting values or
+     * stations afterwards throws IllegalStateException.
+     */
+    public void freeze()
+    {
+        frozen = true;
+    }
+
+    /**
+     * Checks if the store is read only
+     *
+     * @return true after freeze
+     */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
+    /**
+     * Throws if the store is read only
+     */
+    private void checkWritable()
+    {
+        if (frozen)
+        {
+            throw new IllegalStateException("Column store is read only");
+        }
+    }
+
+    /**
+     * Returns the station dictionary of this store
+     *
+     * @return station dictionary
+     */
+    public StationDictionary getStations()
+    {
+        return stations;
+    }
+
+    /**
+     * Stores a value and marks it valid when its parameter rule allows it
+     *
+     * @param column Column number
+     * @param row Row number
+     * @param value Value to store
+     */
+    public void setValue(int column, int row, double value)
+    {
+        checkWritable();
+        columns[column][row] = value;
+
+        if (rules[column].isValid(value))
+        {
+            validity[column][row >>> 6] |= 1L << row;
+        }
+        else
+        {
+            validity[column][row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    /**
+     * Starts a new row for the RowSink methods
+     */
+    public void startRow()
+    {
+        currentRow = addRow();
+    }
+
+    /**
+     * Sets the station of the current row
+     *
+     * @param stationId Dictionary id from getStations
+     */
+    public void station(int stationId)
+    {
+        setStationId(currentRow, stationId);
+    }
+
+    /**
+     * Stores a value in the current row
+     *
+     * @param column Column number
+     * @param value Value to store
+     */
+    public void value(int column, double value)
+    {
+        setValue(column, currentRow, value);
+    }
+
+    /**
+     * Finishes the current row
+     */
+    public void endRow()
+    {
+        currentRow = -1;
+    }
+
+    /**
+     * Returns the column number of a parameter
+     *
+     * @param paramId Parameter id
+     * @return column number or -1 if the parameter is not stored
+     */
+    public int getColumnIndex(String paramId)
+    {
+        Integer position = columnPositions.get(paramId);
+
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Returns the backing value array of a column. Only the first
+     * size() entries hold data. The array must not be written to.
+     *
+     * @param column Column number
+     * @return column values
+     */
+    public double[] getColumn(int column)
+    {
+        return columns[column];
+    }
+
+    /**
+     * Returns the backing validity bitmap of a column, which must not
+     * be written to
+     *
+     * @param column Column number
+     * @return validity words, bit (row % 64) of word (row / 64)
+     */
+    public long[] getValidity(int column)
+    {
+        return validity[column];
+    }
+
+    /**
+     * Returns the validity rule of a column
+     *
+     * @param column Column number
+     * @return rule the bitmap was built with
+     */
+    public ValidityRule getRule(int column)
+    {
+        return rules[column];
+    }
+
+    /**
+     * Counts the rows of a column holding each sentinel code. Only rows
+     * whose validity bit is clear are compared.
+     *
+     * @param column Column number
+     * @return counts in the order of ValidityRules.getSentinels
+     */
+    public int[] countSentinels(int column)
+    {
+        return countSentinels(column, null);
+    }
+
+    /**
+     * Counts the selected rows of a column holding each sentinel code
+     *
+     * @param column Column number
+     * @param rows Bitmap of the selected rows, or null for every row
+     * @return counts in the order of ValidityRules.getSentinels
+     */
+    public int[] countSentinels(int column, long[] rows)
+    {
+        int[] counts = new int[ValidityRules.getGlobal().getSentinels().length];
+        double[] values = columns[column];
+        long[] bits = validity[column];
+        ValidityRule rule = rules[column];
+
+        for (int word = 0; word < wordCount(size); word++)
+        {
+            long invalid = ~bits[word] & ColumnKernels.wordMask(word, size);
+            if (rows != null)
+            {
+                invalid &= word < rows.length ? rows[word] : 0L;
+            }
+
+            while (invalid != 0)
+            {
+                int sentinel = rule.sentinelIndex(values[(word << 6) + Long.numberOfTrailingZeros(invalid)]);
+                if (sentinel >= 0 && sentinel < counts.length)
+                {
+                    counts[sentinel]++;
+                }
+                invalid &= invalid - 1;
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Returns a single value
+     *
+     * @param column Column number
+     * @param row Row number
+     * @return value
+     */
+    public double getValue(int column, int row)
+    {
+        return columns[column][row];
+    }
+
+    /**
+     * Checks the validity bitmap for a single value
+     *
+     * @param column Column number
+     * @param row Row number
+     * @return true if the value is valid
+     */
+    public boolean isValid(int column, int row)
+    {
+        return (validity[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Returns the station id of a row
+     *
+     * @param row Row number
+     * @return station id
+     */
+    public String getStid(int row)
+    {
+        return stations.nameOf(stationIds[row]);
+    }
+
+    /**
+     * Returns the station dictionary id of a row
+     *
+     * @param row Row number
+     * @return dictionary id
+     */
+    public int getStationId(int row)
+    {
+        return stationIds[row];
+    }
+
+    /**
+     * Returns the row of a station without hashing its name
+     *
+     * @param stationId Dictionary id from getStations
+     * @return row number or -1 if the station has no row
+     */
+    public int rowOf(int stationId)
+    {
+        int[] index = rowsByStation;
+
+        if (index == null)
+        {
+            index = buildStationIndex();
+        }
+
+        return stationId >= 0 && stationId < index.length ? index[stationId] : -1;
+    }
+
+    /**
+     * Returns the STNM station number of a station as recorded in this
+     * store, so parsing never writes station numbers to the shared dictionary
+     *
+     * @param stationId Dictionary id
+     * @return station number or -1 if the station has no row or no valid STNM
+     */
+    public int numberOf(int stationId)
+    {
+        int row = rowOf(stationId);
+
+        return row >= 0 && stnmColumn >= 0 && isValid(stnmColumn, row) ? (int) columns[stnmColumn][row] : -1;
+    }
+
+    /**
+     * Returns a value of a station
+     *
+     * @param column Column number
+     * @param stationId Dictionary id from getStations
+     * @return value or NaN if the station has no row or the value is not valid
+     */
+    public double getValueOfStation(int column, int stationId)
+    {
+        int row = rowOf(stationId);
+
+        return row >= 0 && isValid(column, row) ? columns[column][row] : Double.NaN;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return number of rows
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Estimates the heap used by the columns, bitmaps and station ids.
+     * The station dictionary is shared and not counted.
+     *
+     * @return estimated bytes
+     */
+    public long estimateBytes()
+    {
+        long capacity = stationIds.length;
+        long perColumn = capacity * 8 + wordCount(stationIds.length) * 8L + 16;
+        int[] index = rowsByStation;
+
+        return capacity * 4 + columns.length * perColumn + (index == null ? 0 : index.length * 4L);
+    }
+
+    /**
+     * Returns the parameter ids in header order
+     *
+     * @return parameter ids
+     */
+    public String[] getParamIds()
+    {
+        return paramIds.clone();
+    }
+
+    /**
+     * Builds Observation objects for one parameter
+     *
+     * @param paramId Parameter id
+     * @return observations in row order or null if the parameter is not stored
+     */
+    public ArrayList<Observation> getObservations(String paramId)
+    {
+        int column = getColumnIndex(paramId);
+
+        if (column < 0)
+        {
+            return null;
+        }
+
+        ArrayList<Observation> observations = new ArrayList<Observation>(size);
+
+        for (int row = 0; row < size; row++)
+        {
+            observations.add(new Observation(columns[column][row], stationIds[row]));
+        }
+
+        return observations;
+    }
+
+    /**
+     * Drops the row index so the next lookup sees the rows added since it
+     * was built, reading the volatile field first so filling a store that
+     * was never queried does not write it on every row
+     */
+    private void forgetStationIndex()
+    {
+        if (rowsByStation != null)
+        {
+            rowsByStation = null;
+        }
+    }
+
+    /**
+     * Builds the row index of every station, sized to the largest
+     * dictionary id in this store
+     *
+     * @return row of each station indexed by dictionary id
+     */
+    private int[] buildStationIndex()
+    {
+        int largest = -1;
+        for (int row = 0; row < size; row++)
+        {
+            largest = Math.max(largest, stationIds[row]);
+        }
+
+        int[] index = new int[largest + 1];
+        Arrays.fill(index, -1);
+        for (int row = 0; row < size; row++)
+        {
+            if (stationIds[row] >= 0 && index[stationIds[row]] < 0)
+            {
+                index[stationIds[row]] = row;
+            }
+        }
+
+        rowsByStation = index;
+        return index;
+    }
+
+    /**
+     * Doubles the row capacity of every column
+     */
+    private void grow()
+    {
+        int capacity = stationIds.length * 2;
+
+        stationIds = Arrays.copyOf(stationIds, capacity);
+
+        for (int i = 0; i < columns.length; i++)
+        {
+            columns[i] = Arrays.copyOf(columns[i], capacity);
+            validity[i] = Arrays.copyOf(validity[i], wordCount(capacity));
+        }
+    }
+
+    /**
+     * Number of bitmap words needed for a number of rows
+     *
+     * @param rows number of rows
+     * @return number of words
+     */
+    static int wordCount(int rows)
+    {
+        return (rows + 63) >>> 6;
+    }
+}
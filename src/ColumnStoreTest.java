@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Column Store class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class ColumnStoreTest
+{
+    /**
+     * Test rows, values and the station dictionary
+     */
+    @Test
+    public void testAddRow()
+    {
+        ColumnStore test = new ColumnStore(new String[] {"STID", "TAIR"}, 1);
+
+        int first = test.addRow("ACME");
+        int second = test.addRow("ADAX");
+        int third = test.addRow("ACME");
+        test.setValue(1, first, 34.7);
+        test.setValue(1, second, 31.9);
+        test.setValue(1, third, -999);
+
+        Assert.assertEquals(3, test.size());
+        Assert.assertEquals(1, test.getColumnIndex("TAIR"));
+        Assert.assertEquals(-1, test.getColumnIndex("SRAD"));
+        Assert.assertEquals(31.9, test.getValue(1, second), .01);
+        Assert.assertEquals("ACME", test.getStid(third));
+        Assert.assertSame(test.getStid(first), test.getStid(third));
+    }
+
+    /**
+     * Test that the validity bitmap matches Observation.isValid
+     */
+    @Test
+    public void testIsValid()
+    {
+        ColumnStore test = new ColumnStore(new String[] {"TAIR"}, 4);
+
+        for (int i = 0; i < 130; i++)
+        {
+            test.addRow("ST" + i);
+            test.setValue(0, i, i % 2 == 0 ? 10.5 : -996);
+        }
+
+        for (int i = 0; i < 130; i++)
+        {
+            Observation observation = new Observation(test.getValue(0, i), test.getStid(i));
+            Assert.assertEquals(observation.isValid(), test.isValid(0, i));
+        }
+    }
+
+    /**
+     * Test that sentinel codes are counted among the invalid rows only
+     */
+    @Test
+    public void testCountSentinels()
+    {
+        ColumnStore test = new ColumnStore(new String[] {"TAIR"}, 4);
+        double[] values = {-999, 10.5, -996, -999, 950, -995};
+
+        for (int i = 0; i < 70; i++)
+        {
+            test.setValue(0, test.addRow("ST" + i), values[i % values.length]);
+        }
+
+        int[] counts = test.countSentinels(0);
+        int[] codes = ValidityRules.getGlobal().getSentinels();
+        for (int i = 0; i < codes.length; i++)
+        {
+            int expected = codes[i] == -999 ? 24 : codes[i] == -996 ? 12 : codes[i] == -995 ? 11 : 0;
+            Assert.assertEquals(expected, counts[i]);
+        }
+    }
+
+    /**
+     * Test that observations are materialized in row order
+     */
+    @Test
+    public void testGetObservations()
+    {
+        ColumnStore test = new ColumnStore(new String[] {"SRAD"}, 2);
+        test.setValue(0, test.addRow("BESS"), 899);
+        test.setValue(0, test.addRow("MIAM"), 163);
+
+        ArrayList<Observation> observations = test.getObservations("SRAD");
+
+        Assert.assertEquals(2, observations.size());
+        Assert.assertEquals("MIAM", observations.get(1).getStid());
+        Assert.assertEquals(163, observations.get(1).getValue(), .01);
+        Assert.assertNull(test.getObservations("TAIR"));
+    }
+
+    /**
+     * Test station lookups through the global dictionary ids
+     */
+    @Test
+    public void testRowOfStation()
+    {
+        ColumnStore test = new ColumnStore(new String[] {"STNM", "TAIR"}, 2);
+        StationDictionary stations = StationDictionary.getGlobal();
+
+        for (String stid : new String[] {"ACME", "ADAX", "ALTU"})
+        {
+            test.startRow();
+            test.station(stations.idOf(stid));
+            test.value(0, 110);
+            test.value(1, stid.equals("ADAX") ? -998 : 30.5);
+            test.endRow();
+        }
+
+        Assert.assertSame(StationDictionary.getGlobal(), test.getStations());
+        Assert.assertEquals(2, test.rowOf(stations.idOf("ALTU")));
+        Assert.assertEquals(-1, test.rowOf(stations.idOf("NOT A STATION")));
+        Assert.assertEquals(30.5, test.getValueOfStation(1, stations.idOf("ACME")), .01);
+        Assert.assertTrue(Double.isNaN(test.getValueOfStation(1, stations.idOf("ADAX"))));
+        Assert.assertEquals(110, test.numberOf(stations.idOf("ACME")));
+        Assert.assertEquals(-1, test.numberOf(stations.idOf("NOT A STATION")));
+        Assert.assertEquals(stations.idOf("ACME"), test.getObservations("TAIR").get(0).getStationId());
+    }
+
+    /**
+     * Test that rows added after a lookup are found by the next one
+     */
+    @Test
+    public void testRowOfAfterAddRow()
+    {
+        ColumnStore test = new ColumnStore(new String[] {"STID", "TAIR"}, 1);
+        StationDictionary stations = StationDictionary.getGlobal();
+
+        test.addRow("ACME");
+        Assert.assertEquals(-1, test.rowOf(stations.idOf("BOIS")));
+
+        int row = test.addRow("BOIS");
+        Assert.assertEquals(row, test.rowOf(stations.idOf("BOIS")));
+        Assert.assertEquals(0, test.rowOf(stations.idOf("ACME")));
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * CSV Reader class reads comma separated data files, plain or gzip
+ * compressed, with the columns of an MDF file:
+ *
+ *   STID,STNM,TIME,RELH,TAIR
+ *   ACME,110,0,59,34.7
+ *   ADAX,1,0,,31.9
+ *
+ * The first line is the header. A CSV file has no date line, so its time
+ * is read from its name, which must be made like the MDF file names, ex:
+ * 201808301745.csv. An empty field is stored as not valid.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class CsvReader implements DataFileReader
+{
+    /**
+     * Extension of plain files
+     */
+    public static final String EXTENSION = ".csv";
+
+    /**
+     * Checks if a file is a plain or gzip CSV file
+     *
+     * @param fileName Name of the file
+     * @return true if it ends in .csv or .csv.gz
+     */
+    @Override
+    public boolean canRead(String fileName)
+    {
+        return fileName.endsWith(EXTENSION) || fileName.endsWith(EXTENSION + LineChunks.GZIP);
+    }
+
+    /**
+     * Reads the header line and then the rows of a file
+     *
+     * @param path Location of the file
+     * @param requestedIds Parameters to keep, or null to keep every numeric parameter
+     * @return header ids, UTC epoch second and parsed rows of the file
+     * @throws IOException Checks that the file name has a time and the header a station id column
+     */
+    @Override
+    public MdfSnapshot read(String path, String[] requestedIds) throws IOException
+    {
+        long epochSecond = MdfDirectoryLoader.timestampOf(new File(path).getName());
+        if (epochSecond < 0)
+        {
+            throw new IOException("No date and time in the name of " + path);
+        }
+
+        try (LineChunks chunks = LineChunks.open(path, ','))
+        {
+            String headers = chunks.readLine();
+
+            if (headers == null)
+            {
+                throw new IOException("Missing header line in " + path);
+            }
+
+            String[] headerIds = headers.trim().split("\\s*,\\s*");
+            int stidPosition = DataFileReaders.stidPosition(headerIds, path);
+            ColumnStore store = new ColumnStore(requestedIds == null
+                    ? MdfTokenizer.numericIds(headerIds, stidPosition) : requestedIds, chunks.estimateRows());
+            chunks.parseRows(headerIds, stidPosition, store);
+
+            return new MdfSnapshot(headerIds, epochSecond, store);
+        }
+    }
+}
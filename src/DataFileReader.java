@@ -0,0 +1,33 @@
+import java.io.IOException;
+
+/**
+ * Data File Reader interface reads one format of data file into the same
+ * columnar form, so MapData and MdfDirectoryLoader need not know how a
+ * file was written. Readers are found through DataFileReaders, which
+ * also loads any reader listed as a java.util.ServiceLoader provider.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public interface DataFileReader
+{
+    /**
+     * Checks if this reader handles a file
+     *
+     * @param fileName Name of the file, ex: 201808301745.mdf.gz
+     * @return true if the file can be read
+     */
+    boolean canRead(String fileName);
+
+    /**
+     * Reads the time, header and rows of a file
+     *
+     * @param path Location of the file
+     * @param requestedIds Parameters to keep, or null to keep every numeric parameter
+     * @return header ids, UTC epoch second and parsed rows of the file
+     * @throws IOException Checks to make sure the file can be read
+     */
+    MdfSnapshot read(String path, String[] requestedIds) throws IOException;
+}
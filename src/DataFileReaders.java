@@ -0,0 +1,146 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Data File Readers class picks the DataFileReader of a file by its name.
+ * Readers listed as java.util.ServiceLoader providers of DataFileReader
+ * are asked first, then the built in MdfReader and CsvReader, so a new
+ * format can be added without changing MapData.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public final class DataFileReaders
+{
+    /**
+     * Extensions tried in order when the file of a time is looked for
+     */
+    public static final String[] EXTENSIONS = {".mdf", ".mdf.gz", ".csv", ".csv.gz"};
+
+    /**
+     * Station id column of the header
+     */
+    private static final String STID = "STID";
+
+    /**
+     * Every reader, providers first
+     */
+    private static final List<DataFileReader> READERS = loadReaders();
+
+    /**
+     * Not instantiated
+     */
+    private DataFileReaders()
+    {
+
+    }
+
+    /**
+     * Lists the providers and then the built in readers
+     *
+     * @return readers in the order they are asked
+     */
+    private static List<DataFileReader> loadReaders()
+    {
+        ArrayList<DataFileReader> readers = new ArrayList<DataFileReader>();
+
+        for (DataFileReader reader : ServiceLoader.load(DataFileReader.class))
+        {
+            readers.add(reader);
+        }
+        readers.add(new MdfReader());
+        readers.add(new CsvReader());
+
+        return readers;
+    }
+
+    /**
+     * Returns the reader of a file
+     *
+     * @param fileName Name or location of the file
+     * @return first reader that can read it or null if there is none
+     */
+    public static DataFileReader forFile(String fileName)
+    {
+        for (DataFileReader reader : READERS)
+        {
+            if (reader.canRead(fileName))
+            {
+                return reader;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads a file with the reader of its name
+     *
+     * @param path Location of the file
+     * @param requestedIds Parameters to keep, or null to keep every numeric parameter
+     * @return header ids, UTC epoch second and parsed rows of the file
+     * @throws IOException Checks that there is a reader and the file can be read
+     */
+    public static MdfSnapshot read(String path, String[] requestedIds) throws IOException
+    {
+        DataFileReader reader = forFile(path);
+
+        if (reader == null)
+        {
+            throw new IOException("No reader for " + path);
+        }
+
+        return reader.read(path, requestedIds);
+    }
+
+    /**
+     * Finds the file of a time in any of the known formats
+     *
+     * @param mdfPath Location of the plain file, ex: data/201808301745.mdf
+     * @return first of the .mdf, .mdf.gz, .csv and .csv.gz files that exists, or mdfPath if none does
+     */
+    public static String locate(String mdfPath)
+    {
+        if (new File(mdfPath).isFile() || !mdfPath.endsWith(EXTENSIONS[0]))
+        {
+            return mdfPath;
+        }
+
+        String base = mdfPath.substring(0, mdfPath.length() - EXTENSIONS[0].length());
+        for (int i = 1; i < EXTENSIONS.length; i++)
+        {
+            if (new File(base + EXTENSIONS[i]).isFile())
+            {
+                return base + EXTENSIONS[i];
+            }
+        }
+
+        return mdfPath;
+    }
+
+    /**
+     * Finds the station id column of a header
+     *
+     * @param headerIds Parameter ids in header order
+     * @param path Location of the file, for the error message
+     * @return header position of the station id
+     * @throws IOException if the header has no station id column
+     */
+    static int stidPosition(String[] headerIds, String path) throws IOException
+    {
+        for (int i = 0; i < headerIds.length; i++)
+        {
+            if (STID.equals(headerIds[i]))
+            {
+                return i;
+            }
+        }
+
+        throw new IOException("Header has no " + STID + " column in " + path);
+    }
+}
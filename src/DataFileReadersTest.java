@@ -0,0 +1,170 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Data File Readers class and its MDF and CSV readers
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class DataFileReadersTest
+{
+    /**
+     * Test that a gzip file reads the same as the plain file, both through
+     * the readers and through MapData when only the gzip file exists
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testGzip() throws IOException
+    {
+        Path directory = Files.createTempDirectory("readers");
+        File gzip = new File(directory.toFile(), "201808301745.mdf.gz");
+        gzip(new File("data/201808301745.mdf"), gzip);
+
+        MdfSnapshot expected = DataFileReaders.read("data/201808301745.mdf", null);
+        MdfSnapshot actual = DataFileReaders.read(gzip.getPath(), null);
+
+        Assert.assertEquals(expected.getEpochSecond(), actual.getEpochSecond());
+        Assert.assertArrayEquals(expected.getHeaderIds(), actual.getHeaderIds());
+        assertSameRows(expected.getStore(), actual.getStore());
+
+        String path = directory.toString() + File.separator;
+        Assert.assertEquals(gzip.getPath(), DataFileReaders.locate(path + "201808301745.mdf"));
+        Assert.assertEquals(new MapData(2018, 8, 30, 17, 45, "data/").toString(),
+                new MapData(2018, 8, 30, 17, 45, path).toString());
+        Assert.assertEquals(36.5, new MapData(2018, 8, 30, 17, 45, path, LoadMode.LAZY)
+                .getStatistics(StatsType.MAXIMUM, "TAIR").getValue(), 0);
+
+        gzip.delete();
+        directory.toFile().delete();
+    }
+
+    /**
+     * Test that a gzip file larger than one chunk is cut at line ends
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testGzipChunks() throws IOException
+    {
+        File plain = File.createTempFile("synthetic", ".mdf");
+        File gzip = new File(plain.getPath() + ".gz");
+        SyntheticMdf.write(plain, 8000, 42);
+        gzip(plain, gzip);
+
+        ColumnStore expected = DataFileReaders.read(plain.getPath(), new String[] {"TAIR", "PRES"}).getStore();
+        ColumnStore actual = DataFileReaders.read(gzip.getPath(), new String[] {"TAIR", "PRES"}).getStore();
+
+        Assert.assertTrue(gzip.length() > 0 && plain.length() > 2 * 256 * 1024);
+        Assert.assertEquals(8000, actual.size());
+        assertSameRows(expected, actual);
+
+        plain.delete();
+        gzip.delete();
+    }
+
+    /**
+     * Test that a CSV file reads the same as the MDF file, with its time
+     * taken from its name and empty fields not valid
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testCsv() throws IOException
+    {
+        Path directory = Files.createTempDirectory("readers");
+        File csv = new File(directory.toFile(), "201808301745.csv");
+        List<String> lines = Files.readAllLines(new File("data/201808301745.mdf").toPath(), StandardCharsets.US_ASCII);
+        StringBuilder text = new StringBuilder();
+
+        for (String line : lines.subList(2, lines.size()))
+        {
+            text.append(String.join(",", line.trim().split("\\s+"))).append('\n');
+        }
+        Files.write(csv.toPath(), text.toString().getBytes(StandardCharsets.US_ASCII));
+
+        MdfSnapshot expected = DataFileReaders.read("data/201808301745.mdf", null);
+        MdfSnapshot actual = DataFileReaders.read(csv.getPath(), null);
+
+        Assert.assertTrue(DataFileReaders.forFile(csv.getName()) instanceof CsvReader);
+        Assert.assertEquals(MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, 45), actual.getEpochSecond());
+        Assert.assertArrayEquals(expected.getHeaderIds(), actual.getHeaderIds());
+        assertSameRows(expected.getStore(), actual.getStore());
+
+        //Drop the air temperature of ACME
+        Files.write(csv.toPath(), text.toString().replaceFirst("ACME,110,1065,43,34.7,", "ACME,110,1065,43,,")
+                .getBytes(StandardCharsets.US_ASCII));
+        ColumnStore store = DataFileReaders.read(csv.getPath(), new String[] {"TAIR", "WSPD"}).getStore();
+        int acme = store.rowOf(StationDictionary.getGlobal().find("ACME"));
+
+        Assert.assertFalse(store.isValid(0, acme));
+        Assert.assertEquals(4.8, store.getValue(1, acme), 0);
+
+        csv.delete();
+        directory.toFile().delete();
+    }
+
+    /**
+     * Test that files without a reader or a time in their name are refused
+     */
+    @Test
+    public void testUnreadable()
+    {
+        Assert.assertNull(DataFileReaders.forFile("notes.txt"));
+
+        try
+        {
+            DataFileReaders.read("data/notes.csv", null);
+            Assert.fail("A CSV file needs a time in its name");
+        }
+        catch (IOException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("notes.csv"));
+        }
+    }
+
+    /**
+     * Compresses a file
+     *
+     * @param source File to compress
+     * @param target Compressed file
+     * @throws IOException Make sure inputs are valid
+     */
+    private static void gzip(File source, File target) throws IOException
+    {
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(target)))
+        {
+            Files.copy(source.toPath(), out);
+        }
+    }
+
+    /**
+     * Checks that two stores hold the same rows
+     *
+     * @param expected Store read from the plain file
+     * @param actual Store read from another format
+     */
+    private static void assertSameRows(ColumnStore expected, ColumnStore actual)
+    {
+        Assert.assertArrayEquals(expected.getParamIds(), actual.getParamIds());
+        Assert.assertEquals(expected.size(), actual.size());
+
+        for (int column = 0; column < expected.getParamIds().length; column++)
+        {
+            for (int row = 0; row < expected.size(); row++)
+            {
+                Assert.assertEquals(expected.getValue(column, row), actual.getValue(column, row), 0);
+                Assert.assertEquals(expected.isValid(column, row), actual.isValid(column, row));
+                Assert.assertEquals(expected.getStid(row), actual.getStid(row));
+            }
+        }
+    }
+}
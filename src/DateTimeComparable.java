@@ -17,4 +17,7 @@ public interface DateTimeComparable
     boolean newerThan(ZonedDateTime inDateTimeUTC);
     boolean olderThan(ZonedDateTime inDateTimeUTC);
     boolean sameAs(ZonedDateTime inDateTimeUTC);
+    boolean newerThan(long inEpochSecondUTC);
+    boolean olderThan(long inEpochSecondUTC);
+    boolean sameAs(long inEpochSecondUTC);
 }
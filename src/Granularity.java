@@ -0,0 +1,65 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Granularity enumeration of the time buckets used for rollups.
+ * Hours and days have a fixed length, months follow the calendar.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public enum Granularity
+{
+    HOUR(3600), DAY(86400), MONTH(0);
+
+    /**
+     * Length of a bucket in seconds, 0 for calendar months
+     */
+    private final long seconds;
+
+    /**
+     * Granularity constructor
+     *
+     * @param seconds Length of a bucket in seconds
+     */
+    Granularity(long seconds)
+    {
+        this.seconds = seconds;
+    }
+
+    /**
+     * Returns the start of the bucket holding a time
+     *
+     * @param epochSecond UTC epoch second
+     * @return UTC epoch second of the bucket start
+     */
+    public long truncate(long epochSecond)
+    {
+        if (seconds == 0)
+        {
+            LocalDateTime utc = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+            return utc.toLocalDate().withDayOfMonth(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        }
+
+        return epochSecond - Math.floorMod(epochSecond, seconds);
+    }
+
+    /**
+     * Returns the start of the bucket after the one holding a time
+     *
+     * @param epochSecond UTC epoch second
+     * @return UTC epoch second of the next bucket start
+     */
+    public long next(long epochSecond)
+    {
+        if (seconds == 0)
+        {
+            return LocalDateTime.ofEpochSecond(truncate(epochSecond), 0, ZoneOffset.UTC).plusMonths(1)
+                    .toEpochSecond(ZoneOffset.UTC);
+        }
+
+        return truncate(epochSecond) + seconds;
+    }
+}
@@ -0,0 +1,310 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Idw Interpolator class fills a Raster from the stations of one file by
+ * inverse distance weighting. Each cell is the average of the values of
+ * its nearest stations weighted by one over the distance to a power, and
+ * takes the value of a station closer than a meter outright. Only stations
+ * with a location and a valid value of the parameter are used; they are put
+ * in a SpatialIndex, so a cell reads its few neighbours instead of every
+ * station. The grid rows are split in halves across a fork/join pool.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class IdwInterpolator extends RecursiveAction
+{
+    /**
+     * Version of the serialized form inherited from ForkJoinTask
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of nearest stations weighted into each cell by default
+     */
+    public static final int DEFAULT_NEIGHBOURS = 8;
+
+    /**
+     * Power of the distance in the weights by default
+     */
+    public static final double DEFAULT_POWER = 2.0;
+
+    /**
+     * Number of grid rows a task fills itself instead of splitting
+     */
+    private static final int ROWS_PER_TASK = 4;
+
+    /**
+     * Distance below which a cell takes the value of a station, in kilometers
+     */
+    private static final double EXACT_KM = 0.001;
+
+    /**
+     * Raster being filled, all tasks share it
+     */
+    private Raster raster;
+
+    /**
+     * Stations with a valid value
+     */
+    private SpatialIndex index;
+
+    /**
+     * Value by dictionary id of every station in the index
+     */
+    private double[] stationValues;
+
+    /**
+     * Number of nearest stations weighted into each cell
+     */
+    private int neighbours;
+
+    /**
+     * Power of the distance in the weights
+     */
+    private double power;
+
+    /**
+     * First row of this task
+     */
+    private int from;
+
+    /**
+     * One past the last row of this task
+     */
+    private int to;
+
+    /**
+     * Interpolator task over some rows of a raster
+     *
+     * @param raster Raster being filled
+     * @param index Stations with a valid value
+     * @param stationValues Value by dictionary id
+     * @param neighbours Number of nearest stations weighted into each cell
+     * @param power Power of the distance in the weights
+     * @param from First row of this task
+     * @param to One past the last row of this task
+     */
+    private IdwInterpolator(Raster raster, SpatialIndex index, double[] stationValues, int neighbours, double power,
+            int from, int to)
+    {
+        this.raster = raster;
+        this.index = index;
+        this.stationValues = stationValues;
+        this.neighbours = neighbours;
+        this.power = power;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Interpolates a parameter of a file with the default neighbours and power
+     *
+     * @param store Parsed file
+     * @param paramId Parameter id, ex: TAIR
+     * @param metadata Station locations
+     * @param grid Raster whose cells are filled, it is not changed
+     * @return new raster, every cell NaN if no station has a location and a valid value
+     */
+    public static Raster interpolate(ColumnStore store, String paramId, StationMetadata metadata, Raster grid)
+    {
+        return interpolate(store, paramId, metadata, grid, DEFAULT_NEIGHBOURS, DEFAULT_POWER,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Interpolates a parameter of a file on a given pool
+     *
+     * @param store Parsed file
+     * @param paramId Parameter id, ex: TAIR
+     * @param metadata Station locations
+     * @param grid Raster whose cells are filled, it is not changed
+     * @param neighbours Number of nearest stations weighted into each cell
+     * @param power Power of the distance in the weights, 2 is usual
+     * @param pool Pool that runs the tasks
+     * @return new raster, every cell NaN if no station has a location and a valid value
+     */
+    public static Raster interpolate(ColumnStore store, String paramId, StationMetadata metadata, Raster grid,
+            int neighbours, double power, ForkJoinPool pool)
+    {
+        Raster raster = new Raster(grid);
+        int column = store.getColumnIndex(paramId);
+
+        if (column < 0 || neighbours < 1)
+        {
+            return raster;
+        }
+
+        int[] stationIds = new int[store.size()];
+        double[] stationValues = new double[store.getStations().size()];
+        int count = 0;
+
+        for (int row = 0; row < store.size(); row++)
+        {
+            int stationId = store.getStationId(row);
+            if (store.isValid(column, row) && metadata.contains(stationId))
+            {
+                stationIds[count++] = stationId;
+                stationValues[stationId] = store.getValue(column, row);
+            }
+        }
+
+        if (count > 0)
+        {
+            SpatialIndex index = new SpatialIndex(metadata, Arrays.copyOf(stationIds, count));
+            pool.invoke(new IdwInterpolator(raster, index, stationValues, neighbours, power, 0, raster.getHeight()));
+        }
+
+        return raster;
+    }
+
+    /**
+     * Interpolates a parameter of every data file of a directory within a
+     * time range, the files parsed and interpolated on a given pool
+     *
+     * @param loader Loader for the directory
+     * @param fromTime First UTC epoch second to include
+     * @param toTime Last UTC epoch second to include
+     * @param paramId Parameter id, ex: TAIR
+     * @param metadata Station locations
+     * @param grid Raster whose cells are filled
+     * @param pool Pool that runs the tasks
+     * @return rasters by UTC epoch second of the file
+     * @throws IOException Checks to make sure every file can be read
+     */
+    public static NavigableMap<Long, Raster> interpolateAll(MdfDirectoryLoader loader, long fromTime, long toTime,
+            String paramId, StationMetadata metadata, Raster grid, ForkJoinPool pool) throws IOException
+    {
+        ConcurrentSkipListMap<Long, Raster> rasters = new ConcurrentSkipListMap<Long, Raster>();
+        TreeMap<Long, File> files = loader.listFiles(fromTime, toTime);
+
+        try
+        {
+            //Files run side by side and the rows of each file split across the same pool
+            pool.submit(() -> files.entrySet().parallelStream().forEach(file ->
+            {
+                try
+                {
+                    rasters.put(file.getKey(), interpolate(loader.load(file.getValue()), paramId, metadata, grid,
+                            DEFAULT_NEIGHBOURS, DEFAULT_POWER, pool));
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            })).join();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+
+        return rasters;
+    }
+
+    /**
+     * Splits the rows in half until few enough are left to fill here
+     */
+    @Override
+    protected void compute()
+    {
+        if (to - from <= ROWS_PER_TASK)
+        {
+            fillRows();
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        invokeAll(new IdwInterpolator(raster, index, stationValues, neighbours, power, from, middle),
+                new IdwInterpolator(raster, index, stationValues, neighbours, power, middle, to));
+    }
+
+    /**
+     * Fills the rows of this task, reusing the neighbour arrays for every cell
+     */
+    private void fillRows()
+    {
+        int[] nearest = new int[neighbours];
+        double[] distances = new double[neighbours];
+
+        for (int row = from; row < to; row++)
+        {
+            double latitude = raster.getLatitude(row);
+
+            for (int column = 0; column < raster.getWidth(); column++)
+            {
+                int found = index.nearest(latitude, raster.getLongitude(column), nearest, distances);
+                double weighted = 0.0;
+                double weights = 0.0;
+
+                for (int i = 0; i < found; i++)
+                {
+                    if (distances[i] < EXACT_KM)
+                    {
+                        weighted = stationValues[nearest[i]];
+                        weights = 1.0;
+                        break;
+                    }
+
+                    double weight = power == 2.0 ? 1.0 / (distances[i] * distances[i]) : Math.pow(distances[i], -power);
+                    weighted += weight * stationValues[nearest[i]];
+                    weights += weight;
+                }
+
+                raster.set(row, column, (float) (weighted / weights));
+            }
+        }
+    }
+
+    /**
+     * Writes an ESRI ASCII grid of a parameter for every data file of a directory
+     *
+     * @param args Directory, station CSV, parameter, resolution in degrees
+     *             and output directory, ex: data/ geoinfo.csv TAIR 0.05 grids/
+     * @throws IOException Checks to make sure the files can be read and written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 5)
+        {
+            System.out.println("Usage: IdwInterpolator directory stations.csv param resolution output");
+            return;
+        }
+
+        StationMetadata metadata = StationMetadata.load(new File(args[1]));
+        double resolution = Double.parseDouble(args[3]);
+        Path output = Paths.get(args[4]);
+        Files.createDirectories(output);
+
+        //Oklahoma with a margin
+        Raster grid = new Raster(33.5, -103.1, 37.1, -94.3, resolution);
+
+        long start = System.nanoTime();
+        NavigableMap<Long, Raster> rasters = interpolateAll(new MdfDirectoryLoader(args[0]), Long.MIN_VALUE,
+                Long.MAX_VALUE, args[2], metadata, grid, ForkJoinPool.commonPool());
+        long elapsed = System.nanoTime() - start;
+
+        for (Map.Entry<Long, Raster> raster : rasters.entrySet())
+        {
+            String time = Statistics.createStringFromEpochSecond(raster.getKey()).replaceAll("[^0-9]", "");
+            raster.getValue().writeAscii(output.resolve(time + "-" + args[2] + ".asc"));
+        }
+
+        System.out.printf("%d grids of %d x %d in %.3f s%n", rasters.size(), grid.getWidth(), grid.getHeight(),
+                elapsed / 1e9);
+    }
+}
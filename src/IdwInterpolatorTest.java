@@ -0,0 +1,97 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.NavigableMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Idw Interpolator and Raster classes
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class IdwInterpolatorTest
+{
+    /**
+     * Test the cells of a raster and its ASCII grid
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testRaster() throws IOException
+    {
+        Raster test = new Raster(34.0, -99.0, 35.0, -97.5, 0.5);
+        test.set(0, 2, 34.7f);
+        StringWriter out = new StringWriter();
+        test.writeAscii(out);
+
+        Assert.assertEquals(3, test.getWidth());
+        Assert.assertEquals(2, test.getHeight());
+        Assert.assertEquals(34.75, test.getLatitude(0), .001);
+        Assert.assertEquals(-97.75, test.getLongitude(2), .001);
+        Assert.assertTrue(Float.isNaN(test.get(1, 1)));
+        Assert.assertEquals("ncols 3\nnrows 2\nxllcorner -99.0\nyllcorner 34.0\ncellsize 0.5\nNODATA_value -9999\n"
+                + "-9999 -9999 34.70\n-9999 -9999 -9999\n", out.toString());
+    }
+
+    /**
+     * Test that cells take the value of a station on them, stay within the
+     * station values and match on one thread
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testInterpolate() throws IOException
+    {
+        ColumnStore store = new MdfDirectoryLoader("data/").load(new File("data/201808301745.mdf"));
+        StationMetadata metadata = new StationMetadata();
+        metadata.put("ACME", 110, 34.75, -97.75);
+        metadata.put("ADAX", 1, 34.25, -96.25);
+        metadata.put("HOOK", -1, 36.75, -101.25);
+        metadata.put("MIAM", -1, 36.75, -94.75);
+        Raster grid = new Raster(34.0, -101.5, 37.0, -94.5, 0.5);
+
+        Raster test = IdwInterpolator.interpolate(store, "TAIR", metadata, grid);
+        Raster single = IdwInterpolator.interpolate(store, "TAIR", metadata, grid, IdwInterpolator.DEFAULT_NEIGHBOURS,
+                IdwInterpolator.DEFAULT_POWER, new ForkJoinPool(1));
+        Raster nearest = IdwInterpolator.interpolate(store, "TAIR", metadata, grid, 1, 2.0, ForkJoinPool.commonPool());
+
+        Assert.assertEquals(34.7, test.get(4, 7), .001);
+        Assert.assertEquals(36.5, test.get(0, 0), .001);
+        Assert.assertEquals(20.8, test.get(0, 13), .001);
+        Assert.assertArrayEquals(single.getValues(), test.getValues(), 0f);
+        for (int row = 0; row < test.getHeight(); row++)
+        {
+            for (int column = 0; column < test.getWidth(); column++)
+            {
+                Assert.assertTrue(test.get(row, column) >= 20.8f && test.get(row, column) <= 36.5f);
+                Assert.assertTrue(nearest.get(row, column) == 34.7f || nearest.get(row, column) == 31.9f
+                        || nearest.get(row, column) == 36.5f || nearest.get(row, column) == 20.8f);
+            }
+        }
+
+        Assert.assertTrue(Float.isNaN(IdwInterpolator.interpolate(store, "TR05", metadata, grid).get(0, 0)));
+        Assert.assertTrue(Float.isNaN(IdwInterpolator.interpolate(store, "NONE", metadata, grid).get(0, 0)));
+    }
+
+    /**
+     * Test that every file of a directory gets its own raster
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testInterpolateAll() throws IOException
+    {
+        StationMetadata metadata = new StationMetadata();
+        metadata.put("ACME", 110, 34.75, -97.75);
+        metadata.put("HOOK", -1, 36.75, -101.25);
+        Raster grid = new Raster(34.0, -101.5, 37.0, -94.5, 0.5);
+
+        NavigableMap<Long, Raster> test = IdwInterpolator.interpolateAll(new MdfDirectoryLoader("data/"),
+                Long.MIN_VALUE, Long.MAX_VALUE, "TAIR", metadata, grid, ForkJoinPool.commonPool());
+
+        Assert.assertEquals(2, test.size());
+        Assert.assertEquals(17.0, test.firstEntry().getValue().get(4, 7), .001);
+        Assert.assertEquals(34.7, test.lastEntry().getValue().get(4, 7), .001);
+    }
+}
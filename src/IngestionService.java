@@ -0,0 +1,574 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingestion Service class watches a data directory and reads each new
+ * file once it has stopped growing. A file still empty or growing after
+ * MAX_SETTLE_ROUNDS settle times counts as failed. Every file is parsed
+ * into a MapData, which also places it in the ObservationCache, and is
+ * then added to the hour, day and month rollups and the time-series
+ * index, so older files are never read again, and checked by the
+ * AnomalyDetector. The newest MapData is always available.
+ *
+ * Workers parse files in parallel and may finish them in any order, but
+ * the AnomalyDetector needs each station's readings in time order. So a
+ * parsed file waits until every older file queued before it has been
+ * parsed, and the files are then handed to the detector one at a time,
+ * oldest first. A backfill is queued oldest first, so which readings are
+ * checked does not depend on which worker finishes first.
+ *
+ * Files wait in a bounded queue between the watcher and the workers.
+ * When a backfill fills the queue the watcher blocks until the workers
+ * catch up, and if the file system drops events while it waits the
+ * directory is listed again to find what was missed.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class IngestionService implements Closeable
+{
+    /**
+     * Default number of files that may wait to be parsed
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * Default time a file size must stay the same before it is read, in milliseconds
+     */
+    public static final long DEFAULT_SETTLE_MILLIS = 500;
+
+    /**
+     * Most settle times a file is waited on before it counts as failed
+     */
+    public static final int MAX_SETTLE_ROUNDS = 20;
+
+    /**
+     * Directory being watched, ending with a separator
+     */
+    private String directory;
+
+    /**
+     * Files waiting to be parsed
+     */
+    private ArrayBlockingQueue<File> queue;
+
+    /**
+     * Number of worker threads
+     */
+    private int workers;
+
+    /**
+     * Time a file size must stay the same before it is read, in milliseconds
+     */
+    private long settleMillis;
+
+    /**
+     * Times of files that are queued, being parsed or done
+     */
+    private Set<Long> seen = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Statistics of every parameter by hour, day and month
+     */
+    private RollupStore rollups = new RollupStore();
+
+    /**
+     * Values of every parameter by station and time
+     */
+    private TimeSeriesIndex index = new TimeSeriesIndex();
+
+    /**
+     * Flags readings far from the recent readings of their station
+     */
+    private AnomalyDetector anomalies = new AnomalyDetector();
+
+    /**
+     * Times of files queued or being parsed, guarded by sequence
+     */
+    private TreeSet<Long> pending = new TreeSet<Long>();
+
+    /**
+     * Parsed files waiting for older files before they reach the detector,
+     * guarded by sequence
+     */
+    private TreeMap<Long, ColumnStore> parsed = new TreeMap<Long, ColumnStore>();
+
+    /**
+     * Lock of the stage that hands parsed files to the detector in time order
+     */
+    private final Object sequence = new Object();
+
+    /**
+     * Newest file parsed so far
+     */
+    private volatile MapData latest;
+
+    /**
+     * UTC epoch second of the newest file parsed so far
+     */
+    private long latestTime = Long.MIN_VALUE;
+
+    /**
+     * Number of files parsed
+     */
+    private AtomicInteger ingested = new AtomicInteger();
+
+    /**
+     * Number of files that could not be read
+     */
+    private AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * Number of files queued or being parsed
+     */
+    private AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Watcher and worker threads
+     */
+    private ArrayList<Thread> threads = new ArrayList<Thread>();
+
+    /**
+     * Watch service of the directory
+     */
+    private WatchService watchService;
+
+    /**
+     * Set once the service is closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * Ingestion Service constructor with the default queue and settle time
+     *
+     * @param directory Directory to watch
+     */
+    public IngestionService(String directory)
+    {
+        this(directory, DEFAULT_QUEUE_CAPACITY, Runtime.getRuntime().availableProcessors(), DEFAULT_SETTLE_MILLIS);
+    }
+
+    /**
+     * Ingestion Service constructor
+     *
+     * @param directory Directory to watch
+     * @param queueCapacity Number of files that may wait to be parsed
+     * @param workers Number of worker threads
+     * @param settleMillis Time a file size must stay the same before it is read
+     */
+    public IngestionService(String directory, int queueCapacity, int workers, long settleMillis)
+    {
+        this.directory = directory.endsWith("/") || directory.endsWith(File.separator) ? directory : directory + "/";
+        this.queue = new ArrayBlockingQueue<File>(Math.max(queueCapacity, 1));
+        this.workers = Math.max(workers, 1);
+        this.settleMillis = settleMillis;
+    }
+
+    /**
+     * Starts watching the directory
+     *
+     * @param backfill Also reads the files already in the directory, oldest first
+     * @throws IOException Checks to make sure the directory can be watched
+     */
+    public synchronized void start(boolean backfill) throws IOException
+    {
+        watchService = FileSystems.getDefault().newWatchService();
+        Paths.get(directory).register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.OVERFLOW);
+
+        for (int i = 0; i < workers; i++)
+        {
+            startThread("mdf-ingest-" + i, this::work);
+        }
+
+        //Files are listed after registering so none can be missed in between
+        startThread("mdf-watch", () -> watch(backfill));
+    }
+
+    /**
+     * Returns the newest file parsed so far
+     *
+     * @return map data or null if no file was parsed yet
+     */
+    public MapData getLatest()
+    {
+        return latest;
+    }
+
+    /**
+     * Returns the UTC epoch second of the newest file parsed so far
+     *
+     * @return epoch second or Long.MIN_VALUE if no file was parsed yet
+     */
+    public synchronized long getLatestTime()
+    {
+        return latestTime;
+    }
+
+    /**
+     * Returns the hour, day and month statistics of every file parsed
+     *
+     * @return rollup store
+     */
+    public RollupStore getRollups()
+    {
+        return rollups;
+    }
+
+    /**
+     * Returns the time-series index of every file parsed
+     *
+     * @return time-series index
+     */
+    public TimeSeriesIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Returns the anomaly detector every parsed file is checked by
+     *
+     * @return anomaly detector
+     */
+    public AnomalyDetector getAnomalyDetector()
+    {
+        return anomalies;
+    }
+
+    /**
+     * Returns the number of files parsed
+     *
+     * @return number of files
+     */
+    public int getIngestedCount()
+    {
+        return ingested.get();
+    }
+
+    /**
+     * Returns the number of files that could not be read
+     *
+     * @return number of files
+     */
+    public int getFailedCount()
+    {
+        return failed.get();
+    }
+
+    /**
+     * Returns the number of files waiting to be parsed
+     *
+     * @return queue length
+     */
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Waits until no file is queued or being parsed
+     *
+     * @param timeoutMillis Longest time to wait
+     * @return true if the service became idle in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + timeoutMillis;
+
+        while (inFlight.get() > 0)
+        {
+            if (System.currentTimeMillis() > end)
+            {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops the watcher and the workers
+     *
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        closed = true;
+
+        for (Thread thread : threads)
+        {
+            thread.interrupt();
+        }
+
+        if (watchService != null)
+        {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Starts a daemon thread
+     *
+     * @param name Thread name
+     * @param task Work of the thread
+     */
+    private void startThread(String name, Runnable task)
+    {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Queues new files as the directory reports them
+     *
+     * @param backfill Lists the directory once before watching
+     */
+    private void watch(boolean backfill)
+    {
+        try
+        {
+            if (backfill)
+            {
+                scan();
+            }
+
+            while (!closed)
+            {
+                WatchKey key = watchService.take();
+
+                for (WatchEvent<?> event : key.pollEvents())
+                {
+                    //Events were dropped, so list the directory to find the files
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                    {
+                        scan();
+                    }
+                    else
+                    {
+                        offer(new File(directory, ((Path) event.context()).getFileName().toString()));
+                    }
+                }
+
+                if (!key.reset())
+                {
+                    return;
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException e)
+        {
+            //Closed
+        }
+    }
+
+    /**
+     * Queues every data file of the directory not seen yet, oldest first
+     *
+     * @throws InterruptedException if interrupted while the queue is full
+     */
+    private void scan() throws InterruptedException
+    {
+        for (File file : new MdfDirectoryLoader(directory).listFiles(Long.MIN_VALUE, Long.MAX_VALUE).values())
+        {
+            offer(file);
+        }
+    }
+
+    /**
+     * Queues a data file unless it was seen before, blocking while the queue is full
+     *
+     * @param file File reported by the directory
+     * @throws InterruptedException if interrupted while the queue is full
+     */
+    private void offer(File file) throws InterruptedException
+    {
+        long time = MdfDirectoryLoader.timestampOf(file.getName());
+
+        if (time >= 0 && seen.add(time))
+        {
+            inFlight.incrementAndGet();
+            synchronized (sequence)
+            {
+                pending.add(time);
+            }
+
+            try
+            {
+                queue.put(file);
+            }
+            catch (InterruptedException e)
+            {
+                release(time, null);
+                inFlight.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Parses queued files until the service is closed
+     */
+    private void work()
+    {
+        try
+        {
+            while (!closed)
+            {
+                File file = queue.take();
+
+                try
+                {
+                    ingest(file);
+                }
+                finally
+                {
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            //Closed
+        }
+    }
+
+    /**
+     * Waits for a file to stop growing, then parses it and adds it to
+     * the rollups, the index and the latest map data
+     *
+     * @param file Data file
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void ingest(File file) throws InterruptedException
+    {
+        long time = MdfDirectoryLoader.timestampOf(file.getName());
+
+        //A file that is still being written keeps changing size
+        long size = -1;
+        int rounds = 0;
+        while (file.length() == 0 || file.length() != size)
+        {
+            if (rounds++ == MAX_SETTLE_ROUNDS)
+            {
+                //Stays empty or never stops growing, let a later event try again
+                failed.incrementAndGet();
+                seen.remove(time);
+                release(time, null);
+                return;
+            }
+
+            size = file.length();
+            Thread.sleep(settleMillis);
+
+            if (!file.exists())
+            {
+                seen.remove(time);
+                release(time, null);
+                return;
+            }
+        }
+
+        LocalDateTime utc = LocalDateTime.ofEpochSecond(time, 0, ZoneOffset.UTC);
+        MapData mapData = new MapData(utc.getYear(), utc.getMonthValue(), utc.getDayOfMonth(), utc.getHour(),
+                utc.getMinute(), directory);
+
+        if (mapData.dataCatalog == null)
+        {
+            //Let a later event for the same file try again
+            failed.incrementAndGet();
+            seen.remove(time);
+            release(time, null);
+            return;
+        }
+
+        rollups.add(time, mapData.dataCatalog);
+        index.add(time, mapData.dataCatalog);
+        release(time, mapData.dataCatalog);
+
+        synchronized (this)
+        {
+            if (time >= latestTime)
+            {
+                latestTime = time;
+                latest = mapData;
+            }
+        }
+        ingested.incrementAndGet();
+    }
+
+    /**
+     * Marks a file as no longer pending and hands every parsed file with no
+     * older file still pending to the detector, oldest first
+     *
+     * @param time UTC epoch second of the file
+     * @param store Parsed file, or null if it was not parsed
+     */
+    private void release(long time, ColumnStore store)
+    {
+        synchronized (sequence)
+        {
+            pending.remove(time);
+            if (store != null)
+            {
+                parsed.put(time, store);
+            }
+
+            while (!parsed.isEmpty() && (pending.isEmpty() || parsed.firstKey() < pending.first()))
+            {
+                Map.Entry<Long, ColumnStore> next = parsed.pollFirstEntry();
+                anomalies.add(next.getKey(), next.getValue());
+            }
+        }
+    }
+
+    /**
+     * Watches a directory and prints each newest file as it arrives
+     *
+     * @param args Directory to watch, data/ when none is given
+     * @throws Exception Checks to make sure the directory can be watched
+     */
+    public static void main(String[] args) throws Exception
+    {
+        try (IngestionService service = new IngestionService(args.length == 0 ? "data/" : args[0]))
+        {
+            service.start(true);
+            long printed = Long.MIN_VALUE;
+
+            while (true)
+            {
+                Thread.sleep(1000);
+                if (service.getLatestTime() != printed)
+                {
+                    printed = service.getLatestTime();
+                    System.out.println(service.getLatest());
+                }
+            }
+        }
+    }
+}
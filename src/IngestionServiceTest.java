@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Ingestion Service class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class IngestionServiceTest
+{
+    /**
+     * Copies a bundled data file into a directory
+     *
+     * @param name File name
+     * @param directory Target directory
+     * @throws IOException Make sure inputs are valid
+     */
+    private void copy(String name, File directory) throws IOException
+    {
+        Files.copy(new File("data/", name).toPath(), new File(directory, name).toPath());
+    }
+
+    /**
+     * Deletes a directory and its files
+     *
+     * @param directory Directory to delete
+     */
+    private void delete(File directory)
+    {
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Test that files already present are read oldest first
+     * @throws Exception Make sure inputs are valid
+     */
+    @Test
+    public void testBackfill() throws Exception
+    {
+        File directory = Files.createTempDirectory("ingest").toFile();
+        copy("201808010700.mdf", directory);
+        copy("201808301745.mdf", directory);
+
+        try (IngestionService test = new IngestionService(directory.getPath(), 1, 1, 20))
+        {
+            test.start(true);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (test.getIngestedCount() < 2 && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(20);
+            }
+
+            Assert.assertEquals(2, test.getIngestedCount());
+            Assert.assertEquals(MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, 45), test.getLatestTime());
+            Assert.assertEquals("HOOK", test.getLatest().getStatistics(StatsType.MAXIMUM, "TAIR").getStid());
+            Assert.assertEquals(2, test.getIndex().range("HOOK", "TAIR", Long.MIN_VALUE, Long.MAX_VALUE).size());
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Test that a file that stays empty is given up on and counted as failed
+     * @throws Exception Make sure inputs are valid
+     */
+    @Test
+    public void testEmptyFile() throws Exception
+    {
+        File directory = Files.createTempDirectory("ingest").toFile();
+        Files.write(new File(directory, "201808301745.mdf").toPath(), new byte[0]);
+
+        try (IngestionService test = new IngestionService(directory.getPath(), 1, 1, 5))
+        {
+            test.start(true);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (test.getFailedCount() < 1 && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(20);
+            }
+
+            Assert.assertEquals(1, test.getFailedCount());
+            Assert.assertTrue(test.awaitIdle(10000));
+            Assert.assertEquals(0, test.getIngestedCount());
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Test that a file added while watching is read
+     * @throws Exception Make sure inputs are valid
+     */
+    @Test
+    public void testNewFile() throws Exception
+    {
+        File directory = Files.createTempDirectory("ingest").toFile();
+
+        try (IngestionService test = new IngestionService(directory.getPath(), 4, 2, 20))
+        {
+            test.start(true);
+            copy("201808301745.mdf", directory);
+            Files.write(new File(directory, "notes.txt").toPath(), new byte[] {1});
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (test.getIngestedCount() < 1 && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(20);
+            }
+
+            Assert.assertTrue(test.awaitIdle(10000));
+            Assert.assertEquals(1, test.getIngestedCount());
+            Assert.assertEquals(0, test.getFailedCount());
+            long time = MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, 45);
+            Assert.assertEquals(36.5,
+                    test.getRollups().getStatistics(StatsType.MAXIMUM, "TAIR", Granularity.DAY, time).getValue(), .001);
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Test that the detector sees a backfill in time order even when newer
+     * files finish parsing first. The oldest file is padded with extra rows
+     * so the other workers finish theirs before it.
+     * @throws Exception Make sure inputs are valid
+     */
+    @Test
+    public void testOutOfOrderBackfill() throws Exception
+    {
+        File directory = Files.createTempDirectory("ingest").toFile();
+        List<String> lines = Files.readAllLines(new File("data/201808301745.mdf").toPath(), StandardCharsets.US_ASCII);
+        int files = 8;
+
+        for (int file = 0; file < files; file++)
+        {
+            List<String> copy = new ArrayList<String>(lines);
+            String acme = copy.get(3);
+            if (file == 0)
+            {
+                for (int row = 0; row < 20000; row++)
+                {
+                    String stid = String.format("P%03d  %d", row % 1000, 5000 + row % 1000);
+                    copy.add(acme.replaceFirst("ACME\\s+110", stid));
+                }
+            }
+            if (file == files - 1)
+            {
+                //ACME has read 34.7 all along
+                copy.set(3, acme.replace(" 34.7 ", " 80.0 "));
+            }
+            Files.write(new File(directory, String.format("2018083017%02d.mdf", file * 5)).toPath(), copy,
+                    StandardCharsets.US_ASCII);
+        }
+
+        try (IngestionService test = new IngestionService(directory.getPath(), files, 4, 20))
+        {
+            test.start(true);
+            long deadline = System.currentTimeMillis() + 20000;
+            while (test.getIngestedCount() < files && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(20);
+            }
+            Assert.assertTrue(test.awaitIdle(10000));
+            Assert.assertEquals(files, test.getIngestedCount());
+
+            //Every file reached the detector, and the last one was checked against the others
+            int acme = StationDictionary.getGlobal().find("ACME");
+            RollingWindows windows = test.getAnomalyDetector().getWindows("TAIR");
+            Assert.assertEquals(files, windows.getCount(acme));
+            Assert.assertEquals(MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, (files - 1) * 5),
+                    windows.getLastTime(acme));
+
+            List<Anomaly> found = new ArrayList<Anomaly>();
+            for (Anomaly anomaly : test.getAnomalyDetector().getRecentAnomalies())
+            {
+                if ("ACME".equals(anomaly.getStid()) && "TAIR".equals(anomaly.getParamId()))
+                {
+                    found.add(anomaly);
+                }
+            }
+            Assert.assertEquals(1, found.size());
+            Assert.assertEquals(80.0, found.get(0).getValue(), 0);
+        }
+        finally
+        {
+            delete(directory);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Line Chunks class hands the bytes of a data file to a parser in chunks
+ * that always end at a line end, so a tokenizer never sees part of a
+ * row. A plain file is one memory mapped chunk. A gzip file is read and
+ * inflated on its own thread into a bounded queue of chunks while the
+ * caller parses the chunks before it, so disk reads and decompression
+ * overlap parsing and nothing is written to a temporary file.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class LineChunks implements Closeable
+{
+    /**
+     * Extension of gzip files
+     */
+    public static final String GZIP = ".gz";
+
+    /**
+     * Bytes inflated before a chunk is handed over
+     */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Chunks that may wait between the inflating thread and the parser
+     */
+    private static final int QUEUE_DEPTH = 4;
+
+    /**
+     * Marks the end of the chunks in the queue
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /**
+     * Location of the file, for error messages
+     */
+    private String path;
+
+    /**
+     * Byte between fields besides white space, ' ' for none
+     */
+    private char separator;
+
+    /**
+     * Chunks of a gzip file, null for a plain file
+     */
+    private ArrayBlockingQueue<ByteBuffer> queue;
+
+    /**
+     * Thread inflating a gzip file
+     */
+    private Thread inflater;
+
+    /**
+     * Error of the inflating thread, thrown to the parser
+     */
+    private volatile IOException failure;
+
+    /**
+     * The one chunk of a plain file until it is taken
+     */
+    private ByteBuffer mapped;
+
+    /**
+     * Tokenizer over the chunk being read
+     */
+    private MdfTokenizer tokenizer;
+
+    /**
+     * Line Chunks constructor
+     *
+     * @param path Location of the file
+     * @param separator Byte between fields besides white space, ' ' for none
+     */
+    private LineChunks(String path, char separator)
+    {
+        this.path = path;
+        this.separator = separator;
+    }
+
+    /**
+     * Opens a data file, starting to inflate it when its name ends in .gz
+     *
+     * @param path Location of the file
+     * @param separator Byte between fields besides white space, ' ' for none
+     * @return chunks of the file
+     * @throws IOException Checks to make sure the file can be read
+     */
+    public static LineChunks open(String path, char separator) throws IOException
+    {
+        LineChunks chunks = new LineChunks(path, separator);
+
+        if (path.endsWith(GZIP))
+        {
+            //Fail here on a missing file rather than on the inflating thread
+            new FileInputStream(path).close();
+            chunks.queue = new ArrayBlockingQueue<ByteBuffer>(QUEUE_DEPTH);
+            chunks.inflater = new Thread(chunks::inflate, "mdf-gunzip");
+            chunks.inflater.setDaemon(true);
+            chunks.inflater.start();
+        }
+        else
+        {
+            chunks.mapped = MdfTokenizer.map(path).remaining();
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Returns the next chunk, waiting for the inflating thread if needed
+     *
+     * @return chunk ending at a line end, or null after the last one
+     * @throws IOException if the file cannot be read or inflated
+     */
+    public ByteBuffer next() throws IOException
+    {
+        if (queue == null)
+        {
+            ByteBuffer chunk = mapped;
+            mapped = null;
+
+            return chunk;
+        }
+
+        ByteBuffer chunk;
+        try
+        {
+            chunk = queue.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + path, e);
+        }
+
+        if (chunk == END)
+        {
+            //Leave the marker for any later call
+            queue.offer(END);
+            if (failure != null)
+            {
+                throw new IOException("Error inflating " + path, failure);
+            }
+            return null;
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Reads one line, used for the short lines at the top of the file
+     *
+     * @return line without its line terminator or null at the end of the file
+     * @throws IOException if the file cannot be read or inflated
+     */
+    public String readLine() throws IOException
+    {
+        while (true)
+        {
+            String line = tokenizer == null ? null : tokenizer.readLine();
+            if (line != null)
+            {
+                return line;
+            }
+
+            ByteBuffer chunk = next();
+            if (chunk == null)
+            {
+                return null;
+            }
+            tokenizer = new MdfTokenizer(chunk, separator);
+        }
+    }
+
+    /**
+     * Parses every row not read yet into a store
+     *
+     * @param headerIds Parameter ids in header order
+     * @param stidPosition Header position of the station id
+     * @param store Store whose parameter ids are the columns to keep
+     * @throws IOException if the file cannot be read or inflated
+     */
+    public void parseRows(String[] headerIds, int stidPosition, ColumnStore store) throws IOException
+    {
+        String[] requestedIds = store.getParamIds();
+
+        if (tokenizer != null)
+        {
+            tokenizer.parseRows(headerIds, stidPosition, requestedIds, store.getStations(), store);
+        }
+
+        ByteBuffer chunk;
+        while ((chunk = next()) != null)
+        {
+            tokenizer = new MdfTokenizer(chunk, separator);
+            tokenizer.parseRows(headerIds, stidPosition, requestedIds, store.getStations(), store);
+        }
+    }
+
+    /**
+     * Estimates the rows left from the length of the next line, to size a
+     * store up front. Only the chunk being read is counted, so the store of
+     * a gzip file still grows as later chunks arrive.
+     *
+     * @return estimated rows
+     */
+    public int estimateRows()
+    {
+        return tokenizer == null ? 1 : tokenizer.estimateRows();
+    }
+
+    /**
+     * Stops inflating
+     */
+    @Override
+    public void close()
+    {
+        if (inflater != null)
+        {
+            inflater.interrupt();
+        }
+    }
+
+    /**
+     * Reads and inflates the file into chunks cut after their last line
+     * end, carrying the rest over to the next chunk, then queues END even
+     * if it failed
+     */
+    private void inflate()
+    {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(path), 64 * 1024))
+        {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int filled = 0;
+            int read;
+
+            while ((read = in.read(chunk, filled, chunk.length - filled)) >= 0)
+            {
+                filled += read;
+                if (filled < chunk.length)
+                {
+                    continue;
+                }
+
+                int cut = filled;
+                while (cut > 0 && chunk[cut - 1] != '\n')
+                {
+                    cut--;
+                }
+
+                //A line longer than the chunk makes the chunk bigger
+                if (cut == 0)
+                {
+                    chunk = Arrays.copyOf(chunk, chunk.length * 2);
+                    continue;
+                }
+
+                queue.put(ByteBuffer.wrap(chunk, 0, cut));
+                byte[] rest = new byte[Math.max(CHUNK_SIZE, filled - cut)];
+                System.arraycopy(chunk, cut, rest, 0, filled - cut);
+                filled -= cut;
+                chunk = rest;
+            }
+
+            if (filled > 0)
+            {
+                queue.put(ByteBuffer.wrap(chunk, 0, filled));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            //Closed, keep the interrupt so END is not waited on
+            Thread.currentThread().interrupt();
+        }
+        catch (Throwable e)
+        {
+            failure = e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        finally
+        {
+            //The parser waits for END however inflating ended
+            try
+            {
+                queue.put(END);
+            }
+            catch (InterruptedException e)
+            {
+                //Closed
+            }
+        }
+    }
+}
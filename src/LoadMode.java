@@ -0,0 +1,29 @@
+/**
+ * Load Mode enumeration, how MapData reads its file
+ * 
+ * @author Tim Weaver
+ * @version 2018-10-23
+ * 
+ */
+
+public enum LoadMode
+{
+    /**
+     * Parse every column into a data catalog and calculate every statistic
+     */
+    EAGER,
+
+    /**
+     * Feed the rows straight into running statistics without keeping them,
+     * so memory grows with the number of parameters and not the file size.
+     * The median and percentiles are approximate. They are exact up to 200
+     * valid values, the default k of the QuantileSketch. Past that their
+     * rank is within about 2% of the number of values of the exact one.
+     */
+    STREAMING,
+
+    /**
+     * Parse a column the first time one of its statistics is asked for
+     */
+    LAZY;
+}
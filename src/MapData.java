@@ -1,19 +1,19 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
 /**
  * Map Data class takes a file and parses it based on white space
- * then calculates air temperature min, max, and average at 1.5 meters and 9 meters
- * as well as solar radiation min, max, and average. This is then printed out.
+ * then calculates the min, max, average and total of every parameter in the header.
+ * Air temperature at 1.5 meters and 9 meters as well as solar radiation are then printed out.
  * 
  * @author Tim Weaver
  * @version 2018-10-23
@@ -22,13 +22,28 @@ import java.util.TreeMap;
 
 public class MapData 
 {
-    HashMap<String, ArrayList<Observation>> dataCatalog = new HashMap<String, ArrayList<Observation>>();
+    ColumnStore dataCatalog;
     
     EnumMap<StatsType, TreeMap<String, Statistics>> statistics = new EnumMap<>(StatsType.class);
     
     TreeMap<String, Integer> paramPositions = new TreeMap<String, Integer>();
     
-    ArrayList<String> lineData = new ArrayList<String>();
+    StreamingStatistics streamingStatistics;
+    
+    /**
+     * Rows of a LAZY file, null once every column is parsed or in the other modes
+     */
+    private ByteBuffer lazyRows;
+    
+    /**
+     * Header parameter ids of a LAZY file
+     */
+    private String[] headerIds;
+    
+    /**
+     * Columns of a LAZY file parsed so far, one store per parameter
+     */
+    private HashMap<String, ColumnStore> lazyColumns = new HashMap<String, ColumnStore>();
 	
 	/**
      * String containing TA9M
@@ -66,6 +81,11 @@ public class MapData
      */
 	private GregorianCalendar utcDateTime;
 	
+	/**
+	 * Stores the date as a UTC epoch second
+	 */
+	private long epochSecond;
+	
 	/**
 	 * assigns the positions of tair, ta9m, srad, and stid
 	 * @param inParamStr Checks for errors when parsing the file
@@ -87,123 +107,272 @@ public class MapData
 	    return paramPositions.get(inParamStr);
 	}
 	
-	private void calculateAllStatistics()
+	/**
+	 * Returns any percentile of a parameter, not only the ones in StatsType
+	 * 
+	 * @param paramId Parameter id
+	 * @param fraction Percentile as a fraction, ex: 0.05 for the 5th percentile
+	 * @return percentile or NaN if the parameter has no valid values
+	 */
+	public double getPercentile(String paramId, double fraction)
 	{
+	    ColumnStore store = storeOf(paramId);
 	    
+	    if (store != null)
+	    {
+	        double[] valid = copyValidValues(store, store.getColumnIndex(paramId));
+	        return Selection.percentile(valid, valid.length, fraction);
+	    }
+	    
+	    if (streamingStatistics != null && streamingStatistics.getAccumulator(paramId) != null)
+	    {
+	        return streamingStatistics.getAccumulator(paramId).getPercentile(fraction);
+	    }
+	    
+	    return Double.NaN;
 	}
 	
-	private void prepareDataCatalog()
+	/**
+	 * Calculates the min, max, average, total, variance, standard deviation,
+	 * median and percentiles of every parameter in the data catalog, as well
+	 * as the station Ids for each min and max. The rows are walked once and
+	 * every column is updated on each block of rows.
+	 */
+	void calculateAllStatistics()
 	{
-	    ArrayList<Observation> TA9MHeaderData = new ArrayList<Observation>(); 
-	    ArrayList<Observation> TAIRHeaderData = new ArrayList<Observation>(); 
-	    ArrayList<Observation> SRADHeaderData = new ArrayList<Observation>(); 
-	    ArrayList<Observation> STIDHeaderData = new ArrayList<Observation>(); 
+	    for (StatsType type : StatsType.values())
+	    {
+	        statistics.put(type, new TreeMap<String, Statistics>());
+	    }
 	    
-	    int TA9MPosition = getIndexOf(TA9M);
-	    int TAIRPosition = getIndexOf(TAIR);
-	    int SRADPosition = getIndexOf(SRAD);
-	    int STIDPosition = getIndexOf(STID);
+	    if (dataCatalog == null)
+	    {
+	        return;
+	    }
 	    
-	    for (int i = 0; i < lineData.size(); i++)
+	    calculateStatistics(dataCatalog);
+	}
+	
+	/**
+	 * Calculates every statistic of every column of a store and adds them
+	 * to the statistics of the file
+	 * 
+	 * @param store Parsed rows
+	 */
+	private void calculateStatistics(ColumnStore store)
+	{
+	    String[] paramIds = store.getParamIds();
+	    double[][] valid = new double[paramIds.length][store.size()];
+	    
+	    //One pass over the rows gives every statistic but the percentiles
+	    ColumnKernels.Summary[] summaries = ColumnKernels.summarize(store, valid);
+	    
+	    for (int column = 0; column < paramIds.length; column++)
 	    {
-	        String[] lineParts = lineData.get(i).split("\\s+");
-	        String ta9m = lineParts[TA9MPosition];
-	        String tair = lineParts[TAIRPosition];
-	        String srad = lineParts[SRADPosition];
-	        String stid = lineParts[STIDPosition];
-	        
-	        Observation ta9mObservation = new Observation(Double.parseDouble(ta9m), TA9M);
-	        Observation tairObservation = new Observation(Double.parseDouble(tair), TA9M);
-	        Observation sradObservation = new Observation(Double.parseDouble(srad), TA9M);
-	        Observation stidObservation = new Observation(Double.parseDouble(stid), TA9M);
-	        
-	        TA9MHeaderData.add(ta9mObservation);
-	        TAIRHeaderData.add(tairObservation);
-	        SRADHeaderData.add(sradObservation);
-	        STIDHeaderData.add(stidObservation);
+	        addStatistics(store, column, paramIds[column], summaries[column], valid[column]);
 	    }
+	}
+	
+	/**
+	 * Adds every statistic of one column to the statistics of the file
+	 * 
+	 * @param store Parsed rows holding the column
+	 * @param column Column number within the store
+	 * @param paramId Parameter id of the column
+	 * @param summary Summary of the column
+	 * @param valid Valid values of the column, reordered by the percentiles
+	 */
+	private void addStatistics(ColumnStore store, int column, String paramId, ColumnKernels.Summary summary,
+	        double[] valid)
+	{
+	    int mesonetId = StationDictionary.getGlobal().idOf(MESONET);
+	    double[] values = store.getColumn(column);
+	    int count = summary.getCount();
+	    int[] sentinels = summary.getSentinelCounts();
+	    
+	    //Skip parameters without a single valid value
+	    if (count == 0)
+	    {
+	        return;
+	    }
+	    
+	    double total = summary.getSum();
+	    int minRow = summary.getMinRow();
+	    int maxRow = summary.getMaxRow();
 	    
-	    dataCatalog.put(TA9M, TA9MHeaderData);
-	    dataCatalog.put(TAIR, TAIRHeaderData);
-	    dataCatalog.put(SRAD, SRADHeaderData);
-	    dataCatalog.put(STID, STIDHeaderData);
+	    //calculate average
+	    double average = total / count;
+	    int minStid = store.getStationId(minRow);
+	    int maxStid = store.getStationId(maxRow);
+	    
+	    statistics.get(StatsType.MINIMUM).put(paramId, new Statistics(values[minRow], minStid, epochSecond, count, StatsType.MINIMUM, sentinels));
+	    statistics.get(StatsType.MAXIMUM).put(paramId, new Statistics(values[maxRow], maxStid, epochSecond, count, StatsType.MAXIMUM, sentinels));
+	    statistics.get(StatsType.AVERAGE).put(paramId, new Statistics(average, mesonetId, epochSecond, count, StatsType.AVERAGE, sentinels));
+	    statistics.get(StatsType.TOTAL).put(paramId, new Statistics(total, mesonetId, epochSecond, count, StatsType.TOTAL, sentinels));
+	    
+	    double variance = summary.getSquaredDeviations() / count;
+	    statistics.get(StatsType.VARIANCE).put(paramId, new Statistics(variance, mesonetId, epochSecond, count, StatsType.VARIANCE, sentinels));
+	    statistics.get(StatsType.STDDEV).put(paramId, new Statistics(Math.sqrt(variance), mesonetId, epochSecond, count, StatsType.STDDEV, sentinels));
+	    
+	    //Percentiles by quickselect over the valid values the pass copied out
+	    for (StatsType type : StatsType.values())
+	    {
+	        if (type.isPercentile())
+	        {
+	            double percentile = Selection.percentile(valid, count, type.getFraction());
+	            statistics.get(type).put(paramId, new Statistics(percentile, mesonetId, epochSecond, count, type, sentinels));
+	        }
+	    }
 	}
 	
+	/**
+	 * Copies the valid values of a column into a new array
+	 * @param store Parsed rows holding the column
+	 * @param column Column number
+	 * @return valid values in row order
+	 */
+	private static double[] copyValidValues(ColumnStore store, int column)
+	{
+	    double[] values = store.getColumn(column);
+	    double[] valid = new double[store.size()];
+	    int count = 0;
+	    
+	    for (int row = 0; row < store.size(); row++)
+	    {
+	        if (store.isValid(column, row))
+	        {
+	            valid[count++] = values[row];
+	        }
+	    }
+	    
+	    return Arrays.copyOf(valid, count);
+	}
+	
+	/**
+	 * Finds the parsed rows holding a parameter, parsing its column first
+	 * when the file was opened LAZY
+	 * 
+	 * @param paramId Parameter id
+	 * @return data catalog or single column store, null if the parameter is not parsed
+	 */
+	private ColumnStore storeOf(String paramId)
+	{
+	    if (lazyRows != null)
+	    {
+	        return lazyColumn(paramId);
+	    }
+	    
+	    return dataCatalog != null && dataCatalog.getColumnIndex(paramId) >= 0 ? dataCatalog : null;
+	}
+	
+	/**
+	 * Parses one column of a LAZY file on first use and calculates its
+	 * statistics. Only the fields up to the column are tokenized.
+	 * 
+	 * @param paramId Parameter id
+	 * @return store holding only that column, or null if the header has no such numeric parameter
+	 */
+	private ColumnStore lazyColumn(String paramId)
+	{
+	    ColumnStore column = lazyColumns.get(paramId);
+	    
+	    if (column == null && !STID.equals(paramId) && getIndexOf(paramId) != null)
+	    {
+	        MdfTokenizer tokenizer = new MdfTokenizer(lazyRows.duplicate());
+	        column = tokenizer.parseRows(headerIds, getIndexOf(STID), new String[] {paramId});
+	        lazyColumns.put(paramId, column);
+	        calculateStatistics(column);
+	    }
+	    
+	    return column;
+	}
+	
+	/**
+	 * Returns the parsed rows of every parameter. A LAZY file is parsed in
+	 * full on the first call and its statistics recalculated from the full catalog.
+	 * 
+	 * @return data catalog or null if the file was read STREAMING or could not be read
+	 */
+	public ColumnStore getDataCatalog()
+	{
+	    if (lazyRows != null)
+	    {
+	        dataCatalog = new MdfTokenizer(lazyRows.duplicate()).parseRows(headerIds, getIndexOf(STID), null);
+	        lazyRows = null;
+	        lazyColumns.clear();
+	        calculateAllStatistics();
+	    }
+	    
+	    return dataCatalog;
+	}
+	
+	/**
+	 * Returns the statistic of a given type for any parameter of the header
+	 * 
+	 * @param type Type of statistic
+	 * @param paramId Parameter id, ex: TAIR, RELH or PRES
+	 * @return statistic or null if it was not calculated
+	 */
 	public Statistics getStatistics(StatsType type, String paramId)
     {
-            
+	    if (lazyRows != null)
+	    {
+	        lazyColumn(paramId);
+	    }
+	    
+	    TreeMap<String, Statistics> byParam = statistics.get(type);
+	    
+	    if (byParam == null)
+	    {
+	        return null;
+	    }
+	    
+	    return byParam.get(paramId);
     }
 	
 	/**
-	 * Calculates the min, max, and average for ta9m, tair, and srad
-	 * as well as the station Ids for each indicator
-	 * @param inData array list of all the data 
-	 * @param paramId parameter id
+	 * Returns the number of values of a parameter that held each sentinel
+	 * code, including parameters without a single valid value
+	 * 
+	 * @param paramId Parameter id, ex: TAIR
+	 * @return counts by code in configured order, empty if the parameter is not in the file
 	 */
-	private void calculateStatistics()
+	public Map<Integer, Integer> getSentinelCounts(String paramId)
 	{
-		double total = 0.0;
-        int count = 0;
-        double average = 0.0;
-        double min = Double.POSITIVE_INFINITY;
-        double max = Double.NEGATIVE_INFINITY;
-        String stationId = null;
-        
-        
-        //Loop through data
-        for(int i = 0; i < inData.size(); i++)
-        {
-            //Check bounds
-            if (inData.get(i).isValid())
-            {
-                //increment counter
-                count ++;
-                total += inData.get(i).getValue();
-                
-                //check for min value
-                if (inData.get(i).getValue() < min)
-                {
-                    stationId = inData.get(i).getStid();
-                    min = inData.get(i).getValue();
-                }
-                //check for max value
-                if (inData.get(i).getValue() > max)
-                {
-                    stationId = inData.get(i).getStid();
-                    max = inData.get(i).getValue();
-                }
-            }
-            //calculate average          
-            average = total/count;
-        }
-        //assign tair data if parameter id matches tair string
-        if (paramId == TAIR)
-        {
-        	tairMin = new Statistics(min, stationId, utcDateTime, count, StatsType.MINIMUM);
-	        tairMax = new Statistics(max, stationId, utcDateTime, count, StatsType.MAXIMUM);
-	        tairAverage = new Statistics(average, MESONET, utcDateTime, count, StatsType.AVERAGE);
-        }
-      //assign srad data if parameter id matches srad string
-        else if(paramId == SRAD)
-        {
-        	sradMin = new Statistics(min, stationId, utcDateTime, count, StatsType.MINIMUM);
-	        sradMax = new Statistics(max, stationId, utcDateTime, count, StatsType.MAXIMUM);
-	        sradAverage = new Statistics(average, MESONET, utcDateTime, count, StatsType.AVERAGE);
-        }
-      //assign ta9m data if parameter id matches ta9m string
-        else if(paramId == TA9M)
-        {
-        	ta9mMin = new Statistics(min, stationId, utcDateTime, count, StatsType.MINIMUM);
-	        ta9mMax = new Statistics(max, stationId, utcDateTime, count, StatsType.MAXIMUM);
-	        ta9mAverage = new Statistics(average, MESONET, utcDateTime, count, StatsType.AVERAGE);
-        }  
-           
+	    LinkedHashMap<Integer, Integer> counts = new LinkedHashMap<Integer, Integer>();
+	    int[] codes = ValidityRules.getGlobal().getSentinels();
+	    int[] found = null;
+	    
+	    ColumnStore store = storeOf(paramId);
+	    
+	    if (store != null)
+	    {
+	        found = store.countSentinels(store.getColumnIndex(paramId));
+	    }
+	    else if (streamingStatistics != null && streamingStatistics.getAccumulator(paramId) != null)
+	    {
+	        found = streamingStatistics.getAccumulator(paramId).getSentinelCounts();
+	    }
+	    
+	    for (int i = 0; found != null && i < codes.length; i++)
+	    {
+	        counts.put(codes[i], found[i]);
+	    }
+	    
+	    return counts;
 	}
-
+	
+	/**
+	 * Empty Map Constructor for benchmarks that call parseFile directly
+	 */
+	MapData()
+	{
+	    
+	}
+	
 	/**
 	 * Map Constructor setting all the fields. Also, reads in a file and calls on parse file method
-	 * and calls on calculation methods for Air Temperature at 1.5 meters, Solar Radiation and
-	 * Air Temperature at 9 meters 
+	 * and calculates the statistics of every parameter in the file
 	 * 
 	 * @param year The current year set by the user.
 	 * @param month The current month set by the user.
@@ -214,13 +383,78 @@ public class MapData
 	 */
 	public MapData(int year, int month, int day, int hour, int minute, String directory) 
 	{
-		//Location of the file 
-		String path = createFileName(year, month, day, hour, minute, directory); 
+		this(year, month, day, hour, minute, directory, LoadMode.EAGER);
+	}
+	
+	/**
+	 * Map Constructor reading the file in the given mode. EAGER keeps the
+	 * data catalog and shares it through the ObservationCache, STREAMING
+	 * only keeps the statistics and LAZY only reads the header, parsing
+	 * each column the first time its statistics are asked for.
+	 * 
+	 * @param year The current year set by the user.
+	 * @param month The current month set by the user.
+	 * @param day The current day set by the user.
+	 * @param hour The current hour set by the user.
+	 * @param minute The current minute set by the user.
+	 * @param directory The given directory set by the user.
+	 * @param mode How the file is read
+	 */
+	public MapData(int year, int month, int day, int hour, int minute, String directory, LoadMode mode) 
+	{
+		//Location of the file, compressed or CSV when there is no plain file
+		String path = DataFileReaders.locate(createFileName(year, month, day, hour, minute, directory)); 
+		boolean plain = path.endsWith(MdfReader.EXTENSION);
 	
 		//Try to read the file
 		try
 		{
+		    if (mode == LoadMode.STREAMING && plain)
+		    {
+		        parseFileStreaming(path);
+		        return;
+		    }
+		    
+		    if (mode == LoadMode.LAZY && plain)
+		    {
+		        parseHeader(path);
+		        return;
+		    }
+		    
+		    //Other files cannot be mapped, so they are parsed in full
+		    if (mode != LoadMode.EAGER)
+		    {
+		        parseFile(path);
+		        calculateAllStatistics();
+		        if (mode == LoadMode.STREAMING)
+		        {
+		            dataCatalog = null;
+		        }
+		        return;
+		    }
+		    
+		    //Reuse the parsed file if it has not changed since it was cached
+		    long timestamp = MdfDirectoryLoader.toEpochSecond(year, month, day, hour, minute);
+		    long lastModified = new File(path).lastModified();
+		    ObservationCache cache = ObservationCache.getInstance();
+		    ObservationCache.Entry cached = cache.get(directory, timestamp, lastModified);
+		    
+		    if (cached != null)
+		    {
+		        dataCatalog = cached.getDataCatalog();
+		        statistics = cached.getStatistics();
+		        paramPositions = cached.getParamPositions();
+		        epochSecond = cached.getEpochSecond();
+		        utcDateTime = cached.getDateTime();
+		        return;
+		    }
+		    
 			parseFile(path);  
+			calculateAllStatistics();
+			
+			cache.put(directory, timestamp, new ObservationCache.Entry(dataCatalog, statistics, paramPositions,
+			        epochSecond, lastModified));
+			return;
 		}
 		//Print error message if file can not be read
 		catch(Exception e)
@@ -229,9 +463,7 @@ public class MapData
 		}	
 		
 		
-		//calculateStatistics(sradData, SRAD);  
-		//calculateStatistics(ta9mData, TA9M);
-		//calculateStatistics(tairData, TAIR);	
+		calculateAllStatistics();
 	} 
 	
 	/**
@@ -242,6 +474,17 @@ public class MapData
 	{
 	    return utcDateTime;
 	}
+	
+	/**
+	 * Returns the time of the date line as a UTC epoch second, the time
+	 * every statistic of the file carries. Unlike getDateTime it holds the
+	 * real month.
+	 * @return UTC epoch second
+	 */
+	public long getEpochSecond()
+	{
+	    return epochSecond;
+	}
 	  
 	/**
 	 * Creates a file name based on year, month, day, hour, and minute.
@@ -254,6 +497,7 @@ public class MapData
 	 * @param directory The given directory set by the user.
 	 * @return The string representation of create file name method, formatted as:
 	 * 			(year)(month)(day)(hour)(minute) ex: 201811200324.mdf
+	 * @see MdfDirectoryLoader#timestampOf(String)
 	 */
 	public String createFileName(int year, int month, int day, int hour, int minute, String directory)
 	{
@@ -261,7 +505,9 @@ public class MapData
 	}
 
 	/**
-	 * Parses out a given file based on white space
+	 * Parses out a given file with the DataFileReader of its name, reading
+	 * every row once. Plain and gzip MDF files and CSV files are read. A
+	 * current MdfSnapshot of the file is read instead when there is one.
 	 * 
 	 * @param path Imports the set file path location
 	 * @throws IOException Checks to make sure there are valid inputs.
@@ -269,63 +515,95 @@ public class MapData
 	 */
 	public void parseFile(String path) throws IOException, ParseException
 	{		
-	    /**
-	     * Holds the number of stations which gets incremented 
-	     */
-	    Integer numberOfStations = null;  
+	    //A binary snapshot newer than the text file is read instead
+	    if (MdfSnapshot.isCurrent(path))
+	    {
+	        loadSnapshot(MdfSnapshot.read(MdfSnapshot.snapshotPathOf(path)));
+	        return;
+	    }
 	    
-		//Begin reading file
-		BufferedReader br = new BufferedReader(new FileReader(path));
+	    loadSnapshot(DataFileReaders.read(path, null));
+	}
+	
+	/**
+	 * Takes the time, header and rows of a parsed file
+	 * 
+	 * @param snapshot Parsed file
+	 */
+	private void loadSnapshot(MdfSnapshot snapshot)
+	{
+	    epochSecond = snapshot.getEpochSecond();
+	    utcDateTime = Statistics.createDateFromEpochSecond(epochSecond);
+	    parseParamHeader(String.join(" ", snapshot.getHeaderIds()));
+	    dataCatalog = snapshot.getStore();
+	}
+	
+	/**
+	 * Reads the date and header of a given file and keeps the rows for
+	 * parsing one column at a time. The file is memory mapped, so rows
+	 * that are never parsed are never read from disk.
+	 * 
+	 * @param path Imports the set file path location
+	 * @throws IOException Checks to make sure there are valid inputs.
+	 * @throws ParseException Checks for errors when parsing the file
+	 */
+	public void parseHeader(String path) throws IOException, ParseException
+	{
+		MdfTokenizer tokenizer = MdfTokenizer.map(path);
 		
-		String strg = br.readLine();
+		//Skip the copyright line
+		tokenizer.readLine();
 		
 		//Parse the date and time
-		String dateTime = br.readLine();		
-		utcDateTime = Statistics.createDateFromString(dateTime.trim());
+		epochSecond = Statistics.createEpochSecondFromString(tokenizer.readLine());
+		utcDateTime = Statistics.createDateFromEpochSecond(epochSecond);
 		
 		//Set header indexes
-		String headers = br.readLine();
-	    parseParamHeader(headers);
-	    
-		//Initialize variable to 0
-		numberOfStations = 0;
+		String headers = tokenizer.readLine();
+		parseParamHeader(headers);
 		
-		//Read new line
-		strg = br.readLine();
+		headerIds = headers.trim().split("\\s+");
+		lazyRows = tokenizer.remaining();
 		
-		lineData.add(strg);
-        //Initialize data arrays
-		/*
-        sradData = new ArrayList<Observation>();
-        tairData = new ArrayList<Observation>();
-        ta9mData = new ArrayList<Observation>();
-		*/
-		//Loops through an array while the string is not empty
-		while (strg != null)
+		//Filled in one column at a time
+		for (StatsType type : StatsType.values())
 		{
-		    
-			if (!strg.trim().isEmpty())
-			{		
-				//Parse the file based on white space
-				String[] array  = strg.split("\\s+");	
-							
-				sradData.add(new Observation(Double.parseDouble(array[sradPosition + 1]), array[stidPosition + 1]));
-				tairData.add(new Observation(Double.parseDouble(array[tairPosition + 1]), array[stidPosition + 1]));
-				ta9mData.add(new Observation(Double.parseDouble(array[ta9mPosition + 1]), array[stidPosition + 1]));
-				
-				//Increment number of stations;
-				numberOfStations++;
-			}
-			
-			
-			//Read new line
-			strg = br.readLine();
-	        lineData.add(strg);
+		    statistics.put(type, new TreeMap<String, Statistics>());
 		}
-		//Close the file
-		br.close();
+	}
+	
+	/**
+	 * Reads a given file once, feeding each row into running statistics
+	 * without keeping any rows. The data catalog stays empty.
+	 * 
+	 * @param path Imports the set file path location
+	 * @throws IOException Checks to make sure there are valid inputs.
+	 * @throws ParseException Checks for errors when parsing the file
+	 */
+	public void parseFileStreaming(String path) throws IOException, ParseException
+	{
+		MdfTokenizer tokenizer = MdfTokenizer.map(path);
+		
+		//Skip the copyright line
+		tokenizer.readLine();
+		
+		//Parse the date and time
+		epochSecond = Statistics.createEpochSecondFromString(tokenizer.readLine());
+		utcDateTime = Statistics.createDateFromEpochSecond(epochSecond);
+		
+		//Set header indexes
+		String headers = tokenizer.readLine();
+		parseParamHeader(headers);
 		
-	    prepareDataCatalog();
+		String[] headerIds = headers.trim().split("\\s+");		
+		int stidPosition = getIndexOf(STID);
+		String[] paramIds = MdfTokenizer.numericIds(headerIds, stidPosition);
+		streamingStatistics = new StreamingStatistics(paramIds, MdfDirectoryLoader.timestampOf(new File(path).getName()));
+		
+		tokenizer.parseRows(headerIds, stidPosition, paramIds, StationDictionary.getGlobal(), streamingStatistics);
+		
+		dataCatalog = null;
+		statistics = streamingStatistics.toStatistics(epochSecond);
 	}
 	
 	/**
@@ -357,48 +635,10 @@ public class MapData
 	
 	public String toString()
 	{ 
-		String lineBreak = createLineBreak();
-		
-		String header = String.format("\n" + "=== " + "%02d-%02d-%02d %02d:%02d:%02d" + " ===" + "\n", 
-				utcDateTime.get(GregorianCalendar.YEAR), utcDateTime.get(GregorianCalendar.MONTH), utcDateTime.get(GregorianCalendar.DAY_OF_MONTH), 
-				utcDateTime.get(GregorianCalendar.HOUR), utcDateTime.get(GregorianCalendar.MINUTE), utcDateTime.get(GregorianCalendar.SECOND)); 
-		String tairMaxStrg = String.format("Maximum Air Temperature[1.5m] = %.1f C at %s \n", 
-				tairMax.getValue(), tairMax.getStid()); 
-		String tairMinStrg = String.format("Minimum Air Temperature[1.5m] = %.1f C at %s \n", tairMin.getValue(), tairMin.getStid());
-		String tairAverageStrg = String.format("Average Air Temperature[1.5m] = %.1f C at %s \n", 
-				tairAverage.getValue(), MESONET);
-		String ta9mMaxStrg = String.format("Maximum Air Temperature[9.0m] = %.1f C at %s \n", ta9mMax.getValue(), ta9mMax.getStid());
-		String ta9mMinStrg = String.format("Minimum Air Temperature[9.0m] = %.1f C at %s \n", ta9mMin.getValue(), ta9mMin.getStid());
-		String ta9mAverageStrg = String.format("Average Air Temperature[9.0m] = %.1f C at %s \n", 
-				ta9mAverage.getValue(),MESONET);
-		String sradMaxStrg = String.format("Maximum Solar Radiation[1.5m] = %.1f W/m^2 at %s \n", sradMax.getValue(), sradMax.getStid());
-		String sradMinStrg = String.format("Minimum Air Temperature[1.5m] = %.1f W/m^2 at %s \n", sradMin.getValue(), sradMin.getStid());
-		String sradAverageStrg = String.format("Average Solar Radiation[1.5m] = %.1f W/m^2 at %s \n", 
-				sradAverage.getValue(), MESONET);
-		
-		String format = lineBreak + header + lineBreak + "\n" + tairMaxStrg + tairMinStrg + tairAverageStrg + lineBreak + "\n" + lineBreak
-				+ "\n" + ta9mMaxStrg + ta9mMinStrg + ta9mAverageStrg + lineBreak + "\n" + lineBreak + "\n" + sradMaxStrg + sradMinStrg + 
-				sradAverageStrg + lineBreak;
-		
-		return format;
-	}
-
-	
-	/**
-	 * Creates a line of 57 "=" signs to separate 
-	 * information for the toString method
-	 * 
-	 * @return "=" 57 times to create a line break
-	 */
-	private String createLineBreak()
-	{
-		String returnStr = "";
-		for (int i = 0; i < 57; i++)
-		{
-			returnStr += "=";
-		}
+		StringBuilder report = new StringBuilder(640);
+		ReportWriter.appendReport(this, report);
 		
-		return returnStr;
+		return report.toString();
 	}
 	
 }
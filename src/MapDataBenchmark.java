@@ -0,0 +1,454 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Map Data Benchmark class times each phase of reading a data file,
+ * parsing the whole file, reading one parameter of a LAZY file,
+ * tokenizing the rows into the data catalog, calculating the statistics,
+ * reducing one column with the lane-unrolled and the one row at a time
+ * ColumnKernels, rendering the report and parsing the date line,
+ * over the bundled files and synthetic files of 10^3 to 10^6 stations.
+ * For every phase it reports throughput, bytes allocated per operation
+ * (n/a when the JVM does not report allocation) and the median and
+ * 99th percentile latency.
+ *
+ * Results can be saved as a baseline and later runs compared against it,
+ * failing with exit code 1 when a phase loses more throughput than the
+ * tolerance allows.
+ *
+ * Usage: java MapDataBenchmark [--data dir] [--max-stations n]
+ *        [--save file] [--baseline file] [--tolerance fraction]
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class MapDataBenchmark
+{
+    /**
+     * Throughput a phase may lose against the baseline before failing
+     */
+    public static final double DEFAULT_TOLERANCE = 0.10;
+
+    /**
+     * Minimum time spent warming up each phase, in nanoseconds
+     */
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+
+    /**
+     * Minimum time spent measuring each phase, in nanoseconds
+     */
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    /**
+     * Minimum number of measured operations of each phase
+     */
+    private static final int MIN_OPERATIONS = 5;
+
+    /**
+     * Date line used by the date parsing phase
+     */
+    private static final String DATE_LINE = "21 2018 08 30 17 45 00";
+
+    /**
+     * Thread bean of the JVM
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * getThreadAllocatedBytes of the HotSpot thread bean, looked up by name
+     * so the benchmark runs on JVMs without com.sun.management, or null
+     * if allocation is not reported
+     */
+    private static final Method ALLOCATED_BYTES = allocationMethod();
+
+    /**
+     * Keeps results alive so the JIT cannot drop the measured work
+     */
+    private static volatile Object sink;
+
+    /**
+     * One unit of measured work
+     */
+    interface Operation
+    {
+        /**
+         * Runs the work once
+         *
+         * @return a result of the work
+         * @throws Exception Any failure ends the benchmark
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * Measurements of one phase on one input
+     */
+    static final class Result
+    {
+        /**
+         * Name of the phase and input, ex: parseFile/1000
+         */
+        final String name;
+
+        /**
+         * Operations per second
+         */
+        final double throughput;
+
+        /**
+         * Bytes allocated per operation, -1 if unknown
+         */
+        final double bytesPerOperation;
+
+        /**
+         * Median latency in nanoseconds
+         */
+        final long medianNanos;
+
+        /**
+         * 99th percentile latency in nanoseconds
+         */
+        final long p99Nanos;
+
+        /**
+         * Result constructor
+         *
+         * @param name Name of the phase and input
+         * @param throughput Operations per second
+         * @param bytesPerOperation Bytes allocated per operation
+         * @param medianNanos Median latency in nanoseconds
+         * @param p99Nanos 99th percentile latency in nanoseconds
+         */
+        Result(String name, double throughput, double bytesPerOperation, long medianNanos, long p99Nanos)
+        {
+            this.name = name;
+            this.throughput = throughput;
+            this.bytesPerOperation = bytesPerOperation;
+            this.medianNanos = medianNanos;
+            this.p99Nanos = p99Nanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            String bytes = bytesPerOperation < 0 ? String.format("%14s", "n/a") : String.format("%14.0f", bytesPerOperation);
+
+            return String.format("%-44s %14.1f ops/s %s B/op %12.3f ms p50 %12.3f ms p99", name, throughput,
+                    bytes, medianNanos / 1e6, p99Nanos / 1e6);
+        }
+    }
+
+    /**
+     * Benchmark only has static methods
+     */
+    private MapDataBenchmark()
+    {
+
+    }
+
+    /**
+     * Runs every phase and prints one line per phase and input
+     *
+     * @param args Options, see the class comment
+     * @throws Exception Checks to make sure every file can be read
+     */
+    public static void main(String[] args) throws Exception
+    {
+        String dataDirectory = "data/";
+        int maxStations = 1_000_000;
+        String save = null;
+        String baseline = null;
+        double tolerance = DEFAULT_TOLERANCE;
+
+        for (int i = 0; i < args.length - 1; i += 2)
+        {
+            switch (args[i])
+            {
+                case "--data":
+                    dataDirectory = args[i + 1];
+                    break;
+                case "--max-stations":
+                    maxStations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--save":
+                    save = args[i + 1];
+                    break;
+                case "--baseline":
+                    baseline = args[i + 1];
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        //Bundled files first, then synthetic files growing by 10x
+        TreeMap<String, File> inputs = new TreeMap<String, File>();
+        for (File file : new MdfDirectoryLoader(dataDirectory).listFiles(Long.MIN_VALUE, Long.MAX_VALUE).values())
+        {
+            inputs.put(file.getName(), file);
+        }
+
+        File syntheticDirectory = Files.createTempDirectory("mdfbench").toFile();
+        for (int stations = 1000; stations <= maxStations; stations *= 10)
+        {
+            File file = new File(syntheticDirectory, "synthetic" + stations + ".mdf");
+            SyntheticMdf.write(file, stations, stations);
+            file.deleteOnExit();
+            inputs.put(String.format("synthetic-%07d", stations), file);
+        }
+        syntheticDirectory.deleteOnExit();
+
+        List<Result> results = new ArrayList<Result>();
+        results.add(measure("createDateFromString", () -> Statistics.createDateFromString(DATE_LINE)));
+
+        for (String name : inputs.keySet())
+        {
+            String path = inputs.get(name).getPath();
+            byte[] bytes = Files.readAllBytes(inputs.get(name).toPath());
+
+            results.add(measure("parseFile/" + name, () ->
+            {
+                MapData mapData = new MapData();
+                mapData.parseFile(path);
+                return mapData;
+            }));
+
+            results.add(measure("lazyOneParameter/" + name, () ->
+            {
+                MapData mapData = new MapData();
+                mapData.parseHeader(path);
+                return mapData.getStatistics(StatsType.MAXIMUM, "TAIR");
+            }));
+
+            results.add(measure("prepareDataCatalog/" + name,
+                () -> MdfDirectoryLoader.parse(new MdfTokenizer(ByteBuffer.wrap(bytes)), null)));
+
+            MapData parsed = new MapData();
+            parsed.parseFile(path);
+            results.add(measure("calculateAllStatistics/" + name, () ->
+            {
+                parsed.calculateAllStatistics();
+                return parsed.statistics;
+            }));
+
+            results.add(measure("toString/" + name, parsed::toString));
+
+            //Lane-unrolled and one row at a time kernels over the TAIR column
+            ColumnStore store = parsed.dataCatalog;
+            double[] values = store.getColumn(store.getColumnIndex("TAIR"));
+            long[] validity = store.getValidity(store.getColumnIndex("TAIR"));
+            int size = store.size();
+            results.add(measure("columnKernels/" + name, () -> ColumnKernels.count(validity, size)
+                    + ColumnKernels.sum(values, validity, size) + ColumnKernels.argMin(values, validity, size)
+                    + ColumnKernels.argMax(values, validity, size)));
+            results.add(measure("columnKernelsScalar/" + name, () -> ColumnKernels.countScalar(validity, size)
+                    + ColumnKernels.sumScalar(values, validity, size) + ColumnKernels.argMinScalar(values, validity, size)
+                    + ColumnKernels.argMaxScalar(values, validity, size)));
+
+            //The one pass over every column that calculateAllStatistics runs
+            double[][] valid = new double[store.getParamIds().length][size];
+            results.add(measure("summarize/" + name, () -> ColumnKernels.summarize(store, valid)));
+
+            //One grid of the state at 0.05 degrees from stations scattered over it
+            StationMetadata metadata = new StationMetadata();
+            Random random = new Random(22);
+            for (int row = 0; row < store.size(); row++)
+            {
+                metadata.put(store.getStid(row), -1, 33.6 + random.nextDouble() * 3.4, -103.0 + random.nextDouble() * 8.6);
+            }
+            Raster grid = new Raster(33.5, -103.1, 37.1, -94.3, 0.05);
+            results.add(measure("idwRaster/" + name, () -> IdwInterpolator.interpolate(store, "TAIR", metadata, grid)));
+        }
+
+        for (Result result : results)
+        {
+            System.out.println(result);
+        }
+
+        if (save != null)
+        {
+            save(results, save);
+        }
+
+        if (baseline != null && !compare(results, baseline, tolerance))
+        {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Warms up and then measures one phase
+     *
+     * @param name Name of the phase and input
+     * @param operation Work to measure
+     * @return measurements
+     * @throws Exception Any failure of the work
+     */
+    static Result measure(String name, Operation operation) throws Exception
+    {
+        long end = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < end)
+        {
+            sink = operation.run();
+        }
+
+        long[] latencies = new long[1024];
+        int operations = 0;
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocatedBytes(threadId);
+        long start = System.nanoTime();
+        end = start + MEASURE_NANOS;
+
+        while (operations < MIN_OPERATIONS || System.nanoTime() < end)
+        {
+            long before = System.nanoTime();
+            sink = operation.run();
+            long latency = System.nanoTime() - before;
+
+            if (operations == latencies.length)
+            {
+                latencies = Arrays.copyOf(latencies, operations * 2);
+            }
+            latencies[operations++] = latency;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes(threadId);
+        double bytesPerOperation = allocatedBefore < 0 ? -1 : (double) (allocatedAfter - allocatedBefore) / operations;
+
+        Arrays.sort(latencies, 0, operations);
+
+        return new Result(name, operations * 1e9 / elapsed, bytesPerOperation, latencies[operations / 2],
+                latencies[Math.min(operations - 1, (int) Math.ceil(operations * 0.99) - 1)]);
+    }
+
+    /**
+     * Writes the throughput of each phase as a properties file
+     *
+     * @param results Measurements
+     * @param path Location to write to
+     * @throws IOException Checks to make sure the file can be written
+     */
+    static void save(List<Result> results, String path) throws IOException
+    {
+        Properties properties = new Properties();
+        for (Result result : results)
+        {
+            properties.setProperty(result.name, Double.toString(result.throughput));
+        }
+
+        try (OutputStream out = new FileOutputStream(path))
+        {
+            properties.store(out, "MapDataBenchmark throughput in ops/s");
+        }
+    }
+
+    /**
+     * Compares throughput against a saved baseline, printing every phase
+     * that got slower than the tolerance allows
+     *
+     * @param results Measurements
+     * @param path Location of the baseline
+     * @param tolerance Fraction of throughput a phase may lose
+     * @return true if no phase regressed
+     * @throws IOException Checks to make sure the baseline can be read
+     */
+    static boolean compare(List<Result> results, String path, double tolerance) throws IOException
+    {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(path))
+        {
+            properties.load(in);
+        }
+
+        boolean passed = true;
+        for (Result result : results)
+        {
+            String expected = properties.getProperty(result.name);
+            if (expected == null)
+            {
+                continue;
+            }
+
+            double floor = Double.parseDouble(expected) * (1.0 - tolerance);
+            if (result.throughput < floor)
+            {
+                System.out.printf("REGRESSION %s: %.1f ops/s, baseline %s ops/s%n", result.name, result.throughput, expected);
+                passed = false;
+            }
+        }
+
+        return passed;
+    }
+
+    /**
+     * Returns bytes allocated by a thread so far
+     *
+     * @param threadId Thread id
+     * @return allocated bytes or -1 if the JVM does not report them
+     */
+    private static long allocatedBytes(long threadId)
+    {
+        if (ALLOCATED_BYTES == null)
+        {
+            return -1;
+        }
+
+        try
+        {
+            return (Long) ALLOCATED_BYTES.invoke(THREADS, threadId);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Finds the method of the HotSpot thread bean that reports allocated
+     * bytes and turns the reporting on. The methods are taken from the
+     * exported interface, since the class of the bean itself is not
+     * accessible.
+     *
+     * @return method or null if the JVM does not report allocation
+     */
+    private static Method allocationMethod()
+    {
+        try
+        {
+            Class<?> type = Class.forName("com.sun.management.ThreadMXBean");
+            if (!type.isInstance(THREADS)
+                    || !(Boolean) type.getMethod("isThreadAllocatedMemorySupported").invoke(THREADS))
+            {
+                return null;
+            }
+
+            type.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(THREADS, true);
+            return type.getMethod("getThreadAllocatedBytes", long.class);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+}
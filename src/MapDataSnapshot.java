@@ -0,0 +1,115 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Map Data Snapshot class is a read-only copy of a parsed file that
+ * any number of threads can query at once without locking. It shares
+ * the data catalog of the MapData it was taken from, which is never
+ * written once parsing has finished, and keeps its own unmodifiable
+ * copies of the statistics and header positions.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public final class MapDataSnapshot
+{
+    /**
+     * UTC epoch second from the file name
+     */
+    private final long time;
+
+    /**
+     * Parsed rows, never written after the snapshot is taken
+     */
+    private final ColumnStore dataCatalog;
+
+    /**
+     * Statistics by type and parameter
+     */
+    private final Map<StatsType, Map<String, Statistics>> statistics;
+
+    /**
+     * Header positions of each parameter
+     */
+    private final Map<String, Integer> paramPositions;
+
+    /**
+     * Snapshot constructor
+     *
+     * @param time UTC epoch second from the file name
+     * @param mapData Parsed file, not used again by its owner for writing
+     */
+    public MapDataSnapshot(long time, MapData mapData)
+    {
+        //A LAZY file is parsed in full so every parameter can be queried
+        ColumnStore catalog = mapData.getDataCatalog();
+        EnumMap<StatsType, Map<String, Statistics>> copy = new EnumMap<>(StatsType.class);
+        for (Map.Entry<StatsType, TreeMap<String, Statistics>> entry : mapData.statistics.entrySet())
+        {
+            copy.put(entry.getKey(), Collections.unmodifiableMap(new TreeMap<String, Statistics>(entry.getValue())));
+        }
+
+        this.time = time;
+        this.dataCatalog = catalog;
+        this.statistics = Collections.unmodifiableMap(copy);
+        this.paramPositions = Collections.unmodifiableMap(new TreeMap<String, Integer>(mapData.paramPositions));
+    }
+
+    /**
+     * Returns the UTC epoch second from the file name
+     *
+     * @return epoch second
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Returns the statistic of a given type for any parameter of the header
+     *
+     * @param type Type of statistic
+     * @param paramId Parameter id, ex: TAIR
+     * @return statistic or null if it was not calculated
+     */
+    public Statistics getStatistics(StatsType type, String paramId)
+    {
+        Map<String, Statistics> byParam = statistics.get(type);
+
+        return byParam == null ? null : byParam.get(paramId);
+    }
+
+    /**
+     * Returns the value of a parameter at a station
+     *
+     * @param stid Station id, ex: ACME
+     * @param paramId Parameter id, ex: TAIR
+     * @return value or NaN if the station or parameter is missing or the value is not valid
+     */
+    public double getValue(String stid, String paramId)
+    {
+        if (dataCatalog == null || dataCatalog.getColumnIndex(paramId) < 0)
+        {
+            return Double.NaN;
+        }
+
+        int stationId = StationDictionary.getGlobal().find(stid);
+
+        return stationId < 0 ? Double.NaN : dataCatalog.getValueOfStation(dataCatalog.getColumnIndex(paramId), stationId);
+    }
+
+    /**
+     * Returns the header position of a parameter
+     *
+     * @param paramId Parameter id
+     * @return position or null if the parameter is not in the header
+     */
+    public Integer getIndexOf(String paramId)
+    {
+        return paramPositions.get(paramId);
+    }
+}
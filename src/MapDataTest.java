@@ -45,9 +45,9 @@ public class MapDataTest {
 		String path = test.createFileName(2018, 8, 30, 17, 45, "data/");
 		test.parseFile(path);
 		
-		Assert.assertFalse(test.sradData == null);   
-		Assert.assertFalse(test.tairData == null); 
-		Assert.assertFalse(test.ta9mData == null); 
+		Assert.assertFalse(test.dataCatalog.getObservations("SRAD") == null);   
+		Assert.assertFalse(test.dataCatalog.getObservations("TAIR") == null); 
+		Assert.assertFalse(test.dataCatalog.getObservations("TA9M") == null); 
 	}
 	
 	/**
@@ -60,11 +60,9 @@ public class MapDataTest {
     {
         MapData test = new MapData(2018, 8, 30, 17, 45, "data/");
         
-        int[] positions = test.getPositions();
-        
-        Assert.assertFalse(positions[0] == -1);   
-        Assert.assertFalse(positions[1] == -1); 
-        Assert.assertFalse(positions[2] == -1); 
+        Assert.assertFalse(test.getIndexOf("SRAD") == null);   
+        Assert.assertFalse(test.getIndexOf("TAIR") == null); 
+        Assert.assertFalse(test.getIndexOf("TA9M") == null); 
     }
 	
 	/** 
@@ -75,20 +73,80 @@ public class MapDataTest {
 	public void testCalculateStatistics() {
 		MapData test = new MapData(2018, 8, 30, 17, 45, "data/"); 
 		
-		Assert.assertEquals(20.8, test.getTairMin().getValue(), .1); 
-		Assert.assertEquals(36.5, test.getTairMax().getValue(), .1); 
-		Assert.assertEquals(32.4, test.getTairAverage().getValue(), .1);   
+		Assert.assertEquals(20.8, test.getStatistics(StatsType.MINIMUM, "TAIR").getValue(), .1); 
+		Assert.assertEquals(36.5, test.getStatistics(StatsType.MAXIMUM, "TAIR").getValue(), .1); 
+		Assert.assertEquals(32.4, test.getStatistics(StatsType.AVERAGE, "TAIR").getValue(), .1);   
 		
-		Assert.assertEquals(20.7, test.getTa9mMin().getValue(), .1); 
-        Assert.assertEquals(34.9, test.getTa9mMax().getValue(), .1); 
-        Assert.assertEquals(31.6, test.getTa9mAverage().getValue(), .1);
+		Assert.assertEquals(20.7, test.getStatistics(StatsType.MINIMUM, "TA9M").getValue(), .1); 
+        Assert.assertEquals(34.9, test.getStatistics(StatsType.MAXIMUM, "TA9M").getValue(), .1); 
+        Assert.assertEquals(31.6, test.getStatistics(StatsType.AVERAGE, "TA9M").getValue(), .1);
         
-        Assert.assertEquals(163.0, test.getSradMin().getValue(), .1); 
-        Assert.assertEquals(899.0, test.getSradMax().getValue(), .1); 
-        Assert.assertEquals(820.5, test.getSradAverage().getValue(), .1);
+        Assert.assertEquals(163.0, test.getStatistics(StatsType.MINIMUM, "SRAD").getValue(), .1); 
+        Assert.assertEquals(899.0, test.getStatistics(StatsType.MAXIMUM, "SRAD").getValue(), .1); 
+        Assert.assertEquals(820.5, test.getStatistics(StatsType.AVERAGE, "SRAD").getValue(), .1);
 	}
 	
 	
+	/** 
+	 * Test statistics of parameters outside the printed summary
+	 */
+	@Test
+	public void testStatisticsAnyParameter() {
+		MapData test = new MapData(2018, 8, 30, 17, 45, "data/"); 
+		
+		Statistics relhMax = test.getStatistics(StatsType.MAXIMUM, "RELH");
+		Statistics relhMin = test.getStatistics(StatsType.MINIMUM, "RELH");
+		Statistics relhAverage = test.getStatistics(StatsType.AVERAGE, "RELH");
+		Statistics relhTotal = test.getStatistics(StatsType.TOTAL, "RELH");
+		
+		Assert.assertTrue(relhMin.getValue() <= relhAverage.getValue());
+		Assert.assertTrue(relhAverage.getValue() <= relhMax.getValue());
+		Assert.assertEquals(relhTotal.getValue() / relhTotal.getNumberOfReportingStations(), relhAverage.getValue(), .001);
+		Assert.assertNotNull(test.getStatistics(StatsType.MAXIMUM, "WSPD"));
+		Assert.assertNull(test.getStatistics(StatsType.MAXIMUM, "STID"));
+	}
+	
+	/**
+	 * Test that a LAZY file only parses the columns asked for and gives
+	 * the same statistics as an EAGER one
+	 */
+	@Test
+	public void testLazy() {
+		MapData eager = new MapData(2018, 8, 30, 17, 45, "data/");
+		MapData lazy = new MapData(2018, 8, 30, 17, 45, "data/", LoadMode.LAZY);
+		
+		Assert.assertNull(lazy.dataCatalog);
+		Assert.assertEquals(eager.getIndexOf("SRAD"), lazy.getIndexOf("SRAD"));
+		Assert.assertEquals(0, lazy.statistics.get(StatsType.MAXIMUM).size());
+		
+		Assert.assertEquals(36.5, lazy.getStatistics(StatsType.MAXIMUM, "TAIR").getValue(), .001);
+		Assert.assertEquals("HOOK", lazy.getStatistics(StatsType.MAXIMUM, "TAIR").getStid());
+		Assert.assertEquals(1, lazy.statistics.get(StatsType.MAXIMUM).size());
+		Assert.assertNull(lazy.getStatistics(StatsType.MAXIMUM, "STID"));
+		Assert.assertNull(lazy.getStatistics(StatsType.MAXIMUM, "ZZZZ"));
+		Assert.assertEquals(eager.getPercentile("RELH", 0.25), lazy.getPercentile("RELH", 0.25), 1e-9);
+		Assert.assertEquals(eager.getSentinelCounts("TR05"), lazy.getSentinelCounts("TR05"));
+		Assert.assertEquals(eager.toString(), lazy.toString());
+		
+		//Asking for the catalog parses every column
+		Assert.assertEquals(eager.dataCatalog.size(), lazy.getDataCatalog().size());
+		for (String paramId : eager.dataCatalog.getParamIds())
+		{
+			for (StatsType type : StatsType.values())
+			{
+				Statistics expected = eager.getStatistics(type, paramId);
+				Statistics actual = lazy.getStatistics(type, paramId);
+				
+				Assert.assertEquals(expected == null, actual == null);
+				if (expected != null)
+				{
+					Assert.assertEquals(expected.getValue(), actual.getValue(), 1e-9);
+					Assert.assertEquals(expected.getStid(), actual.getStid());
+				}
+			}
+		}
+	}
+	
 	/** 
 	 * Make sure file name is being created correctly 
 	 */
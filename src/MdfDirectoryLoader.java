@@ -0,0 +1,249 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * MDF Directory Loader class reads every data file of a directory
+ * that falls within a time range and parses them in parallel into one
+ * catalog ordered by the time encoded in the file name. Files outside
+ * the range are never opened. Plain, gzip and CSV files are read by
+ * their DataFileReader.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class MdfDirectoryLoader
+{
+    /**
+     * Station id column of the header
+     */
+    private static final String STID = "STID";
+
+    /**
+     * Directory holding the data files
+     */
+    private File directory;
+
+    /**
+     * Parameters to keep, or null to keep every numeric parameter
+     */
+    private String[] requestedIds;
+
+    /**
+     * Loader constructor for a directory, keeping every parameter
+     *
+     * @param directory Directory holding the data files
+     */
+    public MdfDirectoryLoader(String directory)
+    {
+        this(directory, null);
+    }
+
+    /**
+     * Loader constructor for a directory, keeping only some parameters
+     *
+     * @param directory Directory holding the data files
+     * @param requestedIds Parameters to keep, or null to keep every numeric parameter
+     */
+    public MdfDirectoryLoader(String directory, String[] requestedIds)
+    {
+        this.directory = new File(directory);
+        this.requestedIds = requestedIds == null ? null : requestedIds.clone();
+    }
+
+    /**
+     * Converts a date and time to the UTC epoch second used as the catalog key
+     *
+     * @param year Year
+     * @param month Month, 1 for January
+     * @param day Day of the month
+     * @param hour Hour of the day
+     * @param minute Minute of the hour
+     * @return UTC epoch second
+     */
+    public static long toEpochSecond(int year, int month, int day, int hour, int minute)
+    {
+        return LocalDateTime.of(year, month, day, hour, minute).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads the time out of a file name made by MapData.createFileName,
+     * or of a compressed or CSV file of the same time
+     *
+     * @param fileName Name of the file without its directory, ex: 201808301745.mdf or 201808301745.csv.gz
+     * @return UTC epoch second or -1 if the name is not a data file name
+     */
+    public static long timestampOf(String fileName)
+    {
+        if (fileName.length() <= 12 || !Arrays.asList(DataFileReaders.EXTENSIONS).contains(fileName.substring(12)))
+        {
+            return -1;
+        }
+
+        for (int i = 0; i < 12; i++)
+        {
+            if (!Character.isDigit(fileName.charAt(i)))
+            {
+                return -1;
+            }
+        }
+
+        try
+        {
+            return toEpochSecond(Integer.parseInt(fileName.substring(0, 4)),
+                    Integer.parseInt(fileName.substring(4, 6)),
+                    Integer.parseInt(fileName.substring(6, 8)),
+                    Integer.parseInt(fileName.substring(8, 10)),
+                    Integer.parseInt(fileName.substring(10, 12)));
+        }
+        catch (DateTimeException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Lists the data files whose names fall within a time range
+     *
+     * @param from First UTC epoch second to include
+     * @param to Last UTC epoch second to include
+     * @return files ordered by time
+     */
+    public TreeMap<Long, File> listFiles(long from, long to)
+    {
+        TreeMap<Long, File> files = new TreeMap<Long, File>();
+        String[] names = directory.list();
+
+        if (names == null)
+        {
+            return files;
+        }
+
+        for (String name : names)
+        {
+            long timestamp = timestampOf(name);
+
+            if (timestamp >= 0 && timestamp >= from && timestamp <= to)
+            {
+                files.put(timestamp, new File(directory, name));
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Parses every data file within a time range using one thread per core
+     *
+     * @param from First UTC epoch second to include
+     * @param to Last UTC epoch second to include
+     * @return parsed files ordered by time
+     * @throws IOException Checks to make sure every file can be read
+     */
+    public NavigableMap<Long, ColumnStore> load(long from, long to) throws IOException
+    {
+        final ConcurrentSkipListMap<Long, ColumnStore> catalog = new ConcurrentSkipListMap<Long, ColumnStore>();
+        TreeMap<Long, File> files = listFiles(from, to);
+
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try
+        {
+            ArrayList<Future<?>> results = new ArrayList<Future<?>>();
+
+            for (final Map.Entry<Long, File> entry : files.entrySet())
+            {
+                results.add(executor.submit(() -> {
+                    catalog.put(entry.getKey(), load(entry.getValue()));
+                    return null;
+                }));
+            }
+
+            for (Future<?> result : results)
+            {
+                result.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + directory, e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Error reading from " + directory, e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        return catalog;
+    }
+
+    /**
+     * Parses a single data file with the DataFileReader of its name. A
+     * plain file is memory mapped and a gzip file inflated on its own thread.
+     *
+     * @param file Data file
+     * @return parsed file
+     * @throws IOException Checks to make sure the file can be read
+     */
+    public ColumnStore load(File file) throws IOException
+    {
+        return DataFileReaders.read(file.getPath(), requestedIds).getStore();
+    }
+
+    /**
+     * Reads the copyright, date and header lines and then the rows of a file
+     *
+     * @param tokenizer Tokenizer at the start of the file
+     * @param requestedIds Parameters to keep, or null to keep every numeric parameter
+     * @return parsed file
+     * @throws IOException Checks that the file has a header with a station id column
+     */
+    static ColumnStore parse(MdfTokenizer tokenizer, String[] requestedIds) throws IOException
+    {
+        tokenizer.readLine();
+        tokenizer.readLine();
+        String headers = tokenizer.readLine();
+
+        if (headers == null)
+        {
+            throw new IOException("Missing header line");
+        }
+
+        String[] paramIds = headers.trim().split("\\s+");
+        int stidPosition = -1;
+
+        for (int i = 0; i < paramIds.length; i++)
+        {
+            if (STID.equals(paramIds[i]))
+            {
+                stidPosition = i;
+            }
+        }
+
+        if (stidPosition < 0)
+        {
+            throw new IOException("Header has no " + STID + " column");
+        }
+
+        return tokenizer.parseRows(paramIds, stidPosition, requestedIds);
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.util.NavigableMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the MDF Directory Loader class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class MdfDirectoryLoaderTest
+{
+    /**
+     * Test that file names map back to the time createFileName encodes
+     */
+    @Test
+    public void testTimestampOf()
+    {
+        MapData mapData = new MapData(2018, 8, 30, 17, 45, "data/");
+        String fileName = mapData.createFileName(2018, 8, 30, 17, 45, "");
+
+        Assert.assertEquals(MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, 45), MdfDirectoryLoader.timestampOf(fileName));
+        Assert.assertEquals(-1, MdfDirectoryLoader.timestampOf("201813301745.mdf"));
+        Assert.assertEquals(-1, MdfDirectoryLoader.timestampOf("notes.txt"));
+        Assert.assertEquals(-1, MdfDirectoryLoader.timestampOf("201808301745.mdfc"));
+        Assert.assertEquals(MdfDirectoryLoader.timestampOf(fileName), MdfDirectoryLoader.timestampOf("201808301745.mdf.gz"));
+        Assert.assertEquals(MdfDirectoryLoader.timestampOf(fileName), MdfDirectoryLoader.timestampOf("201808301745.csv.gz"));
+    }
+
+    /**
+     * Test that only files within the range are loaded
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testLoad() throws IOException
+    {
+        MdfDirectoryLoader test = new MdfDirectoryLoader("data/");
+        long from = MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 0, 0);
+        long to = MdfDirectoryLoader.toEpochSecond(2018, 8, 31, 0, 0);
+
+        NavigableMap<Long, ColumnStore> catalog = test.load(from, to);
+
+        Assert.assertEquals(1, catalog.size());
+        ColumnStore store = catalog.get(MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, 45));
+        Assert.assertEquals(120, store.size());
+        Assert.assertTrue(store.getColumnIndex("TAIR") >= 0);
+    }
+
+    /**
+     * Test that a loader keeps only the requested parameters
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testLoadProjected() throws IOException
+    {
+        MdfDirectoryLoader test = new MdfDirectoryLoader("data/", new String[] {"TAIR", "SRAD"});
+
+        NavigableMap<Long, ColumnStore> catalog = test.load(Long.MIN_VALUE, Long.MAX_VALUE);
+
+        Assert.assertEquals(2, catalog.size());
+        Assert.assertEquals(2, catalog.firstEntry().getValue().getParamIds().length);
+    }
+}
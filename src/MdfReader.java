@@ -0,0 +1,63 @@
+import java.io.IOException;
+
+/**
+ * MDF Reader class reads the white space separated files of the Mesonet,
+ * plain or gzip compressed. A gzip file is inflated by LineChunks on its
+ * own thread while the rows before it are parsed.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class MdfReader implements DataFileReader
+{
+    /**
+     * Extension of plain files
+     */
+    public static final String EXTENSION = ".mdf";
+
+    /**
+     * Checks if a file is a plain or gzip MDF file
+     *
+     * @param fileName Name of the file
+     * @return true if it ends in .mdf or .mdf.gz
+     */
+    @Override
+    public boolean canRead(String fileName)
+    {
+        return fileName.endsWith(EXTENSION) || fileName.endsWith(EXTENSION + LineChunks.GZIP);
+    }
+
+    /**
+     * Reads the copyright, date and header lines and then the rows of a file
+     *
+     * @param path Location of the file
+     * @param requestedIds Parameters to keep, or null to keep every numeric parameter
+     * @return header ids, UTC epoch second and parsed rows of the file
+     * @throws IOException Checks that the file has a header with a station id column
+     */
+    @Override
+    public MdfSnapshot read(String path, String[] requestedIds) throws IOException
+    {
+        try (LineChunks chunks = LineChunks.open(path, ' '))
+        {
+            chunks.readLine();
+            String dateTime = chunks.readLine();
+            String headers = chunks.readLine();
+
+            if (dateTime == null || headers == null)
+            {
+                throw new IOException("Missing header lines in " + path);
+            }
+
+            String[] headerIds = headers.trim().split("\\s+");
+            int stidPosition = DataFileReaders.stidPosition(headerIds, path);
+            ColumnStore store = new ColumnStore(requestedIds == null
+                    ? MdfTokenizer.numericIds(headerIds, stidPosition) : requestedIds, chunks.estimateRows());
+            chunks.parseRows(headerIds, stidPosition, store);
+
+            return new MdfSnapshot(headerIds, Statistics.createEpochSecondFromString(dateTime), store);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MDF Snapshot class is a binary copy of a parsed data file kept next to
+ * it with a .mdfc extension. It holds the date, the header, the station
+ * dictionary and each column as fixed width doubles with its validity
+ * bitmap, so reading it back is a memory map and bulk copies with no
+ * text parsing.
+ *
+ * Layout, big endian:
+ * magic, version, fingerprint of the ValidityRules the bitmaps were
+ * built with, epoch second of the date line,
+ * header count and header ids, column count and column ids,
+ * station count and station ids, row count, station id of each row,
+ * then for each column its doubles followed by its validity words.
+ * Strings are written as a 2 byte length and ASCII bytes. A snapshot
+ * written under other validity rules is not current and is not read.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class MdfSnapshot
+{
+    /**
+     * Extension added to the name of the source file
+     */
+    public static final String EXTENSION = "c";
+
+    /**
+     * First four bytes of every snapshot, "MDFC"
+     */
+    private static final int MAGIC = 0x4D444643;
+
+    /**
+     * Layout version, 2 added the validity rules fingerprint
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Bytes before the epoch second: magic, version and fingerprint
+     */
+    private static final int PREFIX_BYTES = 16;
+
+    /**
+     * Parameter ids of the source header, including the station id
+     */
+    private String[] headerIds;
+
+    /**
+     * UTC epoch second of the date line
+     */
+    private long epochSecond;
+
+    /**
+     * Parsed rows
+     */
+    private ColumnStore store;
+
+    /**
+     * Snapshot constructor
+     *
+     * @param headerIds Parameter ids of the source header, including the station id
+     * @param epochSecond UTC epoch second of the date line
+     * @param store Parsed rows
+     */
+    public MdfSnapshot(String[] headerIds, long epochSecond, ColumnStore store)
+    {
+        this.headerIds = headerIds.clone();
+        this.epochSecond = epochSecond;
+        this.store = store;
+    }
+
+    /**
+     * Returns where the snapshot of a data file is kept
+     *
+     * @param mdfPath Location of the data file
+     * @return location of the snapshot, ex: data/201808301745.mdfc
+     */
+    public static String snapshotPathOf(String mdfPath)
+    {
+        return mdfPath + EXTENSION;
+    }
+
+    /**
+     * Checks if a data file has a snapshot newer than itself, of this
+     * version and written under the current validity rules
+     *
+     * @param mdfPath Location of the data file
+     * @return true if the snapshot can be used instead
+     */
+    public static boolean isCurrent(String mdfPath)
+    {
+        File snapshot = new File(snapshotPathOf(mdfPath));
+
+        if (!snapshot.isFile() || snapshot.lastModified() <= new File(mdfPath).lastModified())
+        {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ))
+        {
+            ByteBuffer prefix = ByteBuffer.allocate(PREFIX_BYTES);
+            while (prefix.hasRemaining() && channel.read(prefix) >= 0)
+            {
+                //Keep reading until the prefix is full or the file ends
+            }
+            prefix.flip();
+
+            return prefix.remaining() == PREFIX_BYTES && isCurrentPrefix(prefix);
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the magic, version and fingerprint of a snapshot
+     *
+     * @param buffer Snapshot positioned at its start
+     * @return true if it is a snapshot of this version written under the current rules
+     */
+    private static boolean isCurrentPrefix(ByteBuffer buffer)
+    {
+        return buffer.getInt() == MAGIC && buffer.getInt() == VERSION
+                && buffer.getLong() == ValidityRules.getGlobal().fingerprint();
+    }
+
+    /**
+     * Parses a text data file into a snapshot
+     *
+     * @param mdfPath Location of the data file
+     * @return snapshot of the file
+     * @throws IOException Checks to make sure the file can be read
+     */
+    public static MdfSnapshot convert(String mdfPath) throws IOException
+    {
+        MdfTokenizer tokenizer = MdfTokenizer.open(mdfPath);
+        tokenizer.readLine();
+        String dateTime = tokenizer.readLine();
+        String headers = tokenizer.readLine();
+
+        if (dateTime == null || headers == null)
+        {
+            throw new IOException("Missing header lines in " + mdfPath);
+        }
+
+        String[] headerIds = headers.trim().split("\\s+");
+        int stidPosition = -1;
+        for (int i = 0; i < headerIds.length; i++)
+        {
+            if ("STID".equals(headerIds[i]))
+            {
+                stidPosition = i;
+            }
+        }
+
+        if (stidPosition < 0)
+        {
+            throw new IOException("Header has no STID column in " + mdfPath);
+        }
+
+        ColumnStore store = tokenizer.parseRows(headerIds, stidPosition, null);
+
+        return new MdfSnapshot(headerIds, Statistics.createEpochSecondFromString(dateTime), store);
+    }
+
+    /**
+     * Writes this snapshot
+     *
+     * @param path Location to write to
+     * @throws IOException Checks to make sure the file can be written
+     */
+    public void write(String path) throws IOException
+    {
+        //Write to a temporary name first so readers never see half a file
+        File target = new File(path);
+        File temporary = new File(path + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16)))
+        {
+            String[] paramIds = store.getParamIds();
+            StationDictionary stations = store.getStations();
+            int rows = store.size();
+
+            //Only the stations of this file are written, numbered from 0
+            StationDictionary local = new StationDictionary();
+            int[] localIds = new int[rows];
+            for (int row = 0; row < rows; row++)
+            {
+                localIds[row] = local.idOf(stations.nameOf(store.getStationId(row)));
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(ValidityRules.getGlobal().fingerprint());
+            out.writeLong(epochSecond);
+            writeStrings(out, headerIds);
+            writeStrings(out, paramIds);
+
+            out.writeInt(local.size());
+            for (int id = 0; id < local.size(); id++)
+            {
+                writeString(out, local.nameOf(id));
+            }
+
+            out.writeInt(rows);
+            for (int row = 0; row < rows; row++)
+            {
+                out.writeInt(localIds[row]);
+            }
+
+            for (int column = 0; column < paramIds.length; column++)
+            {
+                double[] values = store.getColumn(column);
+                long[] validity = store.getValidity(column);
+
+                for (int row = 0; row < rows; row++)
+                {
+                    out.writeDouble(values[row]);
+                }
+                for (int word = 0; word < ColumnStore.wordCount(rows); word++)
+                {
+                    out.writeLong(validity[word]);
+                }
+            }
+        }
+
+        boolean replaced = (!target.exists() || target.delete()) && temporary.renameTo(target);
+
+        if (!replaced)
+        {
+            temporary.delete();
+            throw new IOException("Could not replace " + path);
+        }
+    }
+
+    /**
+     * Memory maps a snapshot and copies its columns out in bulk
+     *
+     * @param path Location of the snapshot
+     * @return snapshot
+     * @throws IOException Checks that the file is a snapshot this version can read, written
+     *         under the current validity rules
+     */
+    public static MdfSnapshot read(String path) throws IOException
+    {
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.limit() < PREFIX_BYTES || !isCurrentPrefix(buffer))
+        {
+            throw new IOException("Not a version " + VERSION + " snapshot of the current validity rules: " + path);
+        }
+
+        long epochSecond = buffer.getLong();
+        String[] headerIds = readStrings(buffer);
+        String[] paramIds = readStrings(buffer);
+
+        //Map the ids written in the file to ids of the global dictionary
+        StationDictionary stations = StationDictionary.getGlobal();
+        int[] globalIds = new int[buffer.getInt()];
+        for (int id = 0; id < globalIds.length; id++)
+        {
+            globalIds[id] = stations.idOf(readString(buffer));
+        }
+
+        int rows = buffer.getInt();
+        int capacity = Math.max(rows, 1);
+        int words = ColumnStore.wordCount(capacity);
+        int[] stationIds = new int[capacity];
+        buffer.asIntBuffer().get(stationIds, 0, rows);
+        buffer.position(buffer.position() + rows * 4);
+        for (int row = 0; row < rows; row++)
+        {
+            stationIds[row] = globalIds[stationIds[row]];
+        }
+
+        double[][] columns = new double[paramIds.length][capacity];
+        long[][] validity = new long[paramIds.length][words];
+
+        for (int column = 0; column < paramIds.length; column++)
+        {
+            buffer.asDoubleBuffer().get(columns[column], 0, rows);
+            buffer.position(buffer.position() + rows * 8);
+
+            int rowWords = ColumnStore.wordCount(rows);
+            buffer.asLongBuffer().get(validity[column], 0, rowWords);
+            buffer.position(buffer.position() + rowWords * 8);
+        }
+
+        ColumnStore store = new ColumnStore(paramIds, columns, validity, stationIds, stations, rows);
+
+        return new MdfSnapshot(headerIds, epochSecond, store);
+    }
+
+    /**
+     * Writes a snapshot next to every data file of a directory that does
+     * not have a current one
+     *
+     * @param args Directories to convert, data/ when none are given
+     * @throws IOException Checks to make sure every file can be read and written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String[] directories = args.length == 0 ? new String[] {"data/"} : args;
+
+        for (String directory : directories)
+        {
+            for (File file : new MdfDirectoryLoader(directory).listFiles(Long.MIN_VALUE, Long.MAX_VALUE).values())
+            {
+                if (!isCurrent(file.getPath()))
+                {
+                    convert(file.getPath()).write(snapshotPathOf(file.getPath()));
+                    System.out.println("Wrote " + snapshotPathOf(file.getPath()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the parameter ids of the source header, including the station id
+     *
+     * @return header ids
+     */
+    public String[] getHeaderIds()
+    {
+        return headerIds.clone();
+    }
+
+    /**
+     * Returns the UTC epoch second of the date line
+     *
+     * @return epoch second
+     */
+    public long getEpochSecond()
+    {
+        return epochSecond;
+    }
+
+    /**
+     * Returns the parsed rows
+     *
+     * @return data catalog
+     */
+    public ColumnStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * Writes a count followed by each string
+     *
+     * @param out Output
+     * @param strings Strings to write
+     * @throws IOException Checks to make sure the file can be written
+     */
+    static void writeStrings(DataOutputStream out, String[] strings) throws IOException
+    {
+        out.writeInt(strings.length);
+        for (String string : strings)
+        {
+            writeString(out, string);
+        }
+    }
+
+    /**
+     * Writes a 2 byte length and the ASCII bytes of a string
+     *
+     * @param out Output
+     * @param string String to write
+     * @throws IOException Checks to make sure the file can be written
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException
+    {
+        byte[] bytes = string.getBytes(StandardCharsets.US_ASCII);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a count followed by each string
+     *
+     * @param buffer Input
+     * @return strings
+     */
+    static String[] readStrings(ByteBuffer buffer)
+    {
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++)
+        {
+            strings[i] = readString(buffer);
+        }
+
+        return strings;
+    }
+
+    /**
+     * Reads a 2 byte length and the ASCII bytes of a string
+     *
+     * @param buffer Input
+     * @return string
+     */
+    private static String readString(ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
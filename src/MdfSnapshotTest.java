@@ -0,0 +1,121 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the MDF Snapshot class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class MdfSnapshotTest
+{
+    /**
+     * Test that a snapshot reads back the same columns
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testWriteRead() throws IOException
+    {
+        MdfSnapshot original = MdfSnapshot.convert("data/201808301745.mdf");
+        File file = File.createTempFile("snapshot", ".mdfc");
+        original.write(file.getPath());
+
+        MdfSnapshot copy = MdfSnapshot.read(file.getPath());
+        ColumnStore expected = original.getStore();
+        ColumnStore actual = copy.getStore();
+
+        Assert.assertEquals(original.getEpochSecond(), copy.getEpochSecond());
+        Assert.assertArrayEquals(original.getHeaderIds(), copy.getHeaderIds());
+        Assert.assertArrayEquals(expected.getParamIds(), actual.getParamIds());
+        Assert.assertEquals(expected.size(), actual.size());
+
+        for (int column = 0; column < expected.getParamIds().length; column++)
+        {
+            for (int row = 0; row < expected.size(); row++)
+            {
+                Assert.assertEquals(expected.getValue(column, row), actual.getValue(column, row), 0);
+                Assert.assertEquals(expected.isValid(column, row), actual.isValid(column, row));
+                Assert.assertEquals(expected.getStid(row), actual.getStid(row));
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Test that MapData reads a current snapshot instead of the text file
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testMapDataPrefersSnapshot() throws IOException
+    {
+        Path directory = Files.createTempDirectory("snapshot");
+        File mdf = new File(directory.toFile(), "201808301745.mdf");
+        Files.copy(new File("data/201808301745.mdf").toPath(), mdf.toPath());
+        String path = directory.toString() + File.separator;
+        String expected = new MapData(2018, 8, 30, 17, 45, path).toString();
+
+        MdfSnapshot.convert(mdf.getPath()).write(MdfSnapshot.snapshotPathOf(mdf.getPath()));
+        File snapshot = new File(MdfSnapshot.snapshotPathOf(mdf.getPath()));
+        snapshot.setLastModified(mdf.lastModified() + 60000);
+
+        //Break the text file so only the snapshot can give the right answer
+        Files.write(mdf.toPath(), new byte[0]);
+        mdf.setLastModified(snapshot.lastModified() - 30000);
+
+        Assert.assertTrue(MdfSnapshot.isCurrent(mdf.getPath()));
+        Assert.assertEquals(expected, new MapData(2018, 8, 30, 17, 45, path).toString());
+
+        snapshot.delete();
+        mdf.delete();
+        directory.toFile().delete();
+    }
+
+    /**
+     * Test that a snapshot written under other validity rules is stale and
+     * refused, since its bitmaps may not match the current rules
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testOtherRulesNotCurrent() throws IOException
+    {
+        Path directory = Files.createTempDirectory("snapshot");
+        File mdf = new File(directory.toFile(), "201808301745.mdf");
+        Files.copy(new File("data/201808301745.mdf").toPath(), mdf.toPath());
+        File snapshot = new File(MdfSnapshot.snapshotPathOf(mdf.getPath()));
+        MdfSnapshot.convert(mdf.getPath()).write(snapshot.getPath());
+        snapshot.setLastModified(mdf.lastModified() + 60000);
+        Assert.assertTrue(MdfSnapshot.isCurrent(mdf.getPath()));
+
+        //Change the fingerprint that follows the magic and version
+        try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw"))
+        {
+            file.seek(8);
+            file.writeLong(ValidityRules.getGlobal().fingerprint() + 1);
+        }
+        snapshot.setLastModified(mdf.lastModified() + 60000);
+
+        Assert.assertFalse(MdfSnapshot.isCurrent(mdf.getPath()));
+        try
+        {
+            MdfSnapshot.read(snapshot.getPath());
+            Assert.fail("A snapshot of other rules must not be read");
+        }
+        catch (IOException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("validity rules"));
+        }
+        Assert.assertEquals(new MapData(2018, 8, 30, 17, 45, "data/").toString(),
+                new MapData(2018, 8, 30, 17, 45, directory.toString() + File.separator).toString());
+
+        snapshot.delete();
+        mdf.delete();
+        directory.toFile().delete();
+    }
+}
@@ -0,0 +1,427 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MDF Tokenizer class walks the bytes of a data file once, splitting
+ * on white space and parsing numbers straight from the buffer into
+ * the columns of a ColumnStore, or any other RowSink, without creating
+ * a String per field. Columns that were not requested are skipped
+ * without being parsed.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class MdfTokenizer
+{
+    /**
+     * Powers of ten used to scale the digits after the decimal point
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    /**
+     * Most digits parsed without the JDK, any 15 digit mantissa is below
+     * 2^53 and so held exactly by a double
+     */
+    private static final int MAX_FAST_DIGITS = 15;
+
+    /**
+     * Bytes of the file
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Next byte to read
+     */
+    private int position;
+
+    /**
+     * One past the last byte to read
+     */
+    private int limit;
+
+    /**
+     * Byte between fields besides white space, ',' for CSV or ' ' for none
+     */
+    private byte separator = ' ';
+
+    /**
+     * Tokenizer constructor reading between the position and limit of a buffer
+     *
+     * @param buffer Bytes of the file
+     */
+    public MdfTokenizer(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    /**
+     * Tokenizer constructor for fields split by a separator such as ','.
+     * Spaces around a field are skipped and an empty field is parsed as NaN,
+     * which no ValidityRule accepts.
+     *
+     * @param buffer Bytes of the file
+     * @param separator Byte between fields, ' ' for white space only
+     */
+    public MdfTokenizer(ByteBuffer buffer, char separator)
+    {
+        this(buffer);
+        this.separator = (byte) separator;
+    }
+
+    /**
+     * Reads a whole file into a tokenizer
+     *
+     * @param path Location of the file
+     * @return tokenizer over the file
+     * @throws IOException Checks to make sure the file can be read
+     */
+    public static MdfTokenizer open(String path) throws IOException
+    {
+        return new MdfTokenizer(ByteBuffer.wrap(Files.readAllBytes(Paths.get(path))));
+    }
+
+    /**
+     * Memory maps a whole file into a tokenizer so the file is
+     * never copied onto the heap
+     *
+     * @param path Location of the file
+     * @return tokenizer over the file
+     * @throws IOException Checks to make sure the file can be read
+     */
+    public static MdfTokenizer map(String path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            return new MdfTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Lists every header parameter except the station id
+     *
+     * @param headerIds Parameter ids in header order
+     * @param stidPosition Header position of the station id
+     * @return numeric parameter ids in header order
+     */
+    static String[] numericIds(String[] headerIds, int stidPosition)
+    {
+        String[] numericIds = new String[headerIds.length - 1];
+
+        for (int i = 0, j = 0; i < headerIds.length; i++)
+        {
+            if (i != stidPosition)
+            {
+                numericIds[j++] = headerIds[i];
+            }
+        }
+
+        return numericIds;
+    }
+
+    /**
+     * Reads one line as a String, used for the short lines at the top of the file
+     *
+     * @return line without its line terminator or null at the end of the file
+     */
+    public String readLine()
+    {
+        if (position >= limit)
+        {
+            return null;
+        }
+
+        int start = position;
+        while (position < limit && buffer.get(position) != '\n')
+        {
+            position++;
+        }
+
+        int end = position;
+        if (end > start && buffer.get(end - 1) == '\r')
+        {
+            end--;
+        }
+
+        //Step over the line feed
+        if (position < limit)
+        {
+            position++;
+        }
+
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++)
+        {
+            chars[i - start] = (char) (buffer.get(i) & 0xff);
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Returns the bytes not read yet, which a new tokenizer can read again
+     *
+     * @return view of the buffer from the current position to the limit
+     */
+    public ByteBuffer remaining()
+    {
+        ByteBuffer rest = buffer.duplicate();
+        rest.limit(limit);
+        rest.position(position);
+
+        return rest;
+    }
+
+    /**
+     * Parses the remaining rows of the file into a new ColumnStore
+     *
+     * @param headerIds Parameter ids in header order
+     * @param stidPosition Header position of the station id
+     * @param requestedIds Parameters to store, or null to store every numeric parameter
+     * @return store holding the requested columns
+     */
+    public ColumnStore parseRows(String[] headerIds, int stidPosition, String[] requestedIds)
+    {
+        if (requestedIds == null)
+        {
+            requestedIds = numericIds(headerIds, stidPosition);
+        }
+
+        ColumnStore store = new ColumnStore(requestedIds, estimateRows());
+        parseRows(headerIds, stidPosition, requestedIds, store.getStations(), store);
+
+        return store;
+    }
+
+    /**
+     * Parses the remaining rows of the file, handing each field to a sink
+     *
+     * @param headerIds Parameter ids in header order
+     * @param stidPosition Header position of the station id
+     * @param requestedIds Parameters to pass on, the sink receives their positions in this array
+     * @param stations Dictionary that assigns the station ids passed to the sink
+     * @param sink Receiver of every row
+     */
+    public void parseRows(String[] headerIds, int stidPosition, String[] requestedIds, StationDictionary stations,
+            RowSink sink)
+    {
+        //Sink column of every header position, -1 when it is skipped
+        int[] targets = new int[headerIds.length];
+        int lastNeeded = stidPosition;
+        for (int i = 0; i < headerIds.length; i++)
+        {
+            targets[i] = -1;
+            for (int j = 0; j < requestedIds.length && i != stidPosition; j++)
+            {
+                if (requestedIds[j].equals(headerIds[i]))
+                {
+                    targets[i] = j;
+                    lastNeeded = Math.max(lastNeeded, i);
+                }
+            }
+        }
+
+        while (position < limit)
+        {
+            skipSpaces();
+            if (atLineEnd())
+            {
+                skipLineEnd();
+                continue;
+            }
+
+            sink.startRow();
+            int field = 0;
+
+            while (!atLineEnd() && field <= lastNeeded)
+            {
+                int start = position;
+                skipField();
+
+                if (field == stidPosition)
+                {
+                    sink.station(stations.idOf(buffer, start, position));
+                }
+                else if (field < targets.length && targets[field] >= 0)
+                {
+                    sink.value(targets[field], start == position ? Double.NaN : parseDouble(buffer, start, position));
+                }
+
+                field++;
+                skipSpaces();
+                if (separator != ' ' && position < limit && buffer.get(position) == separator)
+                {
+                    position++;
+                    skipSpaces();
+                }
+            }
+
+            //Columns past the last requested one are never looked at
+            while (!atLineEnd())
+            {
+                position++;
+            }
+            skipLineEnd();
+            sink.endRow();
+        }
+    }
+
+    /**
+     * Parses a decimal number such as -995, 34.7 or 969.92 from ASCII bytes.
+     * A malformed field such as "-" or "." is parsed as NaN, which no
+     * ValidityRule accepts, so it is stored as not valid.
+     *
+     * @param bytes Buffer holding the number
+     * @param start First byte of the number
+     * @param end One past the last byte of the number
+     * @return value of the number or NaN if it is not a number
+     */
+    static double parseDouble(ByteBuffer bytes, int start, int end)
+    {
+        int i = start;
+        boolean negative = false;
+
+        if (i < end && (bytes.get(i) == '-' || bytes.get(i) == '+'))
+        {
+            negative = bytes.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+
+        for (; i < end; i++)
+        {
+            int b = bytes.get(i);
+
+            if (b >= '0' && b <= '9')
+            {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fraction)
+                {
+                    fractionDigits++;
+                }
+            }
+            else if (b == '.' && !fraction)
+            {
+                fraction = true;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        //Anything unusual such as exponents or long mantissas goes through the JDK parser
+        if (i != end || digits == 0 || digits > MAX_FAST_DIGITS)
+        {
+            char[] chars = new char[end - start];
+            for (int j = start; j < end; j++)
+            {
+                chars[j - start] = (char) (bytes.get(j) & 0xff);
+            }
+
+            try
+            {
+                return Double.parseDouble(new String(chars));
+            }
+            catch (NumberFormatException e)
+            {
+                return Double.NaN;
+            }
+        }
+
+        //Both operands are exact so the division rounds correctly
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Guesses the number of remaining rows from the length of the next one
+     *
+     * @return estimated number of rows
+     */
+    int estimateRows()
+    {
+        int end = position;
+        while (end < limit && buffer.get(end) != '\n')
+        {
+            end++;
+        }
+
+        int lineLength = Math.max(end - position + 1, 1);
+
+        return (limit - position) / lineLength + 1;
+    }
+
+    /**
+     * Moves past spaces and tabs but not line terminators
+     */
+    private void skipSpaces()
+    {
+        while (position < limit)
+        {
+            byte b = buffer.get(position);
+            if (b != ' ' && b != '\t')
+            {
+                return;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Moves to the first white space or separator after a field
+     */
+    private void skipField()
+    {
+        while (position < limit)
+        {
+            byte b = buffer.get(position);
+            if (b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == separator)
+            {
+                return;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Checks for the end of the current line
+     *
+     * @return true at a line terminator or the end of the file
+     */
+    private boolean atLineEnd()
+    {
+        return position >= limit || buffer.get(position) == '\n' || buffer.get(position) == '\r';
+    }
+
+    /**
+     * Moves past one line terminator
+     */
+    private void skipLineEnd()
+    {
+        if (position < limit && buffer.get(position) == '\r')
+        {
+            position++;
+        }
+        if (position < limit && buffer.get(position) == '\n')
+        {
+            position++;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the MDF Tokenizer class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class MdfTokenizerTest
+{
+    /**
+     * Header and two rows in the layout of an mdf file
+     */
+    private static final String FILE = "! (c) 2018 Oklahoma Climatological Survey\n"
+            + "  21 2018 08 30 00 00 00\n"
+            + " STID  STNM  TIME   RELH   TAIR   SRAD   TA9M\n"
+            + " ACME   110  1065     43   34.7    869   32.8\r\n"
+            + "\n"
+            + " ADAX     1  1065     58  -996.0   861   -998\n";
+
+    /**
+     * Creates a tokenizer over a string
+     *
+     * @param text File contents
+     * @return tokenizer
+     */
+    private MdfTokenizer tokenizer(String text)
+    {
+        return new MdfTokenizer(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Test that numbers parse the same as Double.parseDouble
+     */
+    @Test
+    public void testParseDouble()
+    {
+        String[] numbers = {"0", "43", "34.7", "-995", "969.92", "0.00", "-0.5", "+12.25", "1e3", "123456.789"};
+
+        for (String number : numbers)
+        {
+            ByteBuffer bytes = ByteBuffer.wrap(number.getBytes(StandardCharsets.US_ASCII));
+            Assert.assertEquals(Double.parseDouble(number), MdfTokenizer.parseDouble(bytes, 0, number.length()), 0);
+        }
+    }
+
+    /**
+     * Test that mantissas past 15 digits still parse the same as Double.parseDouble
+     */
+    @Test
+    public void testParseLongMantissa()
+    {
+        String[] numbers = {"9007199254740993", "123456789012345.67", "0.1234567890123456789", "-99999999999999999"};
+
+        for (String number : numbers)
+        {
+            ByteBuffer bytes = ByteBuffer.wrap(number.getBytes(StandardCharsets.US_ASCII));
+            Assert.assertEquals(Double.parseDouble(number), MdfTokenizer.parseDouble(bytes, 0, number.length()), 0);
+        }
+    }
+
+    /**
+     * Test that malformed fields are not valid and do not stop the file
+     */
+    @Test
+    public void testMalformedField()
+    {
+        for (String number : new String[] {"-", ".", "+", "-.", "1.2.3", "12a"})
+        {
+            ByteBuffer bytes = ByteBuffer.wrap(number.getBytes(StandardCharsets.US_ASCII));
+            Assert.assertTrue(Double.isNaN(MdfTokenizer.parseDouble(bytes, 0, number.length())));
+        }
+
+        MdfTokenizer test = tokenizer(FILE.replace("34.7", "  - ").replace("  58", "   ."));
+        test.readLine();
+        test.readLine();
+        String[] header = test.readLine().trim().split("\\s+");
+
+        ColumnStore store = test.parseRows(header, 0, null);
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertFalse(store.isValid(store.getColumnIndex("TAIR"), 0));
+        Assert.assertFalse(store.isValid(store.getColumnIndex("RELH"), 1));
+        Assert.assertEquals(32.8, store.getValue(store.getColumnIndex("TA9M"), 0), 0);
+        Assert.assertEquals(861, store.getValue(store.getColumnIndex("SRAD"), 1), 0);
+    }
+
+    /**
+     * Test that every numeric column is stored when none are requested
+     */
+    @Test
+    public void testParseRows()
+    {
+        MdfTokenizer test = tokenizer(FILE);
+        test.readLine();
+        Assert.assertEquals("  21 2018 08 30 00 00 00", test.readLine());
+        String[] header = test.readLine().trim().split("\\s+");
+
+        ColumnStore store = test.parseRows(header, 0, null);
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(-1, store.getColumnIndex("STID"));
+        Assert.assertEquals("ADAX", store.getStid(1));
+        Assert.assertEquals(34.7, store.getValue(store.getColumnIndex("TAIR"), 0), 0);
+        Assert.assertEquals(32.8, store.getValue(store.getColumnIndex("TA9M"), 0), 0);
+        Assert.assertFalse(store.isValid(store.getColumnIndex("TAIR"), 1));
+        Assert.assertTrue(store.isValid(store.getColumnIndex("SRAD"), 1));
+    }
+
+    /**
+     * Test that only requested columns are stored
+     */
+    @Test
+    public void testParseRowsProjected()
+    {
+        MdfTokenizer test = tokenizer(FILE);
+        test.readLine();
+        test.readLine();
+        String[] header = test.readLine().trim().split("\\s+");
+
+        ColumnStore store = test.parseRows(header, 0, new String[] {"TAIR"});
+
+        Assert.assertEquals(1, store.getParamIds().length);
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals("ACME", store.getStid(0));
+        Assert.assertEquals(34.7, store.getValue(0, 0), 0);
+        Assert.assertEquals(-996, store.getValue(0, 1), 0);
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Monotonic Deque class keeps the minimum of a sliding window of timed
+ * values. Values are added at the back in time order; any value at the
+ * back larger than the new one can never be the minimum again and is
+ * dropped, so the values from front to back only grow and the front is
+ * always the minimum. Expired values leave from the front. Each value is
+ * added and removed at most once, so both are O(1) amortized. A maximum
+ * is kept by adding negated values, as ColumnKernels does.
+ *
+ * Values live in ring buffers of primitives that double when full.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class MonotonicDeque
+{
+    /**
+     * UTC epoch second of each value
+     */
+    private long[] times = new long[16];
+
+    /**
+     * Values, ascending from front to back
+     */
+    private double[] values = new double[16];
+
+    /**
+     * Station of each value as a dictionary id
+     */
+    private int[] stations = new int[16];
+
+    /**
+     * Position of the front
+     */
+    private int head;
+
+    /**
+     * Number of values held
+     */
+    private int size;
+
+    /**
+     * Adds a value at the back, dropping every larger value before it.
+     * Equal values are kept so the front is the earliest of a tie.
+     *
+     * @param time UTC epoch second, not before the last one added
+     * @param value Value
+     * @param station Dictionary id of the station of the value
+     */
+    public void add(long time, double value, int station)
+    {
+        while (size > 0 && values[index(size - 1)] > value)
+        {
+            size--;
+        }
+
+        if (size == times.length)
+        {
+            grow();
+        }
+
+        int back = index(size);
+        times[back] = time;
+        values[back] = value;
+        stations[back] = station;
+        size++;
+    }
+
+    /**
+     * Drops the values at or before a time from the front
+     *
+     * @param expired Last UTC epoch second outside the window
+     */
+    public void evict(long expired)
+    {
+        while (size > 0 && times[head] <= expired)
+        {
+            head = index(1);
+            size--;
+        }
+    }
+
+    /**
+     * Checks if the window holds no value
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of values that may still become the minimum
+     *
+     * @return values held
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the minimum of the window
+     *
+     * @return minimum or NaN if empty
+     */
+    public double getMin()
+    {
+        return size == 0 ? Double.NaN : values[head];
+    }
+
+    /**
+     * Returns the time of the minimum
+     *
+     * @return UTC epoch second or Long.MIN_VALUE if empty
+     */
+    public long getMinTime()
+    {
+        return size == 0 ? Long.MIN_VALUE : times[head];
+    }
+
+    /**
+     * Returns the station of the minimum
+     *
+     * @return dictionary id or -1 if empty
+     */
+    public int getMinStation()
+    {
+        return size == 0 ? -1 : stations[head];
+    }
+
+    /**
+     * Position in the ring of the value some places behind the front
+     *
+     * @param offset Places behind the front
+     * @return position in the arrays
+     */
+    private int index(int offset)
+    {
+        int position = head + offset;
+
+        return position >= times.length ? position - times.length : position;
+    }
+
+    /**
+     * Doubles the ring, moving the front to position 0
+     */
+    private void grow()
+    {
+        int capacity = times.length * 2;
+        long[] newTimes = new long[capacity];
+        double[] newValues = new double[capacity];
+        int[] newStations = new int[capacity];
+
+        for (int i = 0; i < size; i++)
+        {
+            newTimes[i] = times[index(i)];
+            newValues[i] = values[index(i)];
+            newStations[i] = stations[index(i)];
+        }
+
+        times = newTimes;
+        values = newValues;
+        stations = newStations;
+        head = 0;
+    }
+}
@@ -14,9 +14,9 @@ public class Observation extends AbstractObservation
 	private double value = 0;    
 	
 	/**
-	 * Holds the station name
+	 * Holds the station as an id of the global StationDictionary, -1 if none
 	 */
-	private String stid = "";
+	private int stationId = -1;
 	
 	/**
 	 *  Observation Constructor setting all fields
@@ -26,7 +26,18 @@ public class Observation extends AbstractObservation
 	 */
 	public Observation(double value, String stid) 
 	{
-		this.stid = stid;
+		this(value, stid == null ? -1 : StationDictionary.getGlobal().idOf(stid));
+	}
+	
+	/**
+	 *  Observation Constructor taking the station as a dictionary id
+	 *  
+	 *  @param value The value of an object
+	 *  @param stationId Id of the station in the global StationDictionary
+	 */
+	public Observation(double value, int stationId) 
+	{
+		this.stationId = stationId;
 		this.value = value;
 	}
 	
@@ -37,26 +48,19 @@ public class Observation extends AbstractObservation
 	 */
 	public boolean isValid()
 	{
-		//abnormally small number 
-		int min = -900;  
-		//abnormally large number
-		int max = 900;
-				
-		//Check lower bound
-		if (value < min) 
-		{
-			return false; 
-		}	
-		//Check upper bound
-		else if (value > max)
-		{
-			return false;
-		}
-		//Within the boundaries
-		else 
-		{
-			return true;
-		}
+		return isValidValue(value);
+	}
+	
+	/**
+	 * Checks a value against the default ValidityRule, -900 to 900
+	 * unless validity.properties sets other bounds
+	 * 
+	 * @param value The value to check
+	 * @return boolean Returns false if the value is outside of the bounds or a sentinel
+	 */
+	public static boolean isValidValue(double value)
+	{
+		return ValidityRules.getGlobal().getDefaultRule().isValid(value);
 	}
 
 	/**
@@ -74,7 +78,16 @@ public class Observation extends AbstractObservation
 	 * @return station name
 	 */
 	public String getStid() {
-		return stid;
+		return stationId < 0 ? null : StationDictionary.getGlobal().nameOf(stationId);
+	}
+	
+	/**
+	 * Returns the station as an id of the global StationDictionary
+	 * 
+	 * @return station id or -1 if there is none
+	 */
+	public int getStationId() {
+		return stationId;
 	}
 	
 	public String toString()
@@ -0,0 +1,442 @@
+import java.util.EnumMap;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Observation Cache class keeps parsed files and their statistics in
+ * memory for the whole process, keyed by the UTC time in the file name.
+ * The least recently used files are dropped once the estimated size
+ * passes a byte budget, and a file is parsed again only when its
+ * modification time changes.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class ObservationCache
+{
+    /**
+     * System property that sets the byte budget of the shared cache
+     */
+    public static final String MAX_BYTES_PROPERTY = "mapdata.cache.bytes";
+
+    /**
+     * Budget used when the property is not set
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Rough size of one Statistics object and its map entry
+     */
+    private static final long STATISTICS_BYTES = 160;
+
+    /**
+     * Cache shared by every MapData
+     */
+    private static final ObservationCache INSTANCE = new ObservationCache(
+            Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+
+    /**
+     * Entries in least recently used order
+     */
+    private LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    /**
+     * Most bytes the entries may use
+     */
+    private long maxBytes;
+
+    /**
+     * Estimated bytes the entries use
+     */
+    private long usedBytes;
+
+    /**
+     * Number of lookups that found a current entry
+     */
+    private long hits;
+
+    /**
+     * Number of lookups that found nothing or a stale entry
+     */
+    private long misses;
+
+    /**
+     * Number of entries dropped to stay within budget
+     */
+    private long evictions;
+
+    /**
+     * Cache constructor with a byte budget
+     *
+     * @param maxBytes Most bytes the entries may use
+     */
+    public ObservationCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cache shared by every MapData
+     *
+     * @return shared cache
+     */
+    public static ObservationCache getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up a file
+     *
+     * @param directory Directory of the file
+     * @param timestamp UTC epoch second from the file name
+     * @param lastModified Current modification time of the file
+     * @return entry or null if the file is not cached or has changed since
+     */
+    public synchronized Entry get(String directory, long timestamp, long lastModified)
+    {
+        Key key = new Key(directory, timestamp);
+        Entry entry = entries.get(key);
+
+        if (entry == null || entry.lastModified != lastModified)
+        {
+            if (entry != null)
+            {
+                remove(key);
+            }
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry;
+    }
+
+    /**
+     * Stores a parsed file, dropping the least recently used files
+     * until the cache is back within budget
+     *
+     * @param directory Directory of the file
+     * @param timestamp UTC epoch second from the file name
+     * @param entry Parsed file
+     */
+    public synchronized void put(String directory, long timestamp, Entry entry)
+    {
+        Key key = new Key(directory, timestamp);
+        remove(key);
+
+        //An entry larger than the whole budget is never kept
+        if (entry.bytes > maxBytes)
+        {
+            return;
+        }
+
+        entries.put(key, entry);
+        usedBytes += entry.bytes;
+        trim();
+    }
+
+    /**
+     * Changes the byte budget, dropping entries if needed
+     *
+     * @param maxBytes Most bytes the entries may use
+     */
+    public synchronized void setMaxBytes(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    /**
+     * Drops every entry and resets the counters
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        usedBytes = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Returns the number of cached files
+     *
+     * @return number of entries
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated bytes in use
+     *
+     * @return bytes in use
+     */
+    public synchronized long getUsedBytes()
+    {
+        return usedBytes;
+    }
+
+    /**
+     * Returns the number of lookups that found a current entry
+     *
+     * @return hits
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that found nothing or a stale entry
+     *
+     * @return misses
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries dropped to stay within budget
+     *
+     * @return evictions
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Removes an entry if present
+     *
+     * @param key Key of the entry
+     */
+    private void remove(Key key)
+    {
+        Entry old = entries.remove(key);
+
+        if (old != null)
+        {
+            usedBytes -= old.bytes;
+        }
+    }
+
+    /**
+     * Drops least recently used entries until within budget
+     */
+    private void trim()
+    {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+
+        while (usedBytes > maxBytes && iterator.hasNext())
+        {
+            usedBytes -= iterator.next().getValue().bytes;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Directory and time of a cached file
+     */
+    private static final class Key
+    {
+        /**
+         * Directory of the file
+         */
+        private final String directory;
+
+        /**
+         * UTC epoch second from the file name
+         */
+        private final long timestamp;
+
+        /**
+         * Key constructor
+         *
+         * @param directory Directory of the file
+         * @param timestamp UTC epoch second from the file name
+         */
+        Key(String directory, long timestamp)
+        {
+            this.directory = directory;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Key))
+            {
+                return false;
+            }
+
+            Key key = (Key) other;
+            return timestamp == key.timestamp && directory.equals(key.directory);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(directory, timestamp);
+        }
+    }
+
+    /**
+     * Parsed file and statistics held by the cache. Nothing in an entry
+     * can change once it is cached: the store is frozen, Statistics have
+     * no setters and copy their sentinel counts in and out, and the maps
+     * and calendar are copied on the way in and on every get, so a caller
+     * changing its copy cannot affect later hits.
+     */
+    public static final class Entry
+    {
+        /**
+         * Parsed rows, frozen
+         */
+        private final ColumnStore dataCatalog;
+
+        /**
+         * Statistics by type and parameter
+         */
+        private final EnumMap<StatsType, TreeMap<String, Statistics>> statistics;
+
+        /**
+         * Header positions of each parameter
+         */
+        private final TreeMap<String, Integer> paramPositions;
+
+        /**
+         * UTC epoch second of the date line of the file
+         */
+        private final long epochSecond;
+
+        /**
+         * Modification time of the file when it was parsed
+         */
+        private final long lastModified;
+
+        /**
+         * Estimated size in bytes
+         */
+        private final long bytes;
+
+        /**
+         * Entry constructor, freezing the store and copying the maps
+         *
+         * @param dataCatalog Parsed rows
+         * @param statistics Statistics by type and parameter
+         * @param paramPositions Header positions of each parameter
+         * @param epochSecond UTC epoch second of the date line of the file
+         * @param lastModified Modification time of the file when it was parsed
+         */
+        public Entry(ColumnStore dataCatalog, EnumMap<StatsType, TreeMap<String, Statistics>> statistics,
+                TreeMap<String, Integer> paramPositions, long epochSecond, long lastModified)
+        {
+            dataCatalog.freeze();
+            this.dataCatalog = dataCatalog;
+            this.statistics = copyOf(statistics);
+            this.paramPositions = new TreeMap<String, Integer>(paramPositions);
+            this.epochSecond = epochSecond;
+            this.lastModified = lastModified;
+
+            long statisticsCount = 0;
+            for (TreeMap<String, Statistics> byParam : statistics.values())
+            {
+                statisticsCount += byParam.size();
+            }
+            this.bytes = dataCatalog.estimateBytes() + statisticsCount * STATISTICS_BYTES;
+        }
+
+        /**
+         * Returns the parsed rows, which are read only
+         *
+         * @return data catalog
+         */
+        public ColumnStore getDataCatalog()
+        {
+            return dataCatalog;
+        }
+
+        /**
+         * Returns a copy of the statistics by type and parameter
+         *
+         * @return statistics
+         */
+        public EnumMap<StatsType, TreeMap<String, Statistics>> getStatistics()
+        {
+            return copyOf(statistics);
+        }
+
+        /**
+         * Returns a copy of the header positions of each parameter
+         *
+         * @return parameter positions
+         */
+        public TreeMap<String, Integer> getParamPositions()
+        {
+            return new TreeMap<String, Integer>(paramPositions);
+        }
+
+        /**
+         * Returns the time of the date line of the file
+         *
+         * @return UTC epoch second
+         */
+        public long getEpochSecond()
+        {
+            return epochSecond;
+        }
+
+        /**
+         * Returns a new calendar of the date line of the file, built like
+         * MapData builds its own
+         *
+         * @return date time
+         */
+        public GregorianCalendar getDateTime()
+        {
+            return Statistics.createDateFromEpochSecond(epochSecond);
+        }
+
+        /**
+         * Returns the estimated size
+         *
+         * @return bytes
+         */
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        /**
+         * Copies the statistics maps. The Statistics themselves cannot be
+         * changed and are shared.
+         *
+         * @param statistics Statistics by type and parameter
+         * @return copy
+         */
+        private static EnumMap<StatsType, TreeMap<String, Statistics>> copyOf(
+                EnumMap<StatsType, TreeMap<String, Statistics>> statistics)
+        {
+            EnumMap<StatsType, TreeMap<String, Statistics>> copy =
+                    new EnumMap<StatsType, TreeMap<String, Statistics>>(StatsType.class);
+
+            for (Map.Entry<StatsType, TreeMap<String, Statistics>> byType : statistics.entrySet())
+            {
+                copy.put(byType.getKey(), new TreeMap<String, Statistics>(byType.getValue()));
+            }
+
+            return copy;
+        }
+    }
+}
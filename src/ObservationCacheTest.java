@@ -0,0 +1,166 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Observation Cache class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class ObservationCacheTest
+{
+    /**
+     * Creates an entry holding one row per station
+     *
+     * @param rows Number of rows
+     * @param lastModified Modification time to record
+     * @return entry
+     */
+    private ObservationCache.Entry entry(int rows, long lastModified)
+    {
+        ColumnStore store = new ColumnStore(new String[] {"TAIR"}, rows);
+        for (int i = 0; i < rows; i++)
+        {
+            store.setValue(0, store.addRow("ST" + i), i);
+        }
+
+        return new ObservationCache.Entry(store, new EnumMap<StatsType, TreeMap<String, Statistics>>(StatsType.class),
+                new TreeMap<String, Integer>(), 0, lastModified);
+    }
+
+    /**
+     * Test hits, misses and stale entries
+     */
+    @Test
+    public void testGet()
+    {
+        ObservationCache test = new ObservationCache(1024 * 1024);
+        test.put("data/", 100, entry(10, 5));
+
+        Assert.assertNotNull(test.get("data/", 100, 5));
+        Assert.assertNull(test.get("other/", 100, 5));
+        Assert.assertNull(test.get("data/", 100, 6));
+        Assert.assertNull(test.get("data/", 100, 5));
+        Assert.assertEquals(1, test.getHits());
+        Assert.assertEquals(3, test.getMisses());
+        Assert.assertEquals(0, test.size());
+    }
+
+    /**
+     * Test that the least recently used entry is dropped first
+     */
+    @Test
+    public void testEviction()
+    {
+        long bytes = entry(100, 0).getBytes();
+        ObservationCache test = new ObservationCache(bytes * 2);
+
+        test.put("data/", 1, entry(100, 0));
+        test.put("data/", 2, entry(100, 0));
+        test.get("data/", 1, 0);
+        test.put("data/", 3, entry(100, 0));
+
+        Assert.assertEquals(2, test.size());
+        Assert.assertEquals(1, test.getEvictions());
+        Assert.assertNotNull(test.get("data/", 1, 0));
+        Assert.assertNull(test.get("data/", 2, 0));
+        Assert.assertTrue(test.getUsedBytes() <= bytes * 2);
+    }
+
+    /**
+     * Test that MapData reuses a cached file until it is modified
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testMapDataUsesCache() throws IOException
+    {
+        Path directory = Files.createTempDirectory("cache");
+        File file = new File(directory.toFile(), "201808301745.mdf");
+        Files.copy(new File("data/201808301745.mdf").toPath(), file.toPath());
+        String path = directory.toString() + File.separator;
+        ObservationCache cache = ObservationCache.getInstance();
+
+        MapData first = new MapData(2018, 8, 30, 17, 45, path);
+        long hits = cache.getHits();
+        MapData second = new MapData(2018, 8, 30, 17, 45, path);
+
+        Assert.assertEquals(hits + 1, cache.getHits());
+        Assert.assertSame(first.dataCatalog, second.dataCatalog);
+
+        file.setLastModified(file.lastModified() + 60000);
+        MapData third = new MapData(2018, 8, 30, 17, 45, path);
+
+        Assert.assertNotSame(first.dataCatalog, third.dataCatalog);
+        Assert.assertEquals(first.toString(), third.toString());
+
+        file.delete();
+        directory.toFile().delete();
+    }
+
+    /**
+     * Test that a cache hit has the same time and statistics as an uncached
+     * load, and that changing what one hit returns does not change the next
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testHitMatchesUncached() throws IOException
+    {
+        Path directory = Files.createTempDirectory("cache");
+        File file = new File(directory.toFile(), "201808301745.mdf");
+        Files.copy(new File("data/201808301745.mdf").toPath(), file.toPath());
+        String path = directory.toString() + File.separator;
+
+        MapData uncached = new MapData(2018, 8, 30, 17, 45, path);
+        long hits = ObservationCache.getInstance().getHits();
+        MapData hit = new MapData(2018, 8, 30, 17, 45, path);
+
+        Assert.assertEquals(hits + 1, ObservationCache.getInstance().getHits());
+        Assert.assertEquals(MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 0, 0), hit.getEpochSecond());
+        Assert.assertEquals(uncached.getEpochSecond(), hit.getEpochSecond());
+        Assert.assertEquals(uncached.getDateTime().getTimeInMillis(), hit.getDateTime().getTimeInMillis());
+        Assert.assertEquals(uncached.statistics.keySet(), hit.statistics.keySet());
+
+        for (Map.Entry<StatsType, TreeMap<String, Statistics>> byType : uncached.statistics.entrySet())
+        {
+            for (Map.Entry<String, Statistics> byParam : byType.getValue().entrySet())
+            {
+                Statistics expected = byParam.getValue();
+                Statistics actual = hit.statistics.get(byType.getKey()).get(byParam.getKey());
+                Assert.assertEquals(expected.getValue(), actual.getValue(), 0);
+                Assert.assertEquals(expected.getStid(), actual.getStid());
+                Assert.assertEquals(expected.getEpochSecond(), actual.getEpochSecond());
+            }
+        }
+
+        //Change everything a hit hands out
+        hit.getDateTime().add(GregorianCalendar.YEAR, 1);
+        hit.statistics.get(StatsType.MAXIMUM).clear();
+        hit.paramPositions.clear();
+        try
+        {
+            hit.dataCatalog.setValue(0, 0, 1);
+            Assert.fail("A cached store is read only");
+        }
+        catch (IllegalStateException e)
+        {
+            Assert.assertTrue(hit.dataCatalog.isFrozen());
+        }
+
+        MapData next = new MapData(2018, 8, 30, 17, 45, path);
+        Assert.assertEquals(uncached.getDateTime().getTimeInMillis(), next.getDateTime().getTimeInMillis());
+        Assert.assertEquals(36.5, next.getStatistics(StatsType.MAXIMUM, "TAIR").getValue(), 0);
+        Assert.assertEquals(uncached.toString(), next.toString());
+
+        file.delete();
+        directory.toFile().delete();
+    }
+}
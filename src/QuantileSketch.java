@@ -0,0 +1,268 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Quantile Sketch class is a KLL style mergeable summary for estimating
+ * percentiles over more values than can be kept. Values are held in
+ * levels where each item of level h stands for 2^h values. When a level
+ * fills up it is sorted and every other item is promoted to the level
+ * above, so memory stays around 3k items however many values are added.
+ * Until the first level fills the sketch is exact.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class QuantileSketch
+{
+    /**
+     * Default capacity of the top level
+     */
+    public static final int DEFAULT_K = 200;
+
+    /**
+     * Smallest capacity of any level
+     */
+    private static final int MIN_CAPACITY = 8;
+
+    /**
+     * Capacity of the top level
+     */
+    private int k;
+
+    /**
+     * Items of each level, level 0 receives new values
+     */
+    private double[][] levels = new double[1][];
+
+    /**
+     * Number of items held in each level
+     */
+    private int[] sizes = new int[1];
+
+    /**
+     * Number of values added
+     */
+    private long count;
+
+    /**
+     * Chooses which half of a level is promoted
+     */
+    private Random random = new Random(0x5EED);
+
+    /**
+     * Sketch constructor with the default accuracy
+     */
+    public QuantileSketch()
+    {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Sketch constructor with a given top level capacity, larger is more accurate
+     *
+     * @param k Capacity of the top level
+     */
+    public QuantileSketch(int k)
+    {
+        this.k = Math.max(k, MIN_CAPACITY);
+        this.levels[0] = new double[capacity(0)];
+    }
+
+    /**
+     * Adds one value
+     *
+     * @param value Value
+     */
+    public void update(double value)
+    {
+        append(0, value);
+        count++;
+        compress();
+    }
+
+    /**
+     * Merges another sketch into this one
+     *
+     * @param other Sketch to merge
+     */
+    public void merge(QuantileSketch other)
+    {
+        for (int h = 0; h < other.levels.length; h++)
+        {
+            for (int i = 0; i < other.sizes[h]; i++)
+            {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        compress();
+    }
+
+    /**
+     * Returns the number of values added
+     *
+     * @return number of values
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Estimates a percentile. While nothing has been compacted the answer
+     * is exact and interpolated the same way as Selection.percentile.
+     *
+     * @param fraction Percentile as a fraction, 0.5 for the median
+     * @return percentile or NaN if nothing was added
+     */
+    public double quantile(double fraction)
+    {
+        if (count == 0)
+        {
+            return Double.NaN;
+        }
+
+        if (levels.length == 1)
+        {
+            return Selection.percentile(Arrays.copyOf(levels[0], sizes[0]), sizes[0], fraction);
+        }
+
+        int items = 0;
+        for (int h = 0; h < levels.length; h++)
+        {
+            items += sizes[h];
+        }
+
+        //Sort the items together with their weights
+        double[] values = new double[items];
+        long[] weights = new long[items];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++)
+        {
+            for (int i = 0; i < sizes[h]; i++)
+            {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                n++;
+            }
+        }
+        sortByValue(values, weights);
+
+        double target = Math.min(Math.max(fraction, 0.0), 1.0) * count;
+        long cumulative = 0;
+        for (int i = 0; i < items; i++)
+        {
+            cumulative += weights[i];
+            if (cumulative >= target)
+            {
+                return values[i];
+            }
+        }
+
+        return values[items - 1];
+    }
+
+    /**
+     * Capacity of a level, shrinking by 2/3 for each level below the top
+     *
+     * @param level Level number
+     * @return capacity
+     */
+    private int capacity(int level)
+    {
+        int depth = levels.length - 1 - level;
+
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+
+    /**
+     * Appends an item to a level, growing the level array if needed
+     *
+     * @param level Level number
+     * @param value Item
+     */
+    private void append(int level, double value)
+    {
+        while (level >= levels.length)
+        {
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            sizes = Arrays.copyOf(sizes, sizes.length + 1);
+            levels[levels.length - 1] = new double[MIN_CAPACITY];
+        }
+
+        if (sizes[level] == levels[level].length)
+        {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Promotes half of every level that is over capacity
+     */
+    private void compress()
+    {
+        boolean compressed = true;
+
+        //Adding a level shrinks the levels below it, so repeat until all fit
+        while (compressed)
+        {
+            compressed = false;
+
+            for (int h = 0; h < levels.length; h++)
+            {
+                if (sizes[h] >= capacity(h))
+                {
+                    double[] items = levels[h];
+                    int size = sizes[h];
+                    Arrays.sort(items, 0, size);
+
+                    //An odd item out stays behind at this level
+                    int keep = size % 2;
+                    int offset = random.nextBoolean() ? 1 : 0;
+                    double leftover = items[size - 1];
+
+                    sizes[h] = 0;
+                    for (int i = offset; i < size - keep; i += 2)
+                    {
+                        append(h + 1, items[i]);
+                    }
+                    if (keep == 1)
+                    {
+                        levels[h][sizes[h]++] = leftover;
+                    }
+                    compressed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts values ascending, moving their weights with them
+     *
+     * @param values Values
+     * @param weights Weight of each value
+     */
+    private static void sortByValue(double[] values, long[] weights)
+    {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+
+        double[] sortedValues = new double[values.length];
+        long[] sortedWeights = new long[weights.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, values.length);
+        System.arraycopy(sortedWeights, 0, weights, 0, weights.length);
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Quantile Sketch and Selection classes
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class QuantileSketchTest
+{
+    /**
+     * Test quickselect percentiles against a sorted copy
+     */
+    @Test
+    public void testSelectionPercentile()
+    {
+        Random random = new Random(42);
+        double[] values = new double[1001];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = random.nextInt(200) - 100;
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        Assert.assertEquals(sorted[500], Selection.percentile(values.clone(), values.length, 0.5), 0);
+        Assert.assertEquals(sorted[50], Selection.percentile(values.clone(), values.length, 0.05), 0);
+        Assert.assertEquals(sorted[1000], Selection.percentile(values.clone(), values.length, 1.0), 0);
+        Assert.assertEquals(2.5, Selection.percentile(new double[] {4, 1, 3, 2}, 4, 0.5), 0);
+        Assert.assertTrue(Double.isNaN(Selection.percentile(new double[0], 0, 0.5)));
+    }
+
+    /**
+     * Test that a small sketch is exact
+     */
+    @Test
+    public void testExactWhileSmall()
+    {
+        QuantileSketch test = new QuantileSketch();
+        double[] values = {34.7, 31.9, 33.3, 30.1, 35.2};
+
+        for (double value : values)
+        {
+            test.update(value);
+        }
+
+        Assert.assertEquals(33.3, test.quantile(0.5), 0);
+        Assert.assertEquals(5, test.getCount());
+    }
+
+    /**
+     * Test that merged sketches stay accurate and bounded
+     */
+    @Test
+    public void testMergeAccuracy()
+    {
+        QuantileSketch merged = new QuantileSketch();
+
+        //Ten "files" of 10,000 values from 0 to 99,999
+        for (int file = 0; file < 10; file++)
+        {
+            QuantileSketch partial = new QuantileSketch();
+            for (int i = 0; i < 10000; i++)
+            {
+                partial.update(i * 10 + file);
+            }
+            merged.merge(partial);
+        }
+
+        Assert.assertEquals(100000, merged.getCount());
+        Assert.assertEquals(50000, merged.quantile(0.5), 2000);
+        Assert.assertEquals(5000, merged.quantile(0.05), 2000);
+        Assert.assertEquals(95000, merged.quantile(0.95), 2000);
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Query Load Client class measures the throughput of a QueryServer on
+ * localhost. A number of threads send statistics and station requests
+ * back to back for a fixed time, then the requests per second and the
+ * median and 99th percentile latency are printed.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class QueryLoadClient
+{
+    /**
+     * Requests sent in turn by every thread
+     */
+    private static final String[] PATHS = {
+        "/statistics?param=TAIR&type=MAXIMUM",
+        "/statistics?param=TAIR&type=AVERAGE",
+        "/statistics?param=SRAD&type=MINIMUM",
+        "/station?stid=HOOK&param=TAIR",
+        "/station?stid=ACME&param=RELH"
+    };
+
+    /**
+     * Sends one request and reads the whole response
+     *
+     * @param url Request url
+     * @return HTTP status
+     * @throws IOException if the server cannot be reached
+     */
+    static int request(URL url) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        int status = connection.getResponseCode();
+        byte[] buffer = new byte[512];
+
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream())
+        {
+            while (in != null && in.read(buffer) >= 0)
+            {
+                //Drain so the connection can be kept alive
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Runs the load test
+     *
+     * @param args Port, 8080 when not given, threads, 16 when not given,
+     * and seconds, 10 when not given
+     * @throws Exception Checks to make sure the server can be reached
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        long millis = (args.length > 2 ? Long.parseLong(args[2]) : 10) * 1000;
+
+        URL[] urls = new URL[PATHS.length];
+        for (int i = 0; i < PATHS.length; i++)
+        {
+            urls[i] = new URL("http://localhost:" + port + PATHS[i]);
+        }
+
+        long end = System.currentTimeMillis() + millis;
+        AtomicInteger errors = new AtomicInteger();
+        ArrayList<long[]> latencies = new ArrayList<long[]>();
+        int[] counts = new int[threadCount];
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++)
+        {
+            final int thread = t;
+            final long[] nanos = new long[1 << 20];
+            latencies.add(nanos);
+
+            threads[t] = new Thread(() -> {
+                int sent = 0;
+                while (System.currentTimeMillis() < end && sent < nanos.length)
+                {
+                    long start = System.nanoTime();
+                    try
+                    {
+                        if (request(urls[(sent + thread) % urls.length]) != 200)
+                        {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    catch (IOException e)
+                    {
+                        errors.incrementAndGet();
+                    }
+                    nanos[sent++] = System.nanoTime() - start;
+                }
+                counts[thread] = sent;
+            });
+            threads[t].start();
+        }
+
+        int total = 0;
+        for (int t = 0; t < threadCount; t++)
+        {
+            threads[t].join();
+            total += counts[t];
+        }
+
+        long[] all = new long[total];
+        int filled = 0;
+        for (int t = 0; t < threadCount; t++)
+        {
+            System.arraycopy(latencies.get(t), 0, all, filled, counts[t]);
+            filled += counts[t];
+        }
+        Arrays.sort(all);
+
+        System.out.printf("%d threads, %d requests, %d errors%n", threadCount, total, errors.get());
+        System.out.printf("%.0f req/s%n", total * 1000.0 / millis);
+        if (total > 0)
+        {
+            System.out.printf("p50 %.3f ms, p99 %.3f ms%n", all[total / 2] / 1e6, all[(int) (total * 0.99)] / 1e6);
+        }
+    }
+}
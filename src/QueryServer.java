@@ -0,0 +1,326 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Query Server class answers statistics and station lookups over HTTP
+ * on localhost from shared MapDataSnapshots. Snapshots are kept in a
+ * ConcurrentSkipListMap keyed by file time, so requests read them
+ * without locking while new files are published. Each request runs on
+ * its own virtual thread when the JVM has them and on a cached thread
+ * pool otherwise.
+ *
+ * GET /statistics?param=TAIR&amp;type=MAXIMUM[&amp;time=epochSecond]
+ * GET /station?stid=ACME&amp;param=TAIR[&amp;time=epochSecond]
+ *
+ * Both answer with a JSON object and use the newest file at or before
+ * the time, or the newest file when no time is given. Statistics also
+ * carry the number of values of the parameter that held each sentinel code.
+ *
+ * Headers and body are written separately, so with Nagle's algorithm
+ * each response waits for a delayed ACK. main turns it off through the
+ * NODELAY_PROPERTY system property, which affects every HttpServer of
+ * the JVM, so a program embedding the server decides for itself.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class QueryServer
+{
+    /**
+     * System property that turns off Nagle's algorithm for every HttpServer
+     * created after it is set
+     */
+    public static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    /**
+     * Snapshots by UTC epoch second of the file
+     */
+    private ConcurrentSkipListMap<Long, MapDataSnapshot> snapshots = new ConcurrentSkipListMap<Long, MapDataSnapshot>();
+
+    /**
+     * HTTP server
+     */
+    private HttpServer server;
+
+    /**
+     * Executor the requests run on
+     */
+    private ExecutorService executor;
+
+    /**
+     * Query Server constructor, listening once start is called
+     *
+     * @param port Port on localhost, 0 for any free port
+     * @throws IOException Checks to make sure the port can be bound
+     */
+    public QueryServer(int port) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/statistics", this::handleStatistics);
+        server.createContext("/station", this::handleStation);
+    }
+
+    /**
+     * Creates an executor running each task on a new virtual thread, or a
+     * cached thread pool on JVMs without virtual threads
+     *
+     * @return executor
+     */
+    static ExecutorService newRequestExecutor()
+    {
+        try
+        {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException | UnsupportedOperationException e)
+        {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Makes a file available to queries, replacing any file with the same time
+     *
+     * @param snapshot Parsed file
+     */
+    public void publish(MapDataSnapshot snapshot)
+    {
+        snapshots.put(snapshot.getTime(), snapshot);
+    }
+
+    /**
+     * Starts answering requests
+     */
+    public void start()
+    {
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stops answering requests
+     */
+    public void stop()
+    {
+        server.stop(0);
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the port the server listens on
+     *
+     * @return port
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Answers /statistics
+     *
+     * @param exchange Request and response
+     * @throws IOException if the response cannot be written
+     */
+    private void handleStatistics(HttpExchange exchange) throws IOException
+    {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String paramId = query.get("param");
+        StatsType type;
+
+        try
+        {
+            type = StatsType.valueOf(query.getOrDefault("type", "AVERAGE"));
+        }
+        catch (IllegalArgumentException e)
+        {
+            respond(exchange, 400, error("Unknown type"));
+            return;
+        }
+
+        MapDataSnapshot snapshot = snapshotAt(query.get("time"));
+        Statistics stat = snapshot == null || paramId == null ? null : snapshot.getStatistics(type, paramId);
+
+        if (stat == null)
+        {
+            respond(exchange, 404, error("No statistics"));
+            return;
+        }
+
+        StringBuilder json = new StringBuilder(192);
+        ReportWriter.appendJson(json, paramId, stat);
+
+        respond(exchange, 200, json.toString());
+    }
+
+    /**
+     * Answers /station
+     *
+     * @param exchange Request and response
+     * @throws IOException if the response cannot be written
+     */
+    private void handleStation(HttpExchange exchange) throws IOException
+    {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String stid = query.get("stid");
+        String paramId = query.get("param");
+        MapDataSnapshot snapshot = snapshotAt(query.get("time"));
+
+        if (snapshot == null || stid == null || paramId == null)
+        {
+            respond(exchange, 404, error("No file"));
+            return;
+        }
+
+        double value = snapshot.getValue(stid, paramId);
+        if (Double.isNaN(value))
+        {
+            respond(exchange, 404, error("No value"));
+            return;
+        }
+
+        StringBuilder json = new StringBuilder(96);
+        json.append("{\"stid\":").append(ReportWriter.quote(stid));
+        json.append(",\"param\":").append(ReportWriter.quote(paramId));
+        json.append(",\"value\":").append(value);
+        json.append(",\"time\":").append(ReportWriter.quote(Statistics.createStringFromEpochSecond(snapshot.getTime())));
+        json.append('}');
+
+        respond(exchange, 200, json.toString());
+    }
+
+    /**
+     * Finds the newest file at or before a time
+     *
+     * @param time UTC epoch second as text, or null for the newest file
+     * @return snapshot or null if there is none
+     */
+    private MapDataSnapshot snapshotAt(String time)
+    {
+        Map.Entry<Long, MapDataSnapshot> entry;
+
+        try
+        {
+            entry = time == null ? snapshots.lastEntry() : snapshots.floorEntry(Long.parseLong(time));
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * Writes a JSON response
+     *
+     * @param exchange Request and response
+     * @param status HTTP status
+     * @param body JSON body
+     * @throws IOException if the response cannot be written
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Splits a query string into its parameters
+     *
+     * @param rawQuery Query string, may be null
+     * @return parameters by name
+     * @throws UnsupportedEncodingException never, UTF-8 is always supported
+     */
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException
+    {
+        HashMap<String, String> query = new HashMap<String, String>();
+
+        if (rawQuery == null)
+        {
+            return query;
+        }
+
+        for (String pair : rawQuery.split("&"))
+        {
+            int equals = pair.indexOf('=');
+            if (equals > 0)
+            {
+                query.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+
+        return query;
+    }
+
+    /**
+     * Builds a JSON error object
+     *
+     * @param message Error message
+     * @return JSON text
+     */
+    private static String error(String message)
+    {
+        return "{\"error\":" + ReportWriter.quote(message) + "}";
+    }
+
+    /**
+     * Parses every file of a directory and serves them
+     *
+     * @param args Directory, data/ when not given, and port, 8080 when not given
+     * @throws IOException Checks to make sure the port can be bound
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String directory = args.length > 0 ? args[0] : "data/";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+
+        //Read once, when the first HttpServer of the JVM is created
+        if (System.getProperty(NODELAY_PROPERTY) == null)
+        {
+            System.setProperty(NODELAY_PROPERTY, "true");
+        }
+        QueryServer server = new QueryServer(port);
+
+        for (Map.Entry<Long, File> file : new MdfDirectoryLoader(directory).listFiles(Long.MIN_VALUE, Long.MAX_VALUE).entrySet())
+        {
+            LocalDateTime utc = LocalDateTime.ofEpochSecond(file.getKey(), 0, ZoneOffset.UTC);
+            MapData mapData = new MapData(utc.getYear(), utc.getMonthValue(), utc.getDayOfMonth(), utc.getHour(),
+                    utc.getMinute(), directory);
+            server.publish(new MapDataSnapshot(file.getKey(), mapData));
+        }
+
+        server.start();
+        System.out.println("Serving " + directory + " on http://localhost:" + server.getPort() + "/");
+    }
+}
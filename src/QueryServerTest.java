@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Query Server and Map Data Snapshot classes
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class QueryServerTest
+{
+    /**
+     * Reads a response body
+     *
+     * @param server Running server
+     * @param path Path and query
+     * @return status followed by a space and the body
+     * @throws IOException if the server cannot be reached
+     */
+    private String get(QueryServer server, String path) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path)
+                .openConnection();
+        int status = connection.getResponseCode();
+
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream())
+        {
+            return status + " " + new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Starts a server over the August 30 17:45 file
+     *
+     * @return running server
+     * @throws IOException Make sure inputs are valid
+     */
+    private QueryServer startServer() throws IOException
+    {
+        QueryServer server = new QueryServer(0);
+        long time = MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, 45);
+
+        server.publish(new MapDataSnapshot(time, new MapData(2018, 8, 30, 17, 45, "data/")));
+        server.start();
+
+        return server;
+    }
+
+    /**
+     * Test the snapshot answers like the map data it was taken from
+     */
+    @Test
+    public void testSnapshot()
+    {
+        MapData mapData = new MapData(2018, 8, 30, 17, 45, "data/");
+        MapDataSnapshot test = new MapDataSnapshot(MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, 45), mapData);
+
+        Assert.assertEquals(36.5, test.getStatistics(StatsType.MAXIMUM, "TAIR").getValue(), .001);
+        Assert.assertEquals("MIAM", test.getStatistics(StatsType.MINIMUM, "TAIR").getStid());
+        Assert.assertEquals(mapData.getIndexOf("TAIR"), test.getIndexOf("TAIR"));
+        Assert.assertEquals(36.5, test.getValue("HOOK", "TAIR"), .001);
+        Assert.assertTrue(Double.isNaN(test.getValue("ZZZZ", "TAIR")));
+        Assert.assertTrue(Double.isNaN(test.getValue("HOOK", "ZZZZ")));
+    }
+
+    /**
+     * Test statistics and station requests and their errors
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testRequests() throws IOException
+    {
+        QueryServer server = startServer();
+
+        try
+        {
+            String max = get(server, "/statistics?param=TAIR&type=MAXIMUM");
+            Assert.assertTrue(max, max.startsWith("200 "));
+            Assert.assertTrue(max, max.contains("\"value\":36.5"));
+            Assert.assertTrue(max, max.contains("\"stid\":\"HOOK\""));
+
+            String station = get(server, "/station?stid=HOOK&param=TAIR");
+            Assert.assertTrue(station, station.startsWith("200 "));
+            Assert.assertTrue(station, station.contains("\"value\":36.5"));
+
+            Assert.assertTrue(get(server, "/statistics?param=TAIR&type=MODE").startsWith("400 "));
+            Assert.assertTrue(get(server, "/statistics?param=ZZZZ&type=MAXIMUM").startsWith("404 "));
+            Assert.assertTrue(get(server, "/statistics?param=TAIR&type=MAXIMUM&time=0").startsWith("404 "));
+            Assert.assertTrue(get(server, "/station?stid=ZZZZ&param=TAIR").startsWith("404 "));
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    /**
+     * Test many clients at once all get the same answer
+     * @throws Exception Make sure inputs are valid
+     */
+    @Test
+    public void testConcurrentRequests() throws Exception
+    {
+        QueryServer server = startServer();
+        AtomicInteger correct = new AtomicInteger();
+        ArrayList<Thread> clients = new ArrayList<Thread>();
+
+        try
+        {
+            for (int t = 0; t < 8; t++)
+            {
+                Thread client = new Thread(() -> {
+                    for (int i = 0; i < 25; i++)
+                    {
+                        try
+                        {
+                            if (get(server, "/statistics?param=TAIR&type=MAXIMUM").contains("\"stid\":\"HOOK\""))
+                            {
+                                correct.incrementAndGet();
+                            }
+                        }
+                        catch (IOException e)
+                        {
+                            //Counted as wrong
+                        }
+                    }
+                });
+                clients.add(client);
+                client.start();
+            }
+
+            for (Thread client : clients)
+            {
+                client.join();
+            }
+        }
+        finally
+        {
+            server.stop();
+        }
+
+        Assert.assertEquals(8 * 25, correct.get());
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Raster class is a grid of float values over a latitude and longitude
+ * box with square cells of a given size in degrees. Row 0 is the
+ * northern edge and column 0 the western edge, as in an image, and the
+ * value of a cell is the value at its center. Cells without a value hold
+ * NaN. A raster is written as an ESRI ASCII grid, which GIS tools and
+ * plotting libraries read directly.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class Raster
+{
+    /**
+     * Value written for NaN cells of an ASCII grid
+     */
+    public static final int NODATA = -9999;
+
+    /**
+     * Southern edge in degrees north
+     */
+    private double minLatitude;
+
+    /**
+     * Western edge in degrees east
+     */
+    private double minLongitude;
+
+    /**
+     * Size of a cell in degrees
+     */
+    private double resolution;
+
+    /**
+     * Number of columns
+     */
+    private int width;
+
+    /**
+     * Number of rows
+     */
+    private int height;
+
+    /**
+     * Values row by row from the north, NaN where there is no value
+     */
+    private float[] values;
+
+    /**
+     * Raster constructor covering a box, rounded out to whole cells
+     *
+     * @param minLatitude Southern edge in degrees north
+     * @param minLongitude Western edge in degrees east
+     * @param maxLatitude Northern edge in degrees north
+     * @param maxLongitude Eastern edge in degrees east
+     * @param resolution Size of a cell in degrees
+     * @throws IllegalArgumentException if the box is empty or the resolution is not positive
+     */
+    public Raster(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, double resolution)
+    {
+        if (!(resolution > 0) || !(maxLatitude > minLatitude) || !(maxLongitude > minLongitude))
+        {
+            throw new IllegalArgumentException("Empty raster or bad resolution: " + resolution);
+        }
+
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.resolution = resolution;
+        this.width = (int) Math.ceil((maxLongitude - minLongitude) / resolution - 1e-9);
+        this.height = (int) Math.ceil((maxLatitude - minLatitude) / resolution - 1e-9);
+        this.values = new float[width * height];
+        Arrays.fill(values, Float.NaN);
+    }
+
+    /**
+     * Raster constructor with the same cells as another raster, every value NaN
+     *
+     * @param grid Raster whose cells are copied
+     */
+    public Raster(Raster grid)
+    {
+        this.minLatitude = grid.minLatitude;
+        this.minLongitude = grid.minLongitude;
+        this.resolution = grid.resolution;
+        this.width = grid.width;
+        this.height = grid.height;
+        this.values = new float[width * height];
+        Arrays.fill(values, Float.NaN);
+    }
+
+    /**
+     * Returns the number of columns
+     *
+     * @return width in cells
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the number of rows
+     *
+     * @return height in cells
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Returns the size of a cell
+     *
+     * @return resolution in degrees
+     */
+    public double getResolution()
+    {
+        return resolution;
+    }
+
+    /**
+     * Returns the latitude of the centers of a row
+     *
+     * @param row Row, 0 at the north
+     * @return degrees north
+     */
+    public double getLatitude(int row)
+    {
+        return minLatitude + (height - row - 0.5) * resolution;
+    }
+
+    /**
+     * Returns the longitude of the centers of a column
+     *
+     * @param column Column, 0 at the west
+     * @return degrees east
+     */
+    public double getLongitude(int column)
+    {
+        return minLongitude + (column + 0.5) * resolution;
+    }
+
+    /**
+     * Returns the value of a cell
+     *
+     * @param row Row, 0 at the north
+     * @param column Column, 0 at the west
+     * @return value or NaN
+     */
+    public float get(int row, int column)
+    {
+        return values[row * width + column];
+    }
+
+    /**
+     * Sets the value of a cell
+     *
+     * @param row Row, 0 at the north
+     * @param column Column, 0 at the west
+     * @param value Value or NaN
+     */
+    public void set(int row, int column, float value)
+    {
+        values[row * width + column] = value;
+    }
+
+    /**
+     * Returns the values row by row from the north, shared with the raster
+     *
+     * @return values
+     */
+    public float[] getValues()
+    {
+        return values;
+    }
+
+    /**
+     * Writes the raster as an ESRI ASCII grid
+     *
+     * @param out Writer, not closed
+     * @throws IOException if the grid cannot be written
+     */
+    public void writeAscii(Writer out) throws IOException
+    {
+        StringBuilder line = new StringBuilder(width * 8);
+
+        out.write("ncols " + width + "\n");
+        out.write("nrows " + height + "\n");
+        out.write("xllcorner " + minLongitude + "\n");
+        out.write("yllcorner " + minLatitude + "\n");
+        out.write("cellsize " + resolution + "\n");
+        out.write("NODATA_value " + NODATA + "\n");
+
+        for (int row = 0; row < height; row++)
+        {
+            line.setLength(0);
+            for (int column = 0; column < width; column++)
+            {
+                float value = get(row, column);
+                if (column > 0)
+                {
+                    line.append(' ');
+                }
+                if (Float.isNaN(value))
+                {
+                    line.append(NODATA);
+                }
+                else
+                {
+                    ReportWriter.appendFixed(line, value, 2);
+                }
+            }
+            line.append('\n');
+            out.append(line);
+        }
+    }
+
+    /**
+     * Writes the raster as an ESRI ASCII grid file
+     *
+     * @param path File to write, ex: 201808301745-TAIR.asc
+     * @throws IOException if the file cannot be written
+     */
+    public void writeAscii(Path path) throws IOException
+    {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.US_ASCII))
+        {
+            writeAscii(out);
+        }
+    }
+}
@@ -0,0 +1,531 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Report Writer class renders the MapData report and exports statistics
+ * of many files as CSV or JSON. Reports are built from precomputed
+ * static segments with a fixed precision formatter instead of
+ * String.format, and bulk output is encoded into one reusable buffer
+ * that is written to a channel whenever it fills, so thousands of files
+ * can be written without building one large String.
+ *
+ * A writer reuses its buffers and is meant for one thread at a time.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class ReportWriter
+{
+    /**
+     * Line of 57 "=" signs separating the sections of a report
+     */
+    private static final String LINE_BREAK = "=========================================================";
+
+    /**
+     * Name used as the station of averages
+     */
+    private static final String MESONET = "Mesonet";
+
+    /**
+     * Parameters of the report, in order
+     */
+    private static final String[] REPORT_PARAMS = {"TAIR", "TA9M", "SRAD"};
+
+    /**
+     * Text before the value of each line of the report, by parameter then maximum, minimum, average
+     */
+    private static final String[][] REPORT_LABELS = {
+        {"Maximum Air Temperature[1.5m] = ", "Minimum Air Temperature[1.5m] = ", "Average Air Temperature[1.5m] = "},
+        {"Maximum Air Temperature[9.0m] = ", "Minimum Air Temperature[9.0m] = ", "Average Air Temperature[9.0m] = "},
+        {"Maximum Solar Radiation[1.5m] = ", "Minimum Air Temperature[1.5m] = ", "Average Solar Radiation[1.5m] = "}
+    };
+
+    /**
+     * Unit and station separator of each parameter of the report
+     */
+    private static final String[] REPORT_UNITS = {" C at ", " C at ", " W/m^2 at "};
+
+    /**
+     * Types of the lines of each section
+     */
+    private static final StatsType[] REPORT_TYPES = {StatsType.MAXIMUM, StatsType.MINIMUM, StatsType.AVERAGE};
+
+    /**
+     * Powers of ten for the fixed precision formatter
+     */
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L};
+
+    /**
+     * Largest scaled value formatted without BigDecimal, well inside the
+     * range where doubles hold every integer
+     */
+    private static final double FAST_LIMIT = 1e15;
+
+    /**
+     * Bytes collected before they are written to the channel
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Text of the record being written
+     */
+    private StringBuilder record = new StringBuilder(1024);
+
+    /**
+     * Report Writer constructor with a 64 KB buffer
+     */
+    public ReportWriter()
+    {
+        this(1 << 16);
+    }
+
+    /**
+     * Report Writer constructor
+     *
+     * @param bufferSize Bytes collected before each channel write
+     */
+    public ReportWriter(int bufferSize)
+    {
+        buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 256));
+    }
+
+    /**
+     * Appends the report of a file, the same text as MapData.toString
+     *
+     * @param mapData Parsed file
+     * @param out Text the report is appended to
+     */
+    public static void appendReport(MapData mapData, StringBuilder out)
+    {
+        GregorianCalendar dateTime = mapData.getDateTime();
+
+        out.append(LINE_BREAK).append("\n=== ");
+        appendPadded(out, dateTime.get(GregorianCalendar.YEAR), 2).append('-');
+        appendPadded(out, dateTime.get(GregorianCalendar.MONTH), 2).append('-');
+        appendPadded(out, dateTime.get(GregorianCalendar.DAY_OF_MONTH), 2).append(' ');
+        appendPadded(out, dateTime.get(GregorianCalendar.HOUR), 2).append(':');
+        appendPadded(out, dateTime.get(GregorianCalendar.MINUTE), 2).append(':');
+        appendPadded(out, dateTime.get(GregorianCalendar.SECOND), 2).append(" ===\n");
+        out.append(LINE_BREAK).append('\n');
+
+        for (int param = 0; param < REPORT_PARAMS.length; param++)
+        {
+            if (param > 0)
+            {
+                out.append(LINE_BREAK).append('\n').append(LINE_BREAK).append('\n');
+            }
+
+            for (int line = 0; line < REPORT_TYPES.length; line++)
+            {
+                Statistics stat = mapData.getStatistics(REPORT_TYPES[line], REPORT_PARAMS[param]);
+
+                out.append(REPORT_LABELS[param][line]);
+                appendFixed(out, stat == null ? Double.NaN : stat.getValue(), 1);
+                out.append(REPORT_UNITS[param]);
+                out.append(REPORT_TYPES[line] == StatsType.AVERAGE ? MESONET : stat == null ? null : stat.getStid());
+                out.append(" \n");
+            }
+        }
+
+        out.append(LINE_BREAK);
+    }
+
+    /**
+     * Appends the report of a file to any Appendable
+     *
+     * @param mapData Parsed file
+     * @param out Destination
+     * @throws IOException if the destination cannot be written
+     */
+    public void writeReport(MapData mapData, Appendable out) throws IOException
+    {
+        record.setLength(0);
+        appendReport(mapData, record);
+        out.append(record);
+    }
+
+    /**
+     * Writes the report of every file, one after another, to a channel
+     *
+     * @param files Parsed files
+     * @param out Destination
+     * @throws IOException if the channel cannot be written
+     */
+    public void writeReports(Iterable<MapData> files, WritableByteChannel out) throws IOException
+    {
+        for (MapData mapData : files)
+        {
+            record.setLength(0);
+            appendReport(mapData, record);
+            record.append('\n');
+            encode(record, out);
+        }
+
+        flush(out);
+    }
+
+    /**
+     * Writes one CSV row per file, parameter and type of statistic. The
+     * last columns count the values of the parameter that held each sentinel code.
+     *
+     * @param files Parsed files
+     * @param paramIds Parameters to export, or null for every parameter of each file
+     * @param out Destination
+     * @throws IOException if the channel cannot be written
+     */
+    public void writeCsv(Iterable<MapData> files, String[] paramIds, WritableByteChannel out) throws IOException
+    {
+        record.setLength(0);
+        record.append("time,param,type,value,stid,stations");
+        for (int code : ValidityRules.getGlobal().getSentinels())
+        {
+            record.append(',').append(code);
+        }
+        record.append('\n');
+        encode(record, out);
+
+        for (MapData mapData : files)
+        {
+            for (String paramId : paramIdsOf(mapData, paramIds))
+            {
+                for (StatsType type : StatsType.values())
+                {
+                    Statistics stat = mapData.getStatistics(type, paramId);
+                    if (stat == null)
+                    {
+                        continue;
+                    }
+
+                    record.setLength(0);
+                    record.append(stat.getUTCDateTimeString()).append(',').append(paramId).append(',');
+                    record.append(type.name()).append(',').append(stat.getValue()).append(',');
+                    record.append(stat.getStid()).append(',').append(stat.getNumberOfReportingStations());
+                    for (int count : stat.getSentinelCounts().values())
+                    {
+                        record.append(',').append(count);
+                    }
+                    record.append('\n');
+                    encode(record, out);
+                }
+            }
+        }
+
+        flush(out);
+    }
+
+    /**
+     * Writes a JSON array with one object per file, parameter and type of
+     * statistic, the same objects the QueryServer answers with
+     *
+     * @param files Parsed files
+     * @param paramIds Parameters to export, or null for every parameter of each file
+     * @param out Destination
+     * @throws IOException if the channel cannot be written
+     */
+    public void writeJson(Iterable<MapData> files, String[] paramIds, WritableByteChannel out) throws IOException
+    {
+        String separator = "[\n";
+
+        for (MapData mapData : files)
+        {
+            for (String paramId : paramIdsOf(mapData, paramIds))
+            {
+                for (StatsType type : StatsType.values())
+                {
+                    Statistics stat = mapData.getStatistics(type, paramId);
+                    if (stat == null)
+                    {
+                        continue;
+                    }
+
+                    record.setLength(0);
+                    record.append(separator);
+                    appendJson(record, paramId, stat);
+                    encode(record, out);
+                    separator = ",\n";
+                }
+            }
+        }
+
+        record.setLength(0);
+        record.append(separator.equals("[\n") ? "[" : "\n").append("]\n");
+        encode(record, out);
+        flush(out);
+    }
+
+    /**
+     * Exports files to a .csv or .json file, chosen by its extension
+     *
+     * @param path Output file, replaced if it exists
+     * @param files Parsed files
+     * @param paramIds Parameters to export, or null for every parameter of each file
+     * @throws IOException if the file cannot be written
+     */
+    public void export(Path path, Iterable<MapData> files, String[] paramIds) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            if (path.toString().endsWith(".json"))
+            {
+                writeJson(files, paramIds, channel);
+            }
+            else
+            {
+                writeCsv(files, paramIds, channel);
+            }
+        }
+    }
+
+    /**
+     * Appends one statistic as a JSON object
+     *
+     * @param out Text the object is appended to
+     * @param paramId Parameter id of the statistic
+     * @param stat Statistic
+     */
+    static void appendJson(StringBuilder out, String paramId, Statistics stat)
+    {
+        out.append("{\"param\":").append(quote(paramId));
+        out.append(",\"type\":").append(quote(stat.getStatType().name()));
+        out.append(",\"value\":").append(stat.getValue());
+        out.append(",\"stid\":").append(quote(stat.getStid()));
+        out.append(",\"stations\":").append(stat.getNumberOfReportingStations());
+        out.append(",\"time\":").append(quote(stat.getUTCDateTimeString()));
+        out.append(",\"sentinels\":{");
+
+        String separator = "";
+        for (Map.Entry<Integer, Integer> sentinel : stat.getSentinelCounts().entrySet())
+        {
+            out.append(separator).append('"').append(sentinel.getKey()).append("\":").append(sentinel.getValue());
+            separator = ",";
+        }
+        out.append("}}");
+    }
+
+    /**
+     * Quotes a string for JSON
+     *
+     * @param text Text, may be null
+     * @return quoted text or null
+     */
+    static String quote(String text)
+    {
+        if (text == null)
+        {
+            return "null";
+        }
+
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                quoted.append('\\');
+            }
+            if (c < ' ')
+            {
+                quoted.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                quoted.append(c);
+            }
+        }
+
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Appends a number with a fixed number of decimals, the same text as
+     * String.format("%.Nf"), which rounds the shortest decimal form of the
+     * double half up. Values whose scaled fraction is not close to one
+     * half are rounded with Math.round; the rest go through BigDecimal.
+     *
+     * @param out Text the number is appended to
+     * @param value Number
+     * @param decimals Digits after the point, 0 to 6
+     * @return out
+     */
+    public static StringBuilder appendFixed(StringBuilder out, double value, int decimals)
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            return out.append(value);
+        }
+
+        //The sign bit, so -0.0 and values rounding to zero keep their minus as in String.format
+        boolean negative = Double.doubleToRawLongBits(value) < 0;
+        double magnitude = Math.abs(value);
+        double scaled = magnitude * POWERS_OF_TEN[decimals];
+        double fraction = scaled - Math.floor(scaled);
+
+        if (scaled >= FAST_LIMIT || Math.abs(fraction - 0.5) < 1e-6)
+        {
+            String exact = new BigDecimal(Double.toString(magnitude)).setScale(decimals, RoundingMode.HALF_UP).toPlainString();
+            return out.append(negative ? "-" : "").append(exact);
+        }
+
+        long rounded = Math.round(scaled);
+        long whole = rounded / POWERS_OF_TEN[decimals];
+        long rest = rounded % POWERS_OF_TEN[decimals];
+
+        if (negative)
+        {
+            out.append('-');
+        }
+        out.append(whole);
+        if (decimals > 0)
+        {
+            out.append('.');
+            appendPadded(out, rest, decimals);
+        }
+
+        return out;
+    }
+
+    /**
+     * Appends a non-negative number padded with zeros to a width
+     *
+     * @param out Text the number is appended to
+     * @param number Number
+     * @param width Smallest number of digits
+     * @return out
+     */
+    private static StringBuilder appendPadded(StringBuilder out, long number, int width)
+    {
+        for (int digits = Long.toString(number).length(); digits < width; digits++)
+        {
+            out.append('0');
+        }
+
+        return out.append(number);
+    }
+
+    /**
+     * Lists the parameters to export from a file
+     *
+     * @param mapData Parsed file
+     * @param paramIds Requested parameters, or null for every parameter of the file
+     * @return parameter ids
+     */
+    private static Iterable<String> paramIdsOf(MapData mapData, String[] paramIds)
+    {
+        if (paramIds != null)
+        {
+            return Arrays.asList(paramIds);
+        }
+
+        ColumnStore catalog = mapData.getDataCatalog();
+        ArrayList<String> all = new ArrayList<String>();
+        if (catalog != null)
+        {
+            for (String paramId : catalog.getParamIds())
+            {
+                all.add(paramId);
+            }
+        }
+        else
+        {
+            all.addAll(mapData.statistics.get(StatsType.AVERAGE).keySet());
+        }
+
+        return all;
+    }
+
+    /**
+     * Copies text into the buffer as ASCII, writing the buffer out whenever it fills
+     *
+     * @param text Text to write
+     * @param out Destination
+     * @throws IOException if the channel cannot be written
+     */
+    private void encode(CharSequence text, WritableByteChannel out) throws IOException
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (!buffer.hasRemaining())
+            {
+                flush(out);
+            }
+
+            char c = text.charAt(i);
+            buffer.put(c < 0x80 ? (byte) c : (byte) '?');
+        }
+    }
+
+    /**
+     * Writes out everything in the buffer
+     *
+     * @param out Destination
+     * @throws IOException if the channel cannot be written
+     */
+    private void flush(WritableByteChannel out) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Exports the statistics of every file of a directory, reading each
+     * file LAZY so only the exported parameters are parsed
+     *
+     * @param args Directory, output .csv or .json file, then parameters, TAIR, TA9M and SRAD when none are given
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: java ReportWriter directory output.csv|output.json [param ...]");
+            return;
+        }
+
+        String directory = args[0].endsWith("/") ? args[0] : args[0] + "/";
+        String[] paramIds = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : REPORT_PARAMS;
+        ArrayList<Long> times = new ArrayList<Long>(
+                new MdfDirectoryLoader(directory).listFiles(Long.MIN_VALUE, Long.MAX_VALUE).keySet());
+
+        //Each file is opened only when the export reaches it
+        Iterable<MapData> files = () -> new Iterator<MapData>()
+        {
+            private int next = 0;
+
+            public boolean hasNext()
+            {
+                return next < times.size();
+            }
+
+            public MapData next()
+            {
+                LocalDateTime utc = LocalDateTime.ofEpochSecond(times.get(next++), 0, ZoneOffset.UTC);
+                return new MapData(utc.getYear(), utc.getMonthValue(), utc.getDayOfMonth(), utc.getHour(),
+                        utc.getMinute(), directory, LoadMode.LAZY);
+            }
+        };
+
+        new ReportWriter().export(Paths.get(args[1]), files, paramIds);
+        System.out.println("Exported " + times.size() + " files to " + args[1]);
+    }
+}
@@ -0,0 +1,105 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Report Writer class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class ReportWriterTest
+{
+    /**
+     * Test the fixed precision formatter against String.format
+     */
+    @Test
+    public void testAppendFixed()
+    {
+        double[] values = {0.0, -0.0, 0.05, 0.15, 0.25, 1.005, 2.675, -0.04, -0.05, 36.5, 820.5487, 899.95,
+            -999, 123456789.125, 1e17, Double.NaN, Double.POSITIVE_INFINITY};
+
+        for (double value : values)
+        {
+            for (int decimals = 0; decimals <= 3; decimals++)
+            {
+                Assert.assertEquals(String.format("%." + decimals + "f", value),
+                        ReportWriter.appendFixed(new StringBuilder(), value, decimals).toString());
+            }
+        }
+
+        Random random = new Random(20181023);
+        for (int i = 0; i < 100000; i++)
+        {
+            //Values with few digits, as in the data files, hit exact halves often
+            double value = random.nextBoolean() ? (random.nextInt(2000000) - 1000000) / 100.0 : random.nextGaussian() * 1000;
+            Assert.assertEquals(String.format("%.1f", value), ReportWriter.appendFixed(new StringBuilder(), value, 1).toString());
+        }
+    }
+
+    /**
+     * Test the report matches the original String.format layout
+     */
+    @Test
+    public void testReport()
+    {
+        MapData mapData = new MapData(2018, 8, 30, 17, 45, "data/");
+        String lineBreak = "=========================================================";
+        String expected = lineBreak + "\n=== 2018-08-30 00:00:00 ===\n" + lineBreak + "\n"
+                + String.format("Maximum Air Temperature[1.5m] = %.1f C at %s \n", 36.5, "HOOK")
+                + String.format("Minimum Air Temperature[1.5m] = %.1f C at %s \n", 20.8, "MIAM")
+                + String.format("Average Air Temperature[1.5m] = %.1f C at %s \n",
+                        mapData.getStatistics(StatsType.AVERAGE, "TAIR").getValue(), "Mesonet");
+
+        Assert.assertTrue(mapData.toString(), mapData.toString().startsWith(expected));
+        Assert.assertTrue(mapData.toString().endsWith("Average Solar Radiation[1.5m] = 820.5 W/m^2 at Mesonet \n" + lineBreak));
+
+        StringBuilder out = new StringBuilder();
+        try
+        {
+            new ReportWriter().writeReport(mapData, out);
+        }
+        catch (IOException e)
+        {
+            Assert.fail(e.getMessage());
+        }
+        Assert.assertEquals(mapData.toString(), out.toString());
+    }
+
+    /**
+     * Test CSV and JSON export through a small buffer that fills many times
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testExport() throws IOException
+    {
+        List<MapData> files = Arrays.asList(new MapData(2018, 8, 1, 7, 0, "data/"),
+                new MapData(2018, 8, 30, 17, 45, "data/", LoadMode.LAZY));
+        ReportWriter test = new ReportWriter(256);
+        File csv = File.createTempFile("export", ".csv");
+        File json = File.createTempFile("export", ".json");
+        csv.deleteOnExit();
+        json.deleteOnExit();
+
+        test.export(csv.toPath(), files, new String[] {"TAIR", "ZZZZ"});
+        List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.US_ASCII);
+        Assert.assertEquals(1 + 2 * StatsType.values().length, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("time,param,type,value,stid,stations,"));
+        Assert.assertTrue(lines.contains("2018-08-30 00:00:00 UTC,TAIR,MAXIMUM,36.5,HOOK,"
+                + files.get(1).getStatistics(StatsType.MAXIMUM, "TAIR").getNumberOfReportingStations() + ",0,0,0,4"));
+
+        test.export(json.toPath(), files, null);
+        String text = new String(Files.readAllBytes(json.toPath()), StandardCharsets.US_ASCII);
+        Assert.assertTrue(text.startsWith("[\n{\"param\":"));
+        Assert.assertTrue(text.endsWith("}\n]\n"));
+        Assert.assertTrue(text.contains("{\"param\":\"TAIR\",\"type\":\"MAXIMUM\",\"value\":36.5,\"stid\":\"HOOK\""));
+        Assert.assertTrue(text.contains("\"param\":\"PRES\""));
+    }
+}
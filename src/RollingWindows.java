@@ -0,0 +1,258 @@
+import java.util.Arrays;
+
+/**
+ * Rolling Windows class keeps the last few readings of one parameter at
+ * every station in ring buffers of primitives, with the running mean and
+ * sum of squared deviations of each window. Stations are indexed by
+ * dictionary id and every window lives in one flat array, so a station
+ * costs the same fixed number of bytes however long the detector runs.
+ * Adding a reading is O(1): the oldest reading is swapped for the new one
+ * in the running mean and squares, which are recomputed from the window
+ * each time it wraps so rounding cannot build up.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class RollingWindows
+{
+    /**
+     * Number of readings in a full window
+     */
+    private int window;
+
+    /**
+     * Readings of every station, window slots from station * window
+     */
+    private double[] readings = new double[0];
+
+    /**
+     * Slot the next reading of each station goes in
+     */
+    private int[] heads = new int[0];
+
+    /**
+     * Number of readings in each window, at most window
+     */
+    private int[] counts = new int[0];
+
+    /**
+     * Mean of each window
+     */
+    private double[] means = new double[0];
+
+    /**
+     * Sum of squared deviations from the mean of each window
+     */
+    private double[] m2s = new double[0];
+
+    /**
+     * UTC epoch second of the last reading of each station
+     */
+    private long[] lastTimes = new long[0];
+
+    /**
+     * Rolling Windows constructor with no stations yet
+     *
+     * @param window Number of readings in a full window
+     * @throws IllegalArgumentException if the window is smaller than 2
+     */
+    public RollingWindows(int window)
+    {
+        if (window < 2)
+        {
+            throw new IllegalArgumentException("Window must hold at least 2 readings: " + window);
+        }
+
+        this.window = window;
+    }
+
+    /**
+     * Adds a reading, replacing the oldest one once the window is full.
+     * Readings not newer than the last one of the station are ignored.
+     *
+     * @param stationId Dictionary id
+     * @param time UTC epoch second
+     * @param value Reading
+     * @return true if the reading was added
+     */
+    public boolean add(int stationId, long time, double value)
+    {
+        ensureCapacity(stationId);
+
+        if (counts[stationId] > 0 && time <= lastTimes[stationId])
+        {
+            return false;
+        }
+
+        int base = stationId * window;
+        int head = heads[stationId];
+        int count = counts[stationId];
+        double mean = means[stationId];
+
+        if (count < window)
+        {
+            double delta = value - mean;
+            count++;
+            mean += delta / count;
+            m2s[stationId] += delta * (value - mean);
+        }
+        else
+        {
+            double oldest = readings[base + head];
+            double newMean = mean + (value - oldest) / window;
+            m2s[stationId] += (value - oldest) * (value - newMean + oldest - mean);
+            mean = newMean;
+        }
+
+        readings[base + head] = value;
+        head = head + 1 == window ? 0 : head + 1;
+
+        if (head == 0)
+        {
+            mean = recompute(stationId);
+        }
+
+        heads[stationId] = head;
+        counts[stationId] = count;
+        means[stationId] = mean;
+        lastTimes[stationId] = time;
+
+        return true;
+    }
+
+    /**
+     * Returns the number of readings in the window of a station
+     *
+     * @param stationId Dictionary id
+     * @return readings, 0 for a station never seen
+     */
+    public int getCount(int stationId)
+    {
+        return stationId < counts.length ? counts[stationId] : 0;
+    }
+
+    /**
+     * Returns the mean of the window of a station
+     *
+     * @param stationId Dictionary id
+     * @return mean or NaN if the window is empty
+     */
+    public double getMean(int stationId)
+    {
+        return getCount(stationId) == 0 ? Double.NaN : means[stationId];
+    }
+
+    /**
+     * Returns the sample standard deviation of the window of a station
+     *
+     * @param stationId Dictionary id
+     * @return standard deviation or NaN with fewer than 2 readings
+     */
+    public double getStandardDeviation(int stationId)
+    {
+        int count = getCount(stationId);
+
+        return count < 2 ? Double.NaN : Math.sqrt(Math.max(0.0, m2s[stationId]) / (count - 1));
+    }
+
+    /**
+     * Returns the newest reading of a station
+     *
+     * @param stationId Dictionary id
+     * @return reading or NaN if the window is empty
+     */
+    public double getLast(int stationId)
+    {
+        if (getCount(stationId) == 0)
+        {
+            return Double.NaN;
+        }
+
+        int head = heads[stationId];
+
+        return readings[stationId * window + (head == 0 ? window - 1 : head - 1)];
+    }
+
+    /**
+     * Returns the time of the newest reading of a station
+     *
+     * @param stationId Dictionary id
+     * @return UTC epoch second or Long.MIN_VALUE if the window is empty
+     */
+    public long getLastTime(int stationId)
+    {
+        return getCount(stationId) == 0 ? Long.MIN_VALUE : lastTimes[stationId];
+    }
+
+    /**
+     * Returns the number of readings in a full window
+     *
+     * @return window size
+     */
+    public int getWindow()
+    {
+        return window;
+    }
+
+    /**
+     * Estimates the bytes held for the windows
+     *
+     * @return bytes
+     */
+    public long estimateBytes()
+    {
+        return readings.length * 8L + heads.length * (4L + 4L + 8L + 8L + 8L);
+    }
+
+    /**
+     * Recomputes the mean and squared deviations of a full window from its readings
+     *
+     * @param stationId Dictionary id
+     * @return mean
+     */
+    private double recompute(int stationId)
+    {
+        int base = stationId * window;
+        double total = 0.0;
+
+        for (int i = 0; i < window; i++)
+        {
+            total += readings[base + i];
+        }
+
+        double mean = total / window;
+        double m2 = 0.0;
+
+        for (int i = 0; i < window; i++)
+        {
+            double d = readings[base + i] - mean;
+            m2 += d * d;
+        }
+        m2s[stationId] = m2;
+
+        return mean;
+    }
+
+    /**
+     * Grows the arrays to hold a station
+     *
+     * @param stationId Dictionary id
+     */
+    private void ensureCapacity(int stationId)
+    {
+        if (stationId < heads.length)
+        {
+            return;
+        }
+
+        int capacity = Math.max(stationId + 1, heads.length * 2);
+        readings = Arrays.copyOf(readings, capacity * window);
+        heads = Arrays.copyOf(heads, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        means = Arrays.copyOf(means, capacity);
+        m2s = Arrays.copyOf(m2s, capacity);
+        lastTimes = Arrays.copyOf(lastTimes, capacity);
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Rollup Store class keeps the running statistics of every parameter
+ * for each hour, day and month as files are added. Each file is reduced
+ * to one StatisticsAccumulator per parameter, which is merged into the
+ * hour, day and month holding the file, so a month is answered from a
+ * single record and any range from the coarsest records that fit in it.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class RollupStore
+{
+    /**
+     * Granularities from coarsest to finest, the order ranges are covered in
+     */
+    private static final Granularity[] COARSEST_FIRST = {Granularity.MONTH, Granularity.DAY, Granularity.HOUR};
+
+    /**
+     * Accumulators by granularity, bucket start and parameter
+     */
+    private EnumMap<Granularity, TreeMap<Long, HashMap<String, StatisticsAccumulator>>> buckets =
+            new EnumMap<>(Granularity.class);
+
+    /**
+     * UTC epoch seconds of the files added, so a file is never counted twice
+     */
+    private TreeSet<Long> fileTimes = new TreeSet<Long>();
+
+    /**
+     * Rollup Store constructor with no files
+     */
+    public RollupStore()
+    {
+        for (Granularity granularity : Granularity.values())
+        {
+            buckets.put(granularity, new TreeMap<Long, HashMap<String, StatisticsAccumulator>>());
+        }
+    }
+
+    /**
+     * Builds a store over every data file of a loader within a time range
+     *
+     * @param loader Loader of the data directory
+     * @param from First UTC epoch second to include
+     * @param to Last UTC epoch second to include
+     * @return rollup store
+     * @throws IOException Checks to make sure every file can be read
+     */
+    public static RollupStore build(MdfDirectoryLoader loader, long from, long to) throws IOException
+    {
+        RollupStore store = new RollupStore();
+
+        for (Map.Entry<Long, ColumnStore> entry : loader.load(from, to).entrySet())
+        {
+            store.add(entry.getKey(), entry.getValue());
+        }
+
+        return store;
+    }
+
+    /**
+     * Adds a parsed file to its hour, day and month
+     *
+     * @param time UTC epoch second of the file
+     * @param store Parsed file
+     * @return false if a file with the same time was already added
+     */
+    public synchronized boolean add(long time, ColumnStore store)
+    {
+        if (!fileTimes.add(time))
+        {
+            return false;
+        }
+
+        String[] paramIds = store.getParamIds();
+
+        for (int column = 0; column < paramIds.length; column++)
+        {
+            StatisticsAccumulator partial = new StatisticsAccumulator();
+            partial.addColumn(store, column, time);
+
+            if (partial.getCount() == 0)
+            {
+                continue;
+            }
+
+            for (Granularity granularity : Granularity.values())
+            {
+                HashMap<String, StatisticsAccumulator> byParam = buckets.get(granularity)
+                        .computeIfAbsent(granularity.truncate(time), start -> new HashMap<String, StatisticsAccumulator>());
+                byParam.computeIfAbsent(paramIds[column], paramId -> new StatisticsAccumulator()).merge(partial);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the statistic of a parameter for the hour, day or month holding a time
+     *
+     * @param type Type of statistic
+     * @param paramId Parameter id, ex: TAIR
+     * @param granularity Hour, day or month
+     * @param time Any UTC epoch second within the bucket
+     * @return statistic or null if no file of the bucket has a valid value
+     */
+    public synchronized Statistics getStatistics(StatsType type, String paramId, Granularity granularity, long time)
+    {
+        StatisticsAccumulator accumulator = accumulatorOf(granularity, granularity.truncate(time), paramId);
+
+        return accumulator == null ? null : accumulator.toStatistics(type);
+    }
+
+    /**
+     * Returns the statistic of a parameter over a time range, merging the
+     * fewest stored records that cover it. The range is widened to whole
+     * hours and narrowed to the hours that hold files, so open bounds such
+     * as Long.MIN_VALUE and Long.MAX_VALUE can be given.
+     *
+     * @param type Type of statistic
+     * @param paramId Parameter id, ex: TAIR
+     * @param from First UTC epoch second to include
+     * @param to Last UTC epoch second to include
+     * @return statistic or null if no file in the range has a valid value
+     */
+    public synchronized Statistics getStatistics(StatsType type, String paramId, long from, long to)
+    {
+        StatisticsAccumulator combined = new StatisticsAccumulator();
+        TreeMap<Long, HashMap<String, StatisticsAccumulator>> hours = buckets.get(Granularity.HOUR);
+
+        if (hours.isEmpty())
+        {
+            return null;
+        }
+
+        //Nothing is stored outside the first and last hour with a file
+        long first = hours.firstKey();
+        long last = Granularity.HOUR.next(hours.lastKey()) - 1;
+        long time = from <= first ? first : Granularity.HOUR.truncate(from);
+        long end = Math.min(to, last);
+
+        while (time <= end)
+        {
+            //Use the coarsest bucket that starts here and ends within the range
+            Granularity used = Granularity.HOUR;
+            for (Granularity granularity : COARSEST_FIRST)
+            {
+                if (granularity.truncate(time) == time && granularity.next(time) - 1 <= end)
+                {
+                    used = granularity;
+                    break;
+                }
+            }
+
+            StatisticsAccumulator accumulator = accumulatorOf(used, time, paramId);
+            if (accumulator != null)
+            {
+                combined.merge(accumulator);
+            }
+            time = used.next(time);
+        }
+
+        return combined.toStatistics(type);
+    }
+
+    /**
+     * Returns the number of files added
+     *
+     * @return number of files
+     */
+    public synchronized int getFileCount()
+    {
+        return fileTimes.size();
+    }
+
+    /**
+     * Returns the number of stored records of a granularity
+     *
+     * @param granularity Hour, day or month
+     * @return number of buckets with at least one file
+     */
+    public synchronized int getBucketCount(Granularity granularity)
+    {
+        return buckets.get(granularity).size();
+    }
+
+    /**
+     * Looks up the accumulator of a parameter in a bucket
+     *
+     * @param granularity Hour, day or month
+     * @param start UTC epoch second of the bucket start
+     * @param paramId Parameter id
+     * @return accumulator or null if there is none
+     */
+    private StatisticsAccumulator accumulatorOf(Granularity granularity, long start, String paramId)
+    {
+        HashMap<String, StatisticsAccumulator> byParam = buckets.get(granularity).get(start);
+
+        return byParam == null ? null : byParam.get(paramId);
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Rollup Store class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class RollupStoreTest
+{
+    /**
+     * Builds a store with one TAIR value per station every 30 minutes over two months
+     *
+     * @return rollup store
+     */
+    private RollupStore buildStore()
+    {
+        RollupStore test = new RollupStore();
+        long start = MdfDirectoryLoader.toEpochSecond(2018, 7, 1, 0, 0);
+
+        for (int step = 0; step < 62 * 48; step++)
+        {
+            ColumnStore store = new ColumnStore(new String[] {"TAIR"}, 2);
+            store.addRow("ACME");
+            store.addRow("ADAX");
+            store.setValue(0, 0, step % 48);
+            store.setValue(0, 1, -999);
+            test.add(start + step * 1800L, store);
+        }
+
+        return test;
+    }
+
+    /**
+     * Test statistics of single hours, days and months
+     */
+    @Test
+    public void testGetStatistics()
+    {
+        RollupStore test = buildStore();
+        long august = MdfDirectoryLoader.toEpochSecond(2018, 8, 15, 12, 0);
+
+        Assert.assertEquals(62 * 48, test.getFileCount());
+        Assert.assertEquals(2, test.getBucketCount(Granularity.MONTH));
+        Assert.assertEquals(62, test.getBucketCount(Granularity.DAY));
+        Assert.assertEquals(62 * 24, test.getBucketCount(Granularity.HOUR));
+
+        Assert.assertEquals(24.5, test.getStatistics(StatsType.AVERAGE, "TAIR", Granularity.HOUR, august).getValue(), .001);
+        Assert.assertEquals(47, test.getStatistics(StatsType.MAXIMUM, "TAIR", Granularity.DAY, august).getValue(), .001);
+        Assert.assertEquals(31 * 48, test.getStatistics(StatsType.TOTAL, "TAIR", Granularity.MONTH, august).getNumberOfReportingStations());
+        Assert.assertEquals("ACME", test.getStatistics(StatsType.MINIMUM, "TAIR", Granularity.MONTH, august).getStid());
+        Assert.assertNull(test.getStatistics(StatsType.AVERAGE, "TAIR", Granularity.MONTH, 0));
+        Assert.assertNull(test.getStatistics(StatsType.AVERAGE, "SRAD", Granularity.DAY, august));
+    }
+
+    /**
+     * Test that a range matches the sum of its parts
+     */
+    @Test
+    public void testRange()
+    {
+        RollupStore test = buildStore();
+        long from = MdfDirectoryLoader.toEpochSecond(2018, 7, 30, 6, 0);
+        long to = MdfDirectoryLoader.toEpochSecond(2018, 9, 1, 0, 0) - 1;
+
+        //From 06:00 on July 30 to the end of August
+        Statistics count = test.getStatistics(StatsType.TOTAL, "TAIR", from, to);
+        Assert.assertEquals(36 + 48 + 31 * 48, count.getNumberOfReportingStations());
+        Assert.assertEquals(47, test.getStatistics(StatsType.MAXIMUM, "TAIR", from, to).getValue(), .001);
+    }
+
+    /**
+     * Test that open bounds cover every stored file without walking the
+     * hours outside them
+     */
+    @Test(timeout = 10000)
+    public void testOpenRange()
+    {
+        RollupStore test = buildStore();
+
+        Assert.assertEquals(62 * 48, test.getStatistics(StatsType.TOTAL, "TAIR", Long.MIN_VALUE, Long.MAX_VALUE)
+                .getNumberOfReportingStations());
+        Assert.assertEquals(47, test.getStatistics(StatsType.MAXIMUM, "TAIR", 0, Long.MAX_VALUE).getValue(), .001);
+        Assert.assertNull(test.getStatistics(StatsType.TOTAL, "TAIR", Long.MIN_VALUE, 0));
+        Assert.assertNull(new RollupStore().getStatistics(StatsType.TOTAL, "TAIR", Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    /**
+     * Test that a file added twice is only counted once
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testBuildIgnoresDuplicates() throws IOException
+    {
+        MdfDirectoryLoader loader = new MdfDirectoryLoader("data/");
+        RollupStore test = RollupStore.build(loader, Long.MIN_VALUE, Long.MAX_VALUE);
+        long time = MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, 45);
+
+        Assert.assertFalse(test.add(time, loader.load(time, time).get(time)));
+        Assert.assertEquals(36.5, test.getStatistics(StatsType.MAXIMUM, "TAIR", Granularity.HOUR, time).getValue(), .001);
+        Assert.assertEquals("HOOK", test.getStatistics(StatsType.MAXIMUM, "TAIR", Granularity.MONTH, time).getStid());
+    }
+}
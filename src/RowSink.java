@@ -0,0 +1,16 @@
+/**
+ * Row Sink interface receives the fields of each row as
+ * MdfTokenizer walks a data file
+ * 
+ * @author Tim Weaver
+ * @version 2018-10-23
+ * 
+ */
+
+public interface RowSink 
+{
+    void startRow();
+    void station(int stationId);
+    void value(int column, double value);
+    void endRow();
+}
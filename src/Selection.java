@@ -0,0 +1,135 @@
+/**
+ * Selection class finds percentiles of a primitive array with
+ * quickselect, without sorting the whole array
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class Selection
+{
+    /**
+     * Selection only has static methods
+     */
+    private Selection()
+    {
+
+    }
+
+    /**
+     * Returns a percentile by linear interpolation between the two
+     * closest ranks. The first count entries of the array are reordered.
+     *
+     * @param values Values, reordered in place
+     * @param count Number of values to use from the start of the array
+     * @param fraction Percentile as a fraction, 0.5 for the median
+     * @return percentile or NaN if count is 0
+     */
+    public static double percentile(double[] values, int count, double fraction)
+    {
+        if (count == 0)
+        {
+            return Double.NaN;
+        }
+
+        double position = Math.min(Math.max(fraction, 0.0), 1.0) * (count - 1);
+        int lower = (int) Math.floor(position);
+        double lowerValue = select(values, 0, count - 1, lower);
+
+        if (lower == position || lower + 1 >= count)
+        {
+            return lowerValue;
+        }
+
+        //After selecting, everything right of lower is at least as large
+        double upperValue = values[lower + 1];
+        for (int i = lower + 2; i < count; i++)
+        {
+            upperValue = Math.min(upperValue, values[i]);
+        }
+
+        return lowerValue + (position - lower) * (upperValue - lowerValue);
+    }
+
+    /**
+     * Moves the k-th smallest value of a range to index k, with smaller
+     * values to its left and larger values to its right
+     *
+     * @param values Values, reordered in place
+     * @param left First index of the range
+     * @param right Last index of the range
+     * @param k Index to select
+     * @return the k-th smallest value
+     */
+    public static double select(double[] values, int left, int right, int k)
+    {
+        while (left < right)
+        {
+            //Median of three pivot keeps sorted input from going quadratic
+            int middle = (left + right) >>> 1;
+            if (values[middle] < values[left])
+            {
+                swap(values, left, middle);
+            }
+            if (values[right] < values[left])
+            {
+                swap(values, left, right);
+            }
+            if (values[right] < values[middle])
+            {
+                swap(values, middle, right);
+            }
+            double pivot = values[middle];
+
+            int i = left;
+            int j = right;
+            while (i <= j)
+            {
+                while (values[i] < pivot)
+                {
+                    i++;
+                }
+                while (values[j] > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    swap(values, i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j)
+            {
+                right = j;
+            }
+            else if (k >= i)
+            {
+                left = i;
+            }
+            else
+            {
+                return values[k];
+            }
+        }
+
+        return values[k];
+    }
+
+    /**
+     * Swaps two entries of an array
+     *
+     * @param values Array
+     * @param i First index
+     * @param j Second index
+     */
+    private static void swap(double[] values, int i, int j)
+    {
+        double temp = values[i];
+        values[i] = values[j];
+        values[j] = temp;
+    }
+}
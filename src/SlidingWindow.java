@@ -0,0 +1,372 @@
+/**
+ * Sliding Window class keeps the minimum, maximum, sum and count of the
+ * files within a span of time ending at the newest file, ex: the last
+ * hour. Each file adds one entry, the summary of a column or a single
+ * reading, and entries older than the span are evicted as newer files
+ * arrive. The minimum and maximum are the fronts of MonotonicDeques and
+ * the sum and count are running totals over a ring of the entries, so
+ * adding and evicting are O(1) amortized. The running sum is recomputed
+ * from the ring once as many entries have left as it holds, so rounding
+ * from subtracting cannot build up.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class SlidingWindow
+{
+    /**
+     * Length of the window in seconds
+     */
+    private long span;
+
+    /**
+     * Minimum of the window
+     */
+    private MonotonicDeque minima = new MonotonicDeque();
+
+    /**
+     * Maximum of the window, kept negated
+     */
+    private MonotonicDeque maxima = new MonotonicDeque();
+
+    /**
+     * UTC epoch second of each entry
+     */
+    private long[] times = new long[16];
+
+    /**
+     * Sum of each entry
+     */
+    private double[] sums = new double[16];
+
+    /**
+     * Count of each entry
+     */
+    private int[] counts = new int[16];
+
+    /**
+     * Position of the oldest entry
+     */
+    private int head;
+
+    /**
+     * Number of entries in the window
+     */
+    private int size;
+
+    /**
+     * Sum of the window
+     */
+    private double total;
+
+    /**
+     * Count of the window
+     */
+    private int count;
+
+    /**
+     * Entries evicted since the sum was recomputed
+     */
+    private int evicted;
+
+    /**
+     * UTC epoch second of the newest entry
+     */
+    private long lastTime = Long.MIN_VALUE;
+
+    /**
+     * Sliding Window constructor for an empty window
+     *
+     * @param span Length of the window in seconds, ex: 3600 for an hour
+     * @throws IllegalArgumentException if the span is not positive
+     */
+    public SlidingWindow(long span)
+    {
+        if (span <= 0)
+        {
+            throw new IllegalArgumentException("Span must be positive: " + span);
+        }
+
+        this.span = span;
+    }
+
+    /**
+     * Adds a single reading
+     *
+     * @param time UTC epoch second, after the newest entry
+     * @param value Reading
+     * @param station Dictionary id of the station
+     * @return true if added, false if the time is not after the newest entry
+     */
+    public boolean add(long time, double value, int station)
+    {
+        return add(time, value, station, value, station, value, 1);
+    }
+
+    /**
+     * Adds the summary of a file, evicting the entries the window has moved past
+     *
+     * @param time UTC epoch second, after the newest entry
+     * @param min Smallest value of the file
+     * @param minStation Dictionary id of the station of the smallest value
+     * @param max Largest value of the file
+     * @param maxStation Dictionary id of the station of the largest value
+     * @param sum Sum of the values of the file
+     * @param entryCount Number of values of the file, 0 adds only the time
+     * @return true if added, false if the time is not after the newest entry
+     */
+    public boolean add(long time, double min, int minStation, double max, int maxStation, double sum, int entryCount)
+    {
+        if (time <= lastTime)
+        {
+            return false;
+        }
+
+        lastTime = time;
+        advance(time);
+
+        if (entryCount == 0)
+        {
+            return true;
+        }
+
+        minima.add(time, min, minStation);
+        maxima.add(time, -max, maxStation);
+
+        if (size == times.length)
+        {
+            grow();
+        }
+
+        int back = index(size);
+        times[back] = time;
+        sums[back] = sum;
+        counts[back] = entryCount;
+        size++;
+        total += sum;
+        count += entryCount;
+
+        return true;
+    }
+
+    /**
+     * Moves the end of the window to a time, evicting every entry at or
+     * before the time minus the span
+     *
+     * @param time UTC epoch second the window ends at
+     */
+    public void advance(long time)
+    {
+        long expired = time - span;
+
+        minima.evict(expired);
+        maxima.evict(expired);
+
+        while (size > 0 && times[head] <= expired)
+        {
+            total -= sums[head];
+            count -= counts[head];
+            head = index(1);
+            size--;
+            evicted++;
+        }
+
+        if (evicted > size)
+        {
+            recompute();
+        }
+    }
+
+    /**
+     * Returns the length of the window
+     *
+     * @return span in seconds
+     */
+    public long getSpan()
+    {
+        return span;
+    }
+
+    /**
+     * Returns the number of values in the window
+     *
+     * @return count
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the sum of the values in the window
+     *
+     * @return sum, 0 if empty
+     */
+    public double getSum()
+    {
+        return total;
+    }
+
+    /**
+     * Returns the mean of the values in the window
+     *
+     * @return mean or NaN if empty
+     */
+    public double getAverage()
+    {
+        return count == 0 ? Double.NaN : total / count;
+    }
+
+    /**
+     * Returns the smallest value in the window
+     *
+     * @return minimum or NaN if empty
+     */
+    public double getMin()
+    {
+        return minima.getMin();
+    }
+
+    /**
+     * Returns the station of the smallest value, the earliest of a tie
+     *
+     * @return dictionary id or -1 if empty
+     */
+    public int getMinStation()
+    {
+        return minima.getMinStation();
+    }
+
+    /**
+     * Returns the time of the smallest value
+     *
+     * @return UTC epoch second or Long.MIN_VALUE if empty
+     */
+    public long getMinTime()
+    {
+        return minima.getMinTime();
+    }
+
+    /**
+     * Returns the largest value in the window
+     *
+     * @return maximum or NaN if empty
+     */
+    public double getMax()
+    {
+        return maxima.isEmpty() ? Double.NaN : -maxima.getMin();
+    }
+
+    /**
+     * Returns the station of the largest value, the earliest of a tie
+     *
+     * @return dictionary id or -1 if empty
+     */
+    public int getMaxStation()
+    {
+        return maxima.getMinStation();
+    }
+
+    /**
+     * Returns the time of the largest value
+     *
+     * @return UTC epoch second or Long.MIN_VALUE if empty
+     */
+    public long getMaxTime()
+    {
+        return maxima.getMinTime();
+    }
+
+    /**
+     * Returns the time of the newest entry
+     *
+     * @return UTC epoch second or Long.MIN_VALUE if nothing was added
+     */
+    public long getLastTime()
+    {
+        return lastTime;
+    }
+
+    /**
+     * Builds a statistic of the window. Minimum and maximum carry the
+     * station and time of the extreme, average and total the given station
+     * and the time of the newest entry.
+     *
+     * @param type MINIMUM, MAXIMUM, AVERAGE or TOTAL
+     * @param stationId Dictionary id of the average and total, ex: the Mesonet
+     * @return statistic or null if the window is empty or the type is not kept
+     */
+    public Statistics toStatistics(StatsType type, int stationId)
+    {
+        if (count == 0)
+        {
+            return null;
+        }
+
+        switch (type)
+        {
+            case MINIMUM:
+                return new Statistics(getMin(), getMinStation(), getMinTime(), count, type);
+            case MAXIMUM:
+                return new Statistics(getMax(), getMaxStation(), getMaxTime(), count, type);
+            case AVERAGE:
+                return new Statistics(getAverage(), stationId, lastTime, count, type);
+            case TOTAL:
+                return new Statistics(total, stationId, lastTime, count, type);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Recomputes the sum of the window from its entries
+     */
+    private void recompute()
+    {
+        total = 0.0;
+
+        for (int i = 0; i < size; i++)
+        {
+            total += sums[index(i)];
+        }
+        evicted = 0;
+    }
+
+    /**
+     * Position in the ring of the entry some places after the oldest
+     *
+     * @param offset Places after the oldest
+     * @return position in the arrays
+     */
+    private int index(int offset)
+    {
+        int position = head + offset;
+
+        return position >= times.length ? position - times.length : position;
+    }
+
+    /**
+     * Doubles the ring, moving the oldest entry to position 0
+     */
+    private void grow()
+    {
+        int capacity = times.length * 2;
+        long[] newTimes = new long[capacity];
+        double[] newSums = new double[capacity];
+        int[] newCounts = new int[capacity];
+
+        for (int i = 0; i < size; i++)
+        {
+            newTimes[i] = times[index(i)];
+            newSums[i] = sums[index(i)];
+            newCounts[i] = counts[index(i)];
+        }
+
+        times = newTimes;
+        sums = newSums;
+        counts = newCounts;
+        head = 0;
+    }
+}
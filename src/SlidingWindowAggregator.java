@@ -0,0 +1,261 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Sliding Window Aggregator class keeps the minimum, maximum, average and
+ * total of every parameter over the last span of time, ex: the maximum
+ * air temperature of the last hour or day, across the network and at each
+ * station. Files are added in time order; each adds one SlidingWindow
+ * entry per parameter, reduced from its column by the ColumnKernels, and
+ * one per station with a valid reading, and files that have left the span
+ * are evicted instead of the window being computed again. Files not
+ * after the newest one are ignored.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class SlidingWindowAggregator
+{
+    /**
+     * One hour in seconds
+     */
+    public static final long HOUR = 3600;
+
+    /**
+     * One day in seconds
+     */
+    public static final long DAY = 86400;
+
+    /**
+     * Column of the minutes since the date line
+     */
+    private static final String TIME = "TIME";
+
+    /**
+     * Minutes in a day
+     */
+    private static final int MINUTES_PER_DAY = 1440;
+
+    /**
+     * Station name of the network-wide average and total
+     */
+    private static final String MESONET = "Mesonet";
+
+    /**
+     * Dictionary id of MESONET
+     */
+    private static final int MESONET_ID = StationDictionary.getGlobal().idOf(MESONET);
+
+    /**
+     * Length of the windows in seconds
+     */
+    private long span;
+
+    /**
+     * UTC epoch second of the newest file
+     */
+    private long latestTime = Long.MIN_VALUE;
+
+    /**
+     * Network-wide window of each parameter
+     */
+    private HashMap<String, SlidingWindow> networkWindows = new HashMap<String, SlidingWindow>();
+
+    /**
+     * Windows of each parameter, indexed by station dictionary id
+     */
+    private HashMap<String, SlidingWindow[]> stationWindows = new HashMap<String, SlidingWindow[]>();
+
+    /**
+     * Sliding Window Aggregator constructor with no files yet
+     *
+     * @param span Length of the windows in seconds, ex: HOUR or DAY
+     * @throws IllegalArgumentException if the span is not positive
+     */
+    public SlidingWindowAggregator(long span)
+    {
+        if (span <= 0)
+        {
+            throw new IllegalArgumentException("Span must be positive: " + span);
+        }
+
+        this.span = span;
+    }
+
+    /**
+     * Adds a parsed file at the time of its readings, the date line plus
+     * the minutes of its TIME column
+     *
+     * @param mapData Parsed file, a LAZY file is parsed in full
+     * @return true if added, false if it is not after the newest file or was read STREAMING
+     */
+    public boolean add(MapData mapData)
+    {
+        ColumnStore store = mapData.getDataCatalog();
+
+        return store != null && add(timeOf(mapData.getEpochSecond(), store), store);
+    }
+
+    /**
+     * Returns the time of the readings of a file. The date line of a data
+     * file holds the day and the TIME column the minutes into it, the same
+     * for every row, so files of one day differ only in TIME.
+     *
+     * @param epochSecond UTC epoch second of the date line
+     * @param store Parsed file
+     * @return UTC epoch second of the readings, the date line if no row has a TIME
+     */
+    static long timeOf(long epochSecond, ColumnStore store)
+    {
+        int column = store.getColumnIndex(TIME);
+
+        for (int row = 0; column >= 0 && row < store.size(); row++)
+        {
+            //TIME is above the default validity bounds, so the raw value is read
+            double minutes = store.getValue(column, row);
+            if (minutes >= 0 && minutes < MINUTES_PER_DAY)
+            {
+                return epochSecond + (long) minutes * 60;
+            }
+        }
+
+        return epochSecond;
+    }
+
+    /**
+     * Adds a parsed file
+     *
+     * @param time UTC epoch second of the file
+     * @param store Parsed file
+     * @return true if added, false if it is not after the newest file
+     */
+    public synchronized boolean add(long time, ColumnStore store)
+    {
+        if (time <= latestTime)
+        {
+            return false;
+        }
+        latestTime = time;
+
+        String[] paramIds = store.getParamIds();
+        int size = store.size();
+
+        for (int column = 0; column < paramIds.length; column++)
+        {
+            double[] values = store.getColumn(column);
+            long[] validity = store.getValidity(column);
+            int count = ColumnKernels.count(validity, size);
+            SlidingWindow network = networkWindows.get(paramIds[column]);
+
+            if (network == null)
+            {
+                network = new SlidingWindow(span);
+                networkWindows.put(paramIds[column], network);
+            }
+
+            if (count == 0)
+            {
+                network.add(time, Double.NaN, -1, Double.NaN, -1, 0.0, 0);
+                continue;
+            }
+
+            int minRow = ColumnKernels.argMin(values, validity, size);
+            int maxRow = ColumnKernels.argMax(values, validity, size);
+            network.add(time, values[minRow], store.getStationId(minRow), values[maxRow], store.getStationId(maxRow),
+                    ColumnKernels.sum(values, validity, size), count);
+
+            SlidingWindow[] windows = stationWindows.get(paramIds[column]);
+            for (int row = 0; row < size; row++)
+            {
+                int stationId = store.getStationId(row);
+                if (stationId < 0 || !store.isValid(column, row))
+                {
+                    continue;
+                }
+
+                if (windows == null || stationId >= windows.length)
+                {
+                    windows = windows == null ? new SlidingWindow[stationId + 1]
+                            : Arrays.copyOf(windows, Math.max(stationId + 1, windows.length * 2));
+                    stationWindows.put(paramIds[column], windows);
+                }
+                if (windows[stationId] == null)
+                {
+                    windows[stationId] = new SlidingWindow(span);
+                }
+
+                windows[stationId].add(time, values[row], stationId);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns a statistic of a parameter across the network over the window.
+     * The window ends at the newest file even if the parameter was not in it.
+     *
+     * @param type MINIMUM, MAXIMUM, AVERAGE or TOTAL
+     * @param paramId Parameter id, ex: TAIR
+     * @return statistic or null if the window holds no valid value or the type is not kept
+     */
+    public synchronized Statistics getStatistics(StatsType type, String paramId)
+    {
+        SlidingWindow window = networkWindows.get(paramId);
+
+        if (window == null)
+        {
+            return null;
+        }
+        window.advance(latestTime);
+
+        return window.toStatistics(type, MESONET_ID);
+    }
+
+    /**
+     * Returns a statistic of a parameter at one station over the window.
+     * The window ends at the newest file even if the station was not in it.
+     *
+     * @param type MINIMUM, MAXIMUM, AVERAGE or TOTAL
+     * @param paramId Parameter id, ex: TAIR
+     * @param stid Station id, ex: ACME
+     * @return statistic or null if the window holds no valid value or the type is not kept
+     */
+    public synchronized Statistics getStatistics(StatsType type, String paramId, String stid)
+    {
+        SlidingWindow[] windows = stationWindows.get(paramId);
+        int stationId = StationDictionary.getGlobal().find(stid);
+
+        if (windows == null || stationId < 0 || stationId >= windows.length || windows[stationId] == null)
+        {
+            return null;
+        }
+
+        SlidingWindow window = windows[stationId];
+        window.advance(latestTime);
+
+        return window.toStatistics(type, stationId);
+    }
+
+    /**
+     * Returns the length of the windows
+     *
+     * @return span in seconds
+     */
+    public long getSpan()
+    {
+        return span;
+    }
+
+    /**
+     * Returns the time of the newest file
+     *
+     * @return UTC epoch second or Long.MIN_VALUE if none was added
+     */
+    public synchronized long getLatestTime()
+    {
+        return latestTime;
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Sliding Window, Monotonic Deque and Sliding Window Aggregator classes
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class SlidingWindowTest
+{
+    /**
+     * Test the window against a scan of the readings within the span after every reading
+     */
+    @Test
+    public void testAgainstScan()
+    {
+        SlidingWindow test = new SlidingWindow(3600);
+        Random random = new Random(24);
+        long[] times = new long[2000];
+        double[] values = new double[times.length];
+        long time = 0;
+
+        for (int i = 0; i < times.length; i++)
+        {
+            //Gaps now and then, some longer than the span
+            time += random.nextInt(20) == 0 ? 300 * (1 + random.nextInt(15)) : 300;
+            times[i] = time;
+            values[i] = Math.round(random.nextGaussian() * 50) / 10.0;
+            Assert.assertTrue(test.add(time, values[i], i));
+
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            int minAt = -1;
+            int maxAt = -1;
+            double sum = 0;
+            int count = 0;
+            for (int j = 0; j <= i; j++)
+            {
+                if (times[j] > time - 3600)
+                {
+                    if (values[j] < min)
+                    {
+                        min = values[j];
+                        minAt = j;
+                    }
+                    if (values[j] > max)
+                    {
+                        max = values[j];
+                        maxAt = j;
+                    }
+                    sum += values[j];
+                    count++;
+                }
+            }
+
+            Assert.assertEquals(count, test.getCount());
+            Assert.assertEquals(sum, test.getSum(), 1e-9);
+            Assert.assertEquals(min, test.getMin(), 0);
+            Assert.assertEquals(max, test.getMax(), 0);
+            Assert.assertEquals(minAt, test.getMinStation());
+            Assert.assertEquals(maxAt, test.getMaxStation());
+            Assert.assertEquals(times[maxAt], test.getMaxTime());
+        }
+
+        Assert.assertFalse(test.add(time, 99, 0));
+        test.advance(time + 3600);
+        Assert.assertEquals(0, test.getCount());
+        Assert.assertTrue(Double.isNaN(test.getMax()));
+        Assert.assertNull(test.toStatistics(StatsType.MAXIMUM, 0));
+    }
+
+    /**
+     * Test the last hour of network and station statistics over files
+     */
+    @Test
+    public void testAggregator()
+    {
+        SlidingWindowAggregator test = new SlidingWindowAggregator(SlidingWindowAggregator.HOUR);
+        String[] stids = {"ACME", "ADAX", "HOOK"};
+        double[][] tair = new double[24][stids.length];
+
+        for (int file = 0; file < 24; file++)
+        {
+            ColumnStore store = new ColumnStore(new String[] {"TAIR"}, stids.length);
+            for (int i = 0; i < stids.length; i++)
+            {
+                tair[file][i] = i == 2 && file % 5 == 0 ? -999 : 20 + file * 0.5 + i;
+                store.setValue(0, store.addRow(stids[i]), tair[file][i]);
+            }
+            Assert.assertTrue(test.add(file * 300L, store));
+        }
+
+        //The last hour is files 12 to 23
+        Assert.assertEquals(20 + 23 * 0.5 + 2, test.getStatistics(StatsType.MAXIMUM, "TAIR").getValue(), .001);
+        Assert.assertEquals("HOOK", test.getStatistics(StatsType.MAXIMUM, "TAIR").getStid());
+        Assert.assertEquals(20 + 12 * 0.5, test.getStatistics(StatsType.MINIMUM, "TAIR").getValue(), .001);
+        Assert.assertEquals(12 * 300L, test.getStatistics(StatsType.MINIMUM, "TAIR").getEpochSecond());
+        Assert.assertEquals(34, test.getStatistics(StatsType.AVERAGE, "TAIR").getNumberOfReportingStations());
+        Assert.assertEquals(20 + 12 * 0.5, test.getStatistics(StatsType.MINIMUM, "TAIR", "ACME").getValue(), .001);
+        Assert.assertEquals(10, test.getStatistics(StatsType.AVERAGE, "TAIR", "HOOK").getNumberOfReportingStations());
+        Assert.assertNull(test.getStatistics(StatsType.MEDIAN, "TAIR"));
+        Assert.assertNull(test.getStatistics(StatsType.MAXIMUM, "SRAD"));
+
+        double sum = 0;
+        for (int file = 12; file < 24; file++)
+        {
+            sum += tair[file][1];
+        }
+        Assert.assertEquals(sum / 12, test.getStatistics(StatsType.AVERAGE, "TAIR", "ADAX").getValue(), 1e-9);
+
+        //Older files are ignored and a station missing from newer files still leaves the window
+        Assert.assertFalse(test.add(0, new ColumnStore(new String[] {"TAIR"}, 1)));
+        ColumnStore late = new ColumnStore(new String[] {"TAIR"}, 1);
+        late.setValue(0, late.addRow("ACME"), 10);
+        Assert.assertTrue(test.add(30 * 3600L, late));
+        Assert.assertNull(test.getStatistics(StatsType.MAXIMUM, "TAIR", "HOOK"));
+        Assert.assertEquals(1, test.getStatistics(StatsType.TOTAL, "TAIR").getNumberOfReportingStations());
+    }
+
+    /**
+     * Test that files read through MapData keep their order across the end
+     * of a month, where the month of getDateTime is one ahead
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testMapDataAcrossMonths() throws IOException
+    {
+        Path directory = Files.createTempDirectory("window");
+        String path = directory.toString() + File.separator;
+        int[][] times = {{2018, 8, 31, 23, 50}, {2018, 8, 31, 23, 55}, {2018, 9, 1, 0, 0}};
+        SlidingWindowAggregator test = new SlidingWindowAggregator(SlidingWindowAggregator.HOUR);
+        int count = 0;
+
+        for (int[] time : times)
+        {
+            File file = copyAt(directory, time);
+            MapData mapData = new MapData(time[0], time[1], time[2], time[3], time[4], path);
+            count += mapData.getDataCatalog().size();
+
+            Assert.assertEquals(MdfDirectoryLoader.toEpochSecond(time[0], time[1], time[2], 0, 0), mapData.getEpochSecond());
+            Assert.assertTrue(test.add(mapData));
+            Assert.assertEquals(MdfDirectoryLoader.toEpochSecond(time[0], time[1], time[2], time[3], time[4]),
+                    test.getLatestTime());
+            file.delete();
+        }
+
+        Assert.assertEquals(count, test.getStatistics(StatsType.TOTAL, "STNM").getNumberOfReportingStations());
+        Assert.assertEquals(36.5, test.getStatistics(StatsType.MAXIMUM, "TAIR").getValue(), 0);
+        directory.toFile().delete();
+    }
+
+    /**
+     * Copies the 2018-08-30 17:45 file to another time, rewriting its date line and TIME column
+     *
+     * @param directory Directory to copy to
+     * @param time Year, month, day, hour and minute
+     * @return copy
+     * @throws IOException Make sure inputs are valid
+     */
+    private static File copyAt(Path directory, int[] time) throws IOException
+    {
+        List<String> lines = Files.readAllLines(new File("data/201808301745.mdf").toPath(), StandardCharsets.US_ASCII);
+        List<String> copy = new ArrayList<String>();
+        copy.add(lines.get(0));
+        copy.add(String.format("  21 %04d %02d %02d 00 00 00", time[0], time[1], time[2]));
+        copy.add(lines.get(2));
+
+        for (String line : lines.subList(3, lines.size()))
+        {
+            copy.add(line.replaceFirst("^(\\s*\\S+\\s+\\S+\\s+)\\S+", "$1" + (time[3] * 60 + time[4])));
+        }
+
+        File file = new File(directory.toFile(), String.format("%04d%02d%02d%02d%02d.mdf", time[0], time[1], time[2],
+                time[3], time[4]));
+        Files.write(file.toPath(), copy, StandardCharsets.US_ASCII);
+
+        return file;
+    }
+}
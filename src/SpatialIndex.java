@@ -0,0 +1,477 @@
+import java.util.Arrays;
+
+/**
+ * Spatial Index class is a k-d tree over the stations of a
+ * StationMetadata, split on latitude and longitude in turn. It finds the
+ * stations within a latitude and longitude box and the k stations
+ * nearest a point by great circle distance, and computes statistics over
+ * only the rows of the selected stations. The rows are marked in a bitmap
+ * laid out like the validity bitmap of a ColumnStore, so no values are
+ * copied, ex: the Panhandle average air temperature is
+ *
+ *   index.getStatistics(mapData, StatsType.AVERAGE, "TAIR", index.withinBox(36.5, -103.0, 37.0, -100.0))
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class SpatialIndex
+{
+    /**
+     * Mean radius of the Earth in kilometers
+     */
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /**
+     * Dictionary ids in tree order, the node of a range is its middle
+     */
+    private int[] ids;
+
+    /**
+     * Latitudes in tree order
+     */
+    private double[] latitudes;
+
+    /**
+     * Longitudes in tree order
+     */
+    private double[] longitudes;
+
+    /**
+     * Unit vectors of the stations in tree order, their squared chord
+     * distance orders the stations as the great circle distance does
+     */
+    private double[] xs;
+
+    /**
+     * Second coordinate of the unit vectors
+     */
+    private double[] ys;
+
+    /**
+     * Third coordinate of the unit vectors
+     */
+    private double[] zs;
+
+    /**
+     * Spatial Index constructor over every station with a location
+     *
+     * @param metadata Station locations
+     */
+    public SpatialIndex(StationMetadata metadata)
+    {
+        this(metadata, metadata.getStationIds());
+    }
+
+    /**
+     * Spatial Index constructor over some of the stations, ex: those with a
+     * valid value in a file
+     *
+     * @param metadata Station locations
+     * @param stationIds Dictionary ids, each must have a location
+     */
+    public SpatialIndex(StationMetadata metadata, int[] stationIds)
+    {
+        ids = stationIds.clone();
+        latitudes = new double[ids.length];
+        longitudes = new double[ids.length];
+
+        for (int i = 0; i < ids.length; i++)
+        {
+            latitudes[i] = metadata.getLatitude(ids[i]);
+            longitudes[i] = metadata.getLongitude(ids[i]);
+        }
+
+        build(0, ids.length, 0);
+
+        xs = new double[ids.length];
+        ys = new double[ids.length];
+        zs = new double[ids.length];
+        for (int i = 0; i < ids.length; i++)
+        {
+            double[] vector = unitVector(latitudes[i], longitudes[i]);
+            xs[i] = vector[0];
+            ys[i] = vector[1];
+            zs[i] = vector[2];
+        }
+    }
+
+    /**
+     * Returns the number of stations in the tree
+     *
+     * @return number of stations
+     */
+    public int size()
+    {
+        return ids.length;
+    }
+
+    /**
+     * Finds the stations within a box, edges included
+     *
+     * @param minLatitude Southern edge in degrees north
+     * @param minLongitude Western edge in degrees east
+     * @param maxLatitude Northern edge in degrees north
+     * @param maxLongitude Eastern edge in degrees east
+     * @return dictionary ids in ascending order
+     */
+    public int[] withinBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+    {
+        int[] found = new int[ids.length];
+        int count = withinBox(0, ids.length, 0, minLatitude, minLongitude, maxLatitude, maxLongitude, found, 0);
+        int[] result = Arrays.copyOf(found, count);
+
+        Arrays.sort(result);
+
+        return result;
+    }
+
+    /**
+     * Finds the stations nearest a point by great circle distance
+     *
+     * @param latitude Degrees north
+     * @param longitude Degrees east
+     * @param k Number of stations to find
+     * @return dictionary ids, nearest first, fewer than k if the tree is smaller
+     */
+    public int[] nearest(double latitude, double longitude, int k)
+    {
+        int[] result = new int[Math.max(0, Math.min(k, ids.length))];
+
+        nearest(latitude, longitude, result, new double[result.length]);
+
+        return result;
+    }
+
+    /**
+     * Finds the stations nearest a point into arrays of the caller, so
+     * repeated queries allocate nothing
+     *
+     * @param latitude Degrees north
+     * @param longitude Degrees east
+     * @param stationIds Filled with dictionary ids, nearest first, its length is the number wanted
+     * @param distancesKm Filled with their distances in kilometers, at least as long as stationIds
+     * @return number of stations found, fewer than wanted if the tree is smaller
+     */
+    public int nearest(double latitude, double longitude, int[] stationIds, double[] distancesKm)
+    {
+        int wanted = Math.min(stationIds.length, ids.length);
+
+        if (wanted == 0)
+        {
+            return 0;
+        }
+
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        double lambda = Math.toRadians(longitude);
+
+        Arrays.fill(distancesKm, 0, wanted, Double.POSITIVE_INFINITY);
+        nearest(0, ids.length, 0, latitude, longitude, cosLatitude * Math.cos(lambda), cosLatitude * Math.sin(lambda),
+                Math.sin(Math.toRadians(latitude)), cosLatitude, wanted - 1, stationIds, distancesKm);
+
+        for (int i = 0; i < wanted; i++)
+        {
+            stationIds[i] = ids[stationIds[i]];
+            distancesKm[i] = 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(distancesKm[i]) / 2));
+        }
+
+        return wanted;
+    }
+
+    /**
+     * Marks the rows of the selected stations in a bitmap laid out like the
+     * validity bitmap of the store. Stations without a row are skipped.
+     *
+     * @param store Parsed file
+     * @param stationIds Dictionary ids
+     * @return bitmap of the rows, bit (row % 64) of word (row / 64)
+     */
+    public static long[] rowsOf(ColumnStore store, int[] stationIds)
+    {
+        long[] rows = new long[ColumnStore.wordCount(store.size())];
+
+        for (int stationId : stationIds)
+        {
+            int row = store.rowOf(stationId);
+            if (row >= 0)
+            {
+                rows[row >>> 6] |= 1L << row;
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Computes a statistic over only the selected stations of a file,
+     * stamped with the time of the date line like the statistics of MapData
+     *
+     * @param mapData Parsed file, a LAZY file is parsed in full
+     * @param type Type of statistic
+     * @param paramId Parameter id, ex: TAIR
+     * @param stationIds Dictionary ids, ex: from withinBox or nearest
+     * @return statistic or null if no selected station has a valid value
+     */
+    public static Statistics getStatistics(MapData mapData, StatsType type, String paramId, int[] stationIds)
+    {
+        ColumnStore store = mapData.getDataCatalog();
+        int column = store == null ? -1 : store.getColumnIndex(paramId);
+
+        if (column < 0)
+        {
+            return null;
+        }
+
+        StatisticsAccumulator accumulator = new StatisticsAccumulator();
+        accumulator.addColumn(store, column, mapData.getEpochSecond(), rowsOf(store, stationIds));
+
+        return accumulator.toStatistics(type);
+    }
+
+    /**
+     * Great circle distance by the haversine formula
+     *
+     * @param latitude1 Degrees north of the first point
+     * @param longitude1 Degrees east of the first point
+     * @param latitude2 Degrees north of the second point
+     * @param longitude2 Degrees east of the second point
+     * @return distance in kilometers
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2)
+    {
+        double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double h = sinLatitude * sinLatitude
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    /**
+     * Builds the tree over a range by placing its median on the axis of the
+     * depth in the middle, smaller coordinates before it and larger after
+     *
+     * @param from First position of the range
+     * @param to Position after the range
+     * @param depth Depth of the node, even splits latitude and odd longitude
+     */
+    private void build(int from, int to, int depth)
+    {
+        if (to - from < 2)
+        {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        double[] axis = depth % 2 == 0 ? latitudes : longitudes;
+        int low = from;
+        int high = to - 1;
+
+        //Quickselect the median of the axis into the middle
+        while (low < high)
+        {
+            double pivot = axis[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+
+            while (i <= j)
+            {
+                while (axis[i] < pivot)
+                {
+                    i++;
+                }
+                while (axis[j] > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    swap(i++, j--);
+                }
+            }
+
+            if (middle <= j)
+            {
+                high = j;
+            }
+            else if (middle >= i)
+            {
+                low = i;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        build(from, middle, depth + 1);
+        build(middle + 1, to, depth + 1);
+    }
+
+    /**
+     * Collects the stations of a range within a box
+     *
+     * @param from First position of the range
+     * @param to Position after the range
+     * @param depth Depth of the node
+     * @param minLatitude Southern edge
+     * @param minLongitude Western edge
+     * @param maxLatitude Northern edge
+     * @param maxLongitude Eastern edge
+     * @param found Dictionary ids found so far
+     * @param count Number found so far
+     * @return number found
+     */
+    private int withinBox(int from, int to, int depth, double minLatitude, double minLongitude,
+            double maxLatitude, double maxLongitude, int[] found, int count)
+    {
+        if (from >= to)
+        {
+            return count;
+        }
+
+        int middle = (from + to) >>> 1;
+        double latitude = latitudes[middle];
+        double longitude = longitudes[middle];
+
+        if (latitude >= minLatitude && latitude <= maxLatitude && longitude >= minLongitude && longitude <= maxLongitude)
+        {
+            found[count++] = ids[middle];
+        }
+
+        double split = depth % 2 == 0 ? latitude : longitude;
+        double min = depth % 2 == 0 ? minLatitude : minLongitude;
+        double max = depth % 2 == 0 ? maxLatitude : maxLongitude;
+
+        if (min <= split)
+        {
+            count = withinBox(from, middle, depth + 1, minLatitude, minLongitude, maxLatitude, maxLongitude, found, count);
+        }
+        if (max >= split)
+        {
+            count = withinBox(middle + 1, to, depth + 1, minLatitude, minLongitude, maxLatitude, maxLongitude, found, count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Keeps the nearest stations of a range in a list sorted by squared
+     * chord distance
+     *
+     * @param from First position of the range
+     * @param to Position after the range
+     * @param depth Depth of the node
+     * @param latitude Degrees north of the point
+     * @param longitude Degrees east of the point
+     * @param x First coordinate of the unit vector of the point
+     * @param y Second coordinate of the unit vector of the point
+     * @param z Third coordinate of the unit vector of the point
+     * @param cosLatitude Cosine of the latitude of the point
+     * @param last Position of the farthest station kept in the list
+     * @param best Tree positions of the nearest stations so far
+     * @param distances Their squared chord distances, infinite where the list is not full
+     */
+    private void nearest(int from, int to, int depth, double latitude, double longitude, double x, double y, double z,
+            double cosLatitude, int last, int[] best, double[] distances)
+    {
+        if (from >= to)
+        {
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        double dx = xs[middle] - x;
+        double dy = ys[middle] - y;
+        double dz = zs[middle] - z;
+        double distance = dx * dx + dy * dy + dz * dz;
+
+        if (distance < distances[last])
+        {
+            int i = last;
+            while (i > 0 && distances[i - 1] > distance)
+            {
+                distances[i] = distances[i - 1];
+                best[i] = best[i - 1];
+                i--;
+            }
+            distances[i] = distance;
+            best[i] = middle;
+        }
+
+        boolean latitudeAxis = depth % 2 == 0;
+        double difference = latitudeAxis ? latitude - latitudes[middle] : longitude - longitudes[middle];
+        int nearFrom = difference < 0 ? from : middle + 1;
+        int nearTo = difference < 0 ? middle : to;
+
+        nearest(nearFrom, nearTo, depth + 1, latitude, longitude, x, y, z, cosLatitude, last, best, distances);
+
+        if (bound(cosLatitude, Math.abs(difference), latitudeAxis) < distances[last])
+        {
+            nearest(difference < 0 ? middle + 1 : from, difference < 0 ? to : middle, depth + 1,
+                    latitude, longitude, x, y, z, cosLatitude, last, best, distances);
+        }
+    }
+
+    /**
+     * Lower bound of the squared chord distance from a point to any point
+     * beyond a split. Beyond a latitude split the angle is at least the
+     * difference in latitude; beyond a longitude split it is at least the
+     * angle to the meridian of the split, which shrinks with the cosine of
+     * the latitude of the point.
+     *
+     * @param cosLatitude Cosine of the latitude of the point
+     * @param difference Degrees between the point and the split
+     * @param latitudeAxis True if the split is on latitude
+     * @return squared chord distance no larger than the true one
+     */
+    private static double bound(double cosLatitude, double difference, boolean latitudeAxis)
+    {
+        //A squared chord of angle a is 2 (1 - cos a)
+        if (latitudeAxis)
+        {
+            return 2 * (1 - Math.cos(Math.toRadians(difference)));
+        }
+
+        double sine = cosLatitude * Math.sin(Math.toRadians(Math.min(difference, 90.0)));
+
+        return 2 * (1 - Math.sqrt(1 - sine * sine));
+    }
+
+    /**
+     * Converts a latitude and longitude to a point on the unit sphere
+     *
+     * @param latitude Degrees north
+     * @param longitude Degrees east
+     * @return x, y and z
+     */
+    private static double[] unitVector(double latitude, double longitude)
+    {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+
+        return new double[] {Math.cos(phi) * Math.cos(lambda), Math.cos(phi) * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    /**
+     * Swaps two stations of the tree
+     *
+     * @param i First position
+     * @param j Second position
+     */
+    private void swap(int i, int j)
+    {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+
+        double latitude = latitudes[i];
+        latitudes[i] = latitudes[j];
+        latitudes[j] = latitude;
+
+        double longitude = longitudes[i];
+        longitudes[i] = longitudes[j];
+        longitudes[j] = longitude;
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Station Metadata and Spatial Index classes
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class SpatialIndexTest
+{
+    /**
+     * Test that a geoinfo style file is read by its header names
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testLoad() throws IOException
+    {
+        File file = File.createTempFile("geoinfo", ".csv");
+        file.deleteOnExit();
+        try (Writer out = new FileWriter(file))
+        {
+            out.write("stnm,stid,name,nlat,elon,elev\n");
+            out.write("110,ACME,Acme,35.0,-98.0,397\n");
+            out.write("1,ADAX,Ada,34.8,-96.7,295\n");
+        }
+
+        StationMetadata test = StationMetadata.load(file);
+        int acme = StationDictionary.getGlobal().find("ACME");
+
+        Assert.assertEquals(2, test.size());
+        Assert.assertEquals(35.0, test.getLatitude(acme), .001);
+        Assert.assertEquals(-98.0, test.getLongitude(acme), .001);
+        Assert.assertEquals(acme, test.stationOfNumber(110));
+        Assert.assertEquals(-1, test.stationOfNumber(999));
+        Assert.assertTrue(Double.isNaN(test.getLatitude(StationDictionary.getGlobal().idOf("NOWHERE"))));
+
+        try (Writer out = new FileWriter(file))
+        {
+            out.write("stid,elev\nACME,397\n");
+        }
+
+        try
+        {
+            StationMetadata.load(file);
+            Assert.fail("Expected an IOException");
+        }
+        catch (IOException e)
+        {
+            Assert.assertTrue(e.getMessage().contains(file.getName()));
+        }
+    }
+
+    /**
+     * Test box and nearest station queries against a scan of every station
+     */
+    @Test
+    public void testQueries()
+    {
+        StationMetadata metadata = new StationMetadata();
+        Random random = new Random(21);
+
+        for (int i = 0; i < 300; i++)
+        {
+            metadata.put("KD" + i, -1, 33.5 + random.nextDouble() * 3.5, -103.0 + random.nextDouble() * 8.5);
+        }
+
+        SpatialIndex test = new SpatialIndex(metadata);
+        int[] all = metadata.getStationIds();
+        Assert.assertEquals(300, test.size());
+
+        for (int query = 0; query < 50; query++)
+        {
+            double latitude = 33.5 + random.nextDouble() * 3.5;
+            double longitude = -103.0 + random.nextDouble() * 8.5;
+            double[] distances = new double[all.length];
+            Integer[] order = new Integer[all.length];
+
+            for (int i = 0; i < all.length; i++)
+            {
+                distances[i] = SpatialIndex.distanceKm(latitude, longitude, metadata.getLatitude(all[i]),
+                        metadata.getLongitude(all[i]));
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+
+            int[] nearest = test.nearest(latitude, longitude, 5);
+            Assert.assertEquals(5, nearest.length);
+            for (int i = 0; i < nearest.length; i++)
+            {
+                Assert.assertEquals(all[order[i]], nearest[i]);
+            }
+
+            double minLatitude = latitude - 0.5;
+            double maxLongitude = longitude + 1.0;
+            int[] expected = Arrays.stream(all).filter(id -> metadata.getLatitude(id) >= minLatitude
+                    && metadata.getLatitude(id) <= latitude && metadata.getLongitude(id) >= longitude
+                    && metadata.getLongitude(id) <= maxLongitude).toArray();
+            Assert.assertArrayEquals(expected, test.withinBox(minLatitude, longitude, latitude, maxLongitude));
+        }
+
+        Assert.assertEquals(300, test.nearest(35.0, -98.0, 1000).length);
+        Assert.assertEquals(0, test.withinBox(40.0, -90.0, 41.0, -89.0).length);
+    }
+
+    /**
+     * Test statistics over only the stations of a box
+     */
+    @Test
+    public void testStatistics()
+    {
+        MapData mapData = new MapData(2018, 8, 30, 17, 45, "data/");
+        StationMetadata metadata = new StationMetadata();
+        metadata.put("ACME", 110, 35.0, -98.0);
+        metadata.put("ADAX", 1, 34.8, -96.7);
+        metadata.put("HOOK", -1, 36.9, -101.2);
+        SpatialIndex index = new SpatialIndex(metadata);
+
+        int[] selected = index.withinBox(34.5, -99.0, 35.5, -96.0);
+        Statistics average = SpatialIndex.getStatistics(mapData, StatsType.AVERAGE, "TAIR", selected);
+        Statistics maximum = SpatialIndex.getStatistics(mapData, StatsType.MAXIMUM, "TAIR", selected);
+
+        Assert.assertEquals(2, selected.length);
+        Assert.assertEquals(33.3, average.getValue(), .001);
+        Assert.assertEquals(2, average.getNumberOfReportingStations());
+        Assert.assertEquals(MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 0, 0), average.getEpochSecond());
+        Assert.assertEquals(mapData.getStatistics(StatsType.MAXIMUM, "TAIR").getEpochSecond(), maximum.getEpochSecond());
+        Assert.assertEquals("2018-08-30 00:00:00 UTC", Statistics.createStringFromEpochSecond(maximum.getEpochSecond()));
+        Assert.assertEquals("ACME", maximum.getStid());
+        Assert.assertEquals("HOOK", SpatialIndex.getStatistics(mapData, StatsType.MAXIMUM, "TAIR",
+                index.nearest(37.0, -101.0, 1)).getStid());
+        Assert.assertNull(SpatialIndex.getStatistics(mapData, StatsType.AVERAGE, "TR05", selected));
+        Assert.assertEquals(36.5, mapData.getStatistics(StatsType.MAXIMUM, "TAIR").getValue(), .001);
+    }
+}
@@ -0,0 +1,376 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Station Dictionary class assigns every station id a dense
+ * integer so rows can refer to stations without holding a String.
+ * Stations can be looked up straight from the bytes of a data
+ * file, so a known station costs no allocation. The global
+ * dictionary is shared by every file, observation and statistic,
+ * so the same station has the same id everywhere and names are
+ * only resolved for output.
+ *
+ * Known stations are looked up and names resolved without locking,
+ * through the table and names last published. The lock is only
+ * taken to add a new station, or when a station being added is not
+ * visible yet, so parallel parsers do not wait on each other once
+ * every station has been seen.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class StationDictionary
+{
+    /**
+     * Dictionary shared by the whole process
+     */
+    private static final StationDictionary GLOBAL = new StationDictionary();
+
+    /**
+     * Station names indexed by dictionary id
+     */
+    private volatile String[] names = new String[16];
+
+    /**
+     * STNM station numbers indexed by dictionary id, -1 if not known
+     */
+    private int[] numbers = newTable(16);
+
+    /**
+     * Open addressing table of dictionary ids, -1 marks an empty slot
+     */
+    private volatile int[] table = newTable(32);
+
+    /**
+     * Number of stations in the dictionary
+     */
+    private int size;
+
+    /**
+     * Returns the dictionary shared by the whole process
+     *
+     * @return global dictionary
+     */
+    public static StationDictionary getGlobal()
+    {
+        return GLOBAL;
+    }
+
+    /**
+     * Looks up or assigns the dictionary id of a station
+     *
+     * @param stid Station id
+     * @return dictionary id
+     */
+    public int idOf(String stid)
+    {
+        int id = find(stid);
+
+        return id >= 0 ? id : insert(stid);
+    }
+
+    /**
+     * Looks up the dictionary id of a station again under the lock and
+     * adds the station if it is still missing
+     *
+     * @param stid Station id
+     * @return dictionary id
+     */
+    private synchronized int insert(String stid)
+    {
+        int hash = stid.hashCode();
+        int slot = hash & (table.length - 1);
+
+        while (table[slot] >= 0)
+        {
+            if (names[table[slot]].equals(stid))
+            {
+                return table[slot];
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+
+        return add(stid, slot);
+    }
+
+    /**
+     * Looks up the dictionary id of a station without taking the lock
+     * or adding it, for readers that must not block
+     *
+     * @param stid Station id
+     * @return dictionary id or -1 if the station is not in the dictionary
+     */
+    public int find(String stid)
+    {
+        int[] currentTable = table;
+        String[] currentNames = names;
+        int slot = stid.hashCode() & (currentTable.length - 1);
+
+        while (currentTable[slot] >= 0)
+        {
+            int id = currentTable[slot];
+            String name = id < currentNames.length ? currentNames[id] : null;
+
+            //A station being added right now may not be visible yet
+            if (name == null)
+            {
+                return findLocked(stid);
+            }
+            if (name.equals(stid))
+            {
+                return id;
+            }
+            slot = (slot + 1) & (currentTable.length - 1);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Looks up or assigns the dictionary id of a station stored
+     * as ASCII bytes. A String is only created for a new station,
+     * and the lock is only taken to add one.
+     *
+     * @param bytes Buffer holding the station id
+     * @param start First byte of the station id
+     * @param end One past the last byte of the station id
+     * @return dictionary id
+     */
+    public int idOf(ByteBuffer bytes, int start, int end)
+    {
+        //Same hash as String.hashCode for ASCII text
+        int hash = 0;
+        for (int i = start; i < end; i++)
+        {
+            hash = 31 * hash + (bytes.get(i) & 0xff);
+        }
+
+        int[] currentTable = table;
+        String[] currentNames = names;
+        int slot = hash & (currentTable.length - 1);
+
+        while (currentTable[slot] >= 0)
+        {
+            int id = currentTable[slot];
+            String name = id < currentNames.length ? currentNames[id] : null;
+
+            //A station being added right now may not be visible yet
+            if (name == null)
+            {
+                break;
+            }
+            if (matches(name, bytes, start, end))
+            {
+                return id;
+            }
+            slot = (slot + 1) & (currentTable.length - 1);
+        }
+
+        return insert(bytes, start, end, hash);
+    }
+
+    /**
+     * Looks up the dictionary id of a station stored as ASCII bytes again
+     * under the lock and adds the station if it is still missing
+     *
+     * @param bytes Buffer holding the station id
+     * @param start First byte of the station id
+     * @param end One past the last byte of the station id
+     * @param hash String.hashCode of the station id
+     * @return dictionary id
+     */
+    private synchronized int insert(ByteBuffer bytes, int start, int end, int hash)
+    {
+        int slot = hash & (table.length - 1);
+
+        while (table[slot] >= 0)
+        {
+            if (matches(names[table[slot]], bytes, start, end))
+            {
+                return table[slot];
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++)
+        {
+            chars[i - start] = (char) (bytes.get(i) & 0xff);
+        }
+
+        return add(new String(chars), slot);
+    }
+
+    /**
+     * Returns the station id of a dictionary id without taking the lock,
+     * so output and queries never wait on parsers adding stations
+     *
+     * @param id Dictionary id
+     * @return station id
+     */
+    public String nameOf(int id)
+    {
+        String[] currentNames = names;
+        String name = id < currentNames.length ? currentNames[id] : null;
+
+        //A station being added right now may not be visible yet
+        return name != null ? name : nameOfLocked(id);
+    }
+
+    /**
+     * Returns the station id of a dictionary id under the lock
+     *
+     * @param id Dictionary id
+     * @return station id
+     */
+    private synchronized String nameOfLocked(int id)
+    {
+        return names[id];
+    }
+
+    /**
+     * Records the STNM station number of a station
+     *
+     * @param id Dictionary id
+     * @param number Station number
+     */
+    public synchronized void setNumber(int id, int number)
+    {
+        numbers[id] = number;
+    }
+
+    /**
+     * Returns the STNM station number of a station
+     *
+     * @param id Dictionary id
+     * @return station number or -1 if it was never recorded
+     */
+    public synchronized int numberOf(int id)
+    {
+        return numbers[id];
+    }
+
+    /**
+     * Returns the number of stations
+     *
+     * @return number of stations
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    /**
+     * Looks up the dictionary id of a station under the lock
+     *
+     * @param stid Station id
+     * @return dictionary id or -1 if the station is not in the dictionary
+     */
+    private synchronized int findLocked(String stid)
+    {
+        int slot = stid.hashCode() & (table.length - 1);
+
+        while (table[slot] >= 0)
+        {
+            if (names[table[slot]].equals(stid))
+            {
+                return table[slot];
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+
+        return -1;
+    }
+
+    /**
+     * Adds a new station in an empty slot of the table
+     *
+     * @param stid Station id
+     * @param slot Empty table slot for the station
+     * @return dictionary id
+     */
+    private int add(String stid, int slot)
+    {
+        int id = size++;
+
+        if (id == names.length)
+        {
+            names = Arrays.copyOf(names, id * 2);
+            numbers = Arrays.copyOf(numbers, id * 2);
+            Arrays.fill(numbers, id, numbers.length, -1);
+        }
+        names[id] = stid.intern();
+        table[slot] = id;
+
+        //Keep the table at most half full
+        if (size * 2 > table.length)
+        {
+            rehash();
+        }
+
+        return id;
+    }
+
+    /**
+     * Doubles the table and reinserts every station
+     */
+    private void rehash()
+    {
+        //Fill the new table before publishing it to lock-free readers
+        int[] newTable = newTable(table.length * 2);
+
+        for (int id = 0; id < size; id++)
+        {
+            int slot = names[id].hashCode() & (newTable.length - 1);
+            while (newTable[slot] >= 0)
+            {
+                slot = (slot + 1) & (newTable.length - 1);
+            }
+            newTable[slot] = id;
+        }
+        table = newTable;
+    }
+
+    /**
+     * Compares a station name with ASCII bytes
+     *
+     * @param name Station name
+     * @param bytes Buffer holding the station id
+     * @param start First byte of the station id
+     * @param end One past the last byte of the station id
+     * @return true if they hold the same text
+     */
+    private static boolean matches(String name, ByteBuffer bytes, int start, int end)
+    {
+        if (name.length() != end - start)
+        {
+            return false;
+        }
+
+        for (int i = start; i < end; i++)
+        {
+            if (name.charAt(i - start) != (bytes.get(i) & 0xff))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Creates an empty table
+     *
+     * @param length Number of slots, a power of two
+     * @return table with every slot empty
+     */
+    private static int[] newTable(int length)
+    {
+        int[] newTable = new int[length];
+        Arrays.fill(newTable, -1);
+
+        return newTable;
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Station Metadata class holds the latitude and longitude of each
+ * station, indexed by the station's id in the global StationDictionary
+ * and also found by its STNM number. Locations are read from a CSV file
+ * such as the Mesonet geoinfo.csv, whose header names the columns:
+ *
+ *   stnm,stid,name,city,...,nlat,elon,elev,...
+ *
+ * The columns stid, stnm, nlat and elon are used, and lat, latitude,
+ * lon and longitude are accepted as well. Other columns are ignored.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class StationMetadata
+{
+    /**
+     * Latitude in degrees north by dictionary id, NaN if unknown
+     */
+    private double[] latitudes = new double[0];
+
+    /**
+     * Longitude in degrees east by dictionary id, NaN if unknown
+     */
+    private double[] longitudes = new double[0];
+
+    /**
+     * Dictionary id by STNM station number
+     */
+    private HashMap<Integer, Integer> byNumber = new HashMap<Integer, Integer>();
+
+    /**
+     * Number of stations with a location
+     */
+    private int size;
+
+    /**
+     * Reads the locations of a CSV file
+     *
+     * @param file CSV file with a header line
+     * @return metadata of every station in the file
+     * @throws IOException Checks to make sure the file can be read and has the needed columns
+     */
+    public static StationMetadata load(File file) throws IOException
+    {
+        StationMetadata metadata = new StationMetadata();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+        {
+            String header = reader.readLine();
+            if (header == null)
+            {
+                throw new IOException("No header in " + file);
+            }
+
+            String[] names = header.trim().toLowerCase().split("\\s*,\\s*");
+            int stid = columnOf(names, "stid");
+            int stnm = columnOf(names, "stnm");
+            int lat = Math.max(columnOf(names, "nlat"), Math.max(columnOf(names, "lat"), columnOf(names, "latitude")));
+            int lon = Math.max(columnOf(names, "elon"), Math.max(columnOf(names, "lon"), columnOf(names, "longitude")));
+
+            if (stid < 0 || lat < 0 || lon < 0)
+            {
+                throw new IOException("Missing stid, latitude or longitude column in " + file);
+            }
+
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                if (line.trim().isEmpty())
+                {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s*,\\s*");
+                try
+                {
+                    metadata.put(fields[stid].trim(), stnm < 0 ? -1 : Integer.parseInt(fields[stnm].trim()),
+                            Double.parseDouble(fields[lat]), Double.parseDouble(fields[lon]));
+                }
+                catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+                {
+                    throw new IOException("Bad station on line " + lineNumber + " of " + file, e);
+                }
+            }
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Sets the location of a station
+     *
+     * @param stid Station id, ex: ACME
+     * @param stnm Station number, or -1 if it is not known
+     * @param latitude Degrees north
+     * @param longitude Degrees east, negative in Oklahoma
+     */
+    public void put(String stid, int stnm, double latitude, double longitude)
+    {
+        StationDictionary stations = StationDictionary.getGlobal();
+        int id = stations.idOf(stid);
+
+        if (id >= latitudes.length)
+        {
+            int capacity = Math.max(id + 1, latitudes.length * 2);
+            latitudes = grow(latitudes, capacity);
+            longitudes = grow(longitudes, capacity);
+        }
+
+        if (Double.isNaN(latitudes[id]))
+        {
+            size++;
+        }
+        latitudes[id] = latitude;
+        longitudes[id] = longitude;
+
+        if (stnm >= 0)
+        {
+            byNumber.put(stnm, id);
+            stations.setNumber(id, stnm);
+        }
+    }
+
+    /**
+     * Checks whether a station has a location
+     *
+     * @param stationId Dictionary id
+     * @return true if its latitude and longitude are known
+     */
+    public boolean contains(int stationId)
+    {
+        return stationId >= 0 && stationId < latitudes.length && !Double.isNaN(latitudes[stationId]);
+    }
+
+    /**
+     * Returns the latitude of a station
+     *
+     * @param stationId Dictionary id
+     * @return degrees north or NaN if unknown
+     */
+    public double getLatitude(int stationId)
+    {
+        return contains(stationId) ? latitudes[stationId] : Double.NaN;
+    }
+
+    /**
+     * Returns the longitude of a station
+     *
+     * @param stationId Dictionary id
+     * @return degrees east or NaN if unknown
+     */
+    public double getLongitude(int stationId)
+    {
+        return contains(stationId) ? longitudes[stationId] : Double.NaN;
+    }
+
+    /**
+     * Finds a station by its STNM number
+     *
+     * @param stnm Station number
+     * @return dictionary id or -1 if no station with a location has that number
+     */
+    public int stationOfNumber(int stnm)
+    {
+        Integer id = byNumber.get(stnm);
+
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Lists every station with a location
+     *
+     * @return dictionary ids in ascending order
+     */
+    public int[] getStationIds()
+    {
+        int[] ids = new int[size];
+        int count = 0;
+
+        for (int id = 0; id < latitudes.length; id++)
+        {
+            if (!Double.isNaN(latitudes[id]))
+            {
+                ids[count++] = id;
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Returns the number of stations with a location
+     *
+     * @return number of stations
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Finds a column by name
+     *
+     * @param names Lower case column names
+     * @param name Column to find
+     * @return column number or -1 if absent
+     */
+    private static int columnOf(String[] names, String name)
+    {
+        for (int i = 0; i < names.length; i++)
+        {
+            if (names[i].equals(name))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Copies an array into a larger one filled with NaN
+     *
+     * @param values Array to copy
+     * @param capacity New length
+     * @return larger array
+     */
+    private static double[] grow(double[] values, int capacity)
+    {
+        double[] grown = Arrays.copyOf(values, capacity);
+        Arrays.fill(grown, values.length, capacity, Double.NaN);
+
+        return grown;
+    }
+}
@@ -1,14 +1,22 @@
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
-import java.text.DecimalFormat;
 import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 
 /**
  * Statistics class 
  * 
+ * Times are held as a UTC epoch second, so comparisons are primitive
+ * long compares and date lines are parsed without building a calendar.
+ * Formatted strings are cached per timestamp.
+ * 
  * @author Tim Weaver
  * @version 2018-10-23
  * 
@@ -18,10 +26,36 @@ public class Statistics extends Observation implements DateTimeComparable
 {
     protected static String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss z";
     protected DateTimeFormatter format;
-    private GregorianCalendar utcDateTime;
-    private ZonedDateTime zdtDateTime;
-    private int numberOfReportingStations;
-    private StatsType statType;
+    private final long epochSecond;
+    private final int numberOfReportingStations;
+    private final StatsType statType;
+    
+    /**
+     * Number of values of each sentinel code, in the order of
+     * ValidityRules.getSentinels, or null if they were not counted
+     */
+    private final int[] sentinelCounts;
+    
+    /**
+     * Time zone of every date in the files
+     */
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    
+    /**
+     * Days from 0000-03-01 to 1970-01-01 in the proleptic Gregorian calendar
+     */
+    private static final long DAYS_TO_EPOCH = 719468;
+    
+    /**
+     * Number of slots in the formatted string cache, a power of two
+     */
+    private static final int FORMAT_CACHE_SIZE = 256;
+    
+    /**
+     * Formatted strings by timestamp, one per slot. Entries are immutable
+     * so a racing read sees either the old or the new entry.
+     */
+    private static final FormattedTime[] FORMAT_CACHE = new FormattedTime[FORMAT_CACHE_SIZE];
     
     /**
      * Constructor that takes a date as a string 
@@ -29,7 +63,24 @@ public class Statistics extends Observation implements DateTimeComparable
      * 
      * @param value Value
      * @param stid Station Id
-     * @param dateTimeStr Date Time as a String
+     * @param dateTimeStr Date Time as a String, ex: 2018-08-30 17:45:00 UTC
+     * @param numberOfValidStations Number of Valid Stations
+     * @param inStatType State Type
+     * @throws ParseException Checks for errors when parsing the file
+     */
+    public Statistics(double value, String stid, String dateTimeStr, int numberOfValidStations,
+            StatsType inStatType) throws ParseException
+    {
+        this(value, stid, createEpochSecondFromString(dateTimeStr), numberOfValidStations, inStatType);
+    }
+    
+    /**
+     * Constructor that takes a date as a zoned date time
+     * to create statistics
+     * 
+     * @param value Value
+     * @param stid Station Id
+     * @param dateTime Date Time
      * @param numberOfValidStations Number of Valid Stations
      * @param inStatType State Type
      * @throws ParseException Checks for errors when parsing the file
@@ -37,11 +88,7 @@ public class Statistics extends Observation implements DateTimeComparable
     public Statistics(double value, String stid, ZonedDateTime dateTime, int numberOfValidStations,
             StatsType inStatType) throws ParseException
     {
-        super(value, stid);
-        this.statType = inStatType;
-        this.numberOfReportingStations = numberOfValidStations;
-        //this.utcDateTime = createDateFromString(dateTimeStr);
-        
+        this(value, stid, dateTime.toEpochSecond(), numberOfValidStations, inStatType);
     }
     
     /**
@@ -56,11 +103,65 @@ public class Statistics extends Observation implements DateTimeComparable
      */
     public Statistics(double value, String stid, GregorianCalendar dateTime, 
             int numberOfValidStations, StatsType inStatType)
+    {
+        this(value, stid, Math.floorDiv(epochMilliOf(dateTime), 1000), numberOfValidStations, inStatType);
+    }
+    
+    /**
+     * Constructor that takes a date as a UTC epoch second 
+     * to create statistics
+     * 
+     * @param value Value
+     * @param stid Station Id
+     * @param epochSecond Date Time as a UTC epoch second
+     * @param numberOfValidStations Number of Valid Stations
+     * @param inStatType State Type
+     */
+    public Statistics(double value, String stid, long epochSecond, 
+            int numberOfValidStations, StatsType inStatType)
     {
         super(value, stid);
         this.numberOfReportingStations = numberOfValidStations;
         this.statType = inStatType;     
-        this.utcDateTime = dateTime;
+        this.epochSecond = epochSecond;
+        this.sentinelCounts = null;
+    }
+    
+    /**
+     * Constructor that takes the station as a dictionary id and
+     * the date as a UTC epoch second to create statistics
+     * 
+     * @param value Value
+     * @param stationId Id of the station in the global StationDictionary
+     * @param epochSecond Date Time as a UTC epoch second
+     * @param numberOfValidStations Number of Valid Stations
+     * @param inStatType State Type
+     */
+    public Statistics(double value, int stationId, long epochSecond, 
+            int numberOfValidStations, StatsType inStatType)
+    {
+        this(value, stationId, epochSecond, numberOfValidStations, inStatType, null);
+    }
+    
+    /**
+     * Constructor that also takes the number of values of each sentinel
+     * code, which cannot be changed afterwards
+     * 
+     * @param value Value
+     * @param stationId Id of the station in the global StationDictionary
+     * @param epochSecond Date Time as a UTC epoch second
+     * @param numberOfValidStations Number of Valid Stations
+     * @param inStatType State Type
+     * @param sentinelCounts Counts in the order of ValidityRules.getSentinels, copied, or null if not counted
+     */
+    public Statistics(double value, int stationId, long epochSecond, 
+            int numberOfValidStations, StatsType inStatType, int[] sentinelCounts)
+    {
+        super(value, stationId);
+        this.numberOfReportingStations = numberOfValidStations;
+        this.statType = inStatType;     
+        this.epochSecond = epochSecond;
+        this.sentinelCounts = sentinelCounts == null ? null : sentinelCounts.clone();
     }
     
     /**
@@ -73,32 +174,170 @@ public class Statistics extends Observation implements DateTimeComparable
      */
     public static GregorianCalendar createDateFromString (String dateTimeStr) throws ParseException
     {
-        int offSet = 0;
-        if (!dateTimeStr.contains("-"))
+        return createDateFromEpochSecond(createEpochSecondFromString(dateTimeStr));
+    }
+    
+    /**
+     * Takes a string in either the date line layout of the files,
+     * ex: "  21 2018 08 30 17 45 00", or the layout getUTCDateTimeString
+     * writes, ex: "2018-08-30 17:45:00 UTC", and converts it into a UTC
+     * epoch second. The characters are scanned once without allocating.
+     * 
+     * @param dateTimeStr date and time
+     * @return UTC epoch second
+     * @throws NumberFormatException if a field is missing or out of range
+     */
+    public static long createEpochSecondFromString(CharSequence dateTimeStr)
+    {
+        //The date line of the files starts with a count before the year
+        int field = -1;
+        for (int i = 0; i < dateTimeStr.length(); i++)
         {
-            offSet = 1;
+            if (dateTimeStr.charAt(i) == '-')
+            {
+                field = 0;
+                break;
+            }
         }
         
-        String[] dateTimeParts = dateTimeStr.split("-|:|\\s");
-              
-       
-        int day = Integer.parseInt(dateTimeParts[2 + offSet]);
-        int year = Integer.parseInt(dateTimeParts[0 + offSet]);
-        int month = Integer.parseInt(dateTimeParts[1 + offSet]);
-        int hour = Integer.parseInt(dateTimeParts[3 + offSet]);
-        int minute = Integer.parseInt(dateTimeParts[4 + offSet]);
-        int second = Integer.parseInt(dateTimeParts[5 + offSet]);
-        String timeZone = "UTC";   
-         
-        GregorianCalendar dateTime = new GregorianCalendar(year, month, day, hour, minute, second);
-        dateTime.setTimeZone(TimeZone.getTimeZone(timeZone));
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int length = dateTimeStr.length();
+        int i = 0;
+        
+        while (i < length && field < 6)
+        {
+            char c = dateTimeStr.charAt(i);
+            if (c < '0' || c > '9')
+            {
+                i++;
+                continue;
+            }
+            
+            int number = 0;
+            while (i < length && (c = dateTimeStr.charAt(i)) >= '0' && c <= '9')
+            {
+                number = number * 10 + (c - '0');
+                i++;
+            }
+            
+            switch (field)
+            {
+                case 0:
+                    year = number;
+                    break;
+                case 1:
+                    month = number;
+                    break;
+                case 2:
+                    day = number;
+                    break;
+                case 3:
+                    hour = number;
+                    break;
+                case 4:
+                    minute = number;
+                    break;
+                case 5:
+                    second = number;
+                    break;
+                default:
+                    break;
+            }
+            field++;
+        }
         
-        return dateTime;
+        if (field < 6 || month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 59)
+        {
+            throw new NumberFormatException("Not a date and time: " + dateTimeStr);
+        }
+        
+        return toEpochSecond(year, month, day, hour, minute, second);
     }
     
+    /**
+     * Converts UTC date fields into an epoch second with integer arithmetic
+     * 
+     * @param year Year
+     * @param month Month, 1 to 12
+     * @param day Day of the month
+     * @param hour Hour of the day
+     * @param minute Minute
+     * @param second Second
+     * @return UTC epoch second
+     */
+    public static long toEpochSecond(int year, int month, int day, int hour, int minute, int second)
+    {
+        //Count years from March so the leap day is the last day of the year
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097 + dayOfEra - DAYS_TO_EPOCH;
+        
+        return days * 86400 + hour * 3600 + minute * 60 + second;
+    }
+    
+    /**
+     * Takes a UTC epoch second and converts it into a Calendar
+     * holding the same fields createDateFromString would give
+     *
+     * @param epochSecond UTC epoch second
+     * @return dateTime The Date of Time
+     */
+    public static GregorianCalendar createDateFromEpochSecond(long epochSecond)
+    {
+        return new WrittenCalendar(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+    }
+    
+    /**
+     * Takes a Calendar holding the month as written in the file, the way
+     * createDateFromString builds them, and converts it into a UTC epoch
+     * millisecond. The date is built from the fields as written, since
+     * the calendar reads the 31st of August as September 31st, which it
+     * normalizes to October 1st.
+     *
+     * @param calendar Date Time as a Calendar
+     * @return UTC epoch millisecond
+     */
+    public static long epochMilliOf(GregorianCalendar calendar)
+    {
+        if (calendar instanceof WrittenCalendar)
+        {
+            WrittenCalendar written = (WrittenCalendar) calendar;
+            
+            //Unchanged since it was built, so its fields are still the ones written
+            if (written.getTimeInMillis() == written.builtMillis)
+            {
+                return written.written.toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+        }
+        
+        //The month field holds the real month number, counted from 1
+        LocalDateTime written = LocalDateTime.of(calendar.get(GregorianCalendar.YEAR), 1, 1,
+                calendar.get(GregorianCalendar.HOUR_OF_DAY), calendar.get(GregorianCalendar.MINUTE),
+                calendar.get(GregorianCalendar.SECOND))
+                .plusMonths(calendar.get(GregorianCalendar.MONTH) - 1)
+                .plusDays(calendar.get(GregorianCalendar.DAY_OF_MONTH) - 1);
+        
+        return written.toInstant(ZoneOffset.UTC).toEpochMilli() + calendar.get(GregorianCalendar.MILLISECOND);
+    }
+
+    /**
+     * Takes a string and converts it into
+     * a zoned date time in UTC
+     * 
+     * @param dateTimeStr date and time
+     * @return dateTime The Date of Time Parsed correctly
+     */
     public ZonedDateTime createZDateFromString(String dateTimeStr)
     {
-        return zdtDateTime;        
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(createEpochSecondFromString(dateTimeStr)), ZoneOffset.UTC);
     }
     
     /**
@@ -110,25 +349,81 @@ public class Statistics extends Observation implements DateTimeComparable
      */
     public static String createStringFromDate(GregorianCalendar calendar)
     {
-        String returnString = "";
-        DecimalFormat df = new DecimalFormat("00");
+        return createStringFromEpochSecond(Math.floorDiv(epochMilliOf(calendar), 1000));
+    }
+    
+    /**
+     * Takes a zoned date time and converts it into
+     * a string
+     * 
+     * @param calendar passes through a zoned date time
+     * @return dateTime The Date of Time Parsed correctly 
+     */
+    public String createStringFromDate(ZonedDateTime calendar)
+    {
+        return createStringFromEpochSecond(calendar.toEpochSecond());
+    }
+    
+    /**
+     * Takes a UTC epoch second and converts it into a string,
+     * ex: 2018-08-30 17:45:00 UTC. Recent timestamps are served
+     * from a cache instead of being formatted again.
+     * 
+     * @param epochSecond UTC epoch second
+     * @return dateTime The Date of Time
+     */
+    public static String createStringFromEpochSecond(long epochSecond)
+    {
+        int slot = (int) (epochSecond ^ (epochSecond >>> 32)) & (FORMAT_CACHE_SIZE - 1);
+        FormattedTime cached = FORMAT_CACHE[slot];
         
-        returnString += (calendar.get(GregorianCalendar.YEAR) + "-");
-        returnString += (df.format(calendar.get(GregorianCalendar.MONTH)) + "-");
-        returnString += (df.format(calendar.get(GregorianCalendar.DAY_OF_MONTH)) + " ");
-        returnString += (df.format(calendar.get(GregorianCalendar.HOUR_OF_DAY)) + ":");
-        returnString += (df.format(calendar.get(GregorianCalendar.MINUTE)) + ":");
-        returnString += (df.format(calendar.get(GregorianCalendar.SECOND)) + " ");       
-        returnString += "UTC";
+        if (cached != null && cached.epochSecond == epochSecond)
+        {
+            return cached.text;
+        }
         
-        return returnString;
+        LocalDateTime utc = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        char[] chars = "0000-00-00 00:00:00 UTC".toCharArray();
+        writeDigits(chars, 0, 4, utc.getYear());
+        writeDigits(chars, 5, 2, utc.getMonthValue());
+        writeDigits(chars, 8, 2, utc.getDayOfMonth());
+        writeDigits(chars, 11, 2, utc.getHour());
+        writeDigits(chars, 14, 2, utc.getMinute());
+        writeDigits(chars, 17, 2, utc.getSecond());
+        
+        String text = new String(chars);
+        FORMAT_CACHE[slot] = new FormattedTime(epochSecond, text);
+        
+        return text;
     }
     
-    public String createStringFromDate(ZonedDateTime calendar)
+    /**
+     * Writes a zero padded number into a character array
+     * 
+     * @param chars Characters to write into
+     * @param offset First position
+     * @param width Number of digits
+     * @param number Number to write
+     */
+    private static void writeDigits(char[] chars, int offset, int width, int number)
     {
-        return "";
+        int rest = number;
+        for (int i = offset + width - 1; i >= offset; i--)
+        {
+            chars[i] = (char) ('0' + rest % 10);
+            rest /= 10;
+        }
     }
 
+    /**
+     * Gets the type of statistic
+     * @return Stats type
+     */
+    public StatsType getStatType()
+    {
+        return statType;
+    }
+    
     /**
      * Gets number of reporting stations
      * @return Number of reporting stations
@@ -138,6 +433,53 @@ public class Statistics extends Observation implements DateTimeComparable
         return numberOfReportingStations;
     }
     
+    
+    /**
+     * Gets the number of values that held a sentinel code
+     * @param code Sentinel code, ex: -999
+     * @return number of values, 0 if the code is not configured or was not counted
+     */
+    public int getSentinelCount(int code)
+    {
+        int[] codes = ValidityRules.getGlobal().getSentinels();
+        
+        for (int i = 0; sentinelCounts != null && i < codes.length; i++)
+        {
+            if (codes[i] == code)
+            {
+                return sentinelCounts[i];
+            }
+        }
+        
+        return 0;
+    }
+    
+    /**
+     * Gets the number of values of every sentinel code
+     * @return counts by code in configured order, empty if they were not counted
+     */
+    public Map<Integer, Integer> getSentinelCounts()
+    {
+        LinkedHashMap<Integer, Integer> counts = new LinkedHashMap<Integer, Integer>();
+        int[] codes = ValidityRules.getGlobal().getSentinels();
+        
+        for (int i = 0; sentinelCounts != null && i < codes.length; i++)
+        {
+            counts.put(codes[i], sentinelCounts[i]);
+        }
+        
+        return counts;
+    }
+    
+    /**
+     * Gets the date time as a UTC epoch second
+     * @return epoch second
+     */
+    public long getEpochSecond()
+    {
+        return epochSecond;
+    }
+    
     /**
      * Gets date string and assigns proper values
      * to the variables
@@ -145,18 +487,7 @@ public class Statistics extends Observation implements DateTimeComparable
      */
     public String getUTCDateTimeString()
     {
-        String returnString = "";
-        DecimalFormat df = new DecimalFormat("00");
-        
-        returnString += (utcDateTime.get(GregorianCalendar.YEAR) + "-");
-        returnString += (df.format(utcDateTime.get(GregorianCalendar.MONTH)) + "-");
-        returnString += (df.format(utcDateTime.get(GregorianCalendar.DAY_OF_MONTH)) + " ");
-        returnString += (df.format(utcDateTime.get(GregorianCalendar.HOUR_OF_DAY)) + ":");
-        returnString += (df.format(utcDateTime.get(GregorianCalendar.MINUTE)) + ":");
-        returnString += (df.format(utcDateTime.get(GregorianCalendar.SECOND)) + " ");       
-        returnString += "UTC";
-        
-        return returnString;
+        return createStringFromEpochSecond(epochSecond);
     }
     
     /**
@@ -165,7 +496,7 @@ public class Statistics extends Observation implements DateTimeComparable
      */
     public boolean newerThan(GregorianCalendar inDateTime)
     {
-        return utcDateTime.before(inDateTime);
+        return epochSecond * 1000 < epochMilliOf(inDateTime);
     }
     
     /**
@@ -174,7 +505,7 @@ public class Statistics extends Observation implements DateTimeComparable
      */
     public boolean olderThan(GregorianCalendar inDateTime)
     {
-        return utcDateTime.after(inDateTime);
+        return epochSecond * 1000 > epochMilliOf(inDateTime);
     }
     
     /**
@@ -183,22 +514,61 @@ public class Statistics extends Observation implements DateTimeComparable
      */
     public boolean sameAs(GregorianCalendar inDateTime)
     {
-        return utcDateTime.equals(inDateTime);
+        return epochSecond * 1000 == epochMilliOf(inDateTime);
     }
     
+    /**
+     * Checks to see if newer than
+     * @return date time before
+     */
     public boolean newerThan(ZonedDateTime inDateTime)
     {
-        return utcDateTime.before(inDateTime);
+        return newerThan(inDateTime.toEpochSecond());
     }
     
+    /**
+     * Checks to see if older than
+     * @return date time after
+     */
     public boolean olderThan(ZonedDateTime inDateTime)
     {
-        return utcDateTime.after(inDateTime);
+        return olderThan(inDateTime.toEpochSecond());
     }
     
+    /**
+     * Checks to see if same as
+     * @return date time equals
+     */
     public boolean sameAs(ZonedDateTime inDateTime)
     {
-        return utcDateTime.equals(inDateTime);
+        return sameAs(inDateTime.toEpochSecond());
+    }
+    
+    /**
+     * Checks to see if newer than
+     * @return date time before
+     */
+    public boolean newerThan(long inEpochSecond)
+    {
+        return epochSecond < inEpochSecond;
+    }
+    
+    /**
+     * Checks to see if older than
+     * @return date time after
+     */
+    public boolean olderThan(long inEpochSecond)
+    {
+        return epochSecond > inEpochSecond;
+    }
+    
+    /**
+     * Checks to see if same as
+     * @return date time equals
+     */
+    public boolean sameAs(long inEpochSecond)
+    {
+        return epochSecond == inEpochSecond;
     }
     
     /**
@@ -209,4 +579,69 @@ public class Statistics extends Observation implements DateTimeComparable
     {
         return "";
     }
+    
+    /**
+     * Calendar built by createDateFromEpochSecond. It keeps the date it was
+     * built from, because a day the month after the written one does not
+     * have is normalized away as soon as a field is read.
+     */
+    private static final class WrittenCalendar extends GregorianCalendar
+    {
+        /**
+         * Serialized form version
+         */
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * UTC date and time with the real month
+         */
+        private final LocalDateTime written;
+        
+        /**
+         * Epoch millisecond of the calendar when it was built
+         */
+        private final long builtMillis;
+        
+        /**
+         * Written calendar constructor holding the month as written
+         * 
+         * @param utc UTC date and time with the real month
+         */
+        WrittenCalendar(LocalDateTime utc)
+        {
+            super(utc.getYear(), utc.getMonthValue(), utc.getDayOfMonth(), utc.getHour(), utc.getMinute(),
+                    utc.getSecond());
+            setTimeZone(UTC);
+            this.written = utc;
+            this.builtMillis = getTimeInMillis();
+        }
+    }
+    
+    /**
+     * Formatted string of one timestamp
+     */
+    private static final class FormattedTime
+    {
+        /**
+         * UTC epoch second
+         */
+        private final long epochSecond;
+        
+        /**
+         * Formatted string
+         */
+        private final String text;
+        
+        /**
+         * Formatted time constructor
+         * 
+         * @param epochSecond UTC epoch second
+         * @param text Formatted string
+         */
+        FormattedTime(long epochSecond, String text)
+        {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
+    }
 }
@@ -0,0 +1,391 @@
+/**
+ * Statistics Accumulator class keeps the running statistics of one
+ * parameter. It holds the count, total, minimum and maximum, with the
+ * station and time of each extreme. The mean and variance are kept by
+ * Welford's method. A QuantileSketch gives the median and percentiles.
+ * The number of values that held each sentinel code is counted too.
+ *
+ * Accumulators of separate files can be merged in any order. The result
+ * is the same as one pass over all of the files.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class StatisticsAccumulator
+{
+    /**
+     * Name used as the station of statistics covering every station
+     */
+    private static final String MESONET = "Mesonet";
+
+    /**
+     * Dictionary id of MESONET
+     */
+    private static final int MESONET_ID = StationDictionary.getGlobal().idOf(MESONET);
+
+    /**
+     * Number of valid values
+     */
+    private int count;
+
+    /**
+     * Sum of valid values
+     */
+    private double total;
+
+    /**
+     * Welford running mean
+     */
+    private double mean;
+
+    /**
+     * Welford sum of squared differences from the mean
+     */
+    private double m2;
+
+    /**
+     * Bounded summary of the values for percentiles
+     */
+    private QuantileSketch sketch = new QuantileSketch();
+
+    /**
+     * Smallest valid value
+     */
+    private double min = Double.POSITIVE_INFINITY;
+
+    /**
+     * Dictionary id of the station of the smallest value
+     */
+    private int minStation = -1;
+
+    /**
+     * UTC epoch second of the smallest value
+     */
+    private long minTime = Long.MAX_VALUE;
+
+    /**
+     * Largest valid value
+     */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Dictionary id of the station of the largest value
+     */
+    private int maxStation = -1;
+
+    /**
+     * UTC epoch second of the largest value
+     */
+    private long maxTime = Long.MAX_VALUE;
+
+    /**
+     * Latest UTC epoch second that was added
+     */
+    private long lastTime = Long.MIN_VALUE;
+
+    /**
+     * Number of values of each sentinel code, in the order of ValidityRules.getSentinels
+     */
+    private int[] sentinelCounts = new int[ValidityRules.getGlobal().getSentinels().length];
+
+    /**
+     * Adds one valid value
+     *
+     * @param value Value
+     * @param stid Station id
+     * @param time UTC epoch second of the value
+     */
+    public void add(double value, String stid, long time)
+    {
+        add(value, stid == null ? -1 : StationDictionary.getGlobal().idOf(stid), time);
+    }
+
+    /**
+     * Adds one valid value
+     *
+     * @param value Value
+     * @param stationId Dictionary id of the station
+     * @param time UTC epoch second of the value
+     */
+    public void add(double value, int stationId, long time)
+    {
+        count++;
+        total += value;
+
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        sketch.update(value);
+
+        if (value < min || (value == min && time < minTime))
+        {
+            min = value;
+            minStation = stationId;
+            minTime = time;
+        }
+        if (value > max || (value == max && time < maxTime))
+        {
+            max = value;
+            maxStation = stationId;
+            maxTime = time;
+        }
+
+        lastTime = Math.max(lastTime, time);
+    }
+
+    /**
+     * Counts one value that held a sentinel code
+     *
+     * @param sentinel Index of the code in ValidityRules.getSentinels
+     */
+    public void addSentinel(int sentinel)
+    {
+        sentinelCounts[sentinel]++;
+    }
+
+    /**
+     * Adds every valid value of a column, reading the primitive column directly,
+     * and counts its sentinel codes
+     *
+     * @param store Parsed file
+     * @param column Column number
+     * @param time UTC epoch second of the file
+     */
+    public void addColumn(ColumnStore store, int column, long time)
+    {
+        addColumn(store, column, time, null);
+    }
+
+    /**
+     * Adds the valid values of the selected rows of a column, reading the
+     * primitive column directly, and counts their sentinel codes in the
+     * same pass. The rows are a bitmap laid out like the validity bitmap.
+     *
+     * @param store Parsed file
+     * @param column Column number
+     * @param time UTC epoch second of the file
+     * @param rows Bitmap of the selected rows, or null for every row
+     */
+    public void addColumn(ColumnStore store, int column, long time, long[] rows)
+    {
+        double[] values = store.getColumn(column);
+        int size = store.size();
+        double[] valid = new double[size];
+        ColumnKernels.Summary summary = ColumnKernels.summarize(values, store.getValidity(column), rows, size,
+                store.getRule(column), valid);
+        int columnCount = summary.getCount();
+        int[] columnSentinels = summary.getSentinelCounts();
+
+        for (int i = 0; i < sentinelCounts.length; i++)
+        {
+            sentinelCounts[i] += columnSentinels[i];
+        }
+
+        if (columnCount == 0)
+        {
+            return;
+        }
+
+        double columnTotal = summary.getSum();
+        double columnMean = columnTotal / columnCount;
+        double columnM2 = summary.getSquaredDeviations();
+        int minRow = summary.getMinRow();
+        int maxRow = summary.getMaxRow();
+        QuantileSketch columnSketch = new QuantileSketch();
+
+        for (int i = 0; i < columnCount; i++)
+        {
+            columnSketch.update(valid[i]);
+        }
+
+        StatisticsAccumulator partial = new StatisticsAccumulator();
+        partial.count = columnCount;
+        partial.total = columnTotal;
+        partial.mean = columnMean;
+        partial.m2 = columnM2;
+        partial.sketch = columnSketch;
+        partial.min = values[minRow];
+        partial.minStation = store.getStationId(minRow);
+        partial.minTime = time;
+        partial.max = values[maxRow];
+        partial.maxStation = store.getStationId(maxRow);
+        partial.maxTime = time;
+        partial.lastTime = time;
+
+        merge(partial);
+    }
+
+    /**
+     * Merges another accumulator into this one. Ties on the minimum or
+     * maximum keep the earlier time so the merge order does not matter.
+     *
+     * @param other Accumulator to merge
+     */
+    public void merge(StatisticsAccumulator other)
+    {
+        for (int i = 0; i < sentinelCounts.length; i++)
+        {
+            sentinelCounts[i] += other.sentinelCounts[i];
+        }
+
+        if (other.count == 0)
+        {
+            return;
+        }
+
+        //Chan et al. pairwise update of the mean and squared differences
+        int combined = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / combined;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / combined);
+
+        count = combined;
+        total += other.total;
+        sketch.merge(other.sketch);
+
+        if (other.min < min || (other.min == min && other.minTime < minTime))
+        {
+            min = other.min;
+            minStation = other.minStation;
+            minTime = other.minTime;
+        }
+        if (other.max > max || (other.max == max && other.maxTime < maxTime))
+        {
+            max = other.max;
+            maxStation = other.maxStation;
+            maxTime = other.maxTime;
+        }
+
+        lastTime = Math.max(lastTime, other.lastTime);
+    }
+
+    /**
+     * Returns the number of valid values
+     *
+     * @return number of valid values
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Returns the number of values of each sentinel code
+     *
+     * @return counts in the order of ValidityRules.getSentinels
+     */
+    public int[] getSentinelCounts()
+    {
+        return sentinelCounts.clone();
+    }
+
+    /**
+     * Returns the count weighted mean of every value added
+     *
+     * @return mean, 0 if nothing was added
+     */
+    public double getAverage()
+    {
+        return count == 0 ? 0.0 : total / count;
+    }
+
+    /**
+     * Returns the population variance of every value added
+     *
+     * @return variance, 0 if nothing was added
+     */
+    public double getVariance()
+    {
+        return count == 0 ? 0.0 : m2 / count;
+    }
+
+    /**
+     * Returns the population standard deviation of every value added
+     *
+     * @return standard deviation, 0 if nothing was added
+     */
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Estimates a percentile of every value added
+     *
+     * @param fraction Percentile as a fraction, 0.5 for the median
+     * @return percentile or NaN if nothing was added
+     */
+    public double getPercentile(double fraction)
+    {
+        return sketch.quantile(fraction);
+    }
+
+    /**
+     * Builds the statistic of a given type. Minimum and maximum carry the
+     * station and time of the extreme, the others the latest time added.
+     *
+     * @param type Type of statistic
+     * @return statistic or null if nothing was added
+     */
+    public Statistics toStatistics(StatsType type)
+    {
+        if (count == 0)
+        {
+            return null;
+        }
+
+        long time = type == StatsType.MINIMUM ? minTime : type == StatsType.MAXIMUM ? maxTime : lastTime;
+
+        return toStatistics(type, time);
+    }
+
+    /**
+     * Builds the statistic of a given type stamped with a given time,
+     * used when every value came from the same file
+     *
+     * @param type Type of statistic
+     * @param epochSecond UTC epoch second of the statistic
+     * @return statistic or null if nothing was added
+     */
+    public Statistics toStatistics(StatsType type, long epochSecond)
+    {
+        if (count == 0)
+        {
+            return null;
+        }
+
+        double value;
+        int stationId = MESONET_ID;
+
+        switch (type)
+        {
+            case MINIMUM:
+                value = min;
+                stationId = minStation;
+                break;
+            case MAXIMUM:
+                value = max;
+                stationId = maxStation;
+                break;
+            case AVERAGE:
+                value = getAverage();
+                break;
+            case TOTAL:
+                value = total;
+                break;
+            case VARIANCE:
+                value = getVariance();
+                break;
+            case STDDEV:
+                value = getStandardDeviation();
+                break;
+            default:
+                value = getPercentile(type.getFraction());
+                break;
+        }
+
+        return new Statistics(value, stationId, epochSecond, count, type, sentinelCounts);
+    }
+}
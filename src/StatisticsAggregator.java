@@ -0,0 +1,239 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Statistics Aggregator class computes the statistics of every parameter
+ * over many data files. The files are split in halves across a fork/join
+ * pool, each file is reduced to one StatisticsAccumulator per parameter
+ * and the partial results are merged on the way back up.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class StatisticsAggregator extends RecursiveTask<TreeMap<String, StatisticsAccumulator>>
+{
+    /**
+     * Serialized form version, the task is never actually serialized
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of files a task parses itself instead of splitting
+     */
+    private static final int FILES_PER_TASK = 2;
+
+    /**
+     * Loader used to map and parse each file
+     */
+    private MdfDirectoryLoader loader;
+
+    /**
+     * Files to aggregate, all tasks share the same list
+     */
+    private ArrayList<File> files;
+
+    /**
+     * UTC epoch second of each file
+     */
+    private long[] times;
+
+    /**
+     * First file of this task
+     */
+    private int from;
+
+    /**
+     * One past the last file of this task
+     */
+    private int to;
+
+    /**
+     * Aggregator task over part of a list of files
+     *
+     * @param loader Loader used to map and parse each file
+     * @param files Files to aggregate
+     * @param times UTC epoch second of each file
+     * @param from First file of this task
+     * @param to One past the last file of this task
+     */
+    private StatisticsAggregator(MdfDirectoryLoader loader, ArrayList<File> files, long[] times, int from, int to)
+    {
+        this.loader = loader;
+        this.files = files;
+        this.times = times;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Aggregates every data file of a directory within a time range
+     *
+     * @param loader Loader for the directory
+     * @param fromTime First UTC epoch second to include
+     * @param toTime Last UTC epoch second to include
+     * @return accumulator of every parameter
+     * @throws IOException Checks to make sure every file can be read
+     */
+    public static TreeMap<String, StatisticsAccumulator> aggregate(MdfDirectoryLoader loader, long fromTime, long toTime)
+            throws IOException
+    {
+        return aggregate(loader, fromTime, toTime, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Aggregates every data file of a directory within a time range on a given pool
+     *
+     * @param loader Loader for the directory
+     * @param fromTime First UTC epoch second to include
+     * @param toTime Last UTC epoch second to include
+     * @param pool Pool that runs the tasks
+     * @return accumulator of every parameter
+     * @throws IOException Checks to make sure every file can be read
+     */
+    public static TreeMap<String, StatisticsAccumulator> aggregate(MdfDirectoryLoader loader, long fromTime, long toTime,
+            ForkJoinPool pool) throws IOException
+    {
+        TreeMap<Long, File> listed = loader.listFiles(fromTime, toTime);
+        ArrayList<File> files = new ArrayList<File>(listed.values());
+        long[] times = new long[files.size()];
+        int i = 0;
+
+        for (Long time : listed.keySet())
+        {
+            times[i++] = time;
+        }
+
+        try
+        {
+            return pool.invoke(new StatisticsAggregator(loader, files, times, 0, files.size()));
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Builds the statistics of every parameter in the same layout MapData uses
+     *
+     * @param accumulators Result of aggregate
+     * @return statistics by type and parameter
+     */
+    public static EnumMap<StatsType, TreeMap<String, Statistics>> toStatistics(
+            TreeMap<String, StatisticsAccumulator> accumulators)
+    {
+        EnumMap<StatsType, TreeMap<String, Statistics>> statistics = new EnumMap<>(StatsType.class);
+
+        for (StatsType type : StatsType.values())
+        {
+            TreeMap<String, Statistics> byParam = new TreeMap<String, Statistics>();
+
+            for (Map.Entry<String, StatisticsAccumulator> entry : accumulators.entrySet())
+            {
+                Statistics stat = entry.getValue().toStatistics(type);
+                if (stat != null)
+                {
+                    byParam.put(entry.getKey(), stat);
+                }
+            }
+            statistics.put(type, byParam);
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Splits the files in half until few enough are left to parse here
+     *
+     * @return accumulator of every parameter in this task's files
+     */
+    @Override
+    protected TreeMap<String, StatisticsAccumulator> compute()
+    {
+        if (to - from <= FILES_PER_TASK)
+        {
+            TreeMap<String, StatisticsAccumulator> result = new TreeMap<String, StatisticsAccumulator>();
+
+            for (int i = from; i < to; i++)
+            {
+                merge(result, aggregateFile(i));
+            }
+
+            return result;
+        }
+
+        int middle = (from + to) >>> 1;
+        StatisticsAggregator left = new StatisticsAggregator(loader, files, times, from, middle);
+        StatisticsAggregator right = new StatisticsAggregator(loader, files, times, middle, to);
+
+        left.fork();
+        TreeMap<String, StatisticsAccumulator> result = right.compute();
+        merge(result, left.join());
+
+        return result;
+    }
+
+    /**
+     * Parses one file and reduces each column to an accumulator
+     *
+     * @param index Position of the file in the list
+     * @return accumulator of every parameter in the file
+     */
+    private TreeMap<String, StatisticsAccumulator> aggregateFile(int index)
+    {
+        ColumnStore store;
+
+        try
+        {
+            store = loader.load(files.get(index));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        TreeMap<String, StatisticsAccumulator> result = new TreeMap<String, StatisticsAccumulator>();
+        String[] paramIds = store.getParamIds();
+
+        for (int column = 0; column < paramIds.length; column++)
+        {
+            StatisticsAccumulator accumulator = new StatisticsAccumulator();
+            accumulator.addColumn(store, column, times[index]);
+            result.put(paramIds[column], accumulator);
+        }
+
+        return result;
+    }
+
+    /**
+     * Merges every accumulator of one result into another
+     *
+     * @param into Result that is updated
+     * @param other Result that is merged in
+     */
+    private static void merge(TreeMap<String, StatisticsAccumulator> into, TreeMap<String, StatisticsAccumulator> other)
+    {
+        for (Map.Entry<String, StatisticsAccumulator> entry : other.entrySet())
+        {
+            StatisticsAccumulator existing = into.get(entry.getKey());
+
+            if (existing == null)
+            {
+                into.put(entry.getKey(), entry.getValue());
+            }
+            else
+            {
+                existing.merge(entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Statistics Aggregator and Statistics Accumulator classes
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class StatisticsAggregatorTest
+{
+    /**
+     * Test that merging in either order gives the same extremes
+     */
+    @Test
+    public void testMerge()
+    {
+        StatisticsAccumulator first = new StatisticsAccumulator();
+        first.add(10.0, "ACME", 100);
+        first.add(30.0, "ADAX", 100);
+        StatisticsAccumulator second = new StatisticsAccumulator();
+        second.add(10.0, "BESS", 200);
+        second.add(20.0, "MEDI", 200);
+
+        StatisticsAccumulator forward = new StatisticsAccumulator();
+        forward.merge(first);
+        forward.merge(second);
+        StatisticsAccumulator backward = new StatisticsAccumulator();
+        backward.merge(second);
+        backward.merge(first);
+
+        Assert.assertEquals(4, forward.getCount());
+        Assert.assertEquals(17.5, forward.getAverage(), .001);
+        Assert.assertEquals("ACME", forward.toStatistics(StatsType.MINIMUM).getStid());
+        Assert.assertEquals("ACME", backward.toStatistics(StatsType.MINIMUM).getStid());
+        Assert.assertEquals("ADAX", backward.toStatistics(StatsType.MAXIMUM).getStid());
+        Assert.assertEquals(70.0, backward.toStatistics(StatsType.TOTAL).getValue(), .001);
+    }
+
+    /**
+     * Test that a single file gives the same statistics as MapData
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testAggregateSingleFile() throws IOException
+    {
+        MapData mapData = new MapData(2018, 8, 30, 17, 45, "data/");
+        long time = MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 17, 45);
+
+        TreeMap<String, StatisticsAccumulator> result = StatisticsAggregator.aggregate(new MdfDirectoryLoader("data/"), time, time);
+        EnumMap<StatsType, TreeMap<String, Statistics>> statistics = StatisticsAggregator.toStatistics(result);
+
+        for (StatsType type : StatsType.values())
+        {
+            Statistics expected = mapData.getStatistics(type, "TAIR");
+            Statistics actual = statistics.get(type).get("TAIR");
+
+            Assert.assertEquals(expected.getValue(), actual.getValue(), .001);
+            Assert.assertEquals(expected.getStid(), actual.getStid());
+            Assert.assertEquals(expected.getNumberOfReportingStations(), actual.getNumberOfReportingStations());
+        }
+    }
+
+    /**
+     * Test that several files give the same result on one or many threads
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testAggregateParallel() throws IOException
+    {
+        MdfDirectoryLoader loader = new MdfDirectoryLoader("data/");
+
+        TreeMap<String, StatisticsAccumulator> single = StatisticsAggregator.aggregate(loader, Long.MIN_VALUE, Long.MAX_VALUE,
+                new ForkJoinPool(1));
+        TreeMap<String, StatisticsAccumulator> parallel = StatisticsAggregator.aggregate(loader, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        Assert.assertEquals(single.keySet(), parallel.keySet());
+        Assert.assertEquals(single.get("SRAD").getCount(), parallel.get("SRAD").getCount());
+        Assert.assertEquals(single.get("SRAD").getAverage(), parallel.get("SRAD").getAverage(), .001);
+        Assert.assertEquals(single.get("TAIR").toStatistics(StatsType.MAXIMUM).getStid(),
+                parallel.get("TAIR").toStatistics(StatsType.MAXIMUM).getStid());
+    }
+}
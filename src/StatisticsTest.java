@@ -180,5 +180,69 @@ public class StatisticsTest
         flag = test.newerThan(testCal);
         
         assertEquals(true, flag);
-    }   
+    }
+    
+    /**
+     * Tests parsing both date layouts into epoch seconds
+     */
+    @Test
+    public void testEpochSecondFromString()
+    {
+        long expected = java.time.LocalDateTime.of(2018, 8, 30, 17, 45, 0).toEpochSecond(java.time.ZoneOffset.UTC);
+        
+        assertEquals(expected, Statistics.createEpochSecondFromString("  21 2018 08 30 17 45 00"));
+        assertEquals(expected, Statistics.createEpochSecondFromString("2018-08-30 17:45:00 UTC"));
+        assertEquals(951782400L, Statistics.toEpochSecond(2000, 2, 29, 0, 0, 0));
+    }
+    
+    /**
+     * Tests formatting epoch seconds, including from the cache
+     */
+    @Test
+    public void testStringFromEpochSecond()
+    {
+        long epochSecond = Statistics.createEpochSecondFromString("2018-08-30 17:45:00 UTC");
+        
+        assertEquals("2018-08-30 17:45:00 UTC", Statistics.createStringFromEpochSecond(epochSecond));
+        assertEquals("2018-08-30 17:45:00 UTC", Statistics.createStringFromEpochSecond(epochSecond));
+        assertEquals("1969-12-31 23:59:59 UTC", Statistics.createStringFromEpochSecond(-1));
+    }
+    
+    /**
+     * Tests the epoch second comparisons
+     */
+    @Test
+    public void testEpochSecondComparisons()
+    {
+        Statistics test = new Statistics(10.5, "ACEME", 1000L, 5, StatsType.MAXIMUM);
+        
+        assertTrue(test.newerThan(1001L));
+        assertTrue(test.olderThan(999L));
+        assertTrue(test.sameAs(1000L));
+        assertFalse(test.sameAs(1001L));
+    }
+    
+    /**
+     * Tests dates on the last days of a month, which the calendar would
+     * normalize into the month after the one written
+     * @throws ParseException Checks for errors when parsing the file
+     */
+    @Test
+    public void testEndOfMonth() throws ParseException
+    {
+        String august = "2018-08-31 12:00:00 UTC";
+        Statistics test = new Statistics(10.5, "ACEME", august, 5, StatsType.MAXIMUM);
+        
+        assertTrue(test.sameAs(Statistics.createDateFromString(august)));
+        assertFalse(test.newerThan(Statistics.createDateFromString(august)));
+        assertEquals(august, Statistics.createStringFromDate(Statistics.createDateFromString(august)));
+        assertEquals("2018-01-31 06:30:00 UTC",
+                Statistics.createStringFromDate(Statistics.createDateFromString("2018-01-31 06:30:00 UTC")));
+        assertEquals(august, new Statistics(1.0, "ACME", Statistics.createDateFromString(august), 1,
+                StatsType.MINIMUM).getUTCDateTimeString());
+        
+        //A calendar built elsewhere with December written as month 12
+        assertEquals("2018-12-15 06:00:00 UTC",
+                Statistics.createStringFromDate(new GregorianCalendar(2018, 12, 15, 6, 0, 0)));
+    }
 }
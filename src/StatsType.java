@@ -2,11 +2,55 @@
  * Stats Type enumeration 
  * 
  * @author Tim Weaver
- * @version 2018-09-26
+ * @version 2018-10-23
  * 
  */
 
 public enum StatsType
 {
-    AVERAGE, MINIMUM, MAXIMUM, TOTAL;
+    AVERAGE, MINIMUM, MAXIMUM, TOTAL, VARIANCE, STDDEV, 
+    MEDIAN(0.5), PERCENTILE_5(0.05), PERCENTILE_95(0.95);
+    
+    /**
+     * Percentile as a fraction, NaN for types that are not percentiles
+     */
+    private final double fraction;
+    
+    /**
+     * Stats Type constructor for types that are not percentiles
+     */
+    StatsType()
+    {
+        this(Double.NaN);
+    }
+    
+    /**
+     * Stats Type constructor for percentiles
+     * 
+     * @param fraction Percentile as a fraction
+     */
+    StatsType(double fraction)
+    {
+        this.fraction = fraction;
+    }
+    
+    /**
+     * Checks if the type is a percentile
+     * 
+     * @return true for MEDIAN and the PERCENTILE types
+     */
+    public boolean isPercentile()
+    {
+        return !Double.isNaN(fraction);
+    }
+    
+    /**
+     * Returns the percentile of the type
+     * 
+     * @return percentile as a fraction, NaN for types that are not percentiles
+     */
+    public double getFraction()
+    {
+        return fraction;
+    }
 }
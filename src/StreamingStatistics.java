@@ -0,0 +1,179 @@
+import java.util.EnumMap;
+import java.util.TreeMap;
+
+/**
+ * Streaming Statistics class feeds every row of a data file into one
+ * StatisticsAccumulator per parameter as the file is tokenized, so no
+ * row or column is kept and memory only grows with the number of
+ * parameters. The percentiles therefore come from the QuantileSketch of
+ * each accumulator and are estimates, see LoadMode.STREAMING.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class StreamingStatistics implements RowSink
+{
+    /**
+     * Parameter ids, indexed the same as the sink columns
+     */
+    private String[] paramIds;
+
+    /**
+     * Running statistics of each parameter
+     */
+    private StatisticsAccumulator[] accumulators;
+
+    /**
+     * Validity rule of each parameter
+     */
+    private ValidityRule[] rules;
+
+    /**
+     * UTC epoch second of the file
+     */
+    private long time;
+
+    /**
+     * Values of the current row
+     */
+    private double[] rowValues;
+
+    /**
+     * Which columns the current row has a value for
+     */
+    private boolean[] rowHasValue;
+
+    /**
+     * Station of the current row
+     */
+    private int rowStation = -1;
+
+    /**
+     * Streaming Statistics constructor with an empty accumulator per parameter
+     *
+     * @param paramIds Parameter ids, indexed the same as the sink columns
+     * @param time UTC epoch second of the file
+     */
+    public StreamingStatistics(String[] paramIds, long time)
+    {
+        this.paramIds = paramIds.clone();
+        this.time = time;
+        this.accumulators = new StatisticsAccumulator[paramIds.length];
+        this.rowValues = new double[paramIds.length];
+        this.rowHasValue = new boolean[paramIds.length];
+        this.rules = new ValidityRule[paramIds.length];
+
+        for (int i = 0; i < paramIds.length; i++)
+        {
+            accumulators[i] = new StatisticsAccumulator();
+            rules[i] = ValidityRules.getGlobal().ruleOf(paramIds[i]);
+        }
+    }
+
+    /**
+     * Starts a new row
+     */
+    public void startRow()
+    {
+        rowStation = -1;
+        for (int i = 0; i < rowHasValue.length; i++)
+        {
+            rowHasValue[i] = false;
+        }
+    }
+
+    /**
+     * Sets the station of the current row
+     *
+     * @param stationId Dictionary id
+     */
+    public void station(int stationId)
+    {
+        rowStation = stationId;
+    }
+
+    /**
+     * Holds a value until the station of the row is known
+     *
+     * @param column Column number
+     * @param value Value
+     */
+    public void value(int column, double value)
+    {
+        rowValues[column] = value;
+        rowHasValue[column] = true;
+    }
+
+    /**
+     * Adds every valid value of the row to its accumulator and counts
+     * the sentinel codes of the others
+     */
+    public void endRow()
+    {
+        for (int i = 0; i < rowValues.length; i++)
+        {
+            if (!rowHasValue[i])
+            {
+                continue;
+            }
+
+            if (rules[i].isValid(rowValues[i]))
+            {
+                accumulators[i].add(rowValues[i], rowStation, time);
+            }
+            else if (rules[i].sentinelIndex(rowValues[i]) >= 0)
+            {
+                accumulators[i].addSentinel(rules[i].sentinelIndex(rowValues[i]));
+            }
+        }
+    }
+
+    /**
+     * Returns the running statistics of a parameter
+     *
+     * @param paramId Parameter id
+     * @return accumulator or null if the parameter was not requested
+     */
+    public StatisticsAccumulator getAccumulator(String paramId)
+    {
+        for (int i = 0; i < paramIds.length; i++)
+        {
+            if (paramIds[i].equals(paramId))
+            {
+                return accumulators[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Builds the statistics of every parameter in the same layout MapData uses
+     *
+     * @param epochSecond UTC epoch second of the file
+     * @return statistics by type and parameter
+     */
+    public EnumMap<StatsType, TreeMap<String, Statistics>> toStatistics(long epochSecond)
+    {
+        EnumMap<StatsType, TreeMap<String, Statistics>> statistics = new EnumMap<>(StatsType.class);
+
+        for (StatsType type : StatsType.values())
+        {
+            TreeMap<String, Statistics> byParam = new TreeMap<String, Statistics>();
+
+            for (int i = 0; i < paramIds.length; i++)
+            {
+                Statistics stat = accumulators[i].toStatistics(type, epochSecond);
+                if (stat != null)
+                {
+                    byParam.put(paramIds[i], stat);
+                }
+            }
+            statistics.put(type, byParam);
+        }
+
+        return statistics;
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Streaming Statistics class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class StreamingStatisticsTest
+{
+    /**
+     * Test that streaming gives the same statistics as the data catalog
+     */
+    @Test
+    public void testSameAsEager()
+    {
+        MapData eager = new MapData(2018, 8, 30, 17, 45, "data/");
+        MapData streaming = new MapData(2018, 8, 30, 17, 45, "data/", LoadMode.STREAMING);
+
+        Assert.assertNull(streaming.dataCatalog);
+
+        for (String paramId : eager.dataCatalog.getParamIds())
+        {
+            for (StatsType type : StatsType.values())
+            {
+                Statistics expected = eager.getStatistics(type, paramId);
+                Statistics actual = streaming.getStatistics(type, paramId);
+
+                if (expected == null)
+                {
+                    Assert.assertNull(actual);
+                    continue;
+                }
+
+                Assert.assertEquals(expected.getValue(), actual.getValue(), 1e-9);
+                Assert.assertEquals(expected.getStid(), actual.getStid());
+                Assert.assertEquals(expected.getNumberOfReportingStations(), actual.getNumberOfReportingStations());
+                Assert.assertEquals(expected.getUTCDateTimeString(), actual.getUTCDateTimeString());
+            }
+        }
+        Assert.assertEquals(eager.toString(), streaming.toString());
+    }
+
+    /**
+     * Test the running variance against a two pass calculation
+     */
+    @Test
+    public void testVariance()
+    {
+        double[] values = {34.7, 31.9, 33.3, 30.1, 35.2, 29.8};
+        StationDictionary stations = StationDictionary.getGlobal();
+        StreamingStatistics test = new StreamingStatistics(new String[] {"TAIR"}, 0);
+        double mean = 0;
+
+        for (int i = 0; i < values.length; i++)
+        {
+            test.startRow();
+            test.station(stations.idOf("ST" + i));
+            test.value(0, values[i]);
+            test.endRow();
+            mean += values[i] / values.length;
+        }
+
+        double variance = 0;
+        for (double value : values)
+        {
+            variance += (value - mean) * (value - mean) / values.length;
+        }
+
+        StatisticsAccumulator tair = test.getAccumulator("TAIR");
+        Assert.assertEquals(mean, tair.getAverage(), 1e-9);
+        Assert.assertEquals(variance, tair.getVariance(), 1e-9);
+
+        StatisticsAccumulator half = new StatisticsAccumulator();
+        StatisticsAccumulator other = new StatisticsAccumulator();
+        for (int i = 0; i < values.length; i++)
+        {
+            (i < 2 ? half : other).add(values[i], "ST" + i, 0);
+        }
+        half.merge(other);
+        Assert.assertEquals(variance, half.getVariance(), 1e-9);
+    }
+
+    /**
+     * Test that streaming percentiles of a file with far more values than
+     * the sketch holds exactly are within the documented rank error of the
+     * exact percentiles of an eager load
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testPercentilesLargerThanSketch() throws IOException
+    {
+        Path directory = Files.createTempDirectory("streaming");
+        File file = new File(directory.toFile(), "201808301745.mdf");
+        SyntheticMdf.write(file, 5000, 7);
+        String path = directory.toString() + File.separator;
+
+        MapData eager = new MapData(2018, 8, 30, 17, 45, path);
+        MapData streaming = new MapData(2018, 8, 30, 17, 45, path, LoadMode.STREAMING);
+        ColumnStore store = eager.getDataCatalog();
+        int column = store.getColumnIndex("TAIR");
+        int count = eager.getStatistics(StatsType.MEDIAN, "TAIR").getNumberOfReportingStations();
+        Assert.assertTrue(count > 10 * QuantileSketch.DEFAULT_K);
+
+        for (StatsType type : StatsType.values())
+        {
+            if (!type.isPercentile())
+            {
+                continue;
+            }
+
+            //Rows below and at the estimate bracket its rank
+            double estimate = streaming.getStatistics(type, "TAIR").getValue();
+            int below = 0;
+            int atOrBelow = 0;
+            for (int row = 0; row < store.size(); row++)
+            {
+                if (store.isValid(column, row))
+                {
+                    below += store.getValue(column, row) < estimate ? 1 : 0;
+                    atOrBelow += store.getValue(column, row) <= estimate ? 1 : 0;
+                }
+            }
+            double rank = type.getFraction() * count;
+            Assert.assertTrue(type + " rank", rank >= below - 0.02 * count && rank <= atOrBelow + 0.02 * count);
+        }
+
+        file.delete();
+        directory.toFile().delete();
+    }
+}
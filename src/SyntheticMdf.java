@@ -0,0 +1,132 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Synthetic MDF class writes data files in the same layout as the
+ * Mesonet files, with any number of stations, for benchmarks and tests
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class SyntheticMdf
+{
+    /**
+     * Header of the Mesonet files
+     */
+    public static final String HEADER = " STID  STNM  TIME   RELH   TAIR   WSPD   WVEC  WDIR   WDSD   WSSD   WMAX"
+            + "    RAIN     PRES  SRAD   TA9M   WS2M   TS10   TB10   TS05   TS25   TS60    TR05    TR25    TR60";
+
+    /**
+     * Missing data codes found in the Mesonet files
+     */
+    private static final int[] SENTINELS = {-995, -996, -998, -999};
+
+    /**
+     * Synthetic MDF only has static methods
+     */
+    private SyntheticMdf()
+    {
+
+    }
+
+    /**
+     * Writes a data file
+     *
+     * @param file File to write
+     * @param stations Number of station rows
+     * @param seed Seed for the random values
+     * @throws IOException Checks to make sure the file can be written
+     */
+    public static void write(File file, int stations, long seed) throws IOException
+    {
+        Random random = new Random(seed);
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file), 1 << 16))
+        {
+            out.write("  101 ! (c) 2018 Oklahoma Climatological Survey and the Oklahoma Mesonet - all rights reserved\n");
+            out.write("  21 2018 08 30 00 00 00\n");
+            out.write(HEADER);
+            out.write('\n');
+
+            StringBuilder line = new StringBuilder(200);
+            for (int i = 0; i < stations; i++)
+            {
+                line.setLength(0);
+                line.append(' ').append(stationId(i));
+                line.append(String.format("%6d%6d", i + 1, 1065));
+                appendField(line, random, 7, 0, 20, 100);
+                appendField(line, random, 7, 1, 15, 40);
+                appendField(line, random, 7, 1, 0, 15);
+                appendField(line, random, 7, 1, 0, 15);
+                appendField(line, random, 6, 0, 0, 360);
+                appendField(line, random, 7, 1, 0, 40);
+                appendField(line, random, 7, 1, 0, 5);
+                appendField(line, random, 7, 1, 0, 20);
+                appendField(line, random, 8, 2, 0, 5);
+                appendField(line, random, 9, 2, 940, 1000);
+                appendField(line, random, 6, 0, 0, 1000);
+                appendField(line, random, 7, 1, 15, 40);
+                appendField(line, random, 7, 1, 0, 15);
+                for (int soil = 0; soil < 5; soil++)
+                {
+                    appendField(line, random, 7, 1, 15, 40);
+                }
+                for (int soil = 0; soil < 3; soil++)
+                {
+                    appendField(line, random, 8, 2, 1, 3);
+                }
+                line.append('\n');
+                out.write(line.toString());
+            }
+        }
+    }
+
+    /**
+     * Makes a four letter station id for a row
+     *
+     * @param index Row number
+     * @return station id
+     */
+    public static String stationId(int index)
+    {
+        char[] chars = new char[4];
+        int rest = index;
+
+        for (int i = 3; i >= 0; i--)
+        {
+            chars[i] = (char) ('A' + rest % 26);
+            rest /= 26;
+        }
+
+        //Rows past 26^4 get a numeric suffix to stay unique
+        return rest == 0 ? new String(chars) : new String(chars) + rest;
+    }
+
+    /**
+     * Appends one right aligned field, occasionally a missing data code
+     *
+     * @param line Line being built
+     * @param random Source of values
+     * @param width Field width
+     * @param decimals Digits after the decimal point
+     * @param low Smallest value
+     * @param high Largest value
+     */
+    private static void appendField(StringBuilder line, Random random, int width, int decimals, double low, double high)
+    {
+        if (random.nextInt(50) == 0)
+        {
+            line.append(String.format("%" + width + "d", SENTINELS[random.nextInt(SENTINELS.length)]));
+        }
+        else
+        {
+            double value = low + random.nextDouble() * (high - low);
+            line.append(String.format("%" + width + "." + decimals + "f", value));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.Arrays;
+
+/**
+ * Time Series class holds the valid values of one parameter at one
+ * station as parallel primitive arrays sorted by time, so a range is
+ * found with two binary searches.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class TimeSeries
+{
+    /**
+     * UTC epoch second of each value, ascending
+     */
+    private long[] times;
+
+    /**
+     * Values in time order
+     */
+    private double[] values;
+
+    /**
+     * Number of values held
+     */
+    private int size;
+
+    /**
+     * Time Series constructor for an empty series
+     *
+     * @param initialCapacity Number of values to allocate up front
+     */
+    public TimeSeries(int initialCapacity)
+    {
+        int capacity = Math.max(initialCapacity, 1);
+
+        this.times = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    /**
+     * Time Series constructor around arrays that are already sorted
+     *
+     * @param times UTC epoch second of each value, ascending
+     * @param values Values in time order
+     * @param size Number of values held
+     */
+    TimeSeries(long[] times, double[] values, int size)
+    {
+        this.times = times;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Adds a value, replacing the value already held for the same time.
+     * Adding in time order is an append.
+     *
+     * @param time UTC epoch second
+     * @param value Value
+     */
+    public void put(long time, double value)
+    {
+        int position = size;
+
+        if (size > 0 && times[size - 1] >= time)
+        {
+            position = Arrays.binarySearch(times, 0, size, time);
+
+            if (position >= 0)
+            {
+                values[position] = value;
+                return;
+            }
+            position = -position - 1;
+        }
+
+        if (size == times.length)
+        {
+            times = Arrays.copyOf(times, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        System.arraycopy(times, position, times, position + 1, size - position);
+        System.arraycopy(values, position, values, position + 1, size - position);
+        times[position] = time;
+        values[position] = value;
+        size++;
+    }
+
+    /**
+     * Returns the first position at or after a time
+     *
+     * @param time UTC epoch second
+     * @return position, size() if every value is earlier
+     */
+    public int indexOf(long time)
+    {
+        int low = 0;
+        int high = size;
+
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Copies the values within a time range
+     *
+     * @param from First UTC epoch second to include
+     * @param to Last UTC epoch second to include
+     * @return values within the range
+     */
+    public TimeSeries range(long from, long to)
+    {
+        int start = indexOf(from);
+        int end = to == Long.MAX_VALUE ? size : indexOf(to + 1);
+        int count = Math.max(end - start, 0);
+
+        return new TimeSeries(Arrays.copyOfRange(times, start, start + count),
+                Arrays.copyOfRange(values, start, start + count), count);
+    }
+
+    /**
+     * Returns the time of a value
+     *
+     * @param index Position
+     * @return UTC epoch second
+     */
+    public long getTime(int index)
+    {
+        return times[index];
+    }
+
+    /**
+     * Returns a value
+     *
+     * @param index Position
+     * @return value
+     */
+    public double getValue(int index)
+    {
+        return values[index];
+    }
+
+    /**
+     * Returns the number of values
+     *
+     * @return number of values
+     */
+    public int size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,429 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Time Series Index class turns a directory of data files around, from
+ * every station at one time to every time of one station, keeping a
+ * TimeSeries for each parameter and station. Series are found through
+ * arrays indexed by the station's dictionary id, so a range query is
+ * two array lookups and two binary searches. Only values the
+ * ValidityRule of their parameter accepts are indexed.
+ *
+ * The index can be written to a file and read back without touching
+ * the data files. Layout, big endian:
+ * magic, version, parameter ids, station ids, series count,
+ * then for each series its parameter, station, size, times and values.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public class TimeSeriesIndex
+{
+    /**
+     * First four bytes of every index file, "MDTI"
+     */
+    private static final int MAGIC = 0x4D445449;
+
+    /**
+     * Layout version
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Capacity of a new series, about a day of 5 minute files
+     */
+    private static final int INITIAL_CAPACITY = 288;
+
+    /**
+     * Parameter ids in the order they were first seen
+     */
+    private ArrayList<String> paramIds = new ArrayList<String>();
+
+    /**
+     * Maps a parameter id to its position in paramIds
+     */
+    private HashMap<String, Integer> paramPositions = new HashMap<String, Integer>();
+
+    /**
+     * Series of each parameter, indexed by station dictionary id
+     */
+    private ArrayList<TimeSeries[]> series = new ArrayList<TimeSeries[]>();
+
+    /**
+     * Builds an index over every data file of a loader within a time range
+     *
+     * @param loader Loader of the data directory
+     * @param from First UTC epoch second to include
+     * @param to Last UTC epoch second to include
+     * @return index
+     * @throws IOException Checks to make sure every file can be read
+     */
+    public static TimeSeriesIndex build(MdfDirectoryLoader loader, long from, long to) throws IOException
+    {
+        return of(loader.load(from, to));
+    }
+
+    /**
+     * Builds an index over files that are already parsed
+     *
+     * @param catalog Parsed files keyed by UTC epoch second
+     * @return index
+     */
+    public static TimeSeriesIndex of(NavigableMap<Long, ColumnStore> catalog)
+    {
+        TimeSeriesIndex index = new TimeSeriesIndex();
+
+        for (Map.Entry<Long, ColumnStore> entry : catalog.entrySet())
+        {
+            index.add(entry.getKey(), entry.getValue());
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds every valid value of a parsed file
+     *
+     * @param time UTC epoch second of the file
+     * @param store Parsed file
+     */
+    public synchronized void add(long time, ColumnStore store)
+    {
+        String[] storeIds = store.getParamIds();
+
+        for (int column = 0; column < storeIds.length; column++)
+        {
+            int position = positionOf(storeIds[column], true);
+            double[] values = store.getColumn(column);
+
+            for (int row = 0; row < store.size(); row++)
+            {
+                if (store.isValid(column, row))
+                {
+                    seriesOf(position, store.getStationId(row), true).put(time, values[row]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the values of a parameter at a station within a time range
+     *
+     * @param stid Station id, ex: MEDI
+     * @param paramId Parameter id, ex: TAIR
+     * @param from First UTC epoch second to include
+     * @param to Last UTC epoch second to include
+     * @return values in time order, empty if there are none or the station is unknown
+     */
+    public TimeSeries range(String stid, String paramId, long from, long to)
+    {
+        //Looked up without adding, so a mistyped station does not grow the dictionary
+        int stationId = StationDictionary.getGlobal().find(stid);
+
+        return stationId < 0 ? new TimeSeries(1) : range(stationId, paramId, from, to);
+    }
+
+    /**
+     * Returns the values of a parameter at a station within a time range
+     *
+     * @param stationId Dictionary id of the station
+     * @param paramId Parameter id, ex: TAIR
+     * @param from First UTC epoch second to include
+     * @param to Last UTC epoch second to include
+     * @return values in time order, empty if there are none
+     */
+    public synchronized TimeSeries range(int stationId, String paramId, long from, long to)
+    {
+        TimeSeries found = seriesOf(positionOf(paramId, false), stationId, false);
+
+        return found == null ? new TimeSeries(1) : found.range(from, to);
+    }
+
+    /**
+     * Downsamples the values of a parameter at a station into one
+     * statistic per hour, day or month
+     *
+     * @param stationId Dictionary id of the station
+     * @param paramId Parameter id, ex: TAIR
+     * @param from First UTC epoch second to include
+     * @param to Last UTC epoch second to include
+     * @param granularity Bucket size
+     * @param type Statistic of each bucket
+     * @return one value per bucket with values, stamped with the bucket start
+     */
+    public synchronized TimeSeries rollup(int stationId, String paramId, long from, long to,
+            Granularity granularity, StatsType type)
+    {
+        TimeSeries rollup = new TimeSeries(16);
+        TimeSeries found = seriesOf(positionOf(paramId, false), stationId, false);
+
+        if (found == null)
+        {
+            return rollup;
+        }
+
+        StatisticsAccumulator bucket = null;
+        long bucketStart = 0;
+
+        for (int i = found.indexOf(from); i < found.size() && found.getTime(i) <= to; i++)
+        {
+            long time = found.getTime(i);
+
+            if (bucket == null || time >= granularity.next(bucketStart))
+            {
+                if (bucket != null)
+                {
+                    rollup.put(bucketStart, bucket.toStatistics(type).getValue());
+                }
+                bucket = new StatisticsAccumulator();
+                bucketStart = granularity.truncate(time);
+            }
+            bucket.add(found.getValue(i), stationId, time);
+        }
+
+        if (bucket != null)
+        {
+            rollup.put(bucketStart, bucket.toStatistics(type).getValue());
+        }
+
+        return rollup;
+    }
+
+    /**
+     * Returns the indexed parameter ids
+     *
+     * @return parameter ids
+     */
+    public synchronized String[] getParamIds()
+    {
+        return paramIds.toArray(new String[paramIds.size()]);
+    }
+
+    /**
+     * Writes this index
+     *
+     * @param path Location to write to
+     * @throws IOException Checks to make sure the file can be written
+     */
+    public synchronized void write(String path) throws IOException
+    {
+        File target = new File(path);
+        File temporary = new File(path + ".tmp");
+
+        //Only the stations with series are written, numbered from 0
+        StationDictionary global = StationDictionary.getGlobal();
+        StationDictionary local = new StationDictionary();
+        int seriesCount = 0;
+        for (TimeSeries[] byStation : series)
+        {
+            for (int stationId = 0; stationId < byStation.length; stationId++)
+            {
+                if (byStation[stationId] != null)
+                {
+                    local.idOf(global.nameOf(stationId));
+                    seriesCount++;
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            MdfSnapshot.writeStrings(out, getParamIds());
+
+            String[] stations = new String[local.size()];
+            for (int id = 0; id < stations.length; id++)
+            {
+                stations[id] = local.nameOf(id);
+            }
+            MdfSnapshot.writeStrings(out, stations);
+
+            out.writeInt(seriesCount);
+            for (int position = 0; position < series.size(); position++)
+            {
+                TimeSeries[] byStation = series.get(position);
+
+                for (int stationId = 0; stationId < byStation.length; stationId++)
+                {
+                    TimeSeries found = byStation[stationId];
+                    if (found == null)
+                    {
+                        continue;
+                    }
+
+                    out.writeInt(position);
+                    out.writeInt(local.idOf(global.nameOf(stationId)));
+                    out.writeInt(found.size());
+                    for (int i = 0; i < found.size(); i++)
+                    {
+                        out.writeLong(found.getTime(i));
+                    }
+                    for (int i = 0; i < found.size(); i++)
+                    {
+                        out.writeDouble(found.getValue(i));
+                    }
+                }
+            }
+        }
+
+        boolean replaced = (!target.exists() || target.delete()) && temporary.renameTo(target);
+
+        if (!replaced)
+        {
+            temporary.delete();
+            throw new IOException("Could not replace " + path);
+        }
+    }
+
+    /**
+     * Memory maps an index file and copies its series out in bulk
+     *
+     * @param path Location of the index
+     * @return index
+     * @throws IOException Checks that the file is an index this version can read
+     */
+    public static TimeSeriesIndex read(String path) throws IOException
+    {
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+        {
+            throw new IOException("Not a version " + VERSION + " time series index: " + path);
+        }
+
+        TimeSeriesIndex index = new TimeSeriesIndex();
+        for (String paramId : MdfSnapshot.readStrings(buffer))
+        {
+            index.positionOf(paramId, true);
+        }
+
+        //Map the ids written in the file to ids of the global dictionary
+        String[] stations = MdfSnapshot.readStrings(buffer);
+        int[] globalIds = new int[stations.length];
+        for (int id = 0; id < stations.length; id++)
+        {
+            globalIds[id] = StationDictionary.getGlobal().idOf(stations[id]);
+        }
+
+        int seriesCount = buffer.getInt();
+        for (int s = 0; s < seriesCount; s++)
+        {
+            int position = buffer.getInt();
+            int stationId = globalIds[buffer.getInt()];
+            int size = buffer.getInt();
+            int capacity = Math.max(size, 1);
+
+            long[] times = new long[capacity];
+            buffer.asLongBuffer().get(times, 0, size);
+            buffer.position(buffer.position() + size * 8);
+
+            double[] values = new double[capacity];
+            buffer.asDoubleBuffer().get(values, 0, size);
+            buffer.position(buffer.position() + size * 8);
+
+            index.setSeries(position, stationId, new TimeSeries(times, values, size));
+        }
+
+        return index;
+    }
+
+    /**
+     * Returns the position of a parameter
+     *
+     * @param paramId Parameter id
+     * @param create Adds the parameter when it is not indexed yet
+     * @return position or -1 if the parameter is not indexed
+     */
+    private int positionOf(String paramId, boolean create)
+    {
+        Integer position = paramPositions.get(paramId);
+
+        if (position == null)
+        {
+            if (!create)
+            {
+                return -1;
+            }
+            position = paramIds.size();
+            paramIds.add(paramId);
+            paramPositions.put(paramId, position);
+            series.add(new TimeSeries[0]);
+        }
+
+        return position;
+    }
+
+    /**
+     * Returns the series of a parameter at a station
+     *
+     * @param position Position of the parameter
+     * @param stationId Dictionary id of the station
+     * @param create Adds an empty series when there is none yet
+     * @return series or null if there is none
+     */
+    private TimeSeries seriesOf(int position, int stationId, boolean create)
+    {
+        if (position < 0 || stationId < 0)
+        {
+            return null;
+        }
+
+        TimeSeries[] byStation = series.get(position);
+
+        if (stationId < byStation.length && byStation[stationId] != null)
+        {
+            return byStation[stationId];
+        }
+
+        if (!create)
+        {
+            return null;
+        }
+
+        TimeSeries created = new TimeSeries(INITIAL_CAPACITY);
+        setSeries(position, stationId, created);
+
+        return created;
+    }
+
+    /**
+     * Stores the series of a parameter at a station, growing the
+     * station array to the dictionary size if needed
+     *
+     * @param position Position of the parameter
+     * @param stationId Dictionary id of the station
+     * @param timeSeries Series to store
+     */
+    private void setSeries(int position, int stationId, TimeSeries timeSeries)
+    {
+        TimeSeries[] byStation = series.get(position);
+
+        if (stationId >= byStation.length)
+        {
+            byStation = Arrays.copyOf(byStation, Math.max(stationId + 1, StationDictionary.getGlobal().size()));
+            series.set(position, byStation);
+        }
+
+        byStation[stationId] = timeSeries;
+    }
+}
@@ -0,0 +1,128 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.NavigableMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Time Series Index class
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class TimeSeriesIndexTest
+{
+    /**
+     * Test that a range holds each file's value for the station
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testRange() throws IOException
+    {
+        NavigableMap<Long, ColumnStore> catalog = new MdfDirectoryLoader("data/").load(Long.MIN_VALUE, Long.MAX_VALUE);
+        TimeSeriesIndex test = TimeSeriesIndex.of(catalog);
+        int medi = StationDictionary.getGlobal().idOf("MEDI");
+
+        TimeSeries all = test.range("MEDI", "TAIR", Long.MIN_VALUE, Long.MAX_VALUE);
+        Assert.assertEquals(catalog.size(), all.size());
+
+        int i = 0;
+        for (Long time : catalog.keySet())
+        {
+            ColumnStore store = catalog.get(time);
+            Assert.assertEquals(time.longValue(), all.getTime(i));
+            Assert.assertEquals(store.getValueOfStation(store.getColumnIndex("TAIR"), medi), all.getValue(i), .001);
+            i++;
+        }
+
+        long last = catalog.lastKey();
+        Assert.assertEquals(1, test.range(medi, "TAIR", last, last).size());
+        Assert.assertEquals(0, test.range(medi, "NOT A PARAMETER", last, last).size());
+        int stations = StationDictionary.getGlobal().size();
+        Assert.assertEquals(0, test.range("NO SUCH STATION", "TAIR", Long.MIN_VALUE, Long.MAX_VALUE).size());
+        Assert.assertEquals(-1, StationDictionary.getGlobal().find("NO SUCH STATION"));
+        Assert.assertEquals(stations, StationDictionary.getGlobal().size());
+    }
+
+    /**
+     * Test that missing values are left out of a series
+     */
+    @Test
+    public void testMissingValues()
+    {
+        ColumnStore store = new ColumnStore(new String[] {"TAIR"}, 2);
+        store.addRow("ACME");
+        store.setValue(0, 0, -996);
+
+        TimeSeriesIndex test = new TimeSeriesIndex();
+        test.add(0, store);
+
+        Assert.assertEquals(0, test.range("ACME", "TAIR", Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+
+    /**
+     * Test hourly and daily rollups
+     */
+    @Test
+    public void testRollup()
+    {
+        TimeSeriesIndex test = new TimeSeriesIndex();
+        long start = MdfDirectoryLoader.toEpochSecond(2018, 8, 30, 0, 0);
+
+        //Two days of values every 30 minutes, added out of order
+        for (int step = 95; step >= 0; step--)
+        {
+            ColumnStore store = new ColumnStore(new String[] {"TAIR"}, 1);
+            store.addRow("ACME");
+            store.setValue(0, 0, step);
+            test.add(start + step * 1800L, store);
+        }
+
+        int acme = StationDictionary.getGlobal().idOf("ACME");
+        TimeSeries hourly = test.rollup(acme, "TAIR", start, start + 2 * 86400, Granularity.HOUR, StatsType.AVERAGE);
+        TimeSeries daily = test.rollup(acme, "TAIR", start, start + 2 * 86400, Granularity.DAY, StatsType.MAXIMUM);
+
+        Assert.assertEquals(48, hourly.size());
+        Assert.assertEquals(start + 3600, hourly.getTime(1));
+        Assert.assertEquals(2.5, hourly.getValue(1), .001);
+        Assert.assertEquals(2, daily.size());
+        Assert.assertEquals(47, daily.getValue(0), .001);
+        Assert.assertEquals(95, daily.getValue(1), .001);
+    }
+
+    /**
+     * Test that an index reads back the same as it was written
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testWriteRead() throws IOException
+    {
+        TimeSeriesIndex test = TimeSeriesIndex.build(new MdfDirectoryLoader("data/"), Long.MIN_VALUE, Long.MAX_VALUE);
+        File file = File.createTempFile("index", ".mdti");
+
+        try
+        {
+            test.write(file.getPath());
+            TimeSeriesIndex read = TimeSeriesIndex.read(file.getPath());
+
+            Assert.assertArrayEquals(test.getParamIds(), read.getParamIds());
+            for (String stid : new String[] {"ACME", "HOOK", "MIAM"})
+            {
+                TimeSeries expected = test.range(stid, "SRAD", Long.MIN_VALUE, Long.MAX_VALUE);
+                TimeSeries actual = read.range(stid, "SRAD", Long.MIN_VALUE, Long.MAX_VALUE);
+
+                Assert.assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++)
+                {
+                    Assert.assertEquals(expected.getTime(i), actual.getTime(i));
+                    Assert.assertEquals(expected.getValue(i), actual.getValue(i), 0);
+                }
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
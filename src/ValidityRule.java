@@ -0,0 +1,109 @@
+/**
+ * Validity Rule class holds the bounds of one parameter and the
+ * sentinel codes the files write in place of a missing value. A value
+ * is valid when it is within the bounds and is not a sentinel code.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public final class ValidityRule
+{
+    /**
+     * Smallest valid value
+     */
+    private final double min;
+
+    /**
+     * Largest valid value
+     */
+    private final double max;
+
+    /**
+     * Sentinel codes, shared by every rule of the same ValidityRules
+     */
+    private final int[] sentinels;
+
+    /**
+     * Whether a sentinel code falls within the bounds and must be checked
+     * for every value
+     */
+    private final boolean sentinelInBounds;
+
+    /**
+     * Validity Rule constructor
+     *
+     * @param min Smallest valid value
+     * @param max Largest valid value
+     * @param sentinels Sentinel codes, not copied
+     */
+    ValidityRule(double min, double max, int[] sentinels)
+    {
+        boolean inBounds = false;
+        for (int sentinel : sentinels)
+        {
+            inBounds |= sentinel >= min && sentinel <= max;
+        }
+
+        this.min = min;
+        this.max = max;
+        this.sentinels = sentinels;
+        this.sentinelInBounds = inBounds;
+    }
+
+    /**
+     * Checks a value against the bounds and the sentinel codes
+     *
+     * @param value Value to check
+     * @return true if the value is valid
+     */
+    public boolean isValid(double value)
+    {
+        if (value < min || value > max || value != value)
+        {
+            return false;
+        }
+
+        return !sentinelInBounds || sentinelIndex(value) < 0;
+    }
+
+    /**
+     * Finds the sentinel code of a value
+     *
+     * @param value Value to check
+     * @return index into ValidityRules.getSentinels or -1 if the value is not a sentinel
+     */
+    public int sentinelIndex(double value)
+    {
+        for (int i = 0; i < sentinels.length; i++)
+        {
+            if (value == sentinels[i])
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the smallest valid value
+     *
+     * @return lower bound
+     */
+    public double getMin()
+    {
+        return min;
+    }
+
+    /**
+     * Returns the largest valid value
+     *
+     * @return upper bound
+     */
+    public double getMax()
+    {
+        return max;
+    }
+}
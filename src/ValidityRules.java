@@ -0,0 +1,263 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * Validity Rules class holds the bounds of every parameter and the
+ * sentinel codes of the data files, read from a properties file:
+ *
+ *   sentinels=-995,-996,-998,-999
+ *   default.min=-900
+ *   default.max=900
+ *   PRES.min=800
+ *   PRES.max=1100
+ *
+ * A parameter without its own bounds uses the default ones. The global
+ * rules are read from the file named by the mdf.validity system property,
+ * or validity.properties in the working directory, and otherwise keep
+ * the -900 to 900 window.
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ *
+ */
+
+public final class ValidityRules
+{
+    /**
+     * File read for the global rules when no system property is set
+     */
+    public static final String DEFAULT_FILE = "validity.properties";
+
+    /**
+     * Sentinel codes used when none are configured
+     */
+    private static final int[] DEFAULT_SENTINELS = {-995, -996, -998, -999};
+
+    /**
+     * Rules used by every parsed file
+     */
+    private static final ValidityRules GLOBAL = loadGlobal();
+
+    /**
+     * Sentinel codes
+     */
+    private final int[] sentinels;
+
+    /**
+     * Rule of any parameter without its own bounds
+     */
+    private final ValidityRule defaultRule;
+
+    /**
+     * Rules of parameters with their own bounds
+     */
+    private final HashMap<String, ValidityRule> rules = new HashMap<String, ValidityRule>();
+
+    /**
+     * Validity Rules constructor from properties
+     *
+     * @param properties Rules as described above
+     * @throws IllegalArgumentException if a bound or code is not a number
+     */
+    public ValidityRules(Properties properties)
+    {
+        String codes = properties.getProperty("sentinels");
+        if (codes == null)
+        {
+            sentinels = DEFAULT_SENTINELS.clone();
+        }
+        else
+        {
+            String[] parts = codes.trim().isEmpty() ? new String[0] : codes.split(",");
+            sentinels = new int[parts.length];
+            for (int i = 0; i < parts.length; i++)
+            {
+                sentinels[i] = (int) number("sentinels", parts[i]);
+            }
+        }
+
+        double min = bound(properties, "default.min", -900);
+        double max = bound(properties, "default.max", 900);
+        defaultRule = new ValidityRule(min, max, sentinels);
+
+        for (String key : properties.stringPropertyNames())
+        {
+            int dot = key.lastIndexOf('.');
+            if (dot <= 0 || key.startsWith("default.") || !(key.endsWith(".min") || key.endsWith(".max")))
+            {
+                continue;
+            }
+
+            String paramId = key.substring(0, dot);
+            if (!rules.containsKey(paramId))
+            {
+                rules.put(paramId, new ValidityRule(bound(properties, paramId + ".min", min),
+                        bound(properties, paramId + ".max", max), sentinels));
+            }
+        }
+    }
+
+    /**
+     * Reads rules from a properties file
+     *
+     * @param file Properties file
+     * @return rules
+     * @throws IOException Checks to make sure the file can be read
+     */
+    public static ValidityRules load(File file) throws IOException
+    {
+        Properties properties = new Properties();
+
+        try (InputStream in = new FileInputStream(file))
+        {
+            properties.load(in);
+        }
+
+        try
+        {
+            return new ValidityRules(properties);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IOException("Bad validity rule in " + file, e);
+        }
+    }
+
+    /**
+     * Returns the rules used by every parsed file
+     *
+     * @return global rules
+     */
+    public static ValidityRules getGlobal()
+    {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the rule of a parameter
+     *
+     * @param paramId Parameter id
+     * @return its own rule or the default rule
+     */
+    public ValidityRule ruleOf(String paramId)
+    {
+        ValidityRule rule = rules.get(paramId);
+
+        return rule == null ? defaultRule : rule;
+    }
+
+    /**
+     * Returns the rule of any parameter without its own bounds
+     *
+     * @return default rule
+     */
+    public ValidityRule getDefaultRule()
+    {
+        return defaultRule;
+    }
+
+    /**
+     * Returns the sentinel codes in configured order, the order of every
+     * sentinel count
+     *
+     * @return sentinel codes
+     */
+    public int[] getSentinels()
+    {
+        return sentinels.clone();
+    }
+
+    /**
+     * Returns a hash of the sentinel codes and every bound. Validity
+     * bitmaps built under rules with another fingerprint may be wrong.
+     *
+     * @return fingerprint, the same for rules with the same codes and bounds
+     */
+    public long fingerprint()
+    {
+        long hash = 17;
+
+        for (int sentinel : sentinels)
+        {
+            hash = hash * 31 + sentinel;
+        }
+        hash = hash * 31 + Double.doubleToLongBits(defaultRule.getMin());
+        hash = hash * 31 + Double.doubleToLongBits(defaultRule.getMax());
+
+        //Sorted so the order of the properties file does not matter
+        for (String paramId : new TreeSet<String>(rules.keySet()))
+        {
+            hash = hash * 31 + paramId.hashCode();
+            hash = hash * 31 + Double.doubleToLongBits(rules.get(paramId).getMin());
+            hash = hash * 31 + Double.doubleToLongBits(rules.get(paramId).getMax());
+        }
+
+        return hash;
+    }
+
+    /**
+     * Reads the global rules, falling back to the default window when the
+     * configured file cannot be read
+     *
+     * @return rules
+     */
+    private static ValidityRules loadGlobal()
+    {
+        String path = System.getProperty("mdf.validity", DEFAULT_FILE);
+        File file = new File(path);
+
+        if (file.isFile())
+        {
+            try
+            {
+                return load(file);
+            }
+            catch (IOException e)
+            {
+                System.out.println("Error reading validity rules from " + path + "!\n");
+            }
+        }
+
+        return new ValidityRules(new Properties());
+    }
+
+    /**
+     * Reads a bound
+     *
+     * @param properties Rules
+     * @param key Property name
+     * @param fallback Bound when the property is not set
+     * @return bound
+     */
+    private static double bound(Properties properties, String key, double fallback)
+    {
+        String text = properties.getProperty(key);
+
+        return text == null ? fallback : number(key, text);
+    }
+
+    /**
+     * Parses a number of a property
+     *
+     * @param key Property name, for the error message
+     * @param text Text to parse
+     * @return number
+     * @throws IllegalArgumentException if the text is not a number
+     */
+    private static double number(String key, String text)
+    {
+        try
+        {
+            return Double.parseDouble(text.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(key + " is not a number: " + text, e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the Validity Rules and Validity Rule classes
+ *
+ * @author Tim Weaver
+ * @version 2018-10-23
+ */
+public class ValidityRulesTest
+{
+    /**
+     * Test that parameters use their own bounds and fall back to the default ones
+     */
+    @Test
+    public void testRuleOf()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("sentinels", "-996,-998,-999");
+        properties.setProperty("PRES.min", "800");
+        properties.setProperty("PRES.max", "1100");
+        properties.setProperty("SRAD.min", "0");
+        ValidityRules test = new ValidityRules(properties);
+
+        Assert.assertArrayEquals(new int[] {-996, -998, -999}, test.getSentinels());
+        Assert.assertTrue(test.ruleOf("PRES").isValid(969.92));
+        Assert.assertFalse(test.ruleOf("PRES").isValid(-999));
+        Assert.assertFalse(test.ruleOf("SRAD").isValid(-5));
+        Assert.assertEquals(900, test.ruleOf("SRAD").getMax(), .001);
+        Assert.assertFalse(test.ruleOf("TAIR").isValid(969.92));
+        Assert.assertTrue(test.ruleOf("TAIR").isValid(-900));
+        Assert.assertFalse(test.ruleOf("TAIR").isValid(Double.NaN));
+        Assert.assertEquals(1, test.ruleOf("TAIR").sentinelIndex(-998));
+        Assert.assertEquals(-1, test.ruleOf("TAIR").sentinelIndex(-995));
+    }
+
+    /**
+     * Test that the fingerprint changes with the bounds and codes only
+     */
+    @Test
+    public void testFingerprint()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("PRES.min", "800");
+        properties.setProperty("SRAD.min", "0");
+        long fingerprint = new ValidityRules(properties).fingerprint();
+
+        Assert.assertEquals(fingerprint, new ValidityRules((Properties) properties.clone()).fingerprint());
+        properties.setProperty("PRES.min", "850");
+        Assert.assertTrue(fingerprint != new ValidityRules(properties).fingerprint());
+        properties.setProperty("PRES.min", "800");
+        properties.setProperty("sentinels", "-999");
+        Assert.assertTrue(fingerprint != new ValidityRules(properties).fingerprint());
+    }
+
+    /**
+     * Test that a sentinel inside the bounds is still not valid
+     */
+    @Test
+    public void testSentinelInBounds()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("sentinels", "-999");
+        properties.setProperty("default.min", "-2000");
+        ValidityRules test = new ValidityRules(properties);
+
+        Assert.assertFalse(test.getDefaultRule().isValid(-999));
+        Assert.assertTrue(test.getDefaultRule().isValid(-1000));
+    }
+
+    /**
+     * Test that a bound that is not a number is reported with its file
+     * @throws IOException Make sure inputs are valid
+     */
+    @Test
+    public void testLoadBadRule() throws IOException
+    {
+        File file = File.createTempFile("validity", ".properties");
+        file.deleteOnExit();
+        try (Writer out = new FileWriter(file))
+        {
+            out.write("PRES.min=low\n");
+        }
+
+        try
+        {
+            ValidityRules.load(file);
+            Assert.fail("Expected an IOException");
+        }
+        catch (IOException e)
+        {
+            Assert.assertTrue(e.getMessage().contains(file.getName()));
+        }
+    }
+
+    /**
+     * Test sentinel counts of a data file and pressure read with its own bounds
+     */
+    @Test
+    public void testSentinelCounts()
+    {
+        MapData test = new MapData(2018, 8, 30, 17, 45, "data/");
+
+        Assert.assertEquals(Integer.valueOf(4), test.getSentinelCounts("TAIR").get(-999));
+        Assert.assertEquals(4, test.getStatistics(StatsType.MAXIMUM, "TAIR").getSentinelCount(-999));
+        Assert.assertEquals(0, test.getStatistics(StatsType.MAXIMUM, "TAIR").getSentinelCount(-996));
+        Assert.assertEquals(Integer.valueOf(120), test.getSentinelCounts("TR05").get(-995));
+        Assert.assertNull(test.getStatistics(StatsType.AVERAGE, "TR05"));
+        Assert.assertTrue(test.getSentinelCounts("ZZZZ").isEmpty());
+
+        //validity.properties gives PRES bounds around 970 mb
+        Assert.assertEquals(119, test.getStatistics(StatsType.AVERAGE, "PRES").getNumberOfReportingStations());
+        Assert.assertEquals(1, test.getStatistics(StatsType.AVERAGE, "PRES").getSentinelCount(-999));
+    }
+}